@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.model;
+
+import org.mmarini.railways2.model.blocks.BlockBuilder;
+import org.mmarini.railways2.model.blocks.StationDef;
+import org.mmarini.railways2.model.routes.Route;
+import org.mmarini.railways2.model.routes.Signal;
+import org.mmarini.yaml.Utils;
+import org.mmarini.yaml.schema.Locator;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.lang.String.format;
+
+/**
+ * Loads the stations used by the benchmarks.
+ * <p>
+ * The station names are the resource station names (downville, jackville)
+ * or synthetic-N for a synthetic station with N lines per side and 2N platforms.
+ * </p>
+ */
+public interface BenchmarkStations {
+    double GAME_DURATION = 3600;
+    double FREQUENCY = 0.1;
+    double DT = 0.1;
+    String SYNTHETIC_PREFIX = "synthetic-";
+
+    /**
+     * Returns the station definition
+     *
+     * @param name the station name
+     * @throws IOException in case of error
+     */
+    static StationDef loadDef(String name) throws IOException {
+        return name.startsWith(SYNTHETIC_PREFIX)
+                ? StationDef.create(Utils.fromText(synthetic(Integer.parseInt(name.substring(SYNTHETIC_PREFIX.length())))), Locator.root())
+                : StationDef.create(Utils.fromResource("/stations/" + name + ".station.yml"), Locator.root());
+    }
+
+    /**
+     * Returns the initial station status
+     *
+     * @param name   the station name
+     * @param random the random generator
+     * @throws IOException in case of error
+     */
+    static StationStatus load(String name, Random random) throws IOException {
+        return new BlockBuilder(loadDef(name)).buildStatus(GAME_DURATION, FREQUENCY, random, null);
+    }
+
+    /**
+     * Returns the station status after playing the number of steps.
+     * <p>
+     * The player periodically unlocks the signals, starts and stops the trains so the trains move across the station.
+     * </p>
+     *
+     * @param status   the initial status
+     * @param random   the random generator
+     * @param numSteps the number of steps
+     */
+    static StationStatus play(StationStatus status, Random random, int numSteps) {
+        for (int i = 0; i < numSteps; i++) {
+            status = playStep(status, i).tick(DT, random);
+        }
+        return status;
+    }
+
+    /**
+     * Returns the status after the player actions of a step
+     *
+     * @param status the status
+     * @param step   the step number
+     */
+    static StationStatus playStep(StationStatus status, int step) {
+        if (step % 100 == 50) {
+            Route[] signals = status.getRoutes().stream()
+                    .filter(route -> route instanceof Signal)
+                    .map(route -> ((Signal) route).setLocks())
+                    .toArray(Route[]::new);
+            status = status.replaceRoutes(signals);
+        }
+        if (step % 100 == 75) {
+            for (Train train : status.getTrains()) {
+                status = status.startTrain(train.getId());
+            }
+        }
+        if (step % 200 == 160) {
+            status = status.stopTrains();
+        }
+        return status;
+    }
+
+    /**
+     * Returns the yaml text of a synthetic station.
+     * <p>
+     * <pre>
+     * west line i --- west signals --- platforms --- east signals --- east line i
+     * </pre>
+     * </p>
+     *
+     * @param numLines the number of lines per side
+     */
+    static String synthetic(int numLines) {
+        int numTracks = numLines * 2;
+        String westLines = IntStream.rangeClosed(1, numLines)
+                .mapToObj(i -> format("  west%1$d:%n    class: org.mmarini.railways2.model.blocks.Wayout%n", i))
+                .collect(Collectors.joining());
+        String eastLines = IntStream.rangeClosed(1, numLines)
+                .mapToObj(i -> format("  east%1$d:%n    class: org.mmarini.railways2.model.blocks.Wayout%n", i))
+                .collect(Collectors.joining());
+        String westLinks = IntStream.rangeClosed(1, numLines)
+                .mapToObj(i -> format("  west%d.exit: westSignals.%d.w%n", i, i * 2 - 1))
+                .collect(Collectors.joining());
+        String eastLinks = IntStream.rangeClosed(1, numLines)
+                .mapToObj(i -> format("  east%d.entry: eastSignals.%d.e%n", i, i * 2 - 1))
+                .collect(Collectors.joining());
+        return format("---%n"
+                        + "name: synthetic-%1$d%n"
+                        + "orientation: 0%n"
+                        + "blocks:%n"
+                        + "  platforms:%n"
+                        + "    class: org.mmarini.railways2.model.blocks.Platforms%n"
+                        + "    numPlatforms: %2$d%n"
+                        + "    length: 14%n"
+                        + "  westSignals:%n"
+                        + "    class: org.mmarini.railways2.model.blocks.Signals%n"
+                        + "    numSignals: %2$d%n"
+                        + "  eastSignals:%n"
+                        + "    class: org.mmarini.railways2.model.blocks.Signals%n"
+                        + "    numSignals: %2$d%n"
+                        + "%3$s%4$s"
+                        + "links:%n"
+                        + "  westSignals.1.e: platforms.1.w%n"
+                        + "  eastSignals.1.w: platforms.1.e%n"
+                        + "%5$s%6$s",
+                numLines, numTracks, westLines, eastLines, westLinks, eastLinks);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.model;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mmarini.railways2.model.BenchmarkStations.*;
+
+/**
+ * Benchmarks the station status simulation and queries on a status with running trains
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StationStatusBenchmark {
+    public static final int NUM_STEPS = 1200;
+
+    @Param({"downville", "jackville", "synthetic-2", "synthetic-8", "synthetic-32"})
+    private String station;
+    private StationStatus status;
+    private Random random;
+    private CoachLayout coachLayout;
+
+    @Benchmark
+    public Object createSections() {
+        return status.createSections();
+    }
+
+    @Benchmark
+    public void getTrainsCoaches(Blackhole blackhole) {
+        status.getTrainsCoaches().forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public Object layoutCoaches() {
+        return status.layoutCoaches(coachLayout);
+    }
+
+    @Benchmark
+    public void isNextSignalClear(Blackhole blackhole) {
+        for (Train train : status.getTrains()) {
+            if (train.getLocation().isPresent()) {
+                blackhole.consume(status.isNextSignalClear(train));
+            }
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        random = new Random(1234);
+        coachLayout = new CoachLayout();
+        status = play(load(station, random), random, NUM_STEPS);
+    }
+
+    @Benchmark
+    public StationStatus tick() {
+        return status.tick(DT, random);
+    }
+}
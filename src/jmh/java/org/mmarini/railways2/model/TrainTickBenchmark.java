@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+import static org.mmarini.railways2.model.BenchmarkStations.*;
+
+/**
+ * Benchmarks the train tick of a train in a given state
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrainTickBenchmark {
+    public static final int MAX_STEPS = 20000;
+
+    @Param({"downville", "synthetic-8"})
+    private String station;
+    @Param({"RUNNING", "BRAKING", "LOADING", "EXITING"})
+    private String state;
+    private StationStatus status;
+    private Train train;
+    private MutableTrain mutableTrain;
+
+    @Benchmark
+    public Train mutableTick() {
+        return train.tick(new SimulationContext(status), DT, mutableTrain);
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(1234);
+        StationStatus status = load(station, random);
+        for (int i = 0; i < MAX_STEPS; i++) {
+            status = playStep(status, i);
+            Optional<Train> train = status.getTrains().stream()
+                    .filter(t -> t.getState().getId().equals(state))
+                    .findFirst();
+            if (train.isPresent()) {
+                this.status = status;
+                this.train = train.orElseThrow();
+                this.mutableTrain = new MutableTrain();
+                return;
+            }
+            status = status.tick(DT, random);
+        }
+        throw new IllegalStateException(format("No train in state %s at %s", state, station));
+    }
+
+    @Benchmark
+    public Object tick() {
+        return train.tick(new SimulationContext(status), DT);
+    }
+}
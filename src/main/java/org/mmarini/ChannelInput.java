@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads the primitive values from a channel through a fixed size buffer
+ * or directly from a byte buffer (e.g. a memory mapped file).
+ * <p>
+ * The values are read in big endian order.
+ * </p>
+ */
+public class ChannelInput {
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates the input reading the whole content of a byte buffer
+     *
+     * @param buffer the buffer
+     */
+    public ChannelInput(ByteBuffer buffer) {
+        this.channel = null;
+        this.buffer = requireNonNull(buffer);
+    }
+
+    /**
+     * Creates the input
+     *
+     * @param channel the channel
+     */
+    public ChannelInput(ReadableByteChannel channel) {
+        this.channel = requireNonNull(channel);
+        this.buffer = ByteBuffer.allocate(ChannelOutput.BUFFER_SIZE);
+        buffer.flip();
+    }
+
+    /**
+     * Ensures the buffer contains the given number of bytes
+     *
+     * @param size the number of bytes
+     * @throws IOException if the channel ends before the given number of bytes
+     */
+    private void ensure(int size) throws IOException {
+        if (buffer.remaining() < size) {
+            if (channel == null) {
+                throw new IOException("Unexpected end of data");
+            }
+            buffer.compact();
+            while (buffer.position() < size) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Unexpected end of data");
+                }
+            }
+            buffer.flip();
+        }
+    }
+
+    /**
+     * Returns true if the channel has no more data
+     *
+     * @throws IOException in case of error
+     */
+    public boolean isEnd() throws IOException {
+        if (buffer.hasRemaining() || channel == null) {
+            return !buffer.hasRemaining();
+        }
+        buffer.clear();
+        int n;
+        do {
+            n = channel.read(buffer);
+        } while (n == 0);
+        buffer.flip();
+        return n < 0;
+    }
+
+    public byte getByte() throws IOException {
+        ensure(Byte.BYTES);
+        return buffer.get();
+    }
+
+    public double getDouble() throws IOException {
+        ensure(Double.BYTES);
+        return buffer.getDouble();
+    }
+
+    public int getInt() throws IOException {
+        ensure(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    public long getLong() throws IOException {
+        ensure(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    public short getShort() throws IOException {
+        ensure(Short.BYTES);
+        return buffer.getShort();
+    }
+
+    /**
+     * Returns the string read as length and utf-8 bytes or null if length is -1
+     */
+    public String getString() throws IOException {
+        int length = getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || (channel == null && length > buffer.remaining())) {
+            throw new IllegalArgumentException(format("Invalid string length %d", length));
+        }
+        // Grows the array while reading so a corrupted length fails at the end of data
+        byte[] bytes = new byte[Math.min(length, ChannelOutput.BUFFER_SIZE)];
+        int offset = 0;
+        while (offset < length) {
+            ensure(1);
+            int n = Math.min(buffer.remaining(), length - offset);
+            if (offset + n > bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(length, Math.max(2L * bytes.length, offset + n)));
+            }
+            buffer.get(bytes, offset, n);
+            offset += n;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
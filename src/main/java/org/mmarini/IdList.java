@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An immutable list of elements with unique identifiers.
+ * <p>
+ * The list keeps the element order, looks up the elements by identifier through a hash index
+ * and replaces an element by identifier sharing the structure of the list.
+ * The identifier index never changes on replacement so it is shared by all the derived lists.
+ * </p>
+ *
+ * @param <T> the type of elements
+ */
+public class IdList<T> extends AbstractList<T> implements RandomAccess {
+
+    /**
+     * Returns the list of elements
+     *
+     * @param elements the elements
+     * @param idOf     the identifier function
+     * @param <T>      the type of elements
+     * @throws IllegalArgumentException if the identifiers are not unique
+     */
+    public static <T> IdList<T> of(Collection<? extends T> elements, Function<? super T, String> idOf) {
+        PersistentVector<T> vector = PersistentVector.of(elements);
+        Map<String, Integer> indexById = new HashMap<>();
+        for (int i = 0; i < vector.size(); i++) {
+            String id = idOf.apply(vector.get(i));
+            if (indexById.put(id, i) != null) {
+                throw new IllegalArgumentException(format("Duplicated identifier %s", id));
+            }
+        }
+        return new IdList<>(vector, indexById, idOf);
+    }
+
+    private final PersistentVector<T> elements;
+    private final Map<String, Integer> indexById;
+    private final Function<? super T, String> idOf;
+
+    /**
+     * Creates the list
+     *
+     * @param elements  the elements
+     * @param indexById the element index by identifier
+     * @param idOf      the identifier function
+     */
+    private IdList(PersistentVector<T> elements, Map<String, Integer> indexById, Function<? super T, String> idOf) {
+        this.elements = requireNonNull(elements);
+        this.indexById = requireNonNull(indexById);
+        this.idOf = requireNonNull(idOf);
+    }
+
+    @Override
+    public T get(int index) {
+        return elements.get(index);
+    }
+
+    /**
+     * Returns the element by identifier
+     *
+     * @param id the identifier
+     */
+    public Optional<T> get(String id) {
+        Integer index = indexById.get(id);
+        return index != null ? Optional.of(elements.get(index)) : Optional.empty();
+    }
+
+    /**
+     * Returns the list with the element of the same identifier replaced
+     *
+     * @param element the element
+     * @throws IllegalArgumentException if the identifier does not exist
+     */
+    public IdList<T> replace(T element) {
+        String id = idOf.apply(element);
+        Integer index = indexById.get(id);
+        if (index == null) {
+            throw new IllegalArgumentException(format("Identifier %s not found", id));
+        }
+        PersistentVector<T> newElements = elements.replace(index, element);
+        return newElements == elements ? this : new IdList<>(newElements, indexById, idOf);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+}
@@ -0,0 +1,485 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini;
+
+import java.util.*;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An immutable map with structural sharing.
+ * <p>
+ * The entries are stored in a hash array mapped trie with 32-ary bitmap nodes so the lookup,
+ * the insertion and the removal of an entry cost O(log<sub>32</sub> n);
+ * the changed map shares all the nodes but the path to the changed entry.
+ * The keys with the same hash are kept in collision nodes.
+ * The map does not allow null keys or null values.
+ * </p>
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class PersistentMap<K, V> extends AbstractMap<K, V> {
+    static final int BITS = 5;
+    static final int MASK = (1 << BITS) - 1;
+    private static final int MAX_DEPTH = 10;
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+
+    /**
+     * Returns the empty map
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Returns the map of the entries
+     *
+     * @param map the entries
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> of(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentMap) {
+            return (PersistentMap<K, V>) map;
+        }
+        PersistentMap<K, V> result = empty();
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            result = result.plus(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the spread hash of key
+     *
+     * @param key the key
+     */
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the pairs of node with the pair at the index removed
+     *
+     * @param array the pairs
+     * @param index the pair index
+     */
+    private static Object[] removePair(Object[] array, int index) {
+        Object[] result = new Object[array.length - 2];
+        System.arraycopy(array, 0, result, 0, 2 * index);
+        System.arraycopy(array, 2 * index + 2, result, 2 * index, array.length - 2 * index - 2);
+        return result;
+    }
+
+    /**
+     * Returns the pairs of node with the pair at the index replaced
+     *
+     * @param array the pairs
+     * @param index the pair index
+     * @param key   the key or null for child node
+     * @param value the value or the child node
+     */
+    private static Object[] replacePair(Object[] array, int index, Object key, Object value) {
+        Object[] result = array.clone();
+        result[2 * index] = key;
+        result[2 * index + 1] = value;
+        return result;
+    }
+
+    /**
+     * Returns the node of two entries
+     *
+     * @param shift  the bit shift of the node level
+     * @param key0   the first key
+     * @param value0 the first value
+     * @param hash0  the first hash
+     * @param key1   the second key
+     * @param value1 the second value
+     * @param hash1  the second hash
+     */
+    private static Node createNode(int shift, Object key0, Object value0, int hash0, Object key1, Object value1, int hash1) {
+        if (hash0 == hash1) {
+            return new CollisionNode(hash0, new Object[]{key0, value0, key1, value1});
+        }
+        boolean[] added = new boolean[1];
+        return BitmapNode.EMPTY
+                .put(shift, hash0, key0, value0, added)
+                .put(shift, hash1, key1, value1, added);
+    }
+
+    private final Node root;
+    private final int size;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    /**
+     * Creates the map
+     *
+     * @param root the root node or null if empty
+     * @param size the number of entries
+     */
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new EntryIterator<>(root);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(Object key) {
+        return root != null && key != null ? (V) root.find(0, hash(key), key) : null;
+    }
+
+    /**
+     * Returns the map without the key
+     *
+     * @param key the key
+     */
+    public PersistentMap<K, V> minus(Object key) {
+        if (root == null || key == null) {
+            return this;
+        }
+        Node newRoot = root.remove(0, hash(key), key);
+        return newRoot == root ? this
+                : newRoot == null ? empty()
+                : new PersistentMap<>(newRoot, size - 1);
+    }
+
+    /**
+     * Returns the map with the entry set
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public PersistentMap<K, V> plus(K key, V value) {
+        requireNonNull(key);
+        requireNonNull(value);
+        boolean[] added = new boolean[1];
+        Node newRoot = (root != null ? root : BitmapNode.EMPTY).put(0, hash(key), key, value, added);
+        return newRoot == root ? this : new PersistentMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * A trie node with key, value pairs.
+     * The pair with null key holds a child node as value.
+     */
+    private abstract static class Node {
+        final Object[] array;
+
+        /**
+         * Creates the node
+         *
+         * @param array the pairs
+         */
+        Node(Object[] array) {
+            this.array = array;
+        }
+
+        /**
+         * Returns the value of key or null if none
+         *
+         * @param shift the bit shift of the node level
+         * @param hash  the key hash
+         * @param key   the key
+         */
+        abstract Object find(int shift, int hash, Object key);
+
+        /**
+         * Returns the node with the entry set
+         *
+         * @param shift the bit shift of the node level
+         * @param hash  the key hash
+         * @param key   the key
+         * @param value the value
+         * @param added the flag set if the entry is added (output)
+         */
+        abstract Node put(int shift, int hash, Object key, Object value, boolean[] added);
+
+        /**
+         * Returns the node without the key or null if empty
+         *
+         * @param shift the bit shift of the node level
+         * @param hash  the key hash
+         * @param key   the key
+         */
+        abstract Node remove(int shift, int hash, Object key);
+    }
+
+    /**
+     * The node of entries indexed by the hash bits of the level
+     */
+    private static class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+        final int bitmap;
+
+        /**
+         * Creates the node
+         *
+         * @param bitmap the bitmap of the used hash indices
+         * @param array  the pairs
+         */
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int index = Integer.bitCount(bitmap & (bit - 1));
+            Object k = array[2 * index];
+            Object v = array[2 * index + 1];
+            return k == null ? ((Node) v).find(shift + BITS, hash, key)
+                    : key.equals(k) ? v
+                    : null;
+        }
+
+        @Override
+        Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int index = Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                Object[] result = new Object[array.length + 2];
+                System.arraycopy(array, 0, result, 0, 2 * index);
+                result[2 * index] = key;
+                result[2 * index + 1] = value;
+                System.arraycopy(array, 2 * index, result, 2 * index + 2, array.length - 2 * index);
+                return new BitmapNode(bitmap | bit, result);
+            }
+            Object k = array[2 * index];
+            Object v = array[2 * index + 1];
+            if (k == null) {
+                Node child = ((Node) v).put(shift + BITS, hash, key, value, added);
+                return child == v ? this : new BitmapNode(bitmap, replacePair(array, index, null, child));
+            }
+            if (key.equals(k)) {
+                return k == key && v == value ? this : new BitmapNode(bitmap, replacePair(array, index, key, value));
+            }
+            added[0] = true;
+            Node child = createNode(shift + BITS, k, v, hash(k), key, value, hash);
+            return new BitmapNode(bitmap, replacePair(array, index, null, child));
+        }
+
+        @Override
+        Node remove(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = Integer.bitCount(bitmap & (bit - 1));
+            Object k = array[2 * index];
+            Object v = array[2 * index + 1];
+            if (k == null) {
+                Node child = ((Node) v).remove(shift + BITS, hash, key);
+                return child == v ? this
+                        : child != null ? new BitmapNode(bitmap, replacePair(array, index, null, child))
+                        : bitmap == bit ? null
+                        : new BitmapNode(bitmap ^ bit, removePair(array, index));
+            }
+            if (!key.equals(k)) {
+                return this;
+            }
+            return bitmap == bit ? null : new BitmapNode(bitmap ^ bit, removePair(array, index));
+        }
+    }
+
+    /**
+     * The node of entries with the same hash
+     */
+    private static class CollisionNode extends Node {
+        final int hash;
+
+        /**
+         * Creates the node
+         *
+         * @param hash  the hash of keys
+         * @param array the pairs
+         */
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int index = indexOf(key);
+            return index >= 0 ? array[2 * index + 1] : null;
+        }
+
+        /**
+         * Returns the pair index of key or -1 if none
+         *
+         * @param key the key
+         */
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i / 2;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // Nests the collisions in a bitmap node of the level
+                BitmapNode node = new BitmapNode(1 << ((this.hash >>> shift) & MASK), new Object[]{null, this});
+                return node.put(shift, hash, key, value, added);
+            }
+            int index = indexOf(key);
+            if (index >= 0) {
+                return array[2 * index] == key && array[2 * index + 1] == value ? this
+                        : new CollisionNode(hash, replacePair(array, index, key, value));
+            }
+            added[0] = true;
+            Object[] result = Arrays.copyOf(array, array.length + 2);
+            result[array.length] = key;
+            result[array.length + 1] = value;
+            return new CollisionNode(hash, result);
+        }
+
+        @Override
+        Node remove(int shift, int hash, Object key) {
+            int index = indexOf(key);
+            return index < 0 ? this
+                    : array.length == 2 ? null
+                    : new CollisionNode(this.hash, removePair(array, index));
+        }
+    }
+
+    /**
+     * Iterates the entries by depth first visit of the trie
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     */
+    private static class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+        private final Object[][] arrays;
+        private final int[] positions;
+        private int depth;
+        private Map.Entry<K, V> next;
+
+        /**
+         * Creates the iterator
+         *
+         * @param root the root node or null if empty
+         */
+        EntryIterator(Node root) {
+            this.arrays = new Object[MAX_DEPTH][];
+            this.positions = new int[MAX_DEPTH];
+            if (root != null) {
+                arrays[0] = root.array;
+            } else {
+                depth = -1;
+            }
+            advance();
+        }
+
+        /**
+         * Moves to the next entry
+         */
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int position = positions[depth];
+                if (position >= array.length) {
+                    depth--;
+                    continue;
+                }
+                positions[depth] = position + 2;
+                Object key = array[position];
+                Object value = array[position + 1];
+                if (key == null) {
+                    depth++;
+                    arrays[depth] = ((Node) value).array;
+                    positions[depth] = 0;
+                } else {
+                    next = new SimpleImmutableEntry<>((K) key, (V) value);
+                    return;
+                }
+            }
+            next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, V> result = next;
+            advance();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+import static java.lang.String.format;
+
+/**
+ * An immutable list with structural sharing.
+ * <p>
+ * The elements are stored in a 32-ary trie so the element access and the single element replacement
+ * cost O(log<sub>32</sub> n); the replaced vector shares all the nodes but the path to the replaced element.
+ * </p>
+ *
+ * @param <T> the type of elements
+ */
+public class PersistentVector<T> extends AbstractList<T> implements RandomAccess {
+    static final int BITS = 5;
+    static final int WIDTH = 1 << BITS;
+    static final int MASK = WIDTH - 1;
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(new Object[0], 0, 0);
+
+    /**
+     * Returns the empty vector
+     *
+     * @param <T> the type of elements
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentVector<T> empty() {
+        return (PersistentVector<T>) EMPTY;
+    }
+
+    /**
+     * Returns the vector of the elements
+     *
+     * @param elements the elements
+     * @param <T>      the type of elements
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentVector<T> of(Collection<? extends T> elements) {
+        if (elements instanceof PersistentVector) {
+            return (PersistentVector<T>) elements;
+        }
+        int size = elements.size();
+        if (size == 0) {
+            return empty();
+        }
+        // Builds the leaves and groups the nodes level by level up to the root
+        Object[] nodes = elements.toArray();
+        int shift = 0;
+        do {
+            nodes = group(nodes);
+            shift += BITS;
+        } while (nodes.length > 1);
+        return new PersistentVector<>((Object[]) nodes[0], shift - BITS, size);
+    }
+
+    /**
+     * Returns the nodes grouping the given nodes by chunks of trie width
+     *
+     * @param nodes the nodes
+     */
+    private static Object[] group(Object[] nodes) {
+        Object[] result = new Object[(nodes.length + MASK) >>> BITS];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Arrays.copyOfRange(nodes, i << BITS, Math.min(nodes.length, (i + 1) << BITS));
+        }
+        return result;
+    }
+
+    private final Object[] root;
+    private final int shift;
+    private final int size;
+
+    /**
+     * Creates the vector
+     *
+     * @param root  the root node
+     * @param shift the bit shift of the root level
+     * @param size  the number of elements
+     */
+    private PersistentVector(Object[] root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    /**
+     * Checks the index
+     *
+     * @param index the index
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(format("Index %d out of bounds for size %d", index, size));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T get(int index) {
+        checkIndex(index);
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return (T) node[index & MASK];
+    }
+
+    /**
+     * Returns the vector with the element at the index replaced
+     *
+     * @param index   the index
+     * @param element the element
+     */
+    public PersistentVector<T> replace(int index, T element) {
+        checkIndex(index);
+        if (get(index) == element) {
+            return this;
+        }
+        return new PersistentVector<>(replace(root, shift, index, element), shift, size);
+    }
+
+    /**
+     * Returns the copy of node with the element at the index replaced
+     *
+     * @param node    the node
+     * @param level   the bit shift of the node level
+     * @param index   the index
+     * @param element the element
+     */
+    private Object[] replace(Object[] node, int level, int index, T element) {
+        Object[] result = node.clone();
+        if (level == 0) {
+            result[index & MASK] = element;
+        } else {
+            int child = (index >>> level) & MASK;
+            result[child] = replace((Object[]) node[child], level - BITS, index, element);
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.batch;
+
+import org.mmarini.railways2.model.EventScheduler;
+import org.mmarini.railways2.model.StationStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Simulates a game as fast as possible without user interface.
+ * <p>
+ * The simulation applies the dispatch policy and then ticks the station status with a fixed time interval
+ * until the game finishes.
+ * </p>
+ * <p>
+ * In event driven mode the simulation advances to the next event by the {@link EventScheduler}
+ * using the time interval as maximum step of moving trains;
+ * the steps do not cross the scheduled actions of the policy and the game end.
+ * </p>
+ */
+public class BatchSimulation {
+    public static final double DEFAULT_DT = 0.1;
+    private static final Logger logger = LoggerFactory.getLogger(BatchSimulation.class);
+    private static final double LOG_INTERVAL = 600;
+
+    private final DispatchPolicy policy;
+    private final double dt;
+    private final Random random;
+    private final ForkJoinPool pool;
+    private final boolean eventDriven;
+
+    /**
+     * Creates the batch simulation
+     *
+     * @param policy the dispatch policy
+     * @param dt     the simulation time interval (s)
+     * @param random the random generator
+     * @param pool   the pool for parallel train simulation or null for sequential simulation
+     */
+    public BatchSimulation(DispatchPolicy policy, double dt, Random random, ForkJoinPool pool) {
+        this(policy, dt, random, pool, false);
+    }
+
+    /**
+     * Creates the batch simulation
+     *
+     * @param policy      the dispatch policy
+     * @param dt          the simulation time interval or the maximum step in event driven mode (s)
+     * @param random      the random generator
+     * @param pool        the pool for parallel train simulation or null for sequential simulation
+     * @param eventDriven true if the simulation advances by next event (the pool is not used)
+     */
+    public BatchSimulation(DispatchPolicy policy, double dt, Random random, ForkJoinPool pool, boolean eventDriven) {
+        this.policy = requireNonNull(policy);
+        this.dt = dt;
+        this.random = requireNonNull(random);
+        this.pool = pool;
+        this.eventDriven = eventDriven;
+    }
+
+    /**
+     * Returns the final status of the game
+     *
+     * @param status the initial status
+     */
+    public StationStatus run(StationStatus status) {
+        double nextLog = LOG_INTERVAL;
+        long startNanos = System.nanoTime();
+        EventScheduler scheduler = eventDriven ? EventScheduler.create(status, dt, random) : null;
+        double gameDuration = status.getPerformance().getGameDuration();
+        int steps = 0;
+        while (!status.isGameFinished()) {
+            if (scheduler != null) {
+                double horizon = Math.min(gameDuration, policy.getNextActionTime(status.getTime()));
+                status = policy.apply(status, scheduler.getNextStep(status, horizon));
+                // The policy may start the trains, so the step is computed again
+                status = scheduler.step(status, horizon);
+            } else {
+                status = policy.apply(status, dt);
+                status = pool != null
+                        ? status.tick(dt, random, pool)
+                        : status.tick(dt, random);
+            }
+            steps++;
+            if (status.getTime() >= nextLog) {
+                logger.atDebug().log("Simulated {} s, {} trains", status.getTime(), status.getTrains().size());
+                nextLog += LOG_INTERVAL;
+            }
+        }
+        double elapsed = (System.nanoTime() - startNanos) * 1e-9;
+        logger.atInfo().log("Simulated {} s in {} steps in {} s", status.getTime(), steps, elapsed);
+        return status;
+    }
+}
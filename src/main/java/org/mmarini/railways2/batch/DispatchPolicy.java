@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.batch;
+
+import org.mmarini.railways2.model.StationStatus;
+import org.mmarini.railways2.model.Train;
+import org.mmarini.railways2.model.routes.Signal;
+import org.mmarini.railways2.model.geometry.Direction;
+
+/**
+ * Applies the player actions to the station status before each simulation step
+ */
+@FunctionalInterface
+public interface DispatchPolicy {
+    /**
+     * The policy that does nothing
+     */
+    DispatchPolicy NONE = (status, dt) -> status;
+
+    /**
+     * Returns the automatic policy.
+     * <p>
+     * The policy starts the trains waiting for run and unlocks the signals locked in front of the trains
+     * waiting for signal.
+     * The trains are not routed, they follow the current switch positions.
+     * </p>
+     */
+    static DispatchPolicy automatic() {
+        return (status, dt) -> {
+            for (Train train : status.getTrains()) {
+                Train.State state = train.getState();
+                if (state.equals(Train.STATE_WAITING_FOR_RUN)) {
+                    status = status.startTrain(train.getId());
+                } else if (state.equals(Train.STATE_WAITING_FOR_SIGNAL)) {
+                    status = unlockNextSignal(status, train);
+                }
+            }
+            return status;
+        };
+    }
+
+    /**
+     * Returns the status with the signal in front of the train unlocked
+     *
+     * @param status the status
+     * @param train  the train
+     */
+    private static StationStatus unlockNextSignal(StationStatus status, Train train) {
+        return train.getLocation()
+                .map(location -> {
+                    Direction direction = location.getDirection();
+                    return status.getRoute(direction.getDestination()) instanceof Signal
+                            ? status.unlockSignal(direction.getDestination().getId(), direction.getEdge().getId())
+                            : status;
+                })
+                .orElse(status);
+    }
+
+    /**
+     * Returns the status after applying the policy
+     *
+     * @param status the status
+     * @param dt     the time interval of the next simulation step (s)
+     */
+    StationStatus apply(StationStatus status, double dt);
+
+    /**
+     * Returns the policy applying this policy and then the other policy
+     *
+     * @param other the other policy
+     */
+    default DispatchPolicy andThen(DispatchPolicy other) {
+        DispatchPolicy first = this;
+        return new DispatchPolicy() {
+            @Override
+            public StationStatus apply(StationStatus status, double dt) {
+                return other.apply(first.apply(status, dt), dt);
+            }
+
+            @Override
+            public double getNextActionTime(double time) {
+                return Math.min(first.getNextActionTime(time), other.getNextActionTime(time));
+            }
+        };
+    }
+
+    /**
+     * Returns the instant of the first scheduled action after the given instant (s)
+     * or positive infinity if no action is scheduled.
+     * <p>
+     * The event driven simulation does not advance beyond the instant.
+     * </p>
+     *
+     * @param time the time instant (s)
+     */
+    default double getNextActionTime(double time) {
+        return Double.POSITIVE_INFINITY;
+    }
+}
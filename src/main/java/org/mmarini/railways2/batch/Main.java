@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.mmarini.railways2.model.JournalReplay;
+import org.mmarini.railways2.model.StationStatus;
+import org.mmarini.railways2.model.TrainIdAllocator;
+import org.mmarini.railways2.model.blocks.BlockBuilder;
+import org.mmarini.railways2.model.blocks.StationDef;
+import org.mmarini.yaml.Utils;
+import org.mmarini.yaml.schema.Locator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.lang.String.format;
+import static org.mmarini.railways2.model.RailwayConstants.SPH;
+import static org.mmarini.railways2.model.RailwayConstants.SPM;
+import static org.mmarini.yaml.Utils.objectMapper;
+
+/**
+ * The entry point of the headless batch simulation.
+ * <p>
+ * The simulation runs a game without user interface as fast as possible and writes the final performance as yaml.
+ * <pre>
+ * Usage: Main -s station [-d minutes] [-f trains/h] [-t dt] [-r seed] [-x script] [-n] [-p] [-e] [-i maxId] [-j journal] [-o output]
+ *   -s station  the station yaml file or resource (e.g. /stations/downville.station.yml)
+ *   -d minutes  the game duration (default 180)
+ *   -f trains/h the train frequency (default 30)
+ *   -t dt       the simulation time interval in seconds (default 0.1)
+ *   -r seed     the random seed
+ *   -x script   the yaml script of player actions
+ *   -n          disables the automatic dispatch policy
+ *   -p          simulates the trains in parallel
+ *   -e          simulates by next event time advance (dt is the maximum step of moving trains)
+ *   -i maxId    the maximum train identifier number (default 999)
+ *   -j journal  replays the game journal (the other simulation options are ignored)
+ *   -o output   the output yaml file (default standard output)
+ * </pre>
+ * </p>
+ */
+public class Main {
+    public static final double DEFAULT_DURATION = 180;
+    public static final double DEFAULT_FREQUENCY = 30;
+    public static final String PLAYER = "batch";
+    private static final List<String> VALUE_OPTIONS = List.of("-s", "-d", "-f", "-t", "-r", "-x", "-i", "-j", "-o");
+    private static final List<String> FLAG_OPTIONS = List.of("-n", "-p", "-e");
+    private static final Logger logger = LoggerFactory.getLogger(Main.class);
+
+    /**
+     * Returns the yaml document from file or resource
+     *
+     * @param name the file or resource name
+     * @throws IOException in case of error
+     */
+    static JsonNode load(String name) throws IOException {
+        File file = new File(name);
+        return file.isFile() ? Utils.fromFile(file) : Utils.fromResource(name);
+    }
+
+    /**
+     * Batch entry point
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options;
+        try {
+            options = parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: Main -s station [-d minutes] [-f trains/h] [-t dt] [-r seed] [-x script] [-n] [-p] [-e] [-i maxId] [-j journal] [-o output]");
+            System.exit(1);
+            return;
+        }
+        StationStatus result = run(options);
+        JsonNode json = result.getPerformance().setPlayer(PLAYER).getJson();
+        String output = options.get("-o");
+        if (output != null) {
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(new File(output), json);
+        } else {
+            System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(json));
+        }
+    }
+
+    /**
+     * Returns the options by name
+     *
+     * @param args the command line arguments
+     * @throws IllegalArgumentException in case of wrong arguments
+     */
+    static Map<String, String> parseArgs(String... args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (FLAG_OPTIONS.contains(arg)) {
+                options.put(arg, "true");
+            } else if (VALUE_OPTIONS.contains(arg)) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException(format("Missing value for option %s", arg));
+                }
+                options.put(arg, args[++i]);
+            } else {
+                throw new IllegalArgumentException(format("Unknown option %s", arg));
+            }
+        }
+        if (!options.containsKey("-s")) {
+            throw new IllegalArgumentException("Missing station option -s");
+        }
+        return options;
+    }
+
+    /**
+     * Returns the final status of the simulated game
+     *
+     * @param options the options by name
+     * @throws IOException in case of error
+     */
+    static StationStatus run(Map<String, String> options) throws IOException {
+        if (options.containsKey("-j")) {
+            String journal = options.get("-j");
+            logger.atInfo().log("Replaying {}", journal);
+            StationDef stationDef = StationDef.create(load(options.get("-s")), Locator.root());
+            return JournalReplay.replay(Path.of(journal), stationDef);
+        }
+        double duration = Double.parseDouble(options.getOrDefault("-d", String.valueOf(DEFAULT_DURATION)));
+        double frequency = Double.parseDouble(options.getOrDefault("-f", String.valueOf(DEFAULT_FREQUENCY)));
+        double dt = Double.parseDouble(options.getOrDefault("-t", String.valueOf(BatchSimulation.DEFAULT_DT)));
+        Random random = options.containsKey("-r")
+                ? new Random(Long.parseLong(options.get("-r")))
+                : new Random();
+        DispatchPolicy policy = options.containsKey("-x")
+                ? ScriptedPolicy.fromJson(load(options.get("-x")), Locator.root())
+                : DispatchPolicy.NONE;
+        if (!options.containsKey("-n")) {
+            policy = policy.andThen(DispatchPolicy.automatic());
+        }
+        ForkJoinPool pool = options.containsKey("-p") ? ForkJoinPool.commonPool() : null;
+
+        String station = options.get("-s");
+        logger.atInfo().log("Simulating {} for {} min with {} trains/h", station, duration, frequency);
+        StationDef stationDef = StationDef.create(load(station), Locator.root());
+        StationStatus status = new BlockBuilder(stationDef).buildStatus(duration * SPM, frequency / SPH, random, null);
+        if (options.containsKey("-i")) {
+            TrainIdAllocator allocator = status.getTrainIdAllocator();
+            status = status.setTrainIdAllocator(
+                    TrainIdAllocator.create(allocator.getMinId(), Integer.parseInt(options.get("-i"))));
+        }
+        return new BatchSimulation(policy, dt, random, pool, options.containsKey("-e")).run(status);
+    }
+}
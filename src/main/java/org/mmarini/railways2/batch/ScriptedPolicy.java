@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.mmarini.Tuple2;
+import org.mmarini.railways2.model.StationCommand;
+import org.mmarini.railways2.model.StationCommands;
+import org.mmarini.railways2.model.StationStatus;
+import org.mmarini.yaml.schema.Locator;
+import org.mmarini.yaml.schema.Validator;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static org.mmarini.yaml.schema.Validator.*;
+
+/**
+ * Applies the scripted player actions at the scheduled simulation times.
+ * <p>
+ * Each action is a station command, the actions scheduled in the same simulation step
+ * are applied as a batch of station commands.
+ * The actions are indexed by time in a sorted map so each step reads only the due actions.
+ * </p>
+ * <p>
+ * The script is a yaml document with the list of actions e.g.
+ * <pre>
+ * ---
+ * actions:
+ *   - time: 120
+ *     action: toggleSwitch
+ *     id: westLeftSwitch
+ *   - time: 150
+ *     action: unlockSignal
+ *     id: westSignals.1
+ *     edge: westSignals.1.w
+ * </pre>
+ * </p>
+ */
+public class ScriptedPolicy implements DispatchPolicy {
+    public static final List<String> ID_ACTIONS = List.of(
+            "startTrain", "stopTrain", "revertTrain",
+            "toggleSwitch", "toggleDoubleSlipSwitch",
+            "lockSection", "unlockSection");
+    public static final List<String> EDGE_ACTIONS = List.of(
+            "lockSignal", "unlockSignal");
+    public static final List<String> STATION_ACTIONS = List.of(
+            "lockSignals", "stopTrains");
+    public static final Validator ACTION_VALIDATOR = objectPropertiesRequired(Map.of(
+                    "time", nonNegativeNumber(),
+                    "action", string(values(actionNames())),
+                    "id", string(),
+                    "edge", string()),
+            List.of("time", "action"));
+    public static final Validator VALIDATOR = objectPropertiesRequired(Map.of(
+                    "actions", arrayItems(ACTION_VALIDATOR)),
+            List.of("actions"));
+
+    /**
+     * Returns the action names
+     */
+    private static List<String> actionNames() {
+        return List.of(ID_ACTIONS, EDGE_ACTIONS, STATION_ACTIONS).stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the action
+     *
+     * @param root    the root document
+     * @param locator the action locator
+     */
+    private static Tuple2<Double, StationCommand> createAction(JsonNode root, Locator locator) {
+        double time = locator.path("time").getNode(root).asDouble();
+        String action = locator.path("action").getNode(root).asText();
+        JsonNode idNode = locator.path("id").getNode(root);
+        JsonNode edgeNode = locator.path("edge").getNode(root);
+        if (!STATION_ACTIONS.contains(action) && idNode.isMissingNode()) {
+            throw new IllegalArgumentException(format("%s must have property id", locator.pointer));
+        }
+        if (EDGE_ACTIONS.contains(action) && edgeNode.isMissingNode()) {
+            throw new IllegalArgumentException(format("%s must have property edge", locator.pointer));
+        }
+        String id = idNode.asText();
+        String edge = edgeNode.asText();
+        StationCommand command;
+        switch (action) {
+            case "startTrain":
+                command = StationCommand.startTrain(id);
+                break;
+            case "stopTrain":
+                command = StationCommand.stopTrain(id);
+                break;
+            case "revertTrain":
+                command = StationCommand.revertTrain(id);
+                break;
+            case "toggleSwitch":
+            case "toggleDoubleSlipSwitch":
+                command = StationCommand.toggleSwitch(id);
+                break;
+            case "lockSection":
+                command = StationCommand.lockSection(id);
+                break;
+            case "unlockSection":
+                command = StationCommand.unlockSection(id);
+                break;
+            case "lockSignal":
+                command = StationCommand.lockSignal(id, edge);
+                break;
+            case "unlockSignal":
+                command = StationCommand.unlockSignal(id, edge);
+                break;
+            case "lockSignals":
+                command = StationCommand.lockSignals();
+                break;
+            default:
+                command = StationCommand.stopTrains();
+                break;
+        }
+        return Tuple2.of(time, command);
+    }
+
+    /**
+     * Returns the scripted policy from json document
+     *
+     * @param root    the root document
+     * @param locator the script locator
+     */
+    public static ScriptedPolicy fromJson(JsonNode root, Locator locator) {
+        VALIDATOR.validate(root, locator);
+        NavigableMap<Double, List<StationCommand>> actions = locator.path("actions").elements(root)
+                .map(actionLocator -> createAction(root, actionLocator))
+                .collect(Collectors.groupingBy(Tuple2::getV1, TreeMap::new,
+                        Collectors.mapping(Tuple2::getV2, Collectors.toList())));
+        int numActions = actions.values().stream().mapToInt(List::size).sum();
+        return new ScriptedPolicy(actions, numActions);
+    }
+
+    private final NavigableMap<Double, List<StationCommand>> actions;
+    private final int numActions;
+
+    /**
+     * Creates the scripted policy
+     *
+     * @param actions    the actions by time
+     * @param numActions the number of actions
+     */
+    protected ScriptedPolicy(NavigableMap<Double, List<StationCommand>> actions, int numActions) {
+        this.actions = requireNonNull(actions);
+        this.numActions = numActions;
+    }
+
+    /**
+     * Applies the actions scheduled in the time interval [t, t + dt)
+     *
+     * @param status the status
+     * @param dt     the time interval of the next simulation step (s)
+     */
+    @Override
+    public StationStatus apply(StationStatus status, double dt) {
+        double t0 = status.getTime();
+        double t1 = t0 + dt;
+        Collection<List<StationCommand>> due = actions.subMap(t0, true, t1, false).values();
+        if (due.isEmpty()) {
+            return status;
+        }
+        StationCommands commands = StationCommands.create();
+        for (List<StationCommand> list : due) {
+            for (StationCommand command : list) {
+                commands.add(command);
+            }
+        }
+        return commands.isEmpty() ? status : commands.apply(status);
+    }
+
+    /**
+     * Returns the station commands by time
+     */
+    public NavigableMap<Double, List<StationCommand>> getActions() {
+        return Collections.unmodifiableNavigableMap(actions);
+    }
+
+    @Override
+    public double getNextActionTime(double time) {
+        Double next = actions.higherKey(time);
+        return next != null ? next : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the number of actions
+     */
+    public int getNumActions() {
+        return numActions;
+    }
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes the files in background.
+ * <p>
+ * All the writes run on a single background thread so disk stalls never block the caller.
+ * Each file is written to a temporary file and moved to the target when completed.
+ * The writes to the same file are coalesced: if a write is still pending when a new one is requested,
+ * only the latest content is written.
+ * The appender channels write the content to a target channel in the order it was written.
+ * </p>
+ * <p>
+ * The service takes the checkpoints of the station status: the offered statuses are sampled
+ * at the checkpoint interval and written as binary snapshots in the checkpoint directory
+ * keeping only the most recent ones.
+ * </p>
+ */
+public class CheckpointService implements AutoCloseable {
+    public static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(5);
+    public static final int DEFAULT_MAX_CHECKPOINTS = 5;
+    public static final String CHECKPOINT_PREFIX = "checkpoint-";
+    public static final String CHECKPOINT_SUFFIX = ".snapshot";
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(10);
+    private static final Logger logger = LoggerFactory.getLogger(CheckpointService.class);
+
+    /**
+     * Returns the checkpoint service in the user railways directory with default cadence
+     */
+    public static CheckpointService create() {
+        return create(Path.of(System.getProperty("user.home"), ".railways", "checkpoints"),
+                DEFAULT_INTERVAL, DEFAULT_MAX_CHECKPOINTS);
+    }
+
+    /**
+     * Returns the checkpoint service
+     *
+     * @param directory      the checkpoint directory
+     * @param interval       the minimum interval between checkpoints
+     * @param maxCheckpoints the number of checkpoints kept
+     */
+    public static CheckpointService create(Path directory, Duration interval, int maxCheckpoints) {
+        requireNonNull(directory);
+        requireNonNull(interval);
+        if (maxCheckpoints < 1) {
+            throw new IllegalArgumentException(format("Number of checkpoints must be > 0 (%d)", maxCheckpoints));
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        return new CheckpointService(directory, interval.toNanos(), maxCheckpoints, executor);
+    }
+
+    /**
+     * Returns the index of a checkpoint file or -1 if not a checkpoint
+     *
+     * @param file the file
+     */
+    static long checkpointIndex(Path file) {
+        String name = file.getFileName().toString();
+        if (name.startsWith(CHECKPOINT_PREFIX) && name.endsWith(CHECKPOINT_SUFFIX)) {
+            try {
+                return Long.parseLong(name.substring(CHECKPOINT_PREFIX.length(),
+                        name.length() - CHECKPOINT_SUFFIX.length()));
+            } catch (NumberFormatException ex) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes atomically a file
+     * <p>
+     * The content is written to a unique temporary file in the same directory, forced to the storage
+     * and moved to the target, so concurrent writers never share the temporary file and
+     * a crash leaves either the previous or the new complete content.
+     * </p>
+     *
+     * @param file   the file
+     * @param writer the content writer
+     * @throws IOException in case of error
+     */
+    static void writeAtomically(Path file, ContentWriter writer) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName() + "-", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writer.write(channel);
+                channel.force(true);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private final Path directory;
+    private final long intervalNs;
+    private final int maxCheckpoints;
+    private final ExecutorService executor;
+    private final Map<Path, ContentWriter> pendingWrites;
+    private final AtomicReference<StationStatus> pendingCheckpoint;
+    private final AtomicLong lastCheckpoint;
+    private long nextIndex;
+
+    /**
+     * Creates the checkpoint service
+     *
+     * @param directory      the checkpoint directory
+     * @param intervalNs     the minimum interval between checkpoints (ns)
+     * @param maxCheckpoints the number of checkpoints kept
+     * @param executor       the single thread executor
+     */
+    protected CheckpointService(Path directory, long intervalNs, int maxCheckpoints, ExecutorService executor) {
+        this.directory = requireNonNull(directory);
+        this.intervalNs = intervalNs;
+        this.maxCheckpoints = maxCheckpoints;
+        this.executor = requireNonNull(executor);
+        this.pendingWrites = new HashMap<>();
+        this.pendingCheckpoint = new AtomicReference<>();
+        this.lastCheckpoint = new AtomicLong(System.nanoTime() - intervalNs);
+        this.nextIndex = -1;
+    }
+
+    /**
+     * Returns a channel appending the content to the target channel in background.
+     * <p>
+     * The writes never block: the content is copied and written to the target by the background thread.
+     * Closing the channel closes the target after the pending writes.
+     * After a write error the target is closed and the following content is discarded.
+     * </p>
+     *
+     * @param target the target channel
+     */
+    public WritableByteChannel appender(WritableByteChannel target) {
+        return new Appender(requireNonNull(target));
+    }
+
+    /**
+     * Waits for the pending writes and stops the service
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                logger.atWarn().log("Pending writes not completed");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for the completion of all the requested writes
+     */
+    public void flush() {
+        try {
+            executor.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RejectedExecutionException e) {
+            logger.atError().setCause(e).log("Error flushing writes");
+        }
+    }
+
+    /**
+     * Returns the checkpoint files from the oldest to the latest
+     */
+    public List<Path> getCheckpoints() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> checkpointIndex(file) >= 0)
+                    .sorted(Comparator.comparingLong(CheckpointService::checkpointIndex))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            logger.atError().setCause(e).log("Error listing checkpoints");
+            return List.of();
+        }
+    }
+
+    /**
+     * Returns the latest checkpoint file if any
+     */
+    public Optional<Path> getLatestCheckpoint() {
+        List<Path> checkpoints = getCheckpoints();
+        return checkpoints.isEmpty()
+                ? Optional.empty()
+                : Optional.of(checkpoints.get(checkpoints.size() - 1));
+    }
+
+    /**
+     * Offers a station status for checkpoint.
+     * <p>
+     * The status is taken only if the checkpoint interval has elapsed since the previous one.
+     * The call never blocks: the status is encoded and written in background.
+     * </p>
+     *
+     * @param status the station status
+     */
+    public void offer(StationStatus status) {
+        requireNonNull(status);
+        long now = System.nanoTime();
+        long last = lastCheckpoint.get();
+        if (now - last >= intervalNs && lastCheckpoint.compareAndSet(last, now)) {
+            if (pendingCheckpoint.getAndSet(status) == null) {
+                submit(this::writeCheckpoint);
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest checkpoints
+     */
+    private void rotate() {
+        List<Path> checkpoints = getCheckpoints();
+        for (int i = 0; i < checkpoints.size() - maxCheckpoints; i++) {
+            try {
+                Files.deleteIfExists(checkpoints.get(i));
+            } catch (IOException e) {
+                logger.atError().setCause(e).log("Error deleting checkpoint {}", checkpoints.get(i));
+            }
+        }
+    }
+
+    /**
+     * Submits a task logging the rejection if the service is closed
+     *
+     * @param task the task
+     */
+    private void submit(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.atError().setCause(e).log("Checkpoint service closed");
+        }
+    }
+
+    /**
+     * Requests a write of a file.
+     * <p>
+     * The call never blocks: the file is written in background.
+     * If a write of the same file is pending, its content is replaced.
+     * </p>
+     *
+     * @param file   the file
+     * @param writer the content writer
+     */
+    public void write(Path file, ContentWriter writer) {
+        requireNonNull(file);
+        requireNonNull(writer);
+        boolean pending;
+        synchronized (pendingWrites) {
+            pending = pendingWrites.put(file, writer) != null;
+        }
+        if (!pending) {
+            submit(() -> writePending(file));
+        }
+    }
+
+    /**
+     * Writes the pending checkpoint
+     */
+    private void writeCheckpoint() {
+        StationStatus status = pendingCheckpoint.getAndSet(null);
+        if (status != null) {
+            if (nextIndex < 0) {
+                List<Path> checkpoints = getCheckpoints();
+                nextIndex = checkpoints.isEmpty() ? 0 : checkpointIndex(checkpoints.get(checkpoints.size() - 1)) + 1;
+            }
+            Path file = directory.resolve(format("%s%06d%s", CHECKPOINT_PREFIX, nextIndex++, CHECKPOINT_SUFFIX));
+            try {
+                writeAtomically(file, channel -> StationStatusCodec.write(status, channel));
+                rotate();
+            } catch (IOException e) {
+                logger.atError().setCause(e).log("Error writing checkpoint {}", file);
+            }
+        }
+    }
+
+    /**
+     * Writes the pending content of a file
+     *
+     * @param file the file
+     */
+    private void writePending(Path file) {
+        ContentWriter writer;
+        synchronized (pendingWrites) {
+            writer = pendingWrites.remove(file);
+        }
+        if (writer != null) {
+            try {
+                writeAtomically(file, writer);
+            } catch (IOException e) {
+                logger.atError().setCause(e).log("Error writing {}", file);
+            }
+        }
+    }
+
+    /**
+     * Appends the content to the target channel in background
+     */
+    private class Appender implements WritableByteChannel {
+        private final WritableByteChannel target;
+        private boolean open;
+
+        /**
+         * Creates the appender
+         *
+         * @param target the target channel
+         */
+        Appender(WritableByteChannel target) {
+            this.target = target;
+            this.open = true;
+        }
+
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                submit(() -> {
+                    try {
+                        target.close();
+                    } catch (IOException e) {
+                        logger.atError().setCause(e).log("Error closing channel");
+                    }
+                });
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            int n = src.remaining();
+            ByteBuffer content = ByteBuffer.allocate(n).put(src).flip();
+            submit(() -> {
+                if (target.isOpen()) {
+                    try {
+                        while (content.hasRemaining()) {
+                            target.write(content);
+                        }
+                    } catch (IOException e) {
+                        logger.atError().setCause(e).log("Error appending content, channel closed");
+                        try {
+                            target.close();
+                        } catch (IOException ignored) {
+                        }
+                    }
+                }
+            });
+            return n;
+        }
+    }
+
+    /**
+     * Writes the content of a file
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+        /**
+         * Writes the content to the channel
+         *
+         * @param channel the channel
+         * @throws IOException in case of error
+         */
+        void write(WritableByteChannel channel) throws IOException;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.mmarini.railways2.model.geometry.Direction;
+import org.mmarini.railways2.model.geometry.EdgeLocation;
+
+import java.util.Arrays;
+
+import static java.lang.Math.*;
+import static org.mmarini.railways2.model.RailwayConstants.COACH_LENGTH;
+import static org.mmarini.railways2.model.RailwayConstants.COACH_RAIL_DISTANCE;
+
+/**
+ * Lays out the coaches of the trains into a reusable buffer.
+ * <p>
+ * Each coach takes {@link #STRIDE} values in the buffer: the kind (head, coach or tail),
+ * the x, y coordinates of the center (m) and the orientation (RAD).
+ * The path of each train is walked once on the direction identifiers of the station index
+ * and the rail points are computed by the edge parametrisation of the station topology.
+ * </p>
+ */
+public class CoachLayout {
+    public static final int HEAD = 0;
+    public static final int COACH = 1;
+    public static final int TAIL = 2;
+    public static final int STRIDE = 4;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final double[] rear;
+    private double[] buffer;
+    private int size;
+
+    /**
+     * Creates the empty coach layout
+     */
+    public CoachLayout() {
+        this.buffer = new double[INITIAL_CAPACITY * STRIDE];
+        this.rear = new double[2];
+    }
+
+    /**
+     * Adds the coaches of the train
+     * <p>
+     * The coaches are laid out from the head to the tail of the train.
+     * The layout stops at the first coach out of the route paths.
+     * </p>
+     *
+     * @param index the station index
+     * @param train the train
+     */
+    void addTrain(StationIndex index, Train train) {
+        StationTopology topology = index.getTopology();
+        int direction;
+        double edgeEnd;
+        int numSlots;
+        boolean hasHead;
+        if (train.isExiting()) {
+            int numExitedCoaches = (int) ceil(train.getExitDistance() / COACH_LENGTH);
+            if (numExitedCoaches >= train.getNumCoaches()) {
+                return;
+            }
+            Direction exitDir = train.getExitingNode().getValidExits().iterator().next();
+            direction = topology.getDirectionId(exitDir);
+            edgeEnd = topology.getLength(direction) - numExitedCoaches * COACH_LENGTH + train.getExitDistance();
+            numSlots = train.getNumCoaches() - numExitedCoaches;
+            hasHead = false;
+        } else {
+            EdgeLocation location = train.getLocation().orElse(null);
+            if (location == null) {
+                return;
+            }
+            EdgeLocation start = location.opposite();
+            direction = topology.getDirectionId(start.getDirection());
+            edgeEnd = start.getDistance();
+            numSlots = max(train.getNumCoaches(), 2);
+            hasHead = true;
+        }
+        for (int i = 0; i < numSlots; i++) {
+            // Front rail point
+            double front = i * COACH_LENGTH + COACH_RAIL_DISTANCE;
+            while (front > edgeEnd) {
+                direction = index.getNextDirection(direction);
+                if (direction < 0) {
+                    return;
+                }
+                edgeEnd += topology.getLength(direction);
+            }
+            ensureCapacity(size + 1);
+            int offset = size * STRIDE;
+            topology.computeLocation(direction, edgeEnd - front, buffer, offset + 1);
+            // Rear rail point
+            double back = front + COACH_LENGTH - 2 * COACH_RAIL_DISTANCE;
+            while (back > edgeEnd) {
+                direction = index.getNextDirection(direction);
+                if (direction < 0) {
+                    return;
+                }
+                edgeEnd += topology.getLength(direction);
+            }
+            topology.computeLocation(direction, edgeEnd - back, rear, 0);
+            double x1 = buffer[offset + 1];
+            double y1 = buffer[offset + 2];
+            buffer[offset] = hasHead && i == 0 ? HEAD : i == numSlots - 1 ? TAIL : COACH;
+            buffer[offset + 1] = (rear[0] + x1) / 2;
+            buffer[offset + 2] = (rear[1] + y1) / 2;
+            buffer[offset + 3] = atan2(y1 - rear[1], x1 - rear[0]);
+            size++;
+        }
+    }
+
+    /**
+     * Returns the empty layout
+     */
+    public CoachLayout clear() {
+        size = 0;
+        return this;
+    }
+
+    /**
+     * Ensures the buffer capacity
+     *
+     * @param numCoaches the number of coaches
+     */
+    private void ensureCapacity(int numCoaches) {
+        if (numCoaches * STRIDE > buffer.length) {
+            buffer = Arrays.copyOf(buffer, max(numCoaches, size * 2) * STRIDE);
+        }
+    }
+
+    /**
+     * Returns the buffer of the layout (valid up to size * STRIDE values)
+     */
+    public double[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the kind of coach (HEAD, COACH, TAIL)
+     *
+     * @param i the coach index
+     */
+    public int getKind(int i) {
+        return (int) buffer[i * STRIDE];
+    }
+
+    /**
+     * Returns the orientation of coach (RAD)
+     *
+     * @param i the coach index
+     */
+    public double getOrientation(int i) {
+        return buffer[i * STRIDE + 3];
+    }
+
+    /**
+     * Returns the number of coaches
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the x coordinate of the coach center (m)
+     *
+     * @param i the coach index
+     */
+    public double getX(int i) {
+        return buffer[i * STRIDE + 1];
+    }
+
+    /**
+     * Returns the y coordinate of the coach center (m)
+     *
+     * @param i the coach index
+     */
+    public double getY(int i) {
+        return buffer[i * STRIDE + 2];
+    }
+
+    /**
+     * Returns the copy of the used buffer
+     */
+    public double[] toArray() {
+        return Arrays.copyOf(buffer, size * STRIDE);
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.mmarini.ChannelOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Random;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Records a game as journal of simulation steps and player commands.
+ * <p>
+ * The journal contains the random seed, the auto lock flag and the snapshot of the initial status
+ * followed by the records of the simulation steps and of the commands.
+ * Each simulation step uses a random generator seeded by a tick seed drawn from the journal seed,
+ * so the game is reproduced exactly by {@link JournalReplay}.
+ * Consecutive steps with the same time interval are recorded as a single record;
+ * the commands are stamped with the number of steps, the simulation time and the seed of the next step.
+ * </p>
+ * <p>
+ * The journal is used by the simulator thread only. The records are encoded in a buffer that is
+ * handed to the background writer at least every {@link #FLUSH_INTERVAL}, so the disk writes never block
+ * the simulation and a crash loses only the last records.
+ * Write errors are logged and stop the recording without affecting the simulation.
+ * </p>
+ */
+public class CommandJournal implements Closeable {
+    public static final int MAGIC = 0x52574A4C;
+    public static final short VERSION = 1;
+    public static final Duration FLUSH_INTERVAL = Duration.ofSeconds(1);
+    static final byte END_RECORD = 0;
+    static final byte TICKS_RECORD = 1;
+    static final byte COMMAND_RECORD = 2;
+    private static final Logger logger = LoggerFactory.getLogger(CommandJournal.class);
+
+    /**
+     * Returns the journal writing to a file in background
+     *
+     * @param file    the file
+     * @param seed    the random seed
+     * @param initial the initial status
+     * @param writer  the background writer
+     * @throws IOException in case of error
+     */
+    public static CommandJournal create(Path file, long seed, StationStatus initial, CheckpointService writer) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return create(writer.appender(channel), seed, initial);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the journal writing to a channel
+     *
+     * @param channel the channel
+     * @param seed    the random seed
+     * @param initial the initial status
+     * @throws IOException in case of error
+     */
+    public static CommandJournal create(WritableByteChannel channel, long seed, StationStatus initial) throws IOException {
+        ChannelOutput out = new ChannelOutput(channel);
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+        out.putLong(seed);
+        out.putByte(initial.isAutoLock() ? 1 : 0);
+        StationStatusCodec.write(initial, out);
+        return new CommandJournal(channel, out, new Random(seed));
+    }
+
+    private final WritableByteChannel channel;
+    private final ChannelOutput out;
+    private final Random seeds;
+    private long nextTickSeed;
+    private long lastFlush;
+    private long tickCount;
+    private int pendingTicks;
+    private double pendingDt;
+    private boolean failed;
+
+    /**
+     * Creates the journal
+     *
+     * @param channel the channel
+     * @param out     the output
+     * @param seeds   the tick seed generator
+     */
+    protected CommandJournal(WritableByteChannel channel, ChannelOutput out, Random seeds) {
+        this.channel = requireNonNull(channel);
+        this.out = requireNonNull(out);
+        this.seeds = requireNonNull(seeds);
+        this.nextTickSeed = seeds.nextLong();
+        this.lastFlush = System.nanoTime();
+    }
+
+    /**
+     * Returns the status after applying and recording the command
+     *
+     * @param status  the status
+     * @param command the command
+     */
+    public StationStatus apply(StationStatus status, StationCommand command) {
+        if (!failed) {
+            try {
+                writePendingTicks();
+                out.putByte(COMMAND_RECORD);
+                out.putLong(tickCount);
+                out.putDouble(status.getTime());
+                out.putLong(nextTickSeed);
+                out.putByte(command.getType().ordinal());
+                out.putString(command.getId());
+                out.putString(command.getEdgeId());
+            } catch (IOException ex) {
+                fail(ex);
+            }
+        }
+        return command.apply(status);
+    }
+
+    /**
+     * Writes the end record and closes the channel
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!failed) {
+                writePendingTicks();
+                out.putByte(END_RECORD);
+                out.flush();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Stops the recording after an error
+     *
+     * @param ex the error
+     */
+    private void fail(IOException ex) {
+        failed = true;
+        logger.atError().setCause(ex).log("Error writing journal, recording stopped");
+    }
+
+    /**
+     * Writes the buffered records to the channel
+     */
+    public void flush() {
+        lastFlush = System.nanoTime();
+        if (!failed) {
+            try {
+                writePendingTicks();
+                out.flush();
+            } catch (IOException ex) {
+                fail(ex);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of simulation steps
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * Returns the status after a simulation step
+     *
+     * @param status the status
+     * @param dt     the time interval (s)
+     */
+    public StationStatus tick(StationStatus status, double dt) {
+        if (!failed && pendingTicks > 0 && dt != pendingDt) {
+            try {
+                writePendingTicks();
+            } catch (IOException ex) {
+                fail(ex);
+            }
+        }
+        pendingDt = dt;
+        pendingTicks++;
+        long tickSeed = nextTickSeed;
+        nextTickSeed = seeds.nextLong();
+        tickCount++;
+        if (System.nanoTime() - lastFlush >= FLUSH_INTERVAL.toNanos()) {
+            flush();
+        }
+        return status.tick(dt, new Random(tickSeed));
+    }
+
+    /**
+     * Writes the record of the pending simulation steps
+     */
+    private void writePendingTicks() throws IOException {
+        if (pendingTicks > 0) {
+            out.putByte(TICKS_RECORD);
+            out.putInt(pendingTicks);
+            out.putDouble(pendingDt);
+            pendingTicks = 0;
+        }
+    }
+}
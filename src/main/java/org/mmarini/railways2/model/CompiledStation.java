@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.mmarini.LazyValue;
+import org.mmarini.railways2.model.geometry.StationMap;
+import org.mmarini.railways2.model.routes.Route;
+import org.reactivestreams.Subscriber;
+
+import java.util.List;
+import java.util.Random;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The built station: the station map and the initial routes.
+ * <p>
+ * The compiled station is the result of building the station definition and can be created
+ * by the block builder or decoded from the station cache.
+ * </p>
+ */
+public class CompiledStation {
+    private final StationMap stationMap;
+    private final List<Route> routes;
+    private final LazyValue<StationTopology> topology;
+
+    /**
+     * Creates the compiled station
+     *
+     * @param stationMap the station map
+     * @param routes     the initial routes
+     */
+    public CompiledStation(StationMap stationMap, List<Route> routes) {
+        this.stationMap = requireNonNull(stationMap);
+        this.routes = requireNonNull(routes);
+        this.topology = new LazyValue<>(() -> StationTopology.create(stationMap, routes));
+    }
+
+    /**
+     * Returns the initial station status
+     *
+     * @param gameDuration the game duration (s)
+     * @param frequency    the train frequency (#/s)
+     * @param random       the random number generator or null if no initial trains
+     * @param events       the event generator
+     */
+    public StationStatus buildStatus(double gameDuration, double frequency, Random random, Subscriber<SoundEvent> events) {
+        return StationStatus.create(getTopology(), routes, gameDuration, frequency, random, events);
+    }
+
+    /**
+     * Returns the station identifier
+     */
+    public String getId() {
+        return stationMap.getId();
+    }
+
+    /**
+     * Returns the initial routes
+     */
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * Returns the station map
+     */
+    public StationMap getStationMap() {
+        return stationMap;
+    }
+
+    /**
+     * Returns the station topology
+     */
+    public StationTopology getTopology() {
+        return topology.get();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The simulator engine metrics between two reports.
+ * <p>
+ * The times are measured in nanoseconds on the simulation thread.
+ * The emit time includes the event consumer, so it measures the time spent to hand over the event to the user interface.
+ * </p>
+ */
+public class EngineMetrics {
+    public static final long NANOSPS = 1000000000L;
+    public static final long UNAVAILABLE = -1;
+
+    private final long interval;
+    private final LatencyHistogram stepLatency;
+    private final long requests;
+    private final int maxQueueDepth;
+    private final long dequeTime;
+    private final long emitTime;
+    private final long allocatedBytes;
+    private final double speed;
+
+    /**
+     * Creates the metrics
+     *
+     * @param interval       the reporting interval (ns)
+     * @param stepLatency    the histogram of step computation times (ns)
+     * @param requests       the number of processed requests
+     * @param maxQueueDepth  the maximum number of pending requests found by a dequeue
+     * @param dequeTime      the time spent processing the requests (ns)
+     * @param emitTime       the time spent emitting the events (ns)
+     * @param allocatedBytes the bytes allocated by the simulation thread or {@link #UNAVAILABLE}
+     * @param speed          the achieved speed ratio
+     */
+    public EngineMetrics(long interval, LatencyHistogram stepLatency, long requests, int maxQueueDepth,
+                         long dequeTime, long emitTime, long allocatedBytes, double speed) {
+        this.interval = interval;
+        this.stepLatency = requireNonNull(stepLatency);
+        this.requests = requests;
+        this.maxQueueDepth = maxQueueDepth;
+        this.dequeTime = dequeTime;
+        this.emitTime = emitTime;
+        this.allocatedBytes = allocatedBytes;
+        this.speed = speed;
+    }
+
+    /**
+     * Returns the bytes allocated by the simulation thread or {@link #UNAVAILABLE}
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the allocation rate (bytes/s) or {@link #UNAVAILABLE}
+     */
+    public double getAllocationRate() {
+        return allocatedBytes >= 0 && interval > 0 ? (double) allocatedBytes * NANOSPS / interval : UNAVAILABLE;
+    }
+
+    /**
+     * Returns the time spent processing the requests (ns)
+     */
+    public long getDequeTime() {
+        return dequeTime;
+    }
+
+    /**
+     * Returns the time spent emitting the events (ns)
+     */
+    public long getEmitTime() {
+        return emitTime;
+    }
+
+    /**
+     * Returns the reporting interval (ns)
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Returns the maximum number of pending requests found by a dequeue
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * Returns the number of processed requests
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Returns the achieved speed ratio
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Returns the histogram of step computation times (ns)
+     */
+    public LatencyHistogram getStepLatency() {
+        return stepLatency;
+    }
+
+    /**
+     * Returns the number of steps per second
+     */
+    public double getStepRate() {
+        return interval > 0 ? (double) stepLatency.getCount() * NANOSPS / interval : 0;
+    }
+
+    /**
+     * Returns the time spent computing the steps (ns)
+     */
+    public long getStepTime() {
+        return stepLatency.getTotal();
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", EngineMetrics.class.getSimpleName() + "[", "]")
+                .add("interval=" + interval)
+                .add("stepLatency=" + stepLatency)
+                .add("requests=" + requests)
+                .add("maxQueueDepth=" + maxQueueDepth)
+                .add("dequeTime=" + dequeTime)
+                .add("emitTime=" + emitTime)
+                .add("allocatedBytes=" + allocatedBytes)
+                .add("speed=" + speed)
+                .toString();
+    }
+}
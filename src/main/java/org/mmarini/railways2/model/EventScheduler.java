@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.mmarini.Tuple2;
+import org.mmarini.railways2.model.routes.Entry;
+
+import java.util.*;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Comparator.comparingDouble;
+import static java.util.Objects.requireNonNull;
+import static org.mmarini.railways2.model.RailwayConstants.MIN_TIME_INTERVAL;
+
+/**
+ * Simulates the station by next-event time advance.
+ * <p>
+ * The trains entering the station and loading passengers change state at known instants
+ * and the trains waiting for run change state only by player commands, so they are idle.
+ * The scheduler advances the simulation up to the next event (train transition or train arrival)
+ * skipping the idle trains; while moving trains exist the steps are limited to the maximum step
+ * to integrate the train physics.
+ * The train arrivals are produced by the arrival generator so the trains arrive at exact instants.
+ * </p>
+ * <p>
+ * The wake times of trains are kept in a priority queue updated only for the trains simulated by the steps
+ * (the moving trains and the trains woken up in the step), so the next step does not scan all the trains.
+ * The queue is rebuilt when the status is not the one produced by the last step (e.g. after a player command)
+ * or when new trains arrive.
+ * </p>
+ * <p>
+ * The scheduler polls the arrival generator so it must be used by a single simulation thread.
+ * </p>
+ */
+public class EventScheduler {
+
+    /**
+     * Returns the event scheduler with the Poisson arrivals up to the game duration
+     *
+     * @param status  the initial status
+     * @param maxStep the maximum step of moving trains (s)
+     * @param random  the random generator
+     */
+    public static EventScheduler create(StationStatus status, double maxStep, Random random) {
+        ArrivalGenerator generator = PoissonArrivalGenerator.create(status.getEntries(), status.getTrainFrequency(),
+                status.getTime(), status.getPerformance().getGameDuration(), random.nextLong());
+        return create(status, maxStep, random, generator);
+    }
+
+    /**
+     * Returns the event scheduler
+     *
+     * @param status    the initial status
+     * @param maxStep   the maximum step of moving trains (s)
+     * @param random    the random generator
+     * @param generator the arrival generator
+     */
+    public static EventScheduler create(StationStatus status, double maxStep, Random random, ArrivalGenerator generator) {
+        requireNonNull(status);
+        return new EventScheduler(maxStep, random, generator);
+    }
+
+    private final double maxStep;
+    private final Random random;
+    private final ArrivalGenerator generator;
+    private final Map<String, Train> trains;
+    private final Set<String> dueTrains;
+    private final PriorityQueue<Train> wakeQueue;
+    private StationStatus lastStatus;
+
+    /**
+     * Creates the event scheduler
+     *
+     * @param maxStep   the maximum step of moving trains (s)
+     * @param random    the random generator
+     * @param generator the arrival generator
+     */
+    protected EventScheduler(double maxStep, Random random, ArrivalGenerator generator) {
+        this.maxStep = maxStep;
+        this.random = requireNonNull(random);
+        this.generator = requireNonNull(generator);
+        this.trains = new HashMap<>();
+        this.dueTrains = new HashSet<>();
+        this.wakeQueue = new PriorityQueue<>(comparingDouble(Train::getWakeTime));
+    }
+
+    /**
+     * Returns the status after simulating the time interval
+     *
+     * @param status   the status
+     * @param interval the time interval (s)
+     */
+    public StationStatus advance(StationStatus status, double interval) {
+        double horizon = status.getTime() + interval;
+        while (status.getTime() < horizon) {
+            status = step(status, horizon);
+        }
+        return status;
+    }
+
+    /**
+     * Returns the instant of next arrival (s)
+     */
+    public double getNextArrivalTime() {
+        return generator.getNextArrivalTime();
+    }
+
+    /**
+     * Returns the time interval of next simulation step (s)
+     *
+     * @param status  the status
+     * @param horizon the instant limit of the step (s)
+     */
+    public double getNextStep(StationStatus status, double horizon) {
+        sync(status);
+        double t0 = status.getTime();
+        double next = min(horizon, generator.getNextArrivalTime());
+        // Moves the trains woken up to the due trains
+        for (Train train = peekWakeQueue(); train != null && train.getWakeTime() <= t0; train = peekWakeQueue()) {
+            wakeQueue.poll();
+            dueTrains.add(train.getId());
+        }
+        if (!dueTrains.isEmpty()) {
+            // Moving trains
+            next = min(next, t0 + maxStep);
+        }
+        Train train = peekWakeQueue();
+        if (train != null) {
+            next = min(next, train.getWakeTime());
+        }
+        return max(next - t0, MIN_TIME_INTERVAL);
+    }
+
+    /**
+     * Returns the train with the earliest wake time in the queue or null if none.
+     * The replaced trains are removed from the queue
+     */
+    private Train peekWakeQueue() {
+        Train train = wakeQueue.peek();
+        while (train != null && trains.get(train.getId()) != train) {
+            wakeQueue.poll();
+            train = wakeQueue.peek();
+        }
+        return train;
+    }
+
+    /**
+     * Rebuilds the train wake times of the status
+     *
+     * @param status the status
+     */
+    private void rebuild(StationStatus status) {
+        trains.clear();
+        dueTrains.clear();
+        wakeQueue.clear();
+        double time = status.getTime();
+        for (Train train : status.getTrains()) {
+            track(train, time);
+        }
+        lastStatus = status;
+    }
+
+    /**
+     * Rebuilds the train wake times if the status is not the one produced by the last step
+     *
+     * @param status the status
+     */
+    private void sync(StationStatus status) {
+        if (status != lastStatus) {
+            rebuild(status);
+        }
+    }
+
+    /**
+     * Returns the status after simulating the next step
+     *
+     * @param status  the status
+     * @param horizon the instant limit of the step (s)
+     */
+    public StationStatus step(StationStatus status, double horizon) {
+        return tick(status, getNextStep(status, horizon));
+    }
+
+    /**
+     * Returns the status after simulating the time interval with the arrivals scheduled in the interval
+     *
+     * @param status the status
+     * @param dt     the time interval (s)
+     */
+    public StationStatus tick(StationStatus status, double dt) {
+        sync(status);
+        double time = status.getTime() + dt;
+        List<Tuple2<Entry, Double>> arrivals = generator.poll(time);
+        StationStatus next = status.tick(dt, arrivals, random);
+        // Collects the trains simulated in the step: the due trains and the trains woken up in the interval
+        List<String> touched = new ArrayList<>(dueTrains);
+        dueTrains.clear();
+        for (Train train = peekWakeQueue(); train != null && train.getWakeTime() <= time; train = peekWakeQueue()) {
+            touched.add(wakeQueue.poll().getId());
+        }
+        // Updates the simulated trains
+        for (String id : touched) {
+            trains.remove(id);
+            next.getTrain(id).ifPresent(train -> track(train, time));
+        }
+        lastStatus = next;
+        if (!arrivals.isEmpty() || trains.size() != next.getTrains().size()) {
+            rebuild(next);
+        }
+        return next;
+    }
+
+    /**
+     * Tracks the wake time of the train
+     *
+     * @param train the train
+     * @param time  the current instant (s)
+     */
+    private void track(Train train, double time) {
+        trains.put(train.getId(), train);
+        double wakeTime = train.getWakeTime();
+        if (wakeTime <= time) {
+            dueTrains.add(train.getId());
+        } else if (wakeTime < Double.POSITIVE_INFINITY) {
+            wakeQueue.add(train);
+        }
+    }
+}
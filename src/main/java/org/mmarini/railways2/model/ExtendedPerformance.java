@@ -93,7 +93,7 @@ public class ExtendedPerformance extends Performance {
      * @param locator the locator of node
      */
     public static ExtendedPerformance fromJson(JsonNode root, Locator locator) {
-        VALIDATOR.apply(locator).accept(root);
+        VALIDATOR.validate(root, locator);
         String stationId1 = locator.path("stationId").getNode(root).asText();
         double gameDuration1 = locator.path("gameDuration").getNode(root).asDouble();
         String player1 = locator.path("player").getNode(root).asText();
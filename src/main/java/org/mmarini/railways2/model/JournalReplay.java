@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.mmarini.ChannelInput;
+import org.mmarini.railways2.model.blocks.BlockBuilder;
+import org.mmarini.railways2.model.blocks.StationDef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Replays a game recorded by {@link CommandJournal} as fast as possible.
+ * <p>
+ * The replay verifies that each recorded command is applied at the same step, simulation time and tick seed
+ * of the recording and fails if the game diverges.
+ * A journal ending at a record boundary without the end record, e.g. after a crash of the game,
+ * is replayed up to its last record.
+ * </p>
+ */
+public class JournalReplay {
+    private static final Logger logger = LoggerFactory.getLogger(JournalReplay.class);
+
+    /**
+     * Returns the final status of the replayed game
+     *
+     * @param file       the journal file
+     * @param stationDef the station definition
+     * @throws IOException              in case of error
+     * @throws IllegalArgumentException in case of invalid journal or diverging game
+     */
+    public static StationStatus replay(Path file, StationDef stationDef) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return replay(channel, stationDef, status -> {
+            });
+        }
+    }
+
+    /**
+     * Returns the final status of the replayed game
+     *
+     * @param channel    the journal channel
+     * @param stationDef the station definition
+     * @param onStep     the consumer of the status after each step
+     * @throws IOException              in case of error
+     * @throws IllegalArgumentException in case of invalid journal or diverging game
+     */
+    public static StationStatus replay(ReadableByteChannel channel, StationDef stationDef, Consumer<StationStatus> onStep) throws IOException {
+        requireNonNull(stationDef);
+        requireNonNull(onStep);
+        ChannelInput in = new ChannelInput(channel);
+        int magic = in.getInt();
+        if (magic != CommandJournal.MAGIC) {
+            throw new IllegalArgumentException(format("Invalid journal magic number %08x", magic));
+        }
+        short version = in.getShort();
+        if (version != CommandJournal.VERSION) {
+            throw new IllegalArgumentException(format("Unsupported journal version %d", version));
+        }
+        Random seeds = new Random(in.getLong());
+        boolean autoLock = in.getByte() != 0;
+        BlockBuilder builder = new BlockBuilder(stationDef);
+        StationStatus status = StationStatusCodec.read(in, builder.buildTopology(), builder.buildRoutes())
+                .setAutoLock(autoLock);
+
+        long startNanos = System.nanoTime();
+        long tickCount = 0;
+        long nextTickSeed = seeds.nextLong();
+        for (; ; ) {
+            if (in.isEnd()) {
+                logger.atWarn().log("Journal without end record at step {}", tickCount);
+                break;
+            }
+            byte record = in.getByte();
+            if (record == CommandJournal.END_RECORD) {
+                break;
+            } else if (record == CommandJournal.TICKS_RECORD) {
+                int n = in.getInt();
+                double dt = in.getDouble();
+                for (int i = 0; i < n; i++) {
+                    status = status.tick(dt, new Random(nextTickSeed));
+                    nextTickSeed = seeds.nextLong();
+                    tickCount++;
+                    onStep.accept(status);
+                }
+            } else if (record == CommandJournal.COMMAND_RECORD) {
+                long step = in.getLong();
+                double time = in.getDouble();
+                long tickSeed = in.getLong();
+                StationCommand.Type[] types = StationCommand.Type.values();
+                int type = in.getByte();
+                if (type < 0 || type >= types.length) {
+                    throw new IllegalArgumentException(format("Invalid command type %d at step %d", type, step));
+                }
+                StationCommand command = StationCommand.create(types[type], in.getString(), in.getString());
+                if (step != tickCount || tickSeed != nextTickSeed || time != status.getTime()) {
+                    throw new IllegalArgumentException(format(
+                            "Replay diverged at %s: recorded at step %d time %s, replayed at step %d time %s",
+                            command, step, time, tickCount, status.getTime()));
+                }
+                status = command.apply(status);
+            } else {
+                throw new IllegalArgumentException(format("Invalid journal record %d at step %d", record, tickCount));
+            }
+        }
+        double elapsed = (System.nanoTime() - startNanos) * 1e-9;
+        logger.atInfo().log("Replayed {} steps, {} s in {} s", tickCount, status.getTime(), elapsed);
+        return status;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * The histogram of latency values with logarithmic buckets.
+ * <p>
+ * The values lower than {@link #SUB_BUCKETS} are recorded exactly, the greater values are recorded in
+ * buckets of each power of two split in {@link #SUB_BUCKETS} linear sub-buckets,
+ * so the relative error of the percentiles is bounded to 1 / {@link #SUB_BUCKETS}.
+ * The histogram has a constant size and the recording does not allocate memory.
+ * The histogram is not thread safe, the readers should use a {@link #copy()}.
+ * </p>
+ */
+public class LatencyHistogram {
+    public static final int SUB_BUCKET_BITS = 5;
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /**
+     * Returns the bucket index of a value
+     *
+     * @param value the non-negative value
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the lowest value of a bucket
+     *
+     * @param index the bucket index
+     */
+    static long lowestValueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << shift;
+    }
+
+    /**
+     * Returns the highest value of a bucket
+     *
+     * @param index the bucket index
+     */
+    static long highestValueOf(int index) {
+        return index + 1 < NUM_BUCKETS ? lowestValueOf(index + 1) - 1 : Long.MAX_VALUE;
+    }
+
+    private final long[] counts;
+    private long count;
+    private long total;
+    private long minValue;
+    private long maxValue;
+
+    /**
+     * Creates an empty histogram
+     */
+    public LatencyHistogram() {
+        this.counts = new long[NUM_BUCKETS];
+        this.minValue = Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the histogram after adding the values of another histogram
+     *
+     * @param other the other histogram
+     */
+    public LatencyHistogram add(LatencyHistogram other) {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        total += other.total;
+        minValue = min(minValue, other.minValue);
+        maxValue = max(maxValue, other.maxValue);
+        return this;
+    }
+
+    /**
+     * Returns a copy of the histogram
+     */
+    public LatencyHistogram copy() {
+        return new LatencyHistogram().add(this);
+    }
+
+    /**
+     * Returns the number of recorded values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the maximum recorded value or 0 if empty
+     */
+    public long getMax() {
+        return maxValue;
+    }
+
+    /**
+     * Returns the average of recorded values or 0 if empty
+     */
+    public double getMean() {
+        return count > 0 ? (double) total / count : 0;
+    }
+
+    /**
+     * Returns the minimum recorded value or 0 if empty
+     */
+    public long getMin() {
+        return count > 0 ? minValue : 0;
+    }
+
+    /**
+     * Returns the sum of recorded values
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the value at the percentile or 0 if empty.
+     * <p>
+     * The value is the highest value of the bucket containing the percentile limited to the maximum recorded value.
+     * </p>
+     *
+     * @param percentile the percentile (0 ... 100)
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = max(1, (long) Math.ceil(min(max(percentile, 0), 100) / 100 * count));
+        long cumulated = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            cumulated += counts[i];
+            if (cumulated >= rank) {
+                return min(highestValueOf(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    /**
+     * Records a value
+     *
+     * @param value the value, the negative values are recorded as 0
+     */
+    public void record(long value) {
+        long v = max(value, 0);
+        counts[indexOf(v)]++;
+        count++;
+        total += v;
+        minValue = min(minValue, v);
+        maxValue = max(maxValue, v);
+    }
+
+    /**
+     * Clears the recorded values
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        total = 0;
+        minValue = Long.MAX_VALUE;
+        maxValue = 0;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", LatencyHistogram.class.getSimpleName() + "[", "]")
+                .add("count=" + count)
+                .add("min=" + getMin())
+                .add("mean=" + getMean())
+                .add("p50=" + getValueAtPercentile(50))
+                .add("p99=" + getValueAtPercentile(99))
+                .add("max=" + maxValue)
+                .toString();
+    }
+}
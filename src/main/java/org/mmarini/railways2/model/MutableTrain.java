@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.model;
+
+import org.mmarini.railways2.model.geometry.*;
+import org.mmarini.railways2.model.routes.Entry;
+import org.mmarini.railways2.model.routes.Exit;
+import org.mmarini.railways2.model.routes.Route;
+import org.mmarini.railways2.model.routes.Signal;
+
+import static java.lang.Math.max;
+import static org.mmarini.railways2.model.RailwayConstants.*;
+import static org.mmarini.railways2.model.SoundEvent.ARRIVED;
+import static org.mmarini.railways2.model.SoundEvent.STOPPED;
+import static org.mmarini.railways2.model.Train.*;
+
+/**
+ * Mutable train status used by the allocation free simulation of trains.
+ * <p>
+ * The simulation steps change the status in place and accumulate the performance indicators
+ * in the reusable accumulator, the train is created once at the end of tick by <code>toTrain</code>.
+ * The steps replicate the computation of the immutable train functions, so the results are the same.
+ * </p>
+ */
+class MutableTrain {
+    private final PerformanceAccumulator performance;
+    private Train source;
+    private String id;
+    private int numCoaches;
+    private Entry arrival;
+    private Exit destination;
+    private Train.State state;
+    private double arrivalTime;
+    private Direction direction;
+    private double distance;
+    private double speed;
+    private boolean loaded;
+    private double loadedTime;
+    private Exit exitingNode;
+    private double exitDistance;
+    private boolean exited;
+
+    /**
+     * Creates the mutable train
+     */
+    MutableTrain() {
+        this.performance = new PerformanceAccumulator();
+    }
+
+    /**
+     * Returns the braking train step and the elapsed time (s)
+     *
+     * @param context the simulation context
+     * @param t0      the current time instant (s)
+     * @param dt      the time interval (s)
+     */
+    double braking(SimulationContext context, double t0, double dt) {
+        double elapsed = running(context, t0, dt, 0);
+        if (!exited && STATE_WAITING_FOR_SIGNAL.equals(state)) {
+            context.play(STOPPED);
+            stop();
+        }
+        return elapsed;
+    }
+
+    /**
+     * Returns the entering train step and the elapsed time (s)
+     *
+     * @param context the simulation context
+     * @param t0      the current time instant (s)
+     * @param dt      the time interval (s)
+     */
+    double entering(SimulationContext context, double t0, double dt) {
+        double timeToArrive = arrivalTime - t0;
+        if (timeToArrive > 0 && timeToArrive < MIN_TIME_INTERVAL) {
+            timeToArrive = MIN_TIME_INTERVAL;
+        }
+        if (timeToArrive > dt) {
+            // Train not yet arrived
+            performance.elapsed(dt);
+            return dt;
+        }
+        if (!context.isEntryClear(arrival, id)) {
+            // entry busy
+            if (timeToArrive >= 0 || speed != 0) {
+                speed = 0;
+                performance.elapsed(timeToArrive);
+                performance.addTrainStopNumber(1);
+                return timeToArrive;
+            } else {
+                performance.waiting(dt);
+                return dt;
+            }
+        }
+        // Entry clear and this is the first train in the queue
+        // Enters the edge
+        Direction dir = arrival.getValidExits().iterator().next();
+        direction = dir;
+        distance = dir.getEdge().getLength();
+        state = STATE_RUNNING;
+        double elapsed = max(0, timeToArrive);
+        performance.elapsed(elapsed);
+        return elapsed;
+    }
+
+    /**
+     * Returns the exiting train step and the elapsed time (s)
+     *
+     * @param context the simulation context
+     * @param t0      the current time instant (s)
+     * @param dt      the time interval (s)
+     */
+    double exiting(SimulationContext context, double t0, double dt) {
+        double newSpeed = speedPhysics(speed, MAX_SPEED, dt);
+        double ds = speed * dt;
+        double distanceToExit = EXIT_DISTANCE + numCoaches * COACH_LENGTH - exitDistance;
+        if (ds >= distanceToExit) {
+            double exitTime = distanceToExit / speed;
+            performance.running(exitTime, distanceToExit);
+            if (exitingNode.equals(destination)) {
+                performance.addTrainRightOutgoingNumber(1);
+            } else {
+                performance.addTrainWrongOutgoingNumber(1);
+            }
+            exited = true;
+            return exitTime;
+        }
+        exitDistance = exitDistance + ds;
+        speed = newSpeed;
+        performance.running(dt, ds);
+        return dt;
+    }
+
+    /**
+     * Returns the performance accumulator of the train
+     */
+    PerformanceAccumulator getPerformance() {
+        return performance;
+    }
+
+    /**
+     * Returns the train state
+     */
+    Train.State getState() {
+        return state;
+    }
+
+    /**
+     * Returns true if the train has left the station
+     */
+    boolean isExited() {
+        return exited;
+    }
+
+    /**
+     * Returns the loading train step and the elapsed time (s)
+     *
+     * @param context the simulation context
+     * @param t0      the current time instant (s)
+     * @param dt      the time interval (s)
+     */
+    double loading(SimulationContext context, double t0, double dt) {
+        double timeToLoad = loadedTime - t0;
+        if (timeToLoad > 0 && timeToLoad < MIN_TIME_INTERVAL) {
+            timeToLoad = MIN_TIME_INTERVAL;
+        }
+        if (dt <= timeToLoad) {
+            // Wait for loaded
+            performance.waiting(dt);
+            return dt;
+        }
+        // Load completed
+        context.play(STOPPED);
+        stop();
+        loaded = true;
+        performance.waiting(timeToLoad);
+        return timeToLoad;
+    }
+
+    /**
+     * Resets the status from the train
+     *
+     * @param train the train
+     */
+    void reset(Train train) {
+        source = train;
+        id = train.getId();
+        numCoaches = train.getNumCoaches();
+        arrival = train.getArrival();
+        destination = train.getDestination();
+        state = train.getState();
+        arrivalTime = train.getArrivalTime();
+        EdgeLocation location = train.getLocation().orElse(null);
+        direction = location != null ? location.getDirection() : null;
+        distance = location != null ? location.getDistance() : 0;
+        speed = train.getSpeed();
+        loaded = !train.isUnloaded();
+        loadedTime = train.getLoadedTime();
+        exitingNode = train.getExitingNode();
+        exitDistance = train.getExitDistance();
+        exited = false;
+        performance.reset();
+    }
+
+    /**
+     * Returns the running train step and the elapsed time (s)
+     *
+     * @param context     the simulation context
+     * @param t0          the current time instant (s)
+     * @param dt          the time interval (s)
+     * @param targetSpeed the target speed (m/s)
+     */
+    double running(SimulationContext context, double t0, double dt, double targetSpeed) {
+        boolean clearTrack = context.isNextTracksClear(direction, distance, stopDistance(speed), !loaded);
+        double newSpeed = clearTrack ?
+                speedPhysics(speed, targetSpeed, dt)
+                : max(speedPhysics(speed, 0, dt), APPROACH_SPEED);
+        if (speed == 0) {
+            if (targetSpeed > APPROACH_SPEED || newSpeed > APPROACH_SPEED) {
+                speed = max(APPROACH_SPEED, newSpeed);
+                performance.running(dt, 0);
+                return dt;
+            } else {
+                context.play(STOPPED);
+                stop();
+                performance.addTrainStopNumber(1);
+                return 0;
+            }
+        }
+
+        double edgeDistance = distance;
+        double timeToEndEdge = edgeDistance / speed;
+        Edge edge = direction.getEdge();
+        Route route = context.getRoute(direction.getDestination());
+        double movement = speed * dt;
+        double newDistance = edgeDistance - movement;
+
+        if (dt < timeToEndEdge) {
+            // Move ahead in the current edge
+            distance = newDistance;
+            if (targetSpeed > APPROACH_SPEED || newSpeed > APPROACH_SPEED) {
+                speed = max(newSpeed, APPROACH_SPEED);
+                performance.running(dt, movement);
+            } else {
+                // Train is braking
+                context.play(STOPPED);
+                stop();
+                performance.running(dt, movement);
+                performance.addTrainStopNumber(1);
+            }
+            return dt;
+        }
+
+        // end of edge reached
+        if (route instanceof Exit) {
+            // exit node reached
+            if (context.isExitClear((Exit) route)) {
+                state = STATE_EXITING;
+                direction = null;
+                distance = 0;
+                exitingNode = (Exit) route;
+                exitDistance = 0;
+            } else {
+                state = STATE_WAITING_FOR_SIGNAL;
+                distance = 0;
+                speed = 0;
+            }
+            performance.running(timeToEndEdge, edgeDistance);
+            return timeToEndEdge;
+        }
+        if (edge instanceof Platform && !loaded) {
+            // platform reached and train not loaded
+            context.play(ARRIVED);
+            distance = 0;
+            speed = 0;
+            loadedTime = t0 + timeToEndEdge + LOADING_TIME;
+            state = STATE_LOADING;
+            performance.running(timeToEndEdge, edgeDistance);
+            performance.addTrainStopNumber(1);
+            return timeToEndEdge;
+        }
+        if (!context.isNextRouteClear(direction)) {
+            // next route is not clear (stop signal)
+            state = STATE_WAITING_FOR_SIGNAL;
+            distance = 0;
+            speed = 0;
+            performance.running(timeToEndEdge, edgeDistance);
+            performance.addTrainStopNumber(1);
+            return timeToEndEdge;
+        }
+        // Get the new direction
+        Direction newDir = context.getNextExit(direction).orElseThrow();
+        // Lock signals of new section
+        if (route instanceof Signal && context.isAutoLock()) {
+            context.lockSignals(newDir);
+        }
+        speed = newSpeed;
+        direction = newDir;
+        distance = newDir.getEdge().getLength();
+        performance.running(timeToEndEdge, edgeDistance);
+        return timeToEndEdge;
+    }
+
+    /**
+     * Returns the running fast train step and the elapsed time (s)
+     *
+     * @param context the simulation context
+     * @param t0      the current time instant (s)
+     * @param dt      the time interval (s)
+     */
+    double running(SimulationContext context, double t0, double dt) {
+        return running(context, t0, dt, MAX_SPEED);
+    }
+
+    /**
+     * Stops the train
+     */
+    private void stop() {
+        speed = 0;
+        state = STATE_WAITING_FOR_RUN;
+    }
+
+    /**
+     * Returns the train with the current status, null if the train has left the station.
+     * The source train is returned if the status has not been changed
+     */
+    Train toTrain() {
+        if (exited) {
+            return null;
+        }
+        EdgeLocation location0 = source.getLocation().orElse(null);
+        EdgeLocation location = direction == null
+                ? null
+                : location0 != null && direction.equals(location0.getDirection())
+                && Double.compare(distance, location0.getDistance()) == 0
+                ? location0
+                : new EdgeLocation(direction, distance);
+        boolean unchanged = location == location0
+                && state.equals(source.getState())
+                && speed == source.getSpeed()
+                && loaded == !source.isUnloaded()
+                && loadedTime == source.getLoadedTime()
+                && exitDistance == source.getExitDistance()
+                && (exitingNode == null ? source.getExitingNode() == null : exitingNode.equals(source.getExitingNode()));
+        return unchanged ? source :
+                new Train(id, numCoaches, arrival, destination, state, arrivalTime, location, speed, loaded, loadedTime, exitingNode, exitDistance);
+    }
+
+    /**
+     * Returns the waiting for run train step and the elapsed time (s)
+     *
+     * @param context the simulation context
+     * @param t0      the current time instant (s)
+     * @param dt      the time interval (s)
+     */
+    double waitingForRun(SimulationContext context, double t0, double dt) {
+        speed = 0;
+        performance.waiting(dt);
+        return dt;
+    }
+
+    /**
+     * Returns the waiting for clear signal train step and the elapsed time (s)
+     *
+     * @param context the simulation context
+     * @param t0      the current time instant (s)
+     * @param dt      the time interval (s)
+     */
+    double waitingForSignal(SimulationContext context, double t0, double dt) {
+        if (context.isNextRouteClear(direction)) {
+            state = STATE_RUNNING;
+            return 0;
+        } else {
+            performance.waiting(dt);
+            return dt;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.model;
+
+/**
+ * Mutable accumulator of performance indicators.
+ * <p>
+ * It sums the indicators in the same order of <code>Performance.sumIterable</code>
+ * without creating intermediate performance records.
+ * </p>
+ */
+class PerformanceAccumulator {
+    private int incomingTrainNumber;
+    private int rightOutgoingTrainNumber;
+    private int wrongOutgoingTrainNumber;
+    private double totalTrainTime;
+    private double traveledDistance;
+    private int trainStopNumber;
+    private double trainWaitingTime;
+    private double elapsedTime;
+
+    /**
+     * Adds the indicators of the other accumulator
+     *
+     * @param other the other accumulator
+     */
+    void add(PerformanceAccumulator other) {
+        incomingTrainNumber += other.incomingTrainNumber;
+        rightOutgoingTrainNumber += other.rightOutgoingTrainNumber;
+        wrongOutgoingTrainNumber += other.wrongOutgoingTrainNumber;
+        totalTrainTime += other.totalTrainTime;
+        traveledDistance += other.traveledDistance;
+        trainWaitingTime += other.trainWaitingTime;
+        trainStopNumber += other.trainStopNumber;
+        elapsedTime += other.elapsedTime;
+    }
+
+    /**
+     * Adds the right outgoing trains
+     *
+     * @param trainNumber the number of trains
+     */
+    void addTrainRightOutgoingNumber(int trainNumber) {
+        rightOutgoingTrainNumber += trainNumber;
+    }
+
+    /**
+     * Adds the train stops
+     *
+     * @param stops the number of stops
+     */
+    void addTrainStopNumber(int stops) {
+        trainStopNumber += stops;
+    }
+
+    /**
+     * Adds the wrong outgoing trains
+     *
+     * @param trainNumber the number of trains
+     */
+    void addTrainWrongOutgoingNumber(int trainNumber) {
+        wrongOutgoingTrainNumber += trainNumber;
+    }
+
+    /**
+     * Adds the elapsed time (as <code>Performance.elapsed</code>)
+     *
+     * @param dt the time interval (s)
+     */
+    void elapsed(double dt) {
+        elapsedTime += dt;
+    }
+
+    /**
+     * Resets the indicators
+     */
+    void reset() {
+        incomingTrainNumber = 0;
+        rightOutgoingTrainNumber = 0;
+        wrongOutgoingTrainNumber = 0;
+        totalTrainTime = 0;
+        traveledDistance = 0;
+        trainStopNumber = 0;
+        trainWaitingTime = 0;
+        elapsedTime = 0;
+    }
+
+    /**
+     * Adds the running train indicators (as <code>Performance.running</code>)
+     *
+     * @param dt time interval (s)
+     * @param ds distance interval (m)
+     */
+    void running(double dt, double ds) {
+        totalTrainTime += dt;
+        traveledDistance += ds;
+        elapsedTime += dt;
+    }
+
+    /**
+     * Returns the performance record
+     */
+    Performance toPerformance() {
+        return new Performance(incomingTrainNumber, rightOutgoingTrainNumber, wrongOutgoingTrainNumber, totalTrainTime,
+                traveledDistance, trainStopNumber, trainWaitingTime, elapsedTime);
+    }
+
+    /**
+     * Adds the waiting train indicators (as <code>Performance.waiting</code>)
+     *
+     * @param dt the time interval (s)
+     */
+    void waiting(double dt) {
+        totalTrainTime += dt;
+        trainWaitingTime += dt;
+        elapsedTime += dt;
+    }
+}
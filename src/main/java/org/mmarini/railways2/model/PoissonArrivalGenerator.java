@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.mmarini.Tuple2;
+import org.mmarini.railways2.model.routes.Entry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static java.lang.Math.log;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Generates the train arrivals by a precomputed Poisson schedule.
+ * <p>
+ * The arrivals at each entry are a Poisson process with rate equal to the train frequency divided by the number of entries.
+ * The exponential inter-arrival times of all the entries are drawn at creation
+ * up to the game duration and merged in a single time ordered schedule,
+ * so polling the arrivals just moves a cursor.
+ * The same seed produces the same schedule.
+ * </p>
+ * <p>
+ * The generator keeps the cursor so it must be used by a single simulation thread.
+ * </p>
+ */
+public class PoissonArrivalGenerator implements ArrivalGenerator {
+
+    /**
+     * Returns the Poisson arrival generator
+     *
+     * @param entries        the entries
+     * @param trainFrequency the train frequency (#/s)
+     * @param startTime      the start instant of schedule (s)
+     * @param endTime        the end instant of schedule (s)
+     * @param seed           the seed of random generator
+     */
+    public static PoissonArrivalGenerator create(List<Entry> entries, double trainFrequency, double startTime, double endTime, long seed) {
+        requireNonNull(entries);
+        Random random = new Random(seed);
+        List<double[]> arrivals = new ArrayList<>();
+        int n = 0;
+        if (trainFrequency > 0 && !entries.isEmpty()) {
+            double entryFrequency = trainFrequency / entries.size();
+            for (int i = 0; i < entries.size(); i++) {
+                double[] times = new double[16];
+                int count = 0;
+                double t = startTime - log(1 - random.nextDouble()) / entryFrequency;
+                while (t <= endTime) {
+                    if (count >= times.length) {
+                        times = Arrays.copyOf(times, times.length * 2);
+                    }
+                    times[count++] = t;
+                    t -= log(1 - random.nextDouble()) / entryFrequency;
+                }
+                arrivals.add(Arrays.copyOf(times, count));
+                n += count;
+            }
+        }
+        // Merges the entry schedules
+        double[] times = new double[n];
+        Entry[] arrivalEntries = new Entry[n];
+        int[] cursors = new int[arrivals.size()];
+        for (int k = 0; k < n; k++) {
+            int next = -1;
+            for (int i = 0; i < cursors.length; i++) {
+                if (cursors[i] < arrivals.get(i).length
+                        && (next < 0 || arrivals.get(i)[cursors[i]] < arrivals.get(next)[cursors[next]])) {
+                    next = i;
+                }
+            }
+            times[k] = arrivals.get(next)[cursors[next]++];
+            arrivalEntries[k] = entries.get(next);
+        }
+        return new PoissonArrivalGenerator(times, arrivalEntries);
+    }
+
+    private final double[] times;
+    private final Entry[] entries;
+    private int cursor;
+
+    /**
+     * Creates the Poisson arrival generator
+     *
+     * @param times   the arrival instants in ascending order (s)
+     * @param entries the arrival entries
+     */
+    protected PoissonArrivalGenerator(double[] times, Entry[] entries) {
+        this.times = requireNonNull(times);
+        this.entries = requireNonNull(entries);
+    }
+
+    /**
+     * Returns the number of scheduled arrivals
+     */
+    public int getArrivalNumber() {
+        return times.length;
+    }
+
+    @Override
+    public double getNextArrivalTime() {
+        return cursor < times.length ? times[cursor] : Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public List<Tuple2<Entry, Double>> poll(double time) {
+        if (cursor >= times.length || times[cursor] > time) {
+            return List.of();
+        }
+        List<Tuple2<Entry, Double>> result = new ArrayList<>();
+        while (cursor < times.length && times[cursor] <= time) {
+            result.add(Tuple2.of(entries[cursor], times[cursor]));
+            cursor++;
+        }
+        return result;
+    }
+}
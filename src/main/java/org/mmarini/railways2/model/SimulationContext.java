@@ -30,16 +30,22 @@ package org.mmarini.railways2.model;
 
 import org.mmarini.railways2.model.geometry.Direction;
 import org.mmarini.railways2.model.geometry.Node;
+import org.mmarini.railways2.model.routes.Entry;
 import org.mmarini.railways2.model.routes.Exit;
 import org.mmarini.railways2.model.routes.Route;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.UnaryOperator;
 
 /**
  * Generates the new station status after a time interval.
  * Applies the changes of the status to have an updated status.
  */
 public class SimulationContext {
+    private final List<SoundEvent> deferredEvents;
+    private final List<UnaryOperator<StationStatus>> journal;
     private StationStatus status;
 
     /**
@@ -48,7 +54,20 @@ public class SimulationContext {
      * @param status the status
      */
     public SimulationContext(StationStatus status) {
+        this(status, false);
+    }
+
+    /**
+     * Creates the initial simulation context
+     *
+     * @param status   the status
+     * @param deferred true if the sound events are collected and played later by playDeferredEvents
+     *                 and the signal reads and locks are journaled to be replayed by replay
+     */
+    SimulationContext(StationStatus status, boolean deferred) {
         this.status = status;
+        this.deferredEvents = deferred ? new ArrayList<>() : null;
+        this.journal = deferred ? new ArrayList<>() : null;
     }
 
     /**
@@ -101,6 +120,16 @@ public class SimulationContext {
         return status.isEntryClear(train);
     }
 
+    /**
+     * Returns true if the entry is clear for the train
+     *
+     * @param arrival the arrival entry
+     * @param trainId the train identifier
+     */
+    boolean isEntryClear(Entry arrival, String trainId) {
+        return status.isEntryClear(arrival, trainId);
+    }
+
     /**
      * Returns true if the exit is clear
      *
@@ -116,7 +145,11 @@ public class SimulationContext {
      * @param direction the direction
      */
     public boolean isNextRouteClear(Direction direction) {
-        return status.isNextRouteClear(direction);
+        boolean result = status.isNextRouteClear(direction);
+        if (journal != null) {
+            journal.add(s -> s.isNextRouteClear(direction) == result ? s : null);
+        }
+        return result;
     }
 
     /**
@@ -127,7 +160,27 @@ public class SimulationContext {
      * @param train the train
      */
     public boolean isNextTracksClear(Train train) {
-        return status.isNextSignalClear(train);
+        boolean result = status.isNextSignalClear(train);
+        if (journal != null) {
+            journal.add(s -> s.isNextSignalClear(train) == result ? s : null);
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if next track is clear for the train at the given location
+     *
+     * @param direction    the direction of train head
+     * @param distance     the distance of train head to the end of edge (m)
+     * @param stopDistance the stop distance of train (m)
+     * @param unloaded     true if the train has not yet loaded the passengers
+     */
+    boolean isNextTracksClear(Direction direction, double distance, double stopDistance, boolean unloaded) {
+        boolean result = status.isNextSignalClear(direction, distance, stopDistance, unloaded);
+        if (journal != null) {
+            journal.add(s -> s.isNextSignalClear(direction, distance, stopDistance, unloaded) == result ? s : null);
+        }
+        return result;
     }
 
     /**
@@ -136,7 +189,20 @@ public class SimulationContext {
      * @param direction the direction
      */
     public void lockSignals(Direction direction) {
-        status = status.getSection(direction.getEdge())
+        status = lockSignals(status, direction);
+        if (journal != null) {
+            journal.add(s -> lockSignals(s, direction));
+        }
+    }
+
+    /**
+     * Returns the status with the signal of the given direction locked
+     *
+     * @param status    the status
+     * @param direction the direction
+     */
+    private static StationStatus lockSignals(StationStatus status, Direction direction) {
+        return status.getSection(direction.getEdge())
                 .map(status::lock)
                 .orElse(status);
     }
@@ -147,6 +213,38 @@ public class SimulationContext {
      * @param event the event
      */
     public void play(SoundEvent event) {
-        status.play(event);
+        if (deferredEvents != null) {
+            deferredEvents.add(event);
+        } else {
+            status.play(event);
+        }
+    }
+
+    /**
+     * Returns the status replaying the journaled signal reads and locks on the given status
+     * or null if any signal read differs from the simulation (the simulation depends on the status changes)
+     *
+     * @param status the status
+     */
+    StationStatus replay(StationStatus status) {
+        for (UnaryOperator<StationStatus> entry : journal) {
+            status = entry.apply(status);
+            if (status == null) {
+                break;
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Plays the collected sound events
+     */
+    void playDeferredEvents() {
+        if (deferredEvents != null) {
+            for (SoundEvent event : deferredEvents) {
+                status.play(event);
+            }
+            deferredEvents.clear();
+        }
     }
 }
\ No newline at end of file
@@ -31,6 +31,7 @@ package org.mmarini.railways2.model;
 import io.reactivex.rxjava3.core.Single;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.DoubleConsumer;
 import java.util.function.UnaryOperator;
@@ -105,6 +106,16 @@ public interface SimulatorEngine<T, S> {
      */
     Single<S> request(final UnaryOperator<S> transition);
 
+    /**
+     * Returns the seed after applying the transitions in a single request.
+     * <p>
+     * The transitions are applied in order without interleaving simulation steps or other requests.
+     * </p>
+     *
+     * @param transitions the transitions
+     */
+    Single<S> requestAll(final List<? extends UnaryOperator<S>> transitions);
+
     /**
      * Returns the engine after setting the interval of event emission
      *
@@ -36,13 +36,17 @@ import org.mmarini.Tuple2;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Deque;
+import java.util.*;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.*;
 
 import static java.lang.Math.floor;
+import static java.lang.Math.max;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -69,7 +73,20 @@ import static java.util.Objects.requireNonNull;
  * engine.start();
  * </pre>
  * </code>
+ * </p>
  * <p>
+ * By default, the engine computes a variable simulation interval to reach the next event instant.
+ * With a fixed step set by {@link #setFixedStep(Duration, int)} the engine computes the seeds with
+ * the fixed simulation interval, catching up the elapsed time with a bounded number of steps per cycle,
+ * and parks the thread until the next step or event deadline.
+ * The steps executed to catch up and the steps dropped by exceeding the bound are reported by the step report consumer.
+ * </p>
+ * <p>
+ * The engine measures the step computation times, the request queue depth, the time spent processing requests
+ * and emitting events and the memory allocated by the simulation thread.
+ * The measures are reported to the metrics consumer set by {@link #setOnMetrics(Consumer)}
+ * every metrics interval.
+ * </p>
  *
  * @param <T> the event type
  * @param <S> the seed type
@@ -77,7 +94,23 @@ import static java.util.Objects.requireNonNull;
 public class SimulatorEngineImpl<T, S> implements SimulatorEngine<T, S> {
     public static final long MIN_SLEEP_TIME = 10L;
     public static final long NANOSPS = 1000000000L;
+    public static final Duration DEFAULT_METRICS_INTERVAL = Duration.ofSeconds(1);
+    private static final Object SPEED_KEY = "speed";
     private static final Logger logger = LoggerFactory.getLogger(SimulatorEngineImpl.class);
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Returns the bytes allocated by the current thread or {@link EngineMetrics#UNAVAILABLE} if not supported
+     */
+    private static long allocatedBytes() {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return EngineMetrics.UNAVAILABLE;
+    }
 
     /**
      * Returns a simulator.
@@ -101,12 +134,26 @@ public class SimulatorEngineImpl<T, S> implements SimulatorEngine<T, S> {
     private final Deque<ProcessRequest> queue; // The process request queue
     private final BiFunction<S, Double, Tuple2<S, Double>> nextSeed; // the status generator function
     private final Function<S, T> emit; // the event generator function
+    private final LatencyHistogram stepLatency; // the step computation times from last metrics report
     private S seed; // Current status
     private DoubleConsumer onSpeed;
     private Consumer<T> onEvent;
     private double speed; // relative speed
     private Status status; // the current simulation status
     private long eventInterval; // the interval between static change event
+    private double fixedStep; // the fixed simulation step (s) or 0 for variable step
+    private int maxCatchUpSteps; // the maximum number of steps per cycle
+    private Consumer<StepReport> onStepReport;
+    private volatile Thread thread; // the simulation thread
+    private Consumer<EngineMetrics> onMetrics;
+    private long metricsInterval; // the interval between metrics reports (ns)
+    private long lastReport; // the instant of last metrics report (ns)
+    private long lastAllocatedBytes; // the bytes allocated by the simulation thread at last metrics report
+    private double reportSimulatedInterval; // the simulated interval from last metrics report (s)
+    private long requests; // the number of requests from last metrics report
+    private int maxQueueDepth; // the maximum queue depth from last metrics report
+    private long dequeTime; // the time spent processing requests from last metrics report (ns)
+    private long emitTime; // the time spent emitting events from last metrics report (ns)
 
     /**
      * Creates the simulator.
@@ -128,29 +175,83 @@ public class SimulatorEngineImpl<T, S> implements SimulatorEngine<T, S> {
         this.speed = 1;
         this.seed = null;
         this.status = Status.IDLE;
+        this.stepLatency = new LatencyHistogram();
+        this.metricsInterval = DEFAULT_METRICS_INTERVAL.toNanos();
     }
 
     /**
-     * Deque the queue
+     * Deque the queue.
+     * <p>
+     * The pending requests are applied as a batch: the requests with the same coalescing key are replaced
+     * by the last one and the transitions are applied in order.
+     * Each request is completed with the seed resulting from its own transition,
+     * a replaced request is completed with the seed of the request replacing it.
+     * </p>
      */
-    private void deque() {
-        for (; ; ) {
-            ProcessRequest request = queue.poll();
-            if (request != null) {
+    void deque() {
+        if (queue.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<ProcessRequest> batch = new ArrayList<>();
+        for (ProcessRequest request = queue.poll(); request != null; request = queue.poll()) {
+            batch.add(request);
+        }
+        requests += batch.size();
+        maxQueueDepth = max(maxQueueDepth, batch.size());
+        // Finds the last request of each coalescing key
+        Map<Object, ProcessRequest> lastByKey = new HashMap<>();
+        for (ProcessRequest request : batch) {
+            if (request.key != null) {
+                lastByKey.put(request.key, request);
+            }
+        }
+        Map<ProcessRequest, S> seedByRequest = new IdentityHashMap<>();
+        for (ProcessRequest request : batch) {
+            if (request.key == null || lastByKey.get(request.key) == request) {
                 seed = request.transition.apply(seed);
                 if (seed != null) {
-                    request.result.onSuccess(seed);
+                    seedByRequest.put(request, seed);
                 }
-            } else {
-                break;
             }
         }
+        for (ProcessRequest request : batch) {
+            S result = seedByRequest.get(request.key == null ? request : lastByKey.get(request.key));
+            if (result != null) {
+                request.result.onSuccess(result);
+            }
+        }
+        dequeTime += System.nanoTime() - start;
     }
 
-    private void emitEvent(T event) {
+    /**
+     * Emits the event of the current seed
+     */
+    private void emitEvent() {
+        long start = System.nanoTime();
+        T event = emit.apply(seed);
         if (onEvent != null) {
             onEvent.accept(event);
         }
+        emitTime += System.nanoTime() - start;
+    }
+
+    /**
+     * Emits the metrics if the metrics interval has elapsed and resets the measures
+     *
+     * @param now the current instant (ns)
+     */
+    private void emitMetrics(long now) {
+        long interval = now - lastReport;
+        if (onMetrics == null || interval < metricsInterval) {
+            return;
+        }
+        long allocated = allocatedBytes();
+        onMetrics.accept(new EngineMetrics(interval, stepLatency.copy(), requests, maxQueueDepth,
+                dequeTime, emitTime,
+                allocated >= 0 && lastAllocatedBytes >= 0 ? allocated - lastAllocatedBytes : EngineMetrics.UNAVAILABLE,
+                reportSimulatedInterval / interval * NANOSPS));
+        resetMetrics(now, allocated);
     }
 
     private void emitSpeed(double speed) {
@@ -159,11 +260,140 @@ public class SimulatorEngineImpl<T, S> implements SimulatorEngine<T, S> {
         }
     }
 
+    private void emitStepReport(StepReport report) {
+        if (onStepReport != null) {
+            onStepReport.accept(report);
+        }
+    }
+
+    /**
+     * Offers the request to the queue and processes it if the simulation is idle
+     * or wakes up the simulation thread
+     *
+     * @param request the request
+     */
+    private void offer(ProcessRequest request) {
+        queue.offer(request);
+        if (status == Status.IDLE) {
+            deque();
+        } else {
+            Thread thread = this.thread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    /**
+     * Resets the measures
+     *
+     * @param now       the current instant (ns)
+     * @param allocated the bytes allocated by the simulation thread
+     */
+    private void resetMetrics(long now, long allocated) {
+        lastReport = now;
+        lastAllocatedBytes = allocated;
+        reportSimulatedInterval = 0;
+        stepLatency.reset();
+        requests = 0;
+        maxQueueDepth = 0;
+        dequeTime = 0;
+        emitTime = 0;
+    }
+
+    /**
+     * Returns the next seed and the simulated interval after computing a simulation step
+     *
+     * @param dt the expected simulation interval (s)
+     */
+    private Tuple2<S, Double> step(double dt) {
+        long start = System.nanoTime();
+        Tuple2<S, Double> tuple = nextSeed.apply(seed, dt);
+        stepLatency.record(System.nanoTime() - start);
+        seed = tuple._1;
+        reportSimulatedInterval += tuple._2;
+        return tuple;
+    }
+
     @Override
     public boolean isActive() {
         return status.equals(Status.ACTIVE);
     }
 
+    /**
+     * Simulation cycle with fixed step.
+     * <p>
+     * Each cycle computes the steps due by the real time elapsed up to the catch-up bound,
+     * drops the steps exceeding the bound and parks the thread up to the next step or event deadline.
+     * </p>
+     */
+    void processFixedCycle() {
+        long lastEvent = System.nanoTime();
+        long lastCycle = lastEvent;
+        // Simulation time due and not yet simulated (s)
+        double dueInterval = 0;
+        // Simulated interval from last event
+        double simulatedInterval = 0;
+        long steps = 0;
+        long mergedSteps = 0;
+        long droppedSteps = 0;
+        while (status == Status.ACTIVE) {
+            // Processes request queue
+            deque();
+            if (status != Status.ACTIVE) {
+                break;
+            }
+            long now = System.nanoTime();
+            dueInterval += (double) (now - lastCycle) * speed / NANOSPS;
+            lastCycle = now;
+            int cycleSteps = 0;
+            while (dueInterval >= fixedStep && cycleSteps < maxCatchUpSteps) {
+                Tuple2<S, Double> tuple = step(fixedStep);
+                dueInterval -= tuple._2;
+                simulatedInterval += tuple._2;
+                cycleSteps++;
+            }
+            steps += cycleSteps;
+            if (cycleSteps > 1) {
+                mergedSteps += cycleSteps - 1;
+            }
+            if (dueInterval >= fixedStep) {
+                // Catch-up bound exceeded: drops the remaining due steps
+                long dropped = (long) floor(dueInterval / fixedStep);
+                dueInterval -= dropped * fixedStep;
+                droppedSteps += dropped;
+            }
+            now = System.nanoTime();
+            long currentEventInterval = now - lastEvent;
+            if (currentEventInterval >= eventInterval) {
+                double currentSpeed = simulatedInterval / currentEventInterval * NANOSPS;
+                emitEvent();
+                emitSpeed(currentSpeed);
+                emitStepReport(new StepReport(steps, mergedSteps, droppedSteps));
+                emitMetrics(now);
+                if (droppedSteps > 0) {
+                    logger.atDebug().log("Dropped {} steps", droppedSteps);
+                }
+                lastEvent = now;
+                simulatedInterval = 0;
+                steps = 0;
+                mergedSteps = 0;
+                droppedSteps = 0;
+            }
+            // Parks up to the next step or event deadline
+            long stepDeadline = speed > 0
+                    ? lastCycle + (long) ((fixedStep - dueInterval) / speed * NANOSPS)
+                    : Long.MAX_VALUE;
+            long deadline = Math.min(stepDeadline, lastEvent + eventInterval);
+            for (long wait = deadline - System.nanoTime();
+                 wait > 0 && status == Status.ACTIVE && queue.isEmpty();
+                 wait = deadline - System.nanoTime()) {
+                LockSupport.parkNanos(this, wait);
+            }
+        }
+        logger.atDebug().log("Simulation stopped.");
+    }
+
     /**
      * Simulation cycle
      */
@@ -180,8 +410,7 @@ public class SimulatorEngineImpl<T, S> implements SimulatorEngine<T, S> {
             if (simInterval > 0) {
                 // Simulation interval positive => process step to the next event instant
                 // Computes the next status
-                Tuple2<S, Double> tuple = nextSeed.apply(seed, simInterval);
-                seed = tuple._1;
+                Tuple2<S, Double> tuple = step(simInterval);
                 // Update simulation intervals
                 simulatedInterval += tuple._2;
                 // Computes the elapsed time of the process step
@@ -204,8 +433,9 @@ public class SimulatorEngineImpl<T, S> implements SimulatorEngine<T, S> {
                 // Event generation timeout
                 double currentSpeed = simulatedInterval / currentEventInterval * NANOSPS;
                 // Event time out
-                emitEvent(emit.apply(seed));
+                emitEvent();
                 emitSpeed(currentSpeed);
+                emitMetrics(System.nanoTime());
                 lastEvent = now;
                 simulatedInterval = 0;
             }
@@ -217,10 +447,7 @@ public class SimulatorEngineImpl<T, S> implements SimulatorEngine<T, S> {
     public Single<S> pushSeed(S seed) {
         requireNonNull(seed);
         SingleSubject<S> result = SingleSubject.create();
-        queue.offer(new ProcessRequest(e -> seed, result));
-        if (status.equals(Status.IDLE)) {
-            deque();
-        }
+        offer(new ProcessRequest(e -> seed, result));
         return result;
     }
 
@@ -228,10 +455,21 @@ public class SimulatorEngineImpl<T, S> implements SimulatorEngine<T, S> {
     public Single<S> request(UnaryOperator<S> transition) {
         requireNonNull(transition);
         SingleSubject<S> result = SingleSubject.create();
-        queue.offer(new ProcessRequest(transition, result));
-        if (status == Status.IDLE) {
-            deque();
-        }
+        offer(new ProcessRequest(transition, result));
+        return result;
+    }
+
+    @Override
+    public Single<S> requestAll(List<? extends UnaryOperator<S>> transitions) {
+        requireNonNull(transitions);
+        List<UnaryOperator<S>> composed = List.copyOf(transitions);
+        SingleSubject<S> result = SingleSubject.create();
+        offer(new ProcessRequest(seed -> {
+            for (UnaryOperator<S> transition : composed) {
+                seed = transition.apply(seed);
+            }
+            return seed;
+        }, result));
         return result;
     }
 
@@ -242,6 +480,36 @@ public class SimulatorEngineImpl<T, S> implements SimulatorEngine<T, S> {
         return this;
     }
 
+    /**
+     * Returns the engine after setting the fixed step mode
+     *
+     * @param step            the fixed simulation step or zero for variable step
+     * @param maxCatchUpSteps the maximum number of steps per cycle to catch up the elapsed time
+     */
+    public SimulatorEngineImpl<T, S> setFixedStep(Duration step, int maxCatchUpSteps) {
+        requireNonNull(step);
+        if (step.isNegative()) {
+            throw new IllegalArgumentException("Step must be non negative: " + step);
+        }
+        if (maxCatchUpSteps < 1) {
+            throw new IllegalArgumentException("Max catch up steps must be positive: " + maxCatchUpSteps);
+        }
+        this.fixedStep = (double) step.toNanos() / NANOSPS;
+        this.maxCatchUpSteps = maxCatchUpSteps;
+        return this;
+    }
+
+    /**
+     * Returns the engine after setting the interval between metrics reports
+     *
+     * @param interval the interval
+     */
+    public SimulatorEngineImpl<T, S> setMetricsInterval(Duration interval) {
+        requireNonNull(interval);
+        metricsInterval = interval.toNanos();
+        return this;
+    }
+
     @Override
     public SimulatorEngineImpl<T, S> setOnEvent(Consumer<T> onEvent) {
         requireNonNull(onEvent);
@@ -249,6 +517,20 @@ public class SimulatorEngineImpl<T, S> implements SimulatorEngine<T, S> {
         return this;
     }
 
+    /**
+     * Returns the engine after setting the metrics consumer.
+     * <p>
+     * The metrics are emitted with the events at most once every metrics interval.
+     * </p>
+     *
+     * @param onMetrics the metrics consumer
+     */
+    public SimulatorEngineImpl<T, S> setOnMetrics(Consumer<EngineMetrics> onMetrics) {
+        requireNonNull(onMetrics);
+        this.onMetrics = onMetrics;
+        return this;
+    }
+
     @Override
     public SimulatorEngineImpl<T, S> setOnSpeed(DoubleConsumer onSpeed) {
         requireNonNull(onSpeed);
@@ -256,16 +538,27 @@ public class SimulatorEngineImpl<T, S> implements SimulatorEngine<T, S> {
         return this;
     }
 
+    /**
+     * Returns the engine after setting the step report consumer.
+     * <p>
+     * The step report is emitted with the events in fixed step mode.
+     * </p>
+     *
+     * @param onStepReport the step report consumer
+     */
+    public SimulatorEngineImpl<T, S> setOnStepReport(Consumer<StepReport> onStepReport) {
+        requireNonNull(onStepReport);
+        this.onStepReport = onStepReport;
+        return this;
+    }
+
     @Override
     public Single<S> setSpeed(double speed) {
         SingleSubject<S> result = SingleSubject.create();
-        queue.offer(new ProcessRequest(e -> {
+        offer(new ProcessRequest(e -> {
             this.speed = speed;
             return e;
-        }, result));
-        if (status == Status.IDLE) {
-            deque();
-        }
+        }, result, SPEED_KEY));
         return result;
     }
 
@@ -296,23 +589,27 @@ public class SimulatorEngineImpl<T, S> implements SimulatorEngine<T, S> {
 
     void startProcess() {
         logger.debug("Simulation started.");
+        thread = Thread.currentThread();
+        resetMetrics(System.nanoTime(), allocatedBytes());
         // cumulative simulation time
         deque();
         // Last event instance
-        processCycle();
+        if (fixedStep > 0) {
+            processFixedCycle();
+        } else {
+            processCycle();
+        }
+        thread = null;
     }
 
     @Override
     public Single<S> stop() {
         logger.debug("Stopping simulation ...");
         SingleSubject<S> result = SingleSubject.create();
-        queue.offer(new ProcessRequest(e -> {
+        offer(new ProcessRequest(e -> {
             status = Status.IDLE;
             return e;
         }, result));
-        if (status == Status.IDLE) {
-            deque();
-        }
         return result;
     }
 
@@ -323,13 +620,78 @@ public class SimulatorEngineImpl<T, S> implements SimulatorEngine<T, S> {
         IDLE, ACTIVE
     }
 
+    /**
+     * The report of the simulation steps between two events in fixed step mode
+     */
+    public static class StepReport {
+        private final long steps;
+        private final long mergedSteps;
+        private final long droppedSteps;
+
+        /**
+         * Creates the step report
+         *
+         * @param steps        the number of computed steps
+         * @param mergedSteps  the number of steps computed back to back to catch up the elapsed time
+         * @param droppedSteps the number of steps dropped by exceeding the catch-up bound
+         */
+        public StepReport(long steps, long mergedSteps, long droppedSteps) {
+            this.steps = steps;
+            this.mergedSteps = mergedSteps;
+            this.droppedSteps = droppedSteps;
+        }
+
+        /**
+         * Returns the number of steps dropped by exceeding the catch-up bound
+         */
+        public long getDroppedSteps() {
+            return droppedSteps;
+        }
+
+        /**
+         * Returns the number of steps computed back to back to catch up the elapsed time
+         */
+        public long getMergedSteps() {
+            return mergedSteps;
+        }
+
+        /**
+         * Returns the number of computed steps
+         */
+        public long getSteps() {
+            return steps;
+        }
+
+        @Override
+        public String toString() {
+            return new StringJoiner(", ", StepReport.class.getSimpleName() + "[", "]")
+                    .add("steps=" + steps)
+                    .add("mergedSteps=" + mergedSteps)
+                    .add("droppedSteps=" + droppedSteps)
+                    .toString();
+        }
+    }
+
     class ProcessRequest {
         final UnaryOperator<S> transition;
         final SingleSubject<S> result;
+        final Object key;
 
         ProcessRequest(UnaryOperator<S> transition, SingleSubject<S> result) {
+            this(transition, result, null);
+        }
+
+        /**
+         * Creates the request
+         *
+         * @param transition the transition
+         * @param result     the result
+         * @param key        the coalescing key or null if not coalescing
+         */
+        ProcessRequest(UnaryOperator<S> transition, SingleSubject<S> result, Object key) {
             this.transition = transition;
             this.result = result;
+            this.key = key;
         }
     }
 
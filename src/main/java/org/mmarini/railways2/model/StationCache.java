@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.mmarini.ChannelInput;
+import org.mmarini.ChannelOutput;
+import org.mmarini.railways2.model.blocks.BlockBuilder;
+import org.mmarini.railways2.model.blocks.StationDef;
+import org.mmarini.railways2.model.geometry.*;
+import org.mmarini.railways2.model.routes.*;
+import org.mmarini.yaml.schema.Locator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.geom.Rectangle2D;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static org.mmarini.yaml.Utils.objectMapper;
+
+/**
+ * Caches the compiled stations on disk.
+ * <p>
+ * The compiled station (station map and initial routes) is keyed by the content hash of the station yaml
+ * so any change of the station definition produces a new entry.
+ * The cache files are read through memory mapped files and decoded without building the station definition.
+ * A missing or invalid cache file is replaced by building the station definition.
+ * </p>
+ */
+public class StationCache {
+    public static final int MAGIC = 0x52575343;
+    public static final short VERSION = 1;
+    public static final String CACHE_SUFFIX = ".station";
+    private static final byte ENTRY = 1;
+    private static final byte EXIT = 2;
+    private static final byte JUNCTION = 3;
+    private static final byte SIGNAL = 4;
+    private static final byte SWITCH = 5;
+    private static final byte DOUBLE_SLIP_SWITCH = 6;
+    private static final byte CROSS = 7;
+    private static final byte DEAD_END = 8;
+    private static final Logger logger = LoggerFactory.getLogger(StationCache.class);
+
+    /**
+     * Returns the station cache in the user railways directory
+     */
+    public static StationCache create() {
+        return create(Path.of(System.getProperty("user.home"), ".railways", "cache"));
+    }
+
+    /**
+     * Returns the station cache
+     *
+     * @param directory the cache directory
+     */
+    public static StationCache create(Path directory) {
+        return new StationCache(directory);
+    }
+
+    /**
+     * Returns the compiled station decoded from the input
+     *
+     * @param in the input
+     * @throws IOException              in case of error
+     * @throws IllegalArgumentException in case of invalid data
+     */
+    static CompiledStation decode(ChannelInput in) throws IOException {
+        try {
+            readHeader(in);
+            StationMap stationMap = StationMapCodec.read(in);
+            int noRoutes = in.getInt();
+            List<Route> routes = new ArrayList<>(noRoutes);
+            for (int i = 0; i < noRoutes; i++) {
+                byte kind = in.getByte();
+                int noNodes = in.getByte();
+                Node[] nodes = new Node[noNodes];
+                for (int j = 0; j < noNodes; j++) {
+                    nodes[j] = stationMap.getNode(in.getString());
+                }
+                Function<Node[], ? extends Route> builder;
+                switch (kind) {
+                    case ENTRY:
+                        builder = Entry::create;
+                        break;
+                    case EXIT:
+                        builder = Exit::create;
+                        break;
+                    case JUNCTION:
+                        builder = Junction::create;
+                        break;
+                    case SIGNAL:
+                        int noLocks = in.getByte();
+                        Direction[] locks = new Direction[noLocks];
+                        for (int j = 0; j < noLocks; j++) {
+                            locks[j] = stationMap.getEdge(in.getString()).getDirection(nodes[0]);
+                        }
+                        builder = Signal.createLocks(locks);
+                        break;
+                    case SWITCH:
+                        builder = Switch.create(in.getByte() != 0);
+                        break;
+                    case DOUBLE_SLIP_SWITCH:
+                        builder = DoubleSlipSwitch.create(in.getByte() != 0);
+                        break;
+                    case CROSS:
+                        builder = CrossRoute::create;
+                        break;
+                    case DEAD_END:
+                        builder = DeadEnd::create;
+                        break;
+                    default:
+                        throw new IllegalArgumentException(format("Invalid route kind %d", kind));
+                }
+                routes.add(builder.apply(nodes));
+            }
+            return new CompiledStation(stationMap, routes);
+        } catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Invalid station cache", e);
+        }
+    }
+
+    /**
+     * Writes the compiled station
+     *
+     * @param station the compiled station
+     * @param out     the output
+     * @throws IOException in case of error
+     */
+    static void encode(CompiledStation station, ChannelOutput out) throws IOException {
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+        StationMapCodec.write(station.getStationMap(), out);
+        List<Route> routes = station.getRoutes();
+        out.putInt(routes.size());
+        for (Route route : routes) {
+            byte kind = route instanceof Entry ? ENTRY
+                    : route instanceof Exit ? EXIT
+                    : route instanceof Junction ? JUNCTION
+                    : route instanceof Signal ? SIGNAL
+                    : route instanceof Switch ? SWITCH
+                    : route instanceof DoubleSlipSwitch ? DOUBLE_SLIP_SWITCH
+                    : route instanceof CrossRoute ? CROSS
+                    : route instanceof DeadEnd ? DEAD_END
+                    : 0;
+            if (kind == 0) {
+                throw new IllegalArgumentException(format("Unsupported route %s", route.getId()));
+            }
+            out.putByte(kind);
+            List<Node> nodes = route.getNodes();
+            out.putByte(nodes.size());
+            for (Node node : nodes) {
+                out.putString(node.getId());
+            }
+            if (route instanceof Signal) {
+                List<Direction> locks = StationStatusCodec.getLocks((Signal) route);
+                out.putByte(locks.size());
+                for (Direction lock : locks) {
+                    out.putString(lock.getEdge().getId());
+                }
+            } else if (route instanceof Switch) {
+                out.putByte(((Switch) route).isThrough() ? 1 : 0);
+            } else if (route instanceof DoubleSlipSwitch) {
+                out.putByte(((DoubleSlipSwitch) route).isThrough() ? 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * Returns the hexadecimal SHA-256 hash of the station yaml and cache version
+     *
+     * @param yaml the station yaml
+     */
+    static String hash(byte[] yaml) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((byte) (VERSION >> 8));
+            digest.update((byte) VERSION);
+            StringBuilder result = new StringBuilder();
+            for (byte b : digest.digest(yaml)) {
+                result.append(format("%02x", b));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the input positioned after the valid header
+     *
+     * @param in the input
+     * @throws IOException              in case of error
+     * @throws IllegalArgumentException in case of invalid header
+     */
+    private static ChannelInput readHeader(ChannelInput in) throws IOException {
+        int magic = in.getInt();
+        if (magic != MAGIC) {
+            throw new IllegalArgumentException(format("Invalid station cache magic number %08x", magic));
+        }
+        short version = in.getShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException(format("Unsupported station cache version %d", version));
+        }
+        return in;
+    }
+
+    /**
+     * Returns the compiled station read from a memory mapped file
+     *
+     * @param file the file
+     * @throws IOException              in case of error
+     * @throws IllegalArgumentException in case of invalid cache file
+     */
+    static CompiledStation read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return decode(new ChannelInput(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+        }
+    }
+
+    private final Path directory;
+
+    /**
+     * Creates the station cache
+     *
+     * @param directory the cache directory
+     */
+    protected StationCache(Path directory) {
+        this.directory = requireNonNull(directory);
+    }
+
+    /**
+     * Returns the compiled station built from the station yaml
+     *
+     * @param yaml the station yaml
+     * @throws IOException in case of error
+     */
+    private CompiledStation build(byte[] yaml) throws IOException {
+        StationDef stationDef = StationDef.create(objectMapper.readTree(yaml), Locator.root());
+        BlockBuilder builder = new BlockBuilder(stationDef);
+        return new CompiledStation(builder.buildStationMap(), builder.buildRoutes());
+    }
+
+    /**
+     * Returns the cache file of the station yaml
+     *
+     * @param yaml the station yaml
+     */
+    public Path getFile(byte[] yaml) {
+        return getFile(hash(yaml));
+    }
+
+    /**
+     * Returns the cache file of the station yaml hash
+     *
+     * @param hash the station yaml hash
+     */
+    public Path getFile(String hash) {
+        return directory.resolve(hash + CACHE_SUFFIX);
+    }
+
+    /**
+     * Returns the station bounds of a cached station or empty if the station is not cached
+     * <p>
+     * Only the head of the cache file is read.
+     * </p>
+     *
+     * @param hash the station yaml hash
+     */
+    public Optional<Rectangle2D> readBounds(String hash) {
+        Path file = getFile(hash);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return Optional.of(StationMapCodec.readBounds(readHeader(new ChannelInput(buffer))));
+        } catch (IOException | IllegalArgumentException e) {
+            logger.atWarn().setCause(e).log("Invalid station cache {}", file);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the compiled station of the station yaml
+     * <p>
+     * The station is read from the cache or built and written to the cache if not present.
+     * </p>
+     *
+     * @param yaml the station yaml
+     * @throws IOException in case of error reading the station yaml
+     */
+    public CompiledStation load(byte[] yaml) throws IOException {
+        Path file = getFile(yaml);
+        if (Files.isRegularFile(file)) {
+            try {
+                long start = System.nanoTime();
+                CompiledStation result = read(file);
+                logger.atDebug().log("Read station {} from cache in {} s", result.getId(), (System.nanoTime() - start) * 1e-9);
+                return result;
+            } catch (IOException | IllegalArgumentException e) {
+                logger.atWarn().setCause(e).log("Invalid station cache {}", file);
+            }
+        }
+        CompiledStation result = build(yaml);
+        try {
+            write(result, file);
+        } catch (IOException e) {
+            logger.atWarn().setCause(e).log("Unable to write station cache {}", file);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the compiled station of the station resource
+     *
+     * @param resource the resource name
+     * @throws IOException in case of error
+     */
+    public CompiledStation loadResource(String resource) throws IOException {
+        try (InputStream in = StationCache.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new FileNotFoundException(format("Resource \"%s\" not found", resource));
+            }
+            return load(in.readAllBytes());
+        }
+    }
+
+    /**
+     * Writes the compiled station to the cache file through a temporary file
+     *
+     * @param station the compiled station
+     * @param file    the cache file
+     * @throws IOException in case of error
+     */
+    private void write(CompiledStation station, Path file) throws IOException {
+        CheckpointService.writeAtomically(file, channel -> {
+            ChannelOutput out = new ChannelOutput(channel);
+            encode(station, out);
+            out.flush();
+        });
+        logger.atDebug().log("Written station {} cache {}", station.getId(), file);
+    }
+}
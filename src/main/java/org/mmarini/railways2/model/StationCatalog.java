@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.mmarini.Tuple2;
+import org.mmarini.railways2.model.blocks.Wayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static org.mmarini.yaml.Utils.objectMapper;
+
+/**
+ * The catalog of the available stations.
+ * <p>
+ * The stations are the built-in resources and the station files (*.station.yml) in the user station directory.
+ * The catalog lists the stations by scanning the station yaml with a streaming parser
+ * to read only the metadata (name, orientation, blocks); the metadata are cached and
+ * the user station files are scanned again only when changed.
+ * The stations are built only when loaded, through the station cache.
+ * </p>
+ */
+public class StationCatalog {
+    public static final List<String> STATION_RESOURCES = List.of(
+            "/stations/downville.station.yml",
+            "/stations/jackville.station.yml"
+    );
+    public static final String STATION_SUFFIX = ".station.yml";
+    private static final Set<String> WAYOUT_CLASSES = Set.of(Wayout.class.getName());
+    private static final Logger logger = LoggerFactory.getLogger(StationCatalog.class);
+
+    /**
+     * Returns the catalog of built-in stations and user stations in the user railways directory
+     */
+    public static StationCatalog create() {
+        return create(STATION_RESOURCES, Path.of(System.getProperty("user.home"), ".railways", "stations"),
+                StationCache.create());
+    }
+
+    /**
+     * Returns the catalog
+     *
+     * @param resources     the station resources
+     * @param userDirectory the user station directory
+     * @param cache         the station cache
+     */
+    public static StationCatalog create(List<String> resources, Path userDirectory, StationCache cache) {
+        return new StationCatalog(resources, userDirectory, cache);
+    }
+
+    /**
+     * Returns the content of resource
+     *
+     * @param resource the resource name
+     * @throws IOException in case of error
+     */
+    private static byte[] readResource(String resource) throws IOException {
+        try (InputStream in = StationCatalog.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new FileNotFoundException(format("Resource \"%s\" not found", resource));
+            }
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Returns the station metadata scanning the station yaml
+     * <p>
+     * The yaml is read by streaming parser without building the document tree
+     * and without validating the block definitions.
+     * </p>
+     *
+     * @param source the station source
+     * @param yaml   the station yaml
+     * @throws IOException              in case of error
+     * @throws IllegalArgumentException in case of missing station name
+     */
+    static StationInfo scan(String source, byte[] yaml) throws IOException {
+        String id = null;
+        int orientation = 0;
+        int numBlocks = 0;
+        int numWayouts = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(yaml)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException(format("Station %s must be an object", source));
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("name".equals(field) && value.isScalarValue()) {
+                    id = parser.getText();
+                } else if ("orientation".equals(field) && value.isNumeric()) {
+                    orientation = parser.getIntValue();
+                } else if ("blocks".equals(field) && value == JsonToken.START_OBJECT) {
+                    // Scans the blocks reading only the block class
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        numBlocks++;
+                        if (parser.nextToken() != JsonToken.START_OBJECT) {
+                            parser.skipChildren();
+                            continue;
+                        }
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String blockField = parser.getCurrentName();
+                            JsonToken blockValue = parser.nextToken();
+                            if ("class".equals(blockField) && blockValue.isScalarValue()
+                                    && WAYOUT_CLASSES.contains(parser.getText())) {
+                                numWayouts++;
+                            }
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (id == null) {
+            throw new IllegalArgumentException(format("Missing station name in %s", source));
+        }
+        return new StationInfo(source, StationCache.hash(yaml), id, orientation, numBlocks, numWayouts, numWayouts, null);
+    }
+
+    private final List<String> resources;
+    private final Path userDirectory;
+    private final StationCache cache;
+    private final Map<String, Tuple2<Long, StationInfo>> infoBySource;
+
+    /**
+     * Creates the catalog
+     *
+     * @param resources     the station resources
+     * @param userDirectory the user station directory
+     * @param cache         the station cache
+     */
+    protected StationCatalog(List<String> resources, Path userDirectory, StationCache cache) {
+        this.resources = requireNonNull(resources);
+        this.userDirectory = requireNonNull(userDirectory);
+        this.cache = requireNonNull(cache);
+        this.infoBySource = new HashMap<>();
+    }
+
+    /**
+     * Returns the station metadata of source
+     *
+     * @param source the station source
+     */
+    public synchronized Optional<StationInfo> getStation(String source) {
+        Tuple2<Long, StationInfo> entry = infoBySource.get(source);
+        return entry != null ? Optional.of(entry._2) : Optional.empty();
+    }
+
+    /**
+     * Returns the available stations
+     * <p>
+     * The stations that cannot be scanned are logged and skipped.
+     * </p>
+     */
+    public synchronized List<StationInfo> getStations() {
+        List<StationInfo> result = new ArrayList<>();
+        for (String resource : resources) {
+            scanSource(resource, 0, true).ifPresent(result::add);
+        }
+        for (Path file : listUserFiles()) {
+            long lastModified;
+            try {
+                lastModified = Files.getLastModifiedTime(file).toMillis();
+            } catch (IOException e) {
+                logger.atError().setCause(e).log("Read station {}", file);
+                continue;
+            }
+            scanSource(file.toString(), lastModified, false).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the station files in the user directory sorted by name
+     */
+    private List<Path> listUserFiles() {
+        if (!Files.isDirectory(userDirectory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(userDirectory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(STATION_SUFFIX))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            logger.atError().setCause(e).log("List stations {}", userDirectory);
+            return List.of();
+        }
+    }
+
+    /**
+     * Returns the compiled station of the source
+     * <p>
+     * The station is read from the station cache or built if not cached.
+     * </p>
+     *
+     * @param source the station source (resource or file path)
+     * @throws IOException in case of error
+     */
+    public CompiledStation load(String source) throws IOException {
+        CompiledStation result = cache.load(read(source));
+        synchronized (this) {
+            Tuple2<Long, StationInfo> entry = infoBySource.get(source);
+            if (entry != null) {
+                infoBySource.put(source, entry.setV2(entry._2.setBounds(result.getStationMap().getBounds())));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the content of station source
+     *
+     * @param source the station source (resource or file path)
+     * @throws IOException in case of error
+     */
+    private byte[] read(String source) throws IOException {
+        return resources.contains(source)
+                ? readResource(source)
+                : Files.readAllBytes(Path.of(source));
+    }
+
+    /**
+     * Returns the station metadata of the source scanning it if not cached or changed
+     *
+     * @param source       the source
+     * @param lastModified the last modification time of source
+     * @param resource     true if the source is a resource
+     */
+    private Optional<StationInfo> scanSource(String source, long lastModified, boolean resource) {
+        Tuple2<Long, StationInfo> entry = infoBySource.get(source);
+        if (entry != null && entry._1 == lastModified) {
+            return Optional.of(entry._2);
+        }
+        try {
+            byte[] yaml = resource ? readResource(source) : Files.readAllBytes(Path.of(source));
+            StationInfo info = scan(source, yaml);
+            info = info.setBounds(cache.readBounds(info.getHash()).orElse(null));
+            infoBySource.put(source, Tuple2.of(lastModified, info));
+            return Optional.of(info);
+        } catch (IOException | RuntimeException e) {
+            logger.atError().setCause(e).log("Read station {}", source);
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.function.UnaryOperator;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A player command on the station status.
+ * <p>
+ * The command is a value object with the command type and its arguments
+ * so that it can be recorded in the command journal and replayed.
+ * </p>
+ */
+public class StationCommand implements UnaryOperator<StationStatus> {
+    private static final StationCommand LOCK_SIGNALS = new StationCommand(Type.LOCK_SIGNALS, null, null);
+    private static final StationCommand STOP_TRAINS = new StationCommand(Type.STOP_TRAINS, null, null);
+    private static final StationCommand AUTO_LOCK = new StationCommand(Type.AUTO_LOCK, null, null);
+    private static final StationCommand MANUAL_LOCK = new StationCommand(Type.MANUAL_LOCK, null, null);
+
+    /**
+     * Returns the auto lock command
+     *
+     * @param autoLock true if auto lock
+     */
+    public static StationCommand autoLock(boolean autoLock) {
+        return autoLock ? AUTO_LOCK : MANUAL_LOCK;
+    }
+
+    /**
+     * Returns the command
+     *
+     * @param type   the type
+     * @param id     the identifier or null if not required
+     * @param edgeId the edge identifier or null if not required
+     */
+    static StationCommand create(Type type, String id, String edgeId) {
+        requireNonNull(type);
+        switch (type) {
+            case LOCK_SIGNALS:
+                return LOCK_SIGNALS;
+            case STOP_TRAINS:
+                return STOP_TRAINS;
+            case AUTO_LOCK:
+                return AUTO_LOCK;
+            case MANUAL_LOCK:
+                return MANUAL_LOCK;
+            case LOCK_SIGNAL:
+            case UNLOCK_SIGNAL:
+                return new StationCommand(type, requireNonNull(id), requireNonNull(edgeId));
+            default:
+                return new StationCommand(type, requireNonNull(id), null);
+        }
+    }
+
+    /**
+     * Returns the section lock command
+     *
+     * @param id the section identifier
+     */
+    public static StationCommand lockSection(String id) {
+        return create(Type.LOCK_SECTION, id, null);
+    }
+
+    /**
+     * Returns the signal lock command
+     *
+     * @param id     the signal identifier
+     * @param edgeId the entry edge
+     */
+    public static StationCommand lockSignal(String id, String edgeId) {
+        return create(Type.LOCK_SIGNAL, id, edgeId);
+    }
+
+    /**
+     * Returns the lock all signals command
+     */
+    public static StationCommand lockSignals() {
+        return LOCK_SIGNALS;
+    }
+
+    /**
+     * Returns the train revert command
+     *
+     * @param trainId the train identifier
+     */
+    public static StationCommand revertTrain(String trainId) {
+        return create(Type.REVERT_TRAIN, trainId, null);
+    }
+
+    /**
+     * Returns the train start command
+     *
+     * @param trainId the train identifier
+     */
+    public static StationCommand startTrain(String trainId) {
+        return create(Type.START_TRAIN, trainId, null);
+    }
+
+    /**
+     * Returns the train stop command
+     *
+     * @param trainId the train identifier
+     */
+    public static StationCommand stopTrain(String trainId) {
+        return create(Type.STOP_TRAIN, trainId, null);
+    }
+
+    /**
+     * Returns the stop all trains command
+     */
+    public static StationCommand stopTrains() {
+        return STOP_TRAINS;
+    }
+
+    /**
+     * Returns the double slip switch toggle command
+     *
+     * @param id the double slip switch identifier
+     */
+    public static StationCommand toggleDoubleSlipSwitch(String id) {
+        return create(Type.TOGGLE_DOUBLE_SLIP_SWITCH, id, null);
+    }
+
+    /**
+     * Returns the switch toggle command
+     *
+     * @param id the switch identifier
+     */
+    public static StationCommand toggleSwitch(String id) {
+        return create(Type.TOGGLE_SWITCH, id, null);
+    }
+
+    /**
+     * Returns the section unlock command
+     *
+     * @param id the section identifier
+     */
+    public static StationCommand unlockSection(String id) {
+        return create(Type.UNLOCK_SECTION, id, null);
+    }
+
+    /**
+     * Returns the signal unlock command
+     *
+     * @param id     the signal identifier
+     * @param edgeId the entry edge
+     */
+    public static StationCommand unlockSignal(String id, String edgeId) {
+        return create(Type.UNLOCK_SIGNAL, id, edgeId);
+    }
+
+    private final Type type;
+    private final String id;
+    private final String edgeId;
+
+    /**
+     * Creates the command
+     *
+     * @param type   the type
+     * @param id     the identifier or null
+     * @param edgeId the edge identifier or null
+     */
+    protected StationCommand(Type type, String id, String edgeId) {
+        this.type = type;
+        this.id = id;
+        this.edgeId = edgeId;
+    }
+
+    /**
+     * Returns the status after applying the command
+     *
+     * @param status the status
+     */
+    @Override
+    public StationStatus apply(StationStatus status) {
+        switch (type) {
+            case TOGGLE_SWITCH:
+                return status.toggleSwitch(id);
+            case TOGGLE_DOUBLE_SLIP_SWITCH:
+                return status.toggleDoubleSlipSwitch(id);
+            case LOCK_SIGNAL:
+                return status.lockSignal(id, edgeId);
+            case UNLOCK_SIGNAL:
+                return status.unlockSignal(id, edgeId);
+            case LOCK_SECTION:
+                return status.lockSection(id);
+            case UNLOCK_SECTION:
+                return status.unlockSection(id);
+            case LOCK_SIGNALS:
+                return status.lockSignals();
+            case START_TRAIN:
+                return status.startTrain(id);
+            case STOP_TRAIN:
+                return status.stopTrain(id);
+            case STOP_TRAINS:
+                return status.stopTrains();
+            case REVERT_TRAIN:
+                return status.revertTrain(id);
+            case AUTO_LOCK:
+                return status.setAutoLock(true);
+            default:
+                return status.setAutoLock(false);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StationCommand that = (StationCommand) o;
+        return type == that.type && Objects.equals(id, that.id) && Objects.equals(edgeId, that.edgeId);
+    }
+
+    /**
+     * Returns the edge identifier or null
+     */
+    public String getEdgeId() {
+        return edgeId;
+    }
+
+    /**
+     * Returns the identifier or null
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the command type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, id, edgeId);
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", StationCommand.class.getSimpleName() + "[", "]")
+                .add(type.name());
+        if (id != null) {
+            joiner.add(id);
+        }
+        if (edgeId != null) {
+            joiner.add(edgeId);
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * The command types.
+     * The ordinal is the journal code so new types must be appended.
+     */
+    public enum Type {
+        TOGGLE_SWITCH,
+        TOGGLE_DOUBLE_SLIP_SWITCH,
+        LOCK_SIGNAL,
+        UNLOCK_SIGNAL,
+        LOCK_SECTION,
+        UNLOCK_SECTION,
+        LOCK_SIGNALS,
+        START_TRAIN,
+        STOP_TRAIN,
+        STOP_TRAINS,
+        REVERT_TRAIN,
+        AUTO_LOCK,
+        MANUAL_LOCK
+    }
+}
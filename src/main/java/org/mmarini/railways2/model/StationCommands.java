@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.model;
+
+import org.mmarini.railways2.model.geometry.Direction;
+import org.mmarini.railways2.model.geometry.Edge;
+import org.mmarini.railways2.model.geometry.Node;
+import org.mmarini.railways2.model.routes.DoubleSlipSwitch;
+import org.mmarini.railways2.model.routes.Route;
+import org.mmarini.railways2.model.routes.Signal;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * A batch of player commands applied to the station status in the order they were issued.
+ * <p>
+ * The adjacent commands that commute are merged:
+ * <ul>
+ *     <li>a run of consecutive signal and section locks is applied with a single status rebuild,
+ *     the last lock or unlock of a signal entry or section wins</li>
+ *     <li>the repeated consecutive commands to the same train are applied once</li>
+ * </ul>
+ * The switch toggles and the train commands are applied one by one against the running status,
+ * so each command is checked against the effects of the previous ones.
+ * </p>
+ */
+public class StationCommands implements UnaryOperator<StationStatus> {
+    private static final String SECTION = "section";
+    private static final String SIGNAL = "signal";
+    private static final Set<StationCommand.Type> LOCK_TYPES = EnumSet.of(
+            StationCommand.Type.LOCK_SIGNAL, StationCommand.Type.UNLOCK_SIGNAL,
+            StationCommand.Type.LOCK_SECTION, StationCommand.Type.UNLOCK_SECTION,
+            StationCommand.Type.LOCK_SIGNALS);
+    private static final Set<StationCommand.Type> TRAIN_TYPES = EnumSet.of(
+            StationCommand.Type.START_TRAIN, StationCommand.Type.STOP_TRAIN,
+            StationCommand.Type.REVERT_TRAIN, StationCommand.Type.STOP_TRAINS);
+
+    /**
+     * Returns an empty batch of commands
+     */
+    public static StationCommands create() {
+        return new StationCommands();
+    }
+
+    /**
+     * Returns the status after applying a run of signal and section locks
+     *
+     * @param status the status
+     * @param run    the lock commands
+     */
+    private static StationStatus applyLocks(StationStatus status, List<StationCommand> run) {
+        // Keeps the last lock of each key in the order of the last command
+        Map<List<String>, Boolean> locks = new LinkedHashMap<>();
+        boolean allSignalsLocked = false;
+        for (StationCommand command : run) {
+            List<String> key;
+            boolean locked;
+            switch (command.getType()) {
+                case LOCK_SIGNALS:
+                    locks.clear();
+                    allSignalsLocked = true;
+                    continue;
+                case LOCK_SECTION:
+                case UNLOCK_SECTION:
+                    key = List.of(SECTION, command.getId());
+                    locked = command.getType() == StationCommand.Type.LOCK_SECTION;
+                    break;
+                default:
+                    key = List.of(SIGNAL, command.getId(), command.getEdgeId());
+                    locked = command.getType() == StationCommand.Type.LOCK_SIGNAL;
+                    break;
+            }
+            locks.remove(key);
+            locks.put(key, locked);
+        }
+        Map<Node, Signal> signals = new LinkedHashMap<>();
+        if (allSignalsLocked) {
+            for (Route route : status.getRoutes()) {
+                if (route instanceof Signal) {
+                    Signal signal = (Signal) route;
+                    signals.put(signal.getNodes().get(0), signal.setLocks(signal.getValidEntries().toArray(Direction[]::new)));
+                }
+            }
+        }
+        Function<Node, Signal> signalAt = node -> signals.containsKey(node)
+                ? signals.get(node)
+                : status.getRoute(node) instanceof Signal ? status.getRoute(node) : null;
+        for (Map.Entry<List<String>, Boolean> entry : locks.entrySet()) {
+            List<String> key = entry.getKey();
+            boolean locked = entry.getValue();
+            if (key.get(0).equals(SECTION)) {
+                status.getSection(key.get(1)).stream()
+                        .flatMap(status::getSignalEntries)
+                        .forEach(t -> {
+                            Signal signal = signalAt.apply(t._1.getNodes().get(0));
+                            signals.put(signal.getNodes().get(0), locked ? signal.lock(t._2) : signal.unlock(t._2));
+                        });
+            } else {
+                Signal signal = signalAt.apply(status.getStationMap().getNode(key.get(1)));
+                if (signal != null) {
+                    Edge edge = status.getStationMap().getEdge(key.get(2));
+                    for (Direction entryDir : signal.getValidEntries()) {
+                        if (entryDir.getEdge().equals(edge)) {
+                            signals.put(signal.getNodes().get(0), locked ? signal.lock(entryDir) : signal.unlock(entryDir));
+                        }
+                    }
+                }
+            }
+        }
+        return status.replaceRoutes(signals.values().toArray(Route[]::new));
+    }
+
+    private final List<StationCommand> commands;
+
+    /**
+     * Creates an empty batch of commands
+     */
+    protected StationCommands() {
+        this.commands = new ArrayList<>();
+    }
+
+    /**
+     * Returns the commands after adding a command
+     * <p>
+     * A train command equal to the last command is dropped.
+     * </p>
+     *
+     * @param command the command
+     */
+    public StationCommands add(StationCommand command) {
+        if (!(TRAIN_TYPES.contains(command.getType())
+                && !commands.isEmpty()
+                && commands.get(commands.size() - 1).equals(command))) {
+            commands.add(command);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the status after applying the commands
+     *
+     * @param status the status
+     */
+    @Override
+    public StationStatus apply(StationStatus status) {
+        int n = commands.size();
+        int i = 0;
+        while (i < n) {
+            StationCommand command = commands.get(i);
+            if (LOCK_TYPES.contains(command.getType())) {
+                // Merges the run of locks
+                int j = i + 1;
+                while (j < n && LOCK_TYPES.contains(commands.get(j).getType())) {
+                    j++;
+                }
+                status = applyLocks(status, commands.subList(i, j));
+                i = j;
+            } else {
+                if (command.getType() == StationCommand.Type.TOGGLE_SWITCH
+                        && status.getRoute(command.getId()) instanceof DoubleSlipSwitch) {
+                    // The switch toggle applies to the double slip switches too
+                    command = StationCommand.toggleDoubleSlipSwitch(command.getId());
+                }
+                status = command.apply(status);
+                i++;
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Returns the commands in the issue order
+     */
+    public List<StationCommand> getCommands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    /**
+     * Returns true if the batch has no commands
+     */
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    /**
+     * Returns the commands after adding the section lock
+     *
+     * @param id the section identifier
+     */
+    public StationCommands lockSection(String id) {
+        return add(StationCommand.lockSection(id));
+    }
+
+    /**
+     * Returns the commands after adding the signal lock
+     *
+     * @param id     the signal identifier
+     * @param edgeId the entry edge
+     */
+    public StationCommands lockSignal(String id, String edgeId) {
+        return add(StationCommand.lockSignal(id, edgeId));
+    }
+
+    /**
+     * Returns the commands after adding the lock of all signals.
+     */
+    public StationCommands lockSignals() {
+        return add(StationCommand.lockSignals());
+    }
+
+    /**
+     * Returns the commands after adding the train revert
+     *
+     * @param trainId the train identifier
+     */
+    public StationCommands revertTrain(String trainId) {
+        return add(StationCommand.revertTrain(trainId));
+    }
+
+    /**
+     * Returns the commands after adding the train start
+     *
+     * @param trainId the train identifier
+     */
+    public StationCommands startTrain(String trainId) {
+        return add(StationCommand.startTrain(trainId));
+    }
+
+    /**
+     * Returns the commands after adding the train stop
+     *
+     * @param trainId the train identifier
+     */
+    public StationCommands stopTrain(String trainId) {
+        return add(StationCommand.stopTrain(trainId));
+    }
+
+    /**
+     * Returns the commands after adding the stop of all trains
+     */
+    public StationCommands stopTrains() {
+        return add(StationCommand.stopTrains());
+    }
+
+    /**
+     * Returns the commands after adding the toggle of a switch or double slip switch
+     *
+     * @param id the switch identifier
+     */
+    public StationCommands toggleSwitch(String id) {
+        return add(StationCommand.toggleSwitch(id));
+    }
+
+    /**
+     * Returns the commands after adding the section unlock
+     *
+     * @param id the section identifier
+     */
+    public StationCommands unlockSection(String id) {
+        return add(StationCommand.unlockSection(id));
+    }
+
+    /**
+     * Returns the commands after adding the signal unlock
+     *
+     * @param id     the signal identifier
+     * @param edgeId the entry edge
+     */
+    public StationCommands unlockSignal(String id, String edgeId) {
+        return add(StationCommand.unlockSignal(id, edgeId));
+    }
+}
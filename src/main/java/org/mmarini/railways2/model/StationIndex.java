@@ -0,0 +1,542 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.model;
+
+import org.mmarini.PersistentMap;
+import org.mmarini.PersistentVector;
+import org.mmarini.Tuple2;
+import org.mmarini.railways2.model.geometry.Direction;
+import org.mmarini.railways2.model.geometry.Edge;
+import org.mmarini.railways2.model.geometry.Node;
+import org.mmarini.railways2.model.routes.*;
+
+import java.util.*;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Indexes the routes and the sections of a station by the station topology.
+ * <p>
+ * The index is immutable and it is shared by the station statuses.
+ * Replacing routes patches the route slots and re-walks only the sections passing through the changed routes,
+ * the other sections are carried to the new index.
+ * Route changes that do not modify the connectivity (e.g. signal locks) keep the whole section layer.
+ * The route slots are a persistent vector so replacing a route copies only the path to its slot.
+ * The index compiles the route exits to the next direction table by direction identifier,
+ * the table is patched only for the entries of routes changing the connectivity (switches).
+ * </p>
+ * <p>
+ * The section layer is kept in persistent maps with the reverse indexes from the sections to their walks
+ * and from the crossing edges to the crossing sections, so a re-walk touches only the affected entries.
+ * </p>
+ */
+class StationIndex {
+
+    /**
+     * Returns the index of routes
+     *
+     * @param topology the station topology
+     * @param routes   the routes
+     */
+    static StationIndex create(StationTopology topology, Collection<? extends Route> routes) {
+        Route[] slots = new Route[topology.getNumSlots()];
+        for (Route route : routes) {
+            slots[topology.getSlot(route.getNodes().get(0))] = route;
+        }
+        for (Route route : slots) {
+            if (route == null) {
+                throw new IllegalArgumentException("Missing routes for the station topology");
+            }
+        }
+        PersistentVector<Route> slotVector = PersistentVector.of(Arrays.asList(slots));
+        int[] nextDirections = new int[topology.getNumDirections()];
+        for (int i = 0; i < nextDirections.length; i++) {
+            nextDirections[i] = computeNextDirection(topology, slotVector, i);
+        }
+        StationIndex index = new StationIndex(topology, slotVector, nextDirections,
+                PersistentMap.empty(), PersistentMap.empty(), PersistentMap.empty(), PersistentMap.empty(),
+                PersistentMap.empty(), PersistentMap.empty(), PersistentMap.empty(), PersistentMap.empty());
+        return index.walkSections(slotVector, nextDirections, topology.getTerminalExits());
+    }
+
+    /**
+     * Returns the map with the element added to the set of key
+     *
+     * @param map     the map of sets
+     * @param key     the key
+     * @param element the element
+     * @param <K>     the type of keys
+     * @param <T>     the type of elements
+     */
+    private static <K, T> PersistentMap<K, Set<T>> addToSet(PersistentMap<K, Set<T>> map, K key, T element) {
+        Set<T> set = new HashSet<>(map.getOrDefault(key, Set.of()));
+        set.add(element);
+        return map.plus(key, set);
+    }
+
+    /**
+     * Returns the map with the element removed from the set of key
+     *
+     * @param map     the map of sets
+     * @param key     the key
+     * @param element the element
+     * @param <K>     the type of keys
+     * @param <T>     the type of elements
+     */
+    private static <K, T> PersistentMap<K, Set<T>> removeFromSet(PersistentMap<K, Set<T>> map, K key, T element) {
+        Set<T> set = map.get(key);
+        if (set == null || !set.contains(element)) {
+            return map;
+        }
+        if (set.size() == 1) {
+            return map.minus(key);
+        }
+        Set<T> newSet = new HashSet<>(set);
+        newSet.remove(element);
+        return map.plus(key, newSet);
+    }
+
+    /**
+     * Returns the identifier of next direction or -1 if none
+     *
+     * @param topology  the station topology
+     * @param slots     the route slots
+     * @param direction the direction identifier
+     */
+    private static int computeNextDirection(StationTopology topology, PersistentVector<Route> slots, int direction) {
+        int slot = topology.getDestinationSlot(direction);
+        return slot >= 0
+                ? slots.get(slot).getExit(topology.getDirection(direction))
+                .map(topology::getDirectionId)
+                .orElse(-1)
+                : -1;
+    }
+
+    /**
+     * Returns true if the routes have the same connectivity (same valid exits, same exit and crossing edges
+     * for each entry direction)
+     *
+     * @param route0 the first route
+     * @param route1 the second route
+     */
+    static boolean isSameConnectivity(Route route0, Route route1) {
+        if (route0 == route1) {
+            return true;
+        }
+        if (route0.getClass() != route1.getClass()
+                || !Set.copyOf(route0.getValidExits()).equals(Set.copyOf(route1.getValidExits()))) {
+            return false;
+        }
+        for (Node node : route1.getNodes()) {
+            for (Direction entry : node.getEntries()) {
+                if (!route0.getExit(entry).equals(route1.getExit(entry))
+                        || !Set.copyOf(route0.getCrossingEdges(entry)).equals(Set.copyOf(route1.getCrossingEdges(entry)))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private final StationTopology topology;
+    private final PersistentVector<Route> slots;
+    private final int[] nextDirections;
+    private final PersistentMap<String, Section> sectionById;
+    private final PersistentMap<Edge, Section> sectionByEdge;
+    private final PersistentMap<Section, Set<Edge>> crossingEdgesBySection;
+    private final PersistentMap<Edge, Set<Section>> sectionsByCrossingEdge;
+    private final PersistentMap<Direction, Section> sectionByWalk;
+    private final PersistentMap<Section, Direction> walkBySection;
+    private final PersistentMap<Direction, List<Node>> nodesByWalk;
+    private final PersistentMap<Node, Set<Direction>> walksByNode;
+
+    /**
+     * Creates the index
+     *
+     * @param topology               the station topology
+     * @param slots                  the routes by slot
+     * @param nextDirections         the next direction identifiers by direction identifier
+     * @param sectionById            the sections by identifier
+     * @param sectionByEdge          the section by edge
+     * @param crossingEdgesBySection the crossing edges by section
+     * @param sectionsByCrossingEdge the sections by crossing edge
+     * @param sectionByWalk          the section by walk start direction
+     * @param walkBySection          the walk start direction by section
+     * @param nodesByWalk            the visited nodes by walk start direction
+     * @param walksByNode            the walk start directions by visited node
+     */
+    private StationIndex(StationTopology topology, PersistentVector<Route> slots, int[] nextDirections,
+                         PersistentMap<String, Section> sectionById, PersistentMap<Edge, Section> sectionByEdge,
+                         PersistentMap<Section, Set<Edge>> crossingEdgesBySection,
+                         PersistentMap<Edge, Set<Section>> sectionsByCrossingEdge,
+                         PersistentMap<Direction, Section> sectionByWalk, PersistentMap<Section, Direction> walkBySection,
+                         PersistentMap<Direction, List<Node>> nodesByWalk, PersistentMap<Node, Set<Direction>> walksByNode) {
+        this.topology = requireNonNull(topology);
+        this.slots = requireNonNull(slots);
+        this.nextDirections = requireNonNull(nextDirections);
+        this.sectionById = requireNonNull(sectionById);
+        this.sectionByEdge = requireNonNull(sectionByEdge);
+        this.crossingEdgesBySection = requireNonNull(crossingEdgesBySection);
+        this.sectionsByCrossingEdge = requireNonNull(sectionsByCrossingEdge);
+        this.sectionByWalk = requireNonNull(sectionByWalk);
+        this.walkBySection = requireNonNull(walkBySection);
+        this.nodesByWalk = requireNonNull(nodesByWalk);
+        this.walksByNode = requireNonNull(walksByNode);
+    }
+
+    /**
+     * Returns the section from a given direction with its crossing edges
+     *
+     * @param direction the direction
+     */
+    Optional<Tuple2<Section, Set<Edge>>> findSection(Direction direction) {
+        return findSection(slots, nextDirections, direction, new ArrayList<>());
+    }
+
+    /**
+     * Returns the section from a given direction with its crossing edges
+     *
+     * @param slots          the route slots
+     * @param nextDirections the next direction identifiers
+     * @param direction      the direction
+     * @param nodes          the visited nodes (output)
+     */
+    private Optional<Tuple2<Section, Set<Edge>>> findSection(PersistentVector<Route> slots, int[] nextDirections,
+                                                             Direction direction, List<Node> nodes) {
+        Route term = getRoute(slots, direction.getOrigin());
+        if (!(term instanceof SectionTerminal)) {
+            throw new IllegalArgumentException(format("Route %s is not a section terminal", term.getId()));
+        }
+        nodes.add(direction.getOrigin());
+        List<Edge> edges = new ArrayList<>();
+        Set<Edge> crossingEdges = new HashSet<>();
+        Direction terminal0 = direction;
+        for (; ; ) {
+            edges.add(direction.getEdge());
+            Node destination = direction.getDestination();
+            nodes.add(destination);
+            term = getRoute(slots, destination);
+            if (term instanceof SectionTerminal) {
+                return Optional.of(
+                        Tuple2.of(
+                                Section.create(terminal0, direction.opposite(), edges),
+                                crossingEdges));
+            }
+            crossingEdges.addAll(term.getCrossingEdges(direction));
+            int next = nextDirections[topology.getDirectionId(direction)];
+            if (next < 0) {
+                return Optional.empty();
+            }
+            direction = topology.getDirection(next);
+        }
+    }
+
+    /**
+     * Returns the list of entries
+     */
+    List<Entry> getEntries() {
+        return topology.getEntries();
+    }
+
+    /**
+     * Returns the list of exits
+     */
+    List<Exit> getExits() {
+        return topology.getExits();
+    }
+
+    /**
+     * Returns the identifier of next direction or -1 if none
+     *
+     * @param direction the direction identifier
+     */
+    int getNextDirection(int direction) {
+        return nextDirections[direction];
+    }
+
+    /**
+     * Returns the route of the destination node of a direction
+     *
+     * @param direction the direction identifier
+     */
+    Route getDestinationRoute(int direction) {
+        return slots.get(topology.getDestinationSlot(direction));
+    }
+
+    /**
+     * Returns the route of a node
+     *
+     * @param node the node
+     * @throws IllegalArgumentException if the route does not exist
+     */
+    Route getRoute(Node node) {
+        return getRoute(slots, node);
+    }
+
+    /**
+     * Returns the route of a node in the given slots
+     *
+     * @param slots the route slots
+     * @param node  the node
+     */
+    private Route getRoute(PersistentVector<Route> slots, Node node) {
+        return slots.get(topology.getSlot(node));
+    }
+
+    /**
+     * Returns the routes
+     */
+    List<Route> getRoutes() {
+        return slots;
+    }
+
+    /**
+     * Returns the station topology
+     */
+    StationTopology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Returns the section by identifier
+     *
+     * @param id the section identifier
+     */
+    Optional<Section> getSection(String id) {
+        return Optional.ofNullable(sectionById.get(id));
+    }
+
+    /**
+     * Returns the section containing the edge
+     *
+     * @param edge the edge
+     */
+    Optional<Section> getSection(Edge edge) {
+        return Optional.ofNullable(sectionByEdge.get(edge));
+    }
+
+    /**
+     * Returns the section by edge
+     */
+    Map<Edge, Section> getSectionByEdge() {
+        return sectionByEdge;
+    }
+
+    /**
+     * Returns the sections
+     */
+    Collection<Section> getSections() {
+        return sectionById.values();
+    }
+
+    /**
+     * Returns true if the index has the same sections of the other index
+     *
+     * @param other the other index
+     */
+    boolean hasSameSections(StationIndex other) {
+        return sectionByEdge == other.sectionByEdge;
+    }
+
+    /**
+     * Returns the index with changed routes.
+     * <p>
+     * The routes replace the current routes with the same nodes.
+     * </p>
+     *
+     * @param changedRoutes the changed routes
+     */
+    StationIndex replaceRoutes(Collection<? extends Route> changedRoutes) {
+        PersistentVector<Route> newSlots = slots;
+        Set<Node> changedNodes = new HashSet<>();
+        for (Route route : changedRoutes) {
+            int slot = topology.getSlot(route.getNodes().get(0));
+            Route oldRoute = newSlots.get(slot);
+            newSlots = newSlots.replace(slot, route);
+            if (!isSameConnectivity(oldRoute, route)) {
+                changedNodes.addAll(route.getNodes());
+            }
+        }
+        if (changedNodes.isEmpty()) {
+            // Connectivity not changed: carries the section layer
+            return new StationIndex(topology, newSlots, nextDirections,
+                    sectionById, sectionByEdge, crossingEdgesBySection, sectionsByCrossingEdge,
+                    sectionByWalk, walkBySection, nodesByWalk, walksByNode);
+        }
+        // Patches the next directions entering the changed nodes
+        int[] newNextDirections = nextDirections.clone();
+        for (Node node : changedNodes) {
+            for (Direction entry : node.getEntries()) {
+                int id = topology.getDirectionId(entry);
+                newNextDirections[id] = computeNextDirection(topology, newSlots, id);
+            }
+        }
+        // Finds the walks through the changed nodes and the sections found by them
+        Set<Direction> fringe = new HashSet<>();
+        for (Node node : changedNodes) {
+            for (Direction start : walksByNode.getOrDefault(node, Set.of())) {
+                fringe.add(start);
+                Section section = sectionByWalk.get(start);
+                if (section != null) {
+                    fringe.add(section.getExit0());
+                    fringe.add(section.getExit1());
+                }
+            }
+        }
+        StationIndex index = new StationIndex(topology, newSlots, newNextDirections,
+                sectionById, sectionByEdge, crossingEdgesBySection, sectionsByCrossingEdge,
+                sectionByWalk, walkBySection, nodesByWalk, walksByNode);
+        return index.walkSections(newSlots, newNextDirections, fringe);
+    }
+
+    /**
+     * Returns the index with the sections re-walked from the fringe directions
+     *
+     * @param slots          the route slots
+     * @param nextDirections the next direction identifiers
+     * @param fringe         the start directions
+     */
+    private StationIndex walkSections(PersistentVector<Route> slots, int[] nextDirections, Set<Direction> fringe) {
+        PersistentMap<String, Section> newSectionById = sectionById;
+        PersistentMap<Edge, Section> newSectionByEdge = sectionByEdge;
+        PersistentMap<Section, Set<Edge>> newCrossingEdgesBySection = crossingEdgesBySection;
+        PersistentMap<Edge, Set<Section>> newSectionsByCrossingEdge = sectionsByCrossingEdge;
+        PersistentMap<Direction, Section> newSectionByWalk = sectionByWalk;
+        PersistentMap<Section, Direction> newWalkBySection = walkBySection;
+        PersistentMap<Direction, List<Node>> newNodesByWalk = nodesByWalk;
+        PersistentMap<Node, Set<Direction>> newWalksByNode = walksByNode;
+        Set<Edge> changedEdges = new HashSet<>();
+
+        // Removes the previous walks and their sections
+        for (Direction start : fringe) {
+            Section section = newSectionByWalk.get(start);
+            if (section != null) {
+                newSectionByWalk = newSectionByWalk.minus(start);
+                if (newSectionById.containsKey(section.getId())) {
+                    newSectionById = newSectionById.minus(section.getId());
+                    newWalkBySection = newWalkBySection.minus(section);
+                    for (Edge edge : newCrossingEdgesBySection.get(section)) {
+                        newSectionsByCrossingEdge = removeFromSet(newSectionsByCrossingEdge, edge, section);
+                    }
+                    newCrossingEdgesBySection = newCrossingEdgesBySection.minus(section);
+                    for (Edge edge : section.getEdges()) {
+                        newSectionByEdge = newSectionByEdge.minus(edge);
+                        changedEdges.add(edge);
+                    }
+                }
+            }
+            List<Node> nodes = newNodesByWalk.get(start);
+            if (nodes != null) {
+                newNodesByWalk = newNodesByWalk.minus(start);
+                for (Node node : nodes) {
+                    newWalksByNode = removeFromSet(newWalksByNode, node, start);
+                }
+            }
+        }
+
+        // Walks the fringe
+        Set<Direction> pending = new HashSet<>(fringe);
+        List<Section> addedSections = new ArrayList<>();
+        while (!pending.isEmpty()) {
+            // Get a direction from fringe and find the section from it
+            Direction start = pending.iterator().next();
+            pending.remove(start);
+            List<Node> nodes = new ArrayList<>();
+            Optional<Tuple2<Section, Set<Edge>>> found = findSection(slots, nextDirections, start, nodes);
+            if (found.isPresent()) {
+                Section section = found.get()._1;
+                Set<Edge> crossingEdges = found.get()._2;
+                pending.remove(section.getExit0());
+                pending.remove(section.getExit1());
+                addedSections.add(section);
+                newSectionById = newSectionById.plus(section.getId(), section);
+                newCrossingEdgesBySection = newCrossingEdgesBySection.plus(section, crossingEdges);
+                for (Edge edge : crossingEdges) {
+                    newSectionsByCrossingEdge = addToSet(newSectionsByCrossingEdge, edge, section);
+                }
+                newSectionByWalk = newSectionByWalk.plus(start, section);
+                newWalkBySection = newWalkBySection.plus(section, start);
+                for (Edge edge : section.getEdges()) {
+                    newSectionByEdge = newSectionByEdge.plus(edge, section);
+                    changedEdges.add(edge);
+                }
+            }
+            newNodesByWalk = newNodesByWalk.plus(start, nodes);
+            for (Node node : nodes) {
+                newWalksByNode = addToSet(newWalksByNode, node, start);
+            }
+        }
+
+        // Replaces the sections crossing the changed edges with new instances to leave the shared ones untouched
+        Set<Section> crossedSections = new HashSet<>();
+        for (Edge edge : changedEdges) {
+            for (Section section : newSectionsByCrossingEdge.getOrDefault(edge, Set.of())) {
+                if (!addedSections.contains(section)) {
+                    crossedSections.add(section);
+                }
+            }
+        }
+        List<Section> refreshedSections = new ArrayList<>(addedSections);
+        for (Section section : crossedSections) {
+            Section newSection = Section.create(section.getExit0(), section.getExit1(), section.getEdges());
+            refreshedSections.add(newSection);
+            newSectionById = newSectionById.plus(newSection.getId(), newSection);
+            Set<Edge> crossingEdges = newCrossingEdgesBySection.get(section);
+            newCrossingEdgesBySection = newCrossingEdgesBySection.minus(section).plus(newSection, crossingEdges);
+            for (Edge edge : crossingEdges) {
+                newSectionsByCrossingEdge = addToSet(
+                        removeFromSet(newSectionsByCrossingEdge, edge, section), edge, newSection);
+            }
+            for (Edge edge : newSection.getEdges()) {
+                newSectionByEdge = newSectionByEdge.plus(edge, newSection);
+            }
+            Direction walk = newWalkBySection.get(section);
+            if (walk != null) {
+                newSectionByWalk = newSectionByWalk.plus(walk, newSection);
+                newWalkBySection = newWalkBySection.minus(section).plus(newSection, walk);
+            }
+        }
+
+        // Computes and sets crossing sections
+        for (Section section : refreshedSections) {
+            Set<Section> crossingSections = new HashSet<>();
+            for (Edge edge : newCrossingEdgesBySection.get(section)) {
+                Section crossingSection = newSectionByEdge.get(edge);
+                if (crossingSection != null) {
+                    crossingSections.add(crossingSection);
+                }
+            }
+            section.setCrossingSections(crossingSections);
+        }
+        return new StationIndex(topology, slots, nextDirections,
+                newSectionById, newSectionByEdge, newCrossingEdgesBySection, newSectionsByCrossingEdge,
+                newSectionByWalk, newWalkBySection, newNodesByWalk, newWalksByNode);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Optional;
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The station metadata read from the header of station definition without building the station.
+ * <p>
+ * The bounds are available only if the station has been already compiled in the station cache.
+ * </p>
+ */
+public class StationInfo {
+    private final String source;
+    private final String hash;
+    private final String id;
+    private final int orientation;
+    private final int numBlocks;
+    private final int numEntries;
+    private final int numExits;
+    private final Rectangle2D bounds;
+
+    /**
+     * Creates the station metadata
+     *
+     * @param source      the station source (resource name or file path)
+     * @param hash        the content hash of station yaml
+     * @param id          the station identifier
+     * @param orientation the station orientation (DEG)
+     * @param numBlocks   the number of blocks
+     * @param numEntries  the number of entries
+     * @param numExits    the number of exits
+     * @param bounds      the station bounds or null if unknown
+     */
+    public StationInfo(String source, String hash, String id, int orientation, int numBlocks, int numEntries, int numExits, Rectangle2D bounds) {
+        this.source = requireNonNull(source);
+        this.hash = requireNonNull(hash);
+        this.id = requireNonNull(id);
+        this.orientation = orientation;
+        this.numBlocks = numBlocks;
+        this.numEntries = numEntries;
+        this.numExits = numExits;
+        this.bounds = bounds;
+    }
+
+    /**
+     * Returns the station bounds if the station has been compiled
+     */
+    public Optional<Rectangle2D> getBounds() {
+        return Optional.ofNullable(bounds);
+    }
+
+    /**
+     * Returns the content hash of station yaml
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns the station identifier
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the number of blocks
+     */
+    public int getNumBlocks() {
+        return numBlocks;
+    }
+
+    /**
+     * Returns the number of entries
+     */
+    public int getNumEntries() {
+        return numEntries;
+    }
+
+    /**
+     * Returns the number of exits
+     */
+    public int getNumExits() {
+        return numExits;
+    }
+
+    /**
+     * Returns the station orientation (DEG)
+     */
+    public int getOrientation() {
+        return orientation;
+    }
+
+    /**
+     * Returns the station source (resource name or file path)
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the station metadata with bounds
+     *
+     * @param bounds the bounds or null if unknown
+     */
+    public StationInfo setBounds(Rectangle2D bounds) {
+        return new StationInfo(source, hash, id, orientation, numBlocks, numEntries, numExits, bounds);
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", StationInfo.class.getSimpleName() + "[", "]")
+                .add("id='" + id + "'")
+                .add("source='" + source + "'")
+                .toString();
+    }
+}
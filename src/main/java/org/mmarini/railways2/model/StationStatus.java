@@ -28,9 +28,11 @@
 
 package org.mmarini.railways2.model;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.mmarini.IdList;
 import org.mmarini.Tuple2;
 import org.mmarini.railways2.model.geometry.*;
 import org.mmarini.railways2.model.routes.*;
@@ -44,13 +46,17 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static java.lang.Math.atan2;
-import static java.lang.Math.ceil;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 import static org.mmarini.railways2.model.RailwayConstants.*;
@@ -105,8 +111,6 @@ public class StationStatus {
      * Arrival train frequency (#/s)
      */
     private static final Logger logger = LoggerFactory.getLogger(StationStatus.class);
-    private static final int MIN_TRAIN_ID = 100;
-    private static final int MAX_TRAIN_ID = 999;
 
     /**
      * Returns the station status
@@ -120,13 +124,54 @@ public class StationStatus {
      * @param events         the event subscriber
      */
     public static StationStatus create(StationMap stationMap, List<Route> routes, double gameDuration, List<Train> trains, double time, double trainFrequency, Subscriber<SoundEvent> events) {
+        return create(StationTopology.create(stationMap, routes), routes, gameDuration, trains, time, trainFrequency, events);
+    }
+
+    /**
+     * Returns the station status
+     *
+     * @param topology       the station topology
+     * @param routes         the routes
+     * @param gameDuration   the game duration (s)
+     * @param trains         the trains
+     * @param time           the time instant
+     * @param trainFrequency the train frequency
+     * @param events         the event subscriber
+     */
+    public static StationStatus create(StationTopology topology, List<Route> routes, double gameDuration, List<Train> trains, double time, double trainFrequency, Subscriber<SoundEvent> events) {
+        StationMap stationMap = topology.getStationMap();
         logger.atDebug().setMessage("Creating station {}").addArgument(stationMap::getId).log();
         ExtendedPerformance performance = ExtendedPerformance.create(stationMap.getId(), gameDuration).setElapsedTime(time);
-        return new StationStatus(stationMap, routes, trains, true, trainFrequency, performance,
-                events, null, null, null, null, null, null, null, null, null
+        return new StationStatus(StationIndex.create(topology, routes), trains, true, trainFrequency, TrainIdAllocator.DEFAULT, performance,
+                events, null, null, null, null, null
         );
     }
 
+    /**
+     * Returns the initial station status of a game
+     * <p>
+     * A train is arriving at each entry if the random generator is given.
+     * </p>
+     *
+     * @param topology     the station topology
+     * @param routes       the routes
+     * @param gameDuration the game duration (s)
+     * @param frequency    the train frequency (#/s)
+     * @param random       the random number generator or null if no initial trains
+     * @param events       the event subscriber
+     */
+    public static StationStatus create(StationTopology topology, List<Route> routes, double gameDuration, double frequency, Random random, Subscriber<SoundEvent> events) {
+        StationStatus stationStatus = create(topology, routes, gameDuration, List.of(), 0, frequency, events);
+        if (random != null) {
+            List<Train> trains = new ArrayList<>();
+            for (Entry entry : stationStatus.getEntries()) {
+                trains.add(stationStatus.createNewTrain(trains, random, entry));
+            }
+            stationStatus = stationStatus.setTrains(trains).addIncomingTrains(trains.size());
+        }
+        return stationStatus;
+    }
+
     /**
      * Returns the station status
      *
@@ -136,70 +181,71 @@ public class StationStatus {
      * @param performance    the performance
      */
     public static StationStatus create(StationMap stationMap, List<Route> routes, double trainFrequency, ExtendedPerformance performance) {
-        return new StationStatus(stationMap, routes, List.of(), true, trainFrequency, performance,
-                null, null, null, null, null, null, null, null, null, null
+        return create(StationTopology.create(stationMap, routes), routes, trainFrequency, performance);
+    }
+
+    /**
+     * Returns the station status
+     *
+     * @param topology       the station topology
+     * @param routes         the routes
+     * @param trainFrequency the train frequency (#/s)
+     * @param performance    the performance
+     */
+    public static StationStatus create(StationTopology topology, List<Route> routes, double trainFrequency, ExtendedPerformance performance) {
+        return new StationStatus(StationIndex.create(topology, routes), List.of(), true, trainFrequency, TrainIdAllocator.DEFAULT, performance,
+                null, null, null, null, null, null
         );
     }
 
-    private final StationMap stationMap;
-    private final Collection<? extends Route> routes;
-    private final Collection<Train> trains;
+    private final StationIndex index;
+    private final IdList<Train> trains;
     private final double trainFrequency;
+    private final TrainIdAllocator trainIdAllocator;
     private final ExtendedPerformance performance;
     private final Subscriber<SoundEvent> events;
     private final boolean autoLock;
-    private List<Entry> entries;
-    private List<Exit> exits;
-    private Map<Node, ? extends Route> routeByNode;
     private Map<Entry, Train> firstTrainByEntry;
-    private Collection<Section> sections;
     private Map<Edge, Train> trainByEdge;
     private Map<Section, Train> trainBySection;
-    private Map<? extends Edge, Section> sectionByEdge;
     private Map<Exit, Train> trainByExit;
+    private BitSet usedTrainIds;
 
     /**
      * Creates the station status
      *
-     * @param stationMap        the station map
-     * @param routes            the routes
+     * @param index             the index of routes and sections
      * @param trains            the trains
      * @param autoLock          true if auto-lock set
      * @param trainFrequency    the train frequency
+     * @param trainIdAllocator  the train identifier allocator
      * @param performance       the game performance
      * @param events            the event subscriber
-     * @param entries           the list of entries
-     * @param exits             the list of exits
-     * @param routeByNode       the routes by nodes
      * @param firstTrainByEntry first train by entry
-     * @param sections          the sections
      * @param trainByEdge       the train bay edge
      * @param trainBySection    the train by section
-     * @param sectionByEdge     the section by edge
      * @param trainByExit       the train by exit
+     * @param usedTrainIds      the identifier numbers used by the trains or null if not computed
      */
-    protected StationStatus(StationMap stationMap, Collection<? extends Route> routes,
+    protected StationStatus(StationIndex index,
                             Collection<Train> trains, boolean autoLock, double trainFrequency,
-                            ExtendedPerformance performance, Subscriber<SoundEvent> events, List<Entry> entries, List<Exit> exits,
-                            Map<Node, ? extends Route> routeByNode,
-                            Map<Entry, Train> firstTrainByEntry, Collection<Section> sections,
+                            TrainIdAllocator trainIdAllocator, ExtendedPerformance performance, Subscriber<SoundEvent> events,
+                            Map<Entry, Train> firstTrainByEntry,
                             Map<Edge, Train> trainByEdge, Map<Section, Train> trainBySection,
-                            Map<? extends Edge, Section> sectionByEdge, Map<Exit, Train> trainByExit) {
-        this.stationMap = requireNonNull(stationMap);
-        this.routes = requireNonNull(routes);
-        this.trains = requireNonNull(trains);
+                            Map<Exit, Train> trainByExit, BitSet usedTrainIds) {
+        this.index = requireNonNull(index);
+        this.trains = trains instanceof IdList
+                ? (IdList<Train>) trains
+                : IdList.of(requireNonNull(trains), Train::getId);
         this.autoLock = autoLock;
         this.trainFrequency = trainFrequency;
+        this.trainIdAllocator = requireNonNull(trainIdAllocator);
         this.performance = requireNonNull(performance);
-        this.entries = entries;
-        this.exits = exits;
-        this.routeByNode = routeByNode;
         this.firstTrainByEntry = firstTrainByEntry;
-        this.sections = sections;
         this.trainByEdge = trainByEdge;
         this.trainBySection = trainBySection;
-        this.sectionByEdge = sectionByEdge;
         this.trainByExit = trainByExit;
+        this.usedTrainIds = usedTrainIds;
         this.events = events;
     }
 
@@ -265,19 +311,28 @@ public class StationStatus {
      * @param arrival the arrival entry
      */
     public Train createNewTrain(List<Train> trains, Random random, Entry arrival) {
+        return createNewTrain(trainIdAllocator.usedIds(trains), random, arrival, getTime());
+    }
+
+    /**
+     * Returns a new train
+     *
+     * @param usedIds     the used train identifiers (updated with the new train identifier)
+     * @param random      the random number generator
+     * @param arrival     the arrival entry
+     * @param arrivalTime the arrival instant (s)
+     */
+    private Train createNewTrain(BitSet usedIds, Random random, Entry arrival, double arrivalTime) {
         List<Exit> exits = getExits();
         // Generates a unique id
-        String trainId;
-        do {
-            trainId = "T" + (random.nextInt(MAX_TRAIN_ID - MIN_TRAIN_ID + 1) + MIN_TRAIN_ID);
-        } while (trains.stream().map(Train::getId).anyMatch(trainId::equals));
+        String trainId = trainIdAllocator.allocate(usedIds, random);
         // Generates the train length
         int numCoaches = random.nextInt(MAX_COACH_COUNT - MIN_COACH_COUNT + 1) + MIN_COACH_COUNT;
         // Generates the arrival and destination of train
         Exit destination = exits.get(random.nextInt(exits.size()));
         play(SoundEvent.ARRIVING);
         return Train.create(trainId, numCoaches, arrival, destination)
-                .setArrivalTime(getTime() + ENTRY_TIMEOUT);
+                .setArrivalTime(arrivalTime + ENTRY_TIMEOUT);
     }
 
     /**
@@ -289,23 +344,43 @@ public class StationStatus {
      */
     List<Train> createNewTrains(List<Train> trains, double lambda, Random random) {
         // Generates new trains
-        int n = nextPoisson(random, lambda);
-        List<Entry> entries = getEntries();
-        for (int i = 0; i < n; i++) {
-            Entry arrival = entries.get(random.nextInt(entries.size()));
-            trains.add(createNewTrain(trains, random, arrival));
+        return addNewTrains(trains, trainIdAllocator.usedIds(trains), nextPoisson(random, lambda), random);
+    }
+
+    /**
+     * Returns the list of train with the given number of new random created trains
+     *
+     * @param trains  the train list
+     * @param usedIds the identifier numbers used by the trains (updated with the new train identifiers)
+     * @param n       the number of new trains
+     * @param random  the random number generator
+     */
+    List<Train> addNewTrains(List<Train> trains, BitSet usedIds, int n, Random random) {
+        if (n > 0) {
+            List<Entry> entries = getEntries();
+            for (int i = 0; i < n; i++) {
+                Entry arrival = entries.get(random.nextInt(entries.size()));
+                trains.add(createNewTrain(usedIds, random, arrival, getTime()));
+            }
         }
         return trains;
     }
 
     /**
-     * Returns the route by node
-     */
-    private Map<Node, ? extends Route> createRouteByNode() {
-        return routes.stream()
-                .flatMap(route -> route.getNodes().stream()
-                        .map(node -> Tuple2.of(node, route)))
-                .collect(Tuple2.toMap());
+     * Returns the list of train with new random created trains arriving at the given entries and instants
+     *
+     * @param trains   the train list
+     * @param usedIds  the identifier numbers used by the trains (updated with the new train identifiers)
+     * @param arrivals the arrival entries and instants (s)
+     * @param random   the random number generator
+     */
+    List<Train> addNewTrains(List<Train> trains, BitSet usedIds, List<Tuple2<Entry, Double>> arrivals, Random random) {
+        if (!arrivals.isEmpty()) {
+            for (Tuple2<Entry, Double> arrival : arrivals) {
+                trains.add(createNewTrain(usedIds, random, arrival._1, arrival._2));
+            }
+        }
+        return trains;
     }
 
     /**
@@ -319,46 +394,10 @@ public class StationStatus {
     }
 
     /**
-     * Returns the sections
+     * Returns the sections walking the whole station
      */
     Collection<Section> createSections() {
-        Set<Section> sections = new HashSet<>();
-        Map<Section, Set<Edge>> crossingEdgesBySection = new HashMap<>();
-        // Extracts all the section terminal directions
-        Set<Direction> fringe = routes.stream()
-                .filter(r -> r instanceof SectionTerminal)
-                .flatMap(route -> route.getValidExits().stream())
-                .collect(Collectors.toSet());
-
-        while (!fringe.isEmpty()) {
-            // Get a direction from fringe and find the section from it
-            Direction dir = fringe.iterator().next();
-            fringe.remove(dir);
-            findSection(dir).ifPresent(t -> {
-                sections.add(t._1);
-                fringe.remove(t._1.getExit0());
-                fringe.remove(t._1.getExit1());
-                crossingEdgesBySection.put(t._1, t._2);
-            });
-        }
-        // Computes the map of section by edge
-        Map<Edge, Section> sectionByEdge = sections.stream()
-                .flatMap(section -> section.getEdges().stream()
-                        .map(edge -> Tuple2.of(edge, section)))
-                .collect(Tuple2.toMap());
-
-        // Computes and sets crossing sections
-        Tuple2.stream(crossingEdgesBySection)
-                .forEach(t -> {
-                    Set<Section> crossingSections = t._2.stream()
-                            .flatMap(edge -> {
-                                Section section = sectionByEdge.get(edge);
-                                return section != null ? Stream.of(section) : Stream.of();
-                            })
-                            .collect(Collectors.toSet());
-                    t._1.setCrossingSections(crossingSections);
-                });
-        return sections;
+        return StationIndex.create(index.getTopology(), getRoutes()).getSections();
     }
 
     /**
@@ -433,6 +472,18 @@ public class StationStatus {
         return this;
     }
 
+    /**
+     * Writes the status dump to the channel
+     *
+     * @param channel the channel
+     * @throws IOException in case of error
+     */
+    public void dump(WritableByteChannel channel) throws IOException {
+        objectMapper.writerWithDefaultPrettyPrinter()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValue(Channels.newOutputStream(channel), getJson());
+    }
+
     /**
      * Returns the forward edges for the distance
      *
@@ -441,19 +492,17 @@ public class StationStatus {
      */
     Stream<Edge> findForwardEdges(EdgeLocation location, double distance) {
         Stream.Builder<Edge> builder = Stream.builder();
-        Direction direction = location.getDirection();
-        distance += location.opposite().getDistance();
-        while (distance > 0 && direction != null) {
+        StationTopology topology = index.getTopology();
+        int direction = topology.getDirectionId(location.getDirection());
+        distance += topology.getLength(direction) - location.getDistance();
+        while (distance > 0 && direction >= 0) {
             // Get edge
-            Edge edge = direction.getEdge();
-            builder.add(edge);
+            builder.add(topology.getDirection(direction).getEdge());
             // computes the new limit distance
-            distance -= edge.getLength();
+            distance -= topology.getLength(direction);
             if (distance > 0) {
                 // Next direction
-                direction = getRoute(direction.getDestination()) // gets destination route
-                        .getExit(direction) // gets next exit for route
-                        .orElse(null);
+                direction = index.getNextDirection(direction);
             }
         }
         return builder.build();
@@ -465,49 +514,21 @@ public class StationStatus {
      * @param direction the direction
      */
     public Optional<Tuple2<Section, Set<Edge>>> findSection(Direction direction) {
-        Route term = getRoute(direction.getOrigin());
-        if (!(term instanceof SectionTerminal)) {
-            throw new IllegalArgumentException(format("Route %s is not a section terminal", term.getId()));
-        }
-        List<Edge> edges = new ArrayList<>();
-        Set<Edge> crossingEdges = new HashSet<>();
-        Direction terminal0 = direction;
-        for (; ; ) {
-            edges.add(direction.getEdge());
-            term = getRoute(direction.getDestination());
-            if (term instanceof SectionTerminal) {
-                return Optional.of(
-                        Tuple2.of(
-                                Section.create(terminal0, direction.opposite(), edges),
-                                crossingEdges));
-            }
-            crossingEdges.addAll(term.getCrossingEdges(direction));
-            Optional<Direction> next = term.getExit(direction);
-            if (next.isEmpty()) {
-                return Optional.empty();
-            }
-            direction = next.orElseThrow();
-        }
+        return index.findSection(direction);
     }
 
     /**
      * Returns the bounds of station
      */
     public Rectangle2D getBounds() {
-        return stationMap.getBounds();
+        return getStationMap().getBounds();
     }
 
     /**
      * Returns the list of entries
      */
     public List<Entry> getEntries() {
-        if (entries == null) {
-            entries = getRoutes().stream()
-                    .filter(route -> route instanceof Entry)
-                    .map(entry -> (Entry) entry)
-                    .collect(Collectors.toList());
-        }
-        return entries;
+        return index.getEntries();
     }
 
     /**
@@ -516,20 +537,16 @@ public class StationStatus {
      * @param direction the entry direction
      */
     public Optional<Direction> getExit(Direction direction) {
-        return getRoute(direction.getDestination()).getExit(direction);
+        StationTopology topology = index.getTopology();
+        int next = index.getNextDirection(topology.getDirectionId(direction));
+        return next >= 0 ? Optional.of(topology.getDirection(next)) : Optional.empty();
     }
 
     /**
      * Returns the list of exits
      */
     List<Exit> getExits() {
-        if (exits == null) {
-            exits = getRoutes().stream()
-                    .filter(route -> route instanceof Exit)
-                    .map(entry -> (Exit) entry)
-                    .collect(Collectors.toList());
-        }
-        return exits;
+        return index.getExits();
     }
 
     /**
@@ -560,7 +577,7 @@ public class StationStatus {
         result.put("trainFrequency", trainFrequency);
         result.set("performance", performance.getJson());
         ArrayNode routesNode = objectMapper.createArrayNode();
-        for (Route route : routes) {
+        for (Route route : getRoutes()) {
             routesNode.add(route.getJson());
         }
         result.set("routes", routesNode);
@@ -581,34 +598,48 @@ public class StationStatus {
      * @param distance the distance
      */
     Optional<EdgeLocation> getLocationAt(EdgeLocation start, double distance) {
-        while (start != null) {
-            double terminalDistance = start.getDistance();
+        if (start == null) {
+            return Optional.empty();
+        }
+        double terminalDistance = start.getDistance();
+        if (distance <= terminalDistance) {
+            return Optional.of(start.setDistance(terminalDistance - distance));
+        }
+        StationTopology topology = index.getTopology();
+        int direction = topology.getDirectionId(start.getDirection());
+        for (; ; ) {
+            distance -= terminalDistance;
+            direction = index.getNextDirection(direction);
+            if (direction < 0) {
+                // Terminal not found
+                return Optional.empty();
+            }
+            terminalDistance = topology.getLength(direction);
             if (distance <= terminalDistance) {
-                return Optional.of(start.setDistance(terminalDistance - distance));
+                return Optional.of(new EdgeLocation(topology.getDirection(direction), terminalDistance - distance));
             }
-            distance -= terminalDistance;
-            start = getNextDirection(start.getDirection())
-                    .map(dir -> new EdgeLocation(dir, dir.getEdge().getLength()))
-                    .orElse(null);
         }
-        // Terminal not found
-        return Optional.empty();
     }
 
     /**
-     * Returns the next direction
-     *
-     * @param direction the direction
+     * Returns the game performance
      */
-    private Optional<Direction> getNextDirection(Direction direction) {
-        return getRoute(direction.getDestination()).getExit(direction);
+    public ExtendedPerformance getPerformance() {
+        return performance;
     }
 
     /**
-     * Returns the game performance
+     * Returns the train frequency (#/s)
      */
-    public ExtendedPerformance getPerformance() {
-        return performance;
+    double getTrainFrequency() {
+        return trainFrequency;
+    }
+
+    /**
+     * Returns the train identifier allocator
+     */
+    public TrainIdAllocator getTrainIdAllocator() {
+        return trainIdAllocator;
     }
 
     /**
@@ -617,7 +648,7 @@ public class StationStatus {
      * @param performance the new performance
      */
     private StationStatus setPerformance(ExtendedPerformance performance) {
-        return new StationStatus(stationMap, routes, trains, autoLock, trainFrequency, performance, events, entries, exits, routeByNode, firstTrainByEntry, sections, trainByEdge, trainBySection, sectionByEdge, trainByExit);
+        return new StationStatus(index, trains, autoLock, trainFrequency, trainIdAllocator, performance, events, firstTrainByEntry, trainByEdge, trainBySection, trainByExit, usedTrainIds);
     }
 
     /**
@@ -626,32 +657,86 @@ public class StationStatus {
      * @param node the node
      */
     public <T extends Route> T getRoute(Node node) {
-        Route route = getRouteByNode().get(node);
-        if (route == null) {
-            throw new IllegalArgumentException(format("Route for node %s does not exist", node.getId()));
-        }
-        return (T) route;
+        return (T) index.getRoute(node);
     }
 
     public <T extends Route> T getRoute(String a) {
-        return getRoute(stationMap.getNode(a));
+        return getRoute(getStationMap().getNode(a));
     }
 
     /**
-     * Returns the route by node (lazy value)
+     * Returns the routes with nodes within the distance from the point sorted by distance
+     *
+     * @param point       the point
+     * @param maxDistance the maximum distance (m)
      */
-    Map<Node, ? extends Route> getRouteByNode() {
-        if (routeByNode == null) {
-            routeByNode = createRouteByNode();
-        }
-        return routeByNode;
+    public Stream<Route> getRoutes(Point2D point, double maxDistance) {
+        return getStationMap().getNodes(point, maxDistance)
+                .map(index::getRoute)
+                .distinct();
     }
 
     /**
      * Returns the routes
      */
     public Collection<? extends Route> getRoutes() {
-        return routes;
+        return index.getRoutes();
+    }
+
+    /**
+     * Returns the station status with the given routes replacing the current routes of the same nodes.
+     * <p>
+     * The index is patched only for the changed routes and
+     * the train maps are kept if the sections are not changed (e.g. signal locks)
+     * </p>
+     *
+     * @param routes the changed routes
+     */
+    StationStatus replaceRoutes(Route... routes) {
+        if (Arrays.stream(routes).allMatch(route -> route == getRoute(route.getNodes().get(0)))) {
+            return this;
+        }
+        StationIndex newIndex = index.replaceRoutes(Arrays.asList(routes));
+        return newIndex.hasSameSections(index)
+                ? new StationStatus(newIndex, trains, autoLock, trainFrequency, trainIdAllocator, performance, events, firstTrainByEntry, trainByEdge, trainBySection, trainByExit, usedTrainIds)
+                : new StationStatus(newIndex, trains, autoLock, trainFrequency, trainIdAllocator, performance, events, firstTrainByEntry, null, null, trainByExit, usedTrainIds);
+    }
+
+    /**
+     * Releases the identifier number of a train leaving the station
+     *
+     * @param usedIds the identifier numbers used by the trains
+     * @param train   the leaving train
+     */
+    private void releaseTrainId(BitSet usedIds, Train train) {
+        int index = trainIdAllocator.indexOf(train.getId());
+        if (index >= 0) {
+            usedIds.clear(index);
+        }
+    }
+
+    /**
+     * Returns the station status with the train of the same identifier replaced
+     * <p>
+     * The train list shares the structure with the current list.
+     * </p>
+     *
+     * @param train the train
+     */
+    StationStatus replaceTrain(Train train) {
+        IdList<Train> newTrains = trains.replace(train);
+        return newTrains == trains
+                ? this
+                : new StationStatus(index, newTrains, autoLock, trainFrequency, trainIdAllocator, performance, events, null, null, null, null, usedTrainIds);
+    }
+
+    /**
+     * Returns the station status with the train identifier allocator
+     *
+     * @param trainIdAllocator the train identifier allocator
+     */
+    public StationStatus setTrainIdAllocator(TrainIdAllocator trainIdAllocator) {
+        return new StationStatus(index, trains, autoLock, trainFrequency, trainIdAllocator, performance, events, firstTrainByEntry, trainByEdge, trainBySection, trainByExit, null);
     }
 
     /**
@@ -660,7 +745,7 @@ public class StationStatus {
      * @param routes the routes
      */
     public StationStatus setRoutes(Collection<? extends Route> routes) {
-        return new StationStatus(stationMap, routes, trains, autoLock, trainFrequency, performance, events, null, null, null, null, null, null, null, null, null);
+        return new StationStatus(StationIndex.create(index.getTopology(), routes), trains, autoLock, trainFrequency, trainIdAllocator, performance, events, null, null, null, null, usedTrainIds);
     }
 
     /**
@@ -669,27 +754,48 @@ public class StationStatus {
      * @param edge the edge
      */
     public Optional<Section> getSection(Edge edge) {
-        return Optional.ofNullable(getSectionByEdge().get(edge));
+        return index.getSection(edge);
+    }
+
+    /**
+     * Returns the section by identifier
+     *
+     * @param id the section identifier
+     */
+    Optional<Section> getSection(String id) {
+        return index.getSection(id);
     }
 
     /**
-     * Returns the section by edge (lazy value)
+     * Returns the signals terminal of the section with the entry directions into the section
+     *
+     * @param section the section
+     */
+    Stream<Tuple2<Signal, Direction>> getSignalEntries(Section section) {
+        return Stream.of(section.getExit0(), section.getExit1())
+                .flatMap(dir -> {
+                    // Finds the route terminal of section
+                    Route route = getRoute(dir.getOrigin());
+                    // Find the entry direction into the section
+                    Optional<Direction> entryOpt = route.getExit(dir.opposite()).map(Direction::opposite);
+                    return entryOpt.map(entry -> Tuple2.of(route, entry)).stream();
+                })
+                .filter(t -> t._1 instanceof Signal)
+                .map(t -> Tuple2.of((Signal) t._1, t._2));
+    }
+
+    /**
+     * Returns the section by edge
      */
     Map<? extends Edge, Section> getSectionByEdge() {
-        if (sectionByEdge == null) {
-            sectionByEdge = createSectionByEdge();
-        }
-        return sectionByEdge;
+        return index.getSectionByEdge();
     }
 
     /**
-     * Returns the sections (lazy value)
+     * Returns the sections
      */
     Collection<Section> getSections() {
-        if (sections == null) {
-            sections = createSections();
-        }
-        return sections;
+        return index.getSections();
     }
 
     /**
@@ -700,6 +806,7 @@ public class StationStatus {
      */
     Stream<EdgeSegment> getSegments(EdgeLocation start, double distance) {
         Stream.Builder<EdgeSegment> builder = Stream.builder();
+        StationTopology topology = index.getTopology();
         while (distance > 0 && start != null) {
             double len = start.getDistance();
             if (distance <= len) {
@@ -710,9 +817,10 @@ public class StationStatus {
                 EdgeSegment seg = EdgeSegment.create(start, len);
                 builder.add(seg);
                 distance -= len;
-                start = getExit(start.getDirection())
-                        .map(dir -> new EdgeLocation(dir, dir.getEdge().getLength()))
-                        .orElse(null);
+                int next = index.getNextDirection(topology.getDirectionId(start.getDirection()));
+                start = next >= 0
+                        ? new EdgeLocation(topology.getDirection(next), topology.getLength(next))
+                        : null;
             }
         }
         return builder.build();
@@ -722,7 +830,14 @@ public class StationStatus {
      * Returns the station map
      */
     public StationMap getStationMap() {
-        return stationMap;
+        return index.getTopology().getStationMap();
+    }
+
+    /**
+     * Returns the station topology
+     */
+    public StationTopology getTopology() {
+        return index.getTopology();
     }
 
     /**
@@ -739,7 +854,7 @@ public class StationStatus {
      */
     public StationStatus setTime(double time) {
         return time == this.getTime() ? this :
-                new StationStatus(stationMap, routes, trains, autoLock, trainFrequency, performance.setElapsedTime(time), events, entries, exits, routeByNode, firstTrainByEntry, sections, trainByEdge, trainBySection, sectionByEdge, trainByExit);
+                new StationStatus(index, trains, autoLock, trainFrequency, trainIdAllocator, performance.setElapsedTime(time), events, firstTrainByEntry, trainByEdge, trainBySection, trainByExit, usedTrainIds);
     }
 
     /**
@@ -748,7 +863,7 @@ public class StationStatus {
      * @param id the train identifier
      */
     public Optional<Train> getTrain(String id) {
-        return trains.stream().filter(t -> id.equals(t.getId())).findAny();
+        return trains.get(id);
     }
 
     /**
@@ -799,45 +914,46 @@ public class StationStatus {
         return trainBySection;
     }
 
+    /**
+     * Returns the identifier numbers used by the trains (lazy value, shared and not to be modified)
+     */
+    BitSet getUsedTrainIds() {
+        if (usedTrainIds == null) {
+            usedTrainIds = trainIdAllocator.usedIds(trains);
+        }
+        return usedTrainIds;
+    }
+
     /**
      * Returns the train composition
      *
      * @param train the train
      */
     TrainComposition getTrainCoaches(Train train) {
-        Train.State state = train.getState();
+        CoachLayout layout = new CoachLayout();
+        layout.addTrain(index, train);
+        if (layout.getSize() == 0) {
+            return TrainComposition.EMPTY;
+        }
+        Tuple2<Point2D, Double> head = null;
+        Tuple2<Point2D, Double> tail = null;
         List<Tuple2<Point2D, Double>> coaches = new ArrayList<>();
-        if (Train.STATE_EXITING.equals(state)) {
-            int numExitedCoaches = (int) ceil(train.getExitDistance() / COACH_LENGTH);
-            if (numExitedCoaches >= train.getNumCoaches()) {
-                return TrainComposition.EMPTY;
-            }
-            double startDistance = numExitedCoaches * COACH_LENGTH - train.getExitDistance();
-            Direction exitDir = train.getExitingNode().getValidExits().iterator().next();
-            EdgeLocation start = new EdgeLocation(exitDir, exitDir.getEdge().getLength() - startDistance);
-            int n = train.getNumCoaches() - numExitedCoaches - 1;
-            while (start != null && n > 0) {
-                computeCoachLocation(start).ifPresent(coaches::add);
-                start = getLocationAt(start, COACH_LENGTH).orElse(null);
-                n--;
+        for (int i = 0; i < layout.getSize(); i++) {
+            Tuple2<Point2D, Double> coach = Tuple2.of(
+                    new Point2D.Double(layout.getX(i), layout.getY(i)),
+                    layout.getOrientation(i));
+            switch (layout.getKind(i)) {
+                case CoachLayout.HEAD:
+                    head = coach;
+                    break;
+                case CoachLayout.TAIL:
+                    tail = coach;
+                    break;
+                default:
+                    coaches.add(coach);
             }
-            Tuple2<Point2D, Double> tail = computeCoachLocation(start).orElse(null);
-            return new TrainComposition(null, tail, coaches);
-        } else {
-            return train.getLocation().map(location -> {
-                EdgeLocation start = location.opposite();
-                Tuple2<Point2D, Double> head = computeCoachLocation(start).orElse(null);
-                start = getLocationAt(start, COACH_LENGTH).orElse(null);
-                int n = train.getNumCoaches() - 2;
-                while (start != null && n > 0) {
-                    computeCoachLocation(start).ifPresent(coaches::add);
-                    start = getLocationAt(start, COACH_LENGTH).orElse(null);
-                    n--;
-                }
-                Tuple2<Point2D, Double> tail = computeCoachLocation(start).orElse(null);
-                return new TrainComposition(head, tail, coaches);
-            }).orElse(new TrainComposition(null, null, List.of()));
         }
+        return new TrainComposition(head, tail, coaches);
     }
 
     /**
@@ -879,6 +995,31 @@ public class StationStatus {
         return trains;
     }
 
+    /**
+     * Returns the trains with coaches within the distance from the point sorted by distance
+     *
+     * @param point       the point
+     * @param maxDistance the maximum distance (m)
+     */
+    public Stream<Train> getTrains(Point2D point, double maxDistance) {
+        Map<Edge, Train> trainByEdge = getTrainByEdge();
+        Map<Train, Double> distanceByTrain = new HashMap<>();
+        getStationMap().getEdges(point, maxDistance).forEach(edge -> {
+            Train train = trainByEdge.get(edge);
+            if (train != null) {
+                getTrainSegments(train)
+                        .filter(segment -> segment.getEdge().equals(edge))
+                        .mapToDouble(segment -> segment.getDistance(point))
+                        .filter(distance -> distance <= maxDistance)
+                        .min()
+                        .ifPresent(distance -> distanceByTrain.merge(train, distance, Math::min));
+            }
+        });
+        return distanceByTrain.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey);
+    }
+
     /**
      * Returns the station status with a train collection set
      *
@@ -894,7 +1035,30 @@ public class StationStatus {
      * @param trains the trains
      */
     public StationStatus setTrains(Collection<Train> trains) {
-        return new StationStatus(stationMap, routes, trains, autoLock, trainFrequency, performance, events, entries, exits, routeByNode, null, sections, null, null, sectionByEdge, null);
+        return new StationStatus(index, trains, autoLock, trainFrequency, trainIdAllocator, performance, events, null, null, null, null, null);
+    }
+
+    /**
+     * Returns the station status with a train collection set and the identifier numbers used by the trains
+     *
+     * @param trains       the trains
+     * @param usedTrainIds the identifier numbers used by the trains
+     */
+    private StationStatus setTrains(Collection<Train> trains, BitSet usedTrainIds) {
+        return new StationStatus(index, trains, autoLock, trainFrequency, trainIdAllocator, performance, events, null, null, null, null, usedTrainIds);
+    }
+
+    /**
+     * Returns the layout of the coaches of all trains
+     *
+     * @param layout the reused layout
+     */
+    public CoachLayout layoutCoaches(CoachLayout layout) {
+        layout.clear();
+        for (Train train : getTrains()) {
+            layout.addTrain(index, train);
+        }
+        return layout;
     }
 
     /**
@@ -919,7 +1083,7 @@ public class StationStatus {
      */
     public StationStatus setAutoLock(boolean autoLock) {
         return autoLock != this.autoLock
-                ? new StationStatus(stationMap, routes, trains, autoLock, trainFrequency, performance, events, null, null, null, null, null, null, null, null, null)
+                ? new StationStatus(index, trains, autoLock, trainFrequency, trainIdAllocator, performance, events, firstTrainByEntry, trainByEdge, trainBySection, trainByExit, usedTrainIds)
                 : this;
     }
 
@@ -941,9 +1105,18 @@ public class StationStatus {
      * @param train the train
      */
     public boolean isEntryClear(Train train) {
-        Entry arrival = train.getArrival();
+        return isEntryClear(train.getArrival(), train.getId());
+    }
+
+    /**
+     * Returns true if the entry is clear for the train with the given identifier
+     *
+     * @param arrival the arrival entry
+     * @param trainId the train identifier
+     */
+    boolean isEntryClear(Entry arrival, String trainId) {
         return getFirstTrainFrom(arrival)
-                .filter(train::equals) // Checks for first train in queue
+                .filter(first -> first.getId().equals(trainId)) // Checks for first train in queue
                 .filter(unused ->
                                 // Checks for entry section clear
                         {
@@ -1004,11 +1177,23 @@ public class StationStatus {
      */
     public boolean isNextSignalClear(Train train) {
         EdgeLocation location = train.getLocation().orElseThrow();
-        double edgeLimitDistance = train.getStopDistance();
+        return isNextSignalClear(location.getDirection(), location.getDistance(), train.getStopDistance(), train.isUnloaded());
+    }
+
+    /**
+     * Returns true if next track is clear for a train at the given location
+     *
+     * @param direction    the direction of train head
+     * @param distance     the distance of train head to the end of edge (m)
+     * @param stopDistance the stop distance of train (m)
+     * @param unloaded     true if the train has not yet loaded the passengers
+     */
+    boolean isNextSignalClear(Direction direction, double distance, double stopDistance, boolean unloaded) {
+        StationTopology topology = index.getTopology();
+        int directionId = topology.getDirectionId(direction);
+        double edgeLimitDistance = stopDistance;
         do {
-            Direction direction = location.getDirection();
-            Edge edge = direction.getEdge();
-            edgeLimitDistance -= location.getDistance();
+            edgeLimitDistance -= distance;
             if (edgeLimitDistance <= 0) {
                 // current edge shorter than limit distance (clear track)
                 return true;
@@ -1018,15 +1203,17 @@ public class StationStatus {
                 // next route not clear (not clear)
                 return false;
             }
-            if (edge instanceof Platform && train.isUnloaded()) {
+            if (direction.getEdge() instanceof Platform && unloaded) {
                 // current edge is platform and train is not loaded (not clear)
                 return false;
             }
             // Find next direction
-            location = getExit(direction)
-                    .map(d -> new EdgeLocation(d, d.getEdge().getLength()))
-                    .orElse(null);
-        } while (location != null);
+            directionId = index.getNextDirection(directionId);
+            if (directionId >= 0) {
+                direction = topology.getDirection(directionId);
+                distance = topology.getLength(directionId);
+            }
+        } while (directionId >= 0);
         // exit found
         return true;
     }
@@ -1134,22 +1321,10 @@ public class StationStatus {
      * @param section the section
      */
     StationStatus lock(Section section) {
-        HashSet<Route> newRoutes = new HashSet<>(getRoutes());
-        Stream.of(section.getExit0(), section.getExit1())
-                .flatMap(dir -> {
-                    // Finds the route terminal of section
-                    Route route = getRoute(dir.getOrigin());
-                    // Find the entry direction into the section
-                    Optional<Direction> entryOpt = route.getExit(dir.opposite()).map(Direction::opposite);
-                    return entryOpt.map(entry -> Tuple2.of(route, entry)).stream();
-                })
-                .filter(t -> t._1 instanceof Signal)
-                .map(t -> ((Signal) t._1).lock(t._2))
-                .forEach(signal -> {
-                    newRoutes.remove(signal);
-                    newRoutes.add(signal);
-                });
-        return setRoutes(newRoutes);
+        Route[] newRoutes = getSignalEntries(section)
+                .map(t -> t._1.lock(t._2))
+                .toArray(Route[]::new);
+        return replaceRoutes(newRoutes);
     }
 
     /**
@@ -1158,9 +1333,7 @@ public class StationStatus {
      * @param id the section identifier
      */
     public StationStatus lockSection(String id) {
-        return getSections().stream()
-                .filter(section -> section.getId().equals(id))
-                .findAny()
+        return index.getSection(id)
                 .map(this::lock)
                 .orElse(this);
     }
@@ -1173,7 +1346,7 @@ public class StationStatus {
      */
     public StationStatus lockSignal(String id, String edgeId) {
         Signal signal = getRoute(id);
-        Edge edge = stationMap.getEdge(edgeId);
+        Edge edge = getStationMap().getEdge(edgeId);
         return signal.getValidEntries().stream()
                 .filter(dir -> dir.getEdge().equals(edge))
                 .findAny()
@@ -1181,11 +1354,7 @@ public class StationStatus {
                         !signal.isLocked(entryDir)
                                 ? Optional.of(signal.lock(entryDir))
                                 : Optional.empty())
-                .map(newSignal ->
-                        setRoutes(getRoutes().stream().
-                                map(route -> route.equals(signal)
-                                        ? newSignal : route)
-                                .collect(Collectors.toList())))
+                .map(this::replaceRoutes)
                 .orElse(this);
     }
 
@@ -1193,20 +1362,17 @@ public class StationStatus {
      * Returns the status with all signals locked
      */
     public StationStatus lockSignals() {
-        List<Route> newRoutes = routes.stream()
+        Route[] newRoutes = getRoutes().stream()
+                .filter(route -> route instanceof Signal)
                 .map(route -> {
-                    if (route instanceof Signal) {
-                        Signal signal = (Signal) route;
-                        Signal newSignal = signal;
-                        for (Direction entry : signal.getValidEntries()) {
-                            newSignal = newSignal.lock(entry);
-                        }
-                        return newSignal;
-                    } else {
-                        return route;
+                    Signal signal = (Signal) route;
+                    Signal newSignal = signal;
+                    for (Direction entry : signal.getValidEntries()) {
+                        newSignal = newSignal.lock(entry);
                     }
-                }).collect(Collectors.toList());
-        return setRoutes(newRoutes);
+                    return newSignal;
+                }).toArray(Route[]::new);
+        return replaceRoutes(newRoutes);
     }
 
     /**
@@ -1226,23 +1392,11 @@ public class StationStatus {
      * @param trainId the train identifier
      */
     public StationStatus revertTrain(String trainId) {
-        return getTrain(trainId).map(train -> {
-                    Train.State state = train.getState();
-                    if (state.equals(Train.STATE_WAITING_FOR_RUN) || state.equals(Train.STATE_WAITING_FOR_SIGNAL)) {
-                        Train newTrain = train.getLocation()
-                                .map(EdgeLocation::opposite)
-                                .flatMap(location -> getLocationAt(location, train.getLength()))
-                                .map(train::setLocation)
-                                .map(Train::run)
-                                .orElse(train);
-                        List<Train> newTrains = trains.stream().map(train1 ->
-                                        train.equals(train1) ? newTrain : train1)
-                                .collect(Collectors.toList());
-                        play(SoundEvent.LEAVING);
-                        return setTrains(newTrains);
-                    } else {
-                        return this;
-                    }
+        return getTrain(trainId)
+                .flatMap(this::tryRevert)
+                .map(newTrain -> {
+                    play(SoundEvent.LEAVING);
+                    return replaceTrain(newTrain);
                 })
                 .orElse(this);
     }
@@ -1253,19 +1407,11 @@ public class StationStatus {
      * @param trainId the train identifier
      */
     public StationStatus startTrain(String trainId) {
-        return getTrain(trainId).map(train -> {
-                    Train.State state = train.getState();
-                    if (state.equals(Train.STATE_WAITING_FOR_RUN) || state.equals(Train.STATE_BRAKING)) {
-                        List<Train> newTrains = trains.stream().map(train1 ->
-                                        train.equals(train1)
-                                                ? train.run()
-                                                : train1)
-                                .collect(Collectors.toList());
-                        play(SoundEvent.LEAVING);
-                        return setTrains(newTrains);
-                    } else {
-                        return this;
-                    }
+        return getTrain(trainId)
+                .flatMap(this::tryStart)
+                .map(newTrain -> {
+                    play(SoundEvent.LEAVING);
+                    return replaceTrain(newTrain);
                 })
                 .orElse(this);
     }
@@ -1276,20 +1422,11 @@ public class StationStatus {
      * @param trainId the train identifier
      */
     public StationStatus stopTrain(String trainId) {
-        return getTrain(trainId).map(train -> {
-                    Train.State state = train.getState();
-                    if (state.equals(STATE_RUNNING) ||
-                            state.equals(Train.STATE_WAITING_FOR_SIGNAL)) {
-                        play(SoundEvent.BRAKING);
-                        List<Train> newTrains = trains.stream().map(train1 ->
-                                        train.equals(train1)
-                                                ? train.brake()
-                                                : train1)
-                                .collect(Collectors.toList());
-                        return setTrains(newTrains);
-                    } else {
-                        return this;
-                    }
+        return getTrain(trainId)
+                .flatMap(this::tryStop)
+                .map(newTrain -> {
+                    play(SoundEvent.BRAKING);
+                    return replaceTrain(newTrain);
                 })
                 .orElse(this);
     }
@@ -1299,18 +1436,54 @@ public class StationStatus {
      */
     public StationStatus stopTrains() {
         List<Train> newTrains = trains.stream()
-                .map(train -> {
-                    State state = train.getState();
-                    if (STATE_RUNNING.equals(state)
-                            || STATE_WAITING_FOR_SIGNAL.equals(state)) {
-                        return train.brake();
-                    } else {
-                        return train;
-                    }
-                }).collect(Collectors.toList());
+                .map(train -> tryStop(train).orElse(train))
+                .collect(Collectors.toList());
         return setTrains(newTrains);
     }
 
+    /**
+     * Returns the reverted running train if the train can be reverted
+     *
+     * @param train the train
+     */
+    Optional<Train> tryRevert(Train train) {
+        Train.State state = train.getState();
+        if (state.equals(Train.STATE_WAITING_FOR_RUN) || state.equals(Train.STATE_WAITING_FOR_SIGNAL)) {
+            return Optional.of(train.getLocation()
+                    .map(EdgeLocation::opposite)
+                    .flatMap(location -> getLocationAt(location, train.getLength()))
+                    .map(train::setLocation)
+                    .map(Train::run)
+                    .orElse(train));
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the running train if the train can be started
+     *
+     * @param train the train
+     */
+    Optional<Train> tryStart(Train train) {
+        Train.State state = train.getState();
+        return state.equals(Train.STATE_WAITING_FOR_RUN) || state.equals(Train.STATE_BRAKING)
+                ? Optional.of(train.run())
+                : Optional.empty();
+    }
+
+    /**
+     * Returns the braking train if the train can be stopped
+     *
+     * @param train the train
+     */
+    Optional<Train> tryStop(Train train) {
+        Train.State state = train.getState();
+        return state.equals(STATE_RUNNING) || state.equals(Train.STATE_WAITING_FOR_SIGNAL)
+                ? Optional.of(train.brake())
+                : Optional.empty();
+    }
+
     /**
      * Returns the next status simulating the time elapsed interval
      *
@@ -1318,26 +1491,151 @@ public class StationStatus {
      * @param random the random generator
      */
     public StationStatus tick(double dt, Random random) {
+        return tick(dt, (trains, usedIds) -> addNewTrains(trains, usedIds, nextPoisson(random, trainFrequency * dt), random));
+    }
+
+    /**
+     * Returns the next status simulating the time elapsed interval with the trains arriving at the given entries.
+     * <p>
+     * The arriving trains are timed by their scheduled arrival instants, so they do not depend on the time interval.
+     * </p>
+     *
+     * @param dt       the time interval (s)
+     * @param arrivals the entries and the instants (s) of arriving trains
+     * @param random   the random generator
+     */
+    StationStatus tick(double dt, List<Tuple2<Entry, Double>> arrivals, Random random) {
+        return tick(dt, (trains, usedIds) -> addNewTrains(trains, usedIds, arrivals, random));
+    }
+
+    /**
+     * Returns the next status simulating the time elapsed interval.
+     * <p>
+     * The idle trains (e.g. loading or waiting for run) are not simulated,
+     * only their idle performance is accounted.
+     * </p>
+     *
+     * @param dt       the time interval (s)
+     * @param arrivals the function adding the arriving trains to the simulated trains
+     */
+    private StationStatus tick(double dt, BiFunction<List<Train>, BitSet, List<Train>> arrivals) {
         SimulationContext ctx = new SimulationContext(this);
-        List<Tuple2<Optional<Train>, Performance>> transitions = getTrains().stream()
-                .map(t -> t.tick(ctx, dt))
-                .collect(Collectors.toList());
-        Performance performance = Performance.sumIterable(
-                transitions.stream()
-                        .map(Tuple2::getV2)
-                        .collect(Collectors.toList()));
-        List<Train> newTrains = transitions.stream()
-                .flatMap(t -> t._1.stream())
-                .collect(Collectors.toCollection(ArrayList::new));
+        MutableTrain mutableTrain = new MutableTrain();
+        PerformanceAccumulator accumulator = new PerformanceAccumulator();
+        List<Train> newTrains = new ArrayList<>(trains.size());
+        BitSet usedIds = (BitSet) getUsedTrainIds().clone();
+        double t0 = getTime();
+        for (Train train : trains) {
+            if (train.isIdle(t0, dt)) {
+                train.addIdlePerformance(accumulator, dt);
+                newTrains.add(train);
+                continue;
+            }
+            Train newTrain = train.tick(ctx, dt, mutableTrain);
+            accumulator.add(mutableTrain.getPerformance());
+            if (newTrain != null) {
+                newTrains.add(newTrain);
+            } else {
+                releaseTrainId(usedIds, train);
+            }
+        }
+        return completeTick(ctx.getStatus(), newTrains, usedIds, accumulator.toPerformance(), dt, arrivals);
+    }
+
+    /**
+     * Returns the next status simulating the time elapsed interval evaluating the trains in parallel.
+     * <p>
+     * The not idle trains are simulated on the pool against a frozen status with the sound events deferred
+     * and the signal reads and locks journaled.
+     * The transitions are merged in the train order replaying the journals on the merged status:
+     * only the trains reading signals changed by the locks of the previous trains are simulated again.
+     * So the results and the sound events are the same of the sequential tick.
+     * </p>
+     *
+     * @param dt     the time interval (s)
+     * @param random the random generator
+     * @param pool   the fork join pool
+     */
+    public StationStatus tick(double dt, Random random, ForkJoinPool pool) {
+        List<Train> trainList = new ArrayList<>(trains);
+        int n = trainList.size();
+        double t0 = getTime();
+        StationStatus frozen = computeTrainMaps();
+        TrainTransition[] transitions = pool.submit(() ->
+                IntStream.range(0, n)
+                        .parallel()
+                        .mapToObj(i -> {
+                            Train train = trainList.get(i);
+                            return train.isIdle(t0, dt) ? null : TrainTransition.create(train, frozen, dt);
+                        })
+                        .toArray(TrainTransition[]::new)
+        ).join();
+        PerformanceAccumulator accumulator = new PerformanceAccumulator();
+        List<Train> newTrains = new ArrayList<>(n);
+        BitSet usedIds = (BitSet) getUsedTrainIds().clone();
+        StationStatus status = frozen;
+        for (int i = 0; i < n; i++) {
+            Train train = trainList.get(i);
+            TrainTransition transition = transitions[i];
+            if (transition == null) {
+                train.addIdlePerformance(accumulator, dt);
+                newTrains.add(train);
+                continue;
+            }
+            StationStatus next = status == frozen
+                    ? transition.context.getStatus()
+                    : transition.context.replay(status);
+            if (next == null) {
+                // Signals changed by the previous trains: the train is simulated again
+                transition = TrainTransition.create(train, status, dt);
+                next = transition.context.getStatus();
+            }
+            status = next;
+            accumulator.add(transition.performance);
+            if (transition.train != null) {
+                newTrains.add(transition.train);
+            } else {
+                releaseTrainId(usedIds, train);
+            }
+            transition.context.playDeferredEvents();
+        }
+        return completeTick(status, newTrains, usedIds, accumulator.toPerformance(), dt,
+                (trains, ids) -> addNewTrains(trains, ids, nextPoisson(random, trainFrequency * dt), random));
+    }
+
+    /**
+     * Returns the status with the lazy train maps computed so it can be read by concurrent simulations
+     */
+    private StationStatus computeTrainMaps() {
+        getFirstTrainByEntry();
+        getTrainByEdge();
+        getTrainBySection();
+        getTrainByExit();
+        getUsedTrainIds();
+        return this;
+    }
+
+    /**
+     * Returns the status completing the simulation tick with the new trains and the performance
+     *
+     * @param status      the simulated status
+     * @param newTrains   the simulated trains
+     * @param usedIds     the identifier numbers used by the simulated trains
+     * @param performance the performance of simulated trains
+     * @param dt          the time interval (s)
+     * @param arrivals    the function adding the arriving trains to the simulated trains
+     */
+    private StationStatus completeTick(StationStatus status, List<Train> newTrains, BitSet usedIds, Performance performance, double dt,
+                                       BiFunction<List<Train>, BitSet, List<Train>> arrivals) {
         int trainNumber = newTrains.size();
-        newTrains = createNewTrains(newTrains, trainFrequency * dt, random);
+        newTrains = arrivals.apply(newTrains, usedIds);
         int incomingTrainNumber = newTrains.size() - trainNumber;
         ExtendedPerformance newPerformance = this.performance.addTrainIncomingNumber(incomingTrainNumber)
                 .add(performance)
                 .setElapsedTime(this.performance.getElapsedTime() + dt);
 
-        return ctx.getStatus()
-                .setTrains(newTrains)
+        return status
+                .setTrains(newTrains, usedIds)
                 .setPerformance(newPerformance);
     }
 
@@ -1347,39 +1645,57 @@ public class StationStatus {
      * @param id the switch identifier
      */
     public StationStatus toggleDoubleSlipSwitch(String id) {
+        return tryToggleDoubleSlipSwitch(id)
+                .map(newRoute -> {
+                    StationStatus stationStatus = replaceRoutes(newRoute);
+                    play(SoundEvent.SWITCH);
+                    return stationStatus.isConsistent() ? stationStatus : this;
+                })
+                .orElse(this);
+    }
+
+    /**
+     * Returns the station status with switch toggled
+     *
+     * @param id the switch identifier
+     */
+    public StationStatus toggleSwitch(String id) {
+        return tryToggleSwitch(id)
+                .map(newRoute -> {
+                    play(SoundEvent.SWITCH);
+                    return replaceRoutes(newRoute);
+                })
+                .orElse(this);
+    }
+
+    /**
+     * Returns the toggled double slip switch if no train is in the switch sections
+     *
+     * @param id the switch identifier
+     */
+    Optional<DoubleSlipSwitch> tryToggleDoubleSlipSwitch(String id) {
         DoubleSlipSwitch route = getRoute(id);
         Edge entry0 = route.getNodes().get(0).getEdges().get(0);
         Edge entry2 = route.getNodes().get(2).getEdges().get(0);
         if (isSectionWithTrain(entry0) || isSectionWithTrain(entry2)) {
-            return this;
+            return Optional.empty();
         }
-        DoubleSlipSwitch newRoute = route.isThrough() ? route.diverging() : route.through();
-        List<Route> newRoutes = getRoutes().stream()
-                .map(route1 -> route1.equals(route) ? newRoute : route1)
-                .collect(Collectors.toList());
-        StationStatus stationStatus = setRoutes(newRoutes);
-        play(SoundEvent.SWITCH);
-        return stationStatus.isConsistent() ? stationStatus : this;
+        return Optional.of(route.isThrough() ? route.diverging() : route.through());
     }
 
     /**
-     * Returns the station status with switch toggled
+     * Returns the toggled switch if no train is in the switch section
      *
      * @param id the switch identifier
      */
-    public StationStatus toggleSwitch(String id) {
+    Optional<Switch> tryToggleSwitch(String id) {
         Switch route = getRoute(id);
         Edge entryEdge = route.getNodes().get(0).getEdges().get(0);
         if (getSection(entryEdge).flatMap(this::getTrain).isPresent()) {
             // Train in the current section
-            return this;
+            return Optional.empty();
         }
-        Switch newRoute = route.isThrough() ? route.diverging() : route.through();
-        List<Route> newRoutes = getRoutes().stream()
-                .map(route1 -> route1.equals(route) ? newRoute : route1)
-                .collect(Collectors.toList());
-        play(SoundEvent.SWITCH);
-        return setRoutes(newRoutes);
+        return Optional.of(route.isThrough() ? route.diverging() : route.through());
     }
 
     /**
@@ -1389,7 +1705,7 @@ public class StationStatus {
      * @param locator the locator
      */
     public Train trainFromJson(JsonNode root, Locator locator) {
-        TRAIN_VALIDATOR.apply(locator).accept(root);
+        TRAIN_VALIDATOR.validate(root, locator);
         String id = locator.path("id").getNode(root).asText();
         int numCoaches = locator.path("numCoaches").getNode(root).asInt();
         Entry arrival = getRoute(locator.path("arrival").getNode(root).asText());
@@ -1414,22 +1730,10 @@ public class StationStatus {
      * @param section the section
      */
     StationStatus unlock(Section section) {
-        HashSet<Route> newRoutes = new HashSet<>(getRoutes());
-        Stream.of(section.getExit0(), section.getExit1())
-                .flatMap(dir -> {
-                    // Finds the route terminal of section
-                    Route route = getRoute(dir.getOrigin());
-                    // Find the entry direction into the section
-                    Optional<Direction> entryOpt = route.getExit(dir.opposite()).map(Direction::opposite);
-                    return entryOpt.map(entry -> Tuple2.of(route, entry)).stream();
-                })
-                .filter(t -> t._1 instanceof Signal)
-                .map(t -> ((Signal) t._1).unlock(t._2))
-                .forEach(signal -> {
-                    newRoutes.remove(signal);
-                    newRoutes.add(signal);
-                });
-        return setRoutes(newRoutes);
+        Route[] newRoutes = getSignalEntries(section)
+                .map(t -> t._1.unlock(t._2))
+                .toArray(Route[]::new);
+        return replaceRoutes(newRoutes);
     }
 
     /**
@@ -1438,9 +1742,7 @@ public class StationStatus {
      * @param id the section identifier
      */
     public StationStatus unlockSection(String id) {
-        return getSections().stream()
-                .filter(section -> section.getId().equals(id))
-                .findAny()
+        return index.getSection(id)
                 .map(this::unlock)
                 .orElse(this);
     }
@@ -1453,7 +1755,7 @@ public class StationStatus {
      */
     public StationStatus unlockSignal(String id, String edgeId) {
         Signal signal = getRoute(id);
-        Edge edge = stationMap.getEdge(edgeId);
+        Edge edge = getStationMap().getEdge(edgeId);
         return signal.getValidEntries().stream()
                 .filter(dir -> dir.getEdge().equals(edge))
                 .findAny()
@@ -1461,14 +1763,46 @@ public class StationStatus {
                         signal.isLocked(entryDir)
                                 ? Optional.of(signal.unlock(entryDir))
                                 : Optional.empty())
-                .map(newSignal ->
-                        setRoutes(getRoutes().stream().
-                                map(route -> route.equals(signal)
-                                        ? newSignal : route)
-                                .collect(Collectors.toList())))
+                .map(this::replaceRoutes)
                 .orElse(this);
     }
 
+    /**
+     * The simulated transition of a train against a frozen status
+     */
+    private static class TrainTransition {
+        /**
+         * Returns the transition of the train
+         *
+         * @param train  the train
+         * @param status the frozen status
+         * @param dt     the time interval (s)
+         */
+        static TrainTransition create(Train train, StationStatus status, double dt) {
+            SimulationContext context = new SimulationContext(status, true);
+            MutableTrain mutableTrain = new MutableTrain();
+            Train newTrain = train.tick(context, dt, mutableTrain);
+            return new TrainTransition(newTrain, mutableTrain.getPerformance(), context);
+        }
+
+        private final Train train;
+        private final PerformanceAccumulator performance;
+        private final SimulationContext context;
+
+        /**
+         * Creates the transition
+         *
+         * @param train       the new train or null if the train has left the station
+         * @param performance the performance
+         * @param context     the simulation context
+         */
+        private TrainTransition(Train train, PerformanceAccumulator performance, SimulationContext context) {
+            this.train = train;
+            this.performance = performance;
+            this.context = context;
+        }
+    }
+
     /**
      * Creates the station status by the station map, route builders and no trains
      * The builders are a tuple of node identifier array and function that creates the route by node array
@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.mmarini.ChannelInput;
+import org.mmarini.ChannelOutput;
+import org.mmarini.railways2.model.blocks.BlockBuilder;
+import org.mmarini.railways2.model.blocks.StationDef;
+import org.mmarini.railways2.model.geometry.Direction;
+import org.mmarini.railways2.model.geometry.EdgeLocation;
+import org.mmarini.railways2.model.geometry.StationMap;
+import org.mmarini.railways2.model.routes.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Encodes and decodes the station status as binary snapshot.
+ * <p>
+ * The snapshot contains the header (magic number and version), the dictionary of all the identifiers,
+ * the train frequency, the performance, the states of switches and signals and the trains.
+ * Identifiers are encoded as dictionary indices and all the other values as primitives.
+ * The counts, indices and identifiers read from a snapshot are checked so corrupted data
+ * fails with {@link IllegalArgumentException}.
+ * The station map is not encoded, the snapshot is decoded against the station definition
+ * or the topology of a reference status.
+ * </p>
+ * <p>
+ * The station status is immutable so a snapshot can be written by any thread
+ * without blocking the simulator.
+ * </p>
+ */
+public class StationStatusCodec {
+    public static final int MAGIC = 0x52575353;
+    public static final short VERSION = 1;
+    private static final byte SWITCH = 1;
+    private static final byte DOUBLE_SLIP_SWITCH = 2;
+    private static final byte SIGNAL = 3;
+    private static final int LOADED_FLAG = 1;
+    private static final int LOCATION_FLAG = 2;
+    private static final int EXITING_FLAG = 4;
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    /**
+     * Returns the station status decoded from the channel
+     *
+     * @param channel    the channel
+     * @param stationDef the station definition
+     * @throws IOException              in case of error
+     * @throws IllegalArgumentException in case of invalid snapshot
+     */
+    public static StationStatus read(ReadableByteChannel channel, StationDef stationDef) throws IOException {
+        BlockBuilder builder = new BlockBuilder(stationDef);
+        return read(channel, builder.buildTopology(), builder.buildRoutes());
+    }
+
+    /**
+     * Returns the station status decoded from the channel sharing the topology of a reference status
+     *
+     * @param channel   the channel
+     * @param reference the reference status
+     * @throws IOException              in case of error
+     * @throws IllegalArgumentException in case of invalid snapshot
+     */
+    public static StationStatus read(ReadableByteChannel channel, StationStatus reference) throws IOException {
+        return read(channel, reference.getTopology(), reference.getRoutes());
+    }
+
+    /**
+     * Returns the station status decoded from the channel
+     *
+     * @param channel  the channel
+     * @param topology the station topology
+     * @param routes   the station routes
+     * @throws IOException              in case of error
+     * @throws IllegalArgumentException in case of invalid snapshot
+     */
+    static StationStatus read(ReadableByteChannel channel, StationTopology topology, Collection<? extends Route> routes) throws IOException {
+        return read(new ChannelInput(channel), topology, routes);
+    }
+
+    /**
+     * Returns the station status decoded from the input
+     *
+     * @param in       the input
+     * @param topology the station topology
+     * @param routes   the station routes
+     * @throws IOException              in case of error
+     * @throws IllegalArgumentException in case of invalid snapshot
+     */
+    static StationStatus read(ChannelInput in, StationTopology topology, Collection<? extends Route> routes) throws IOException {
+        requireNonNull(topology);
+        requireNonNull(routes);
+        int magic = in.getInt();
+        if (magic != MAGIC) {
+            throw new IllegalArgumentException(format("Invalid snapshot magic number %08x", magic));
+        }
+        short version = in.getShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException(format("Unsupported snapshot version %d", version));
+        }
+        // Reads the dictionary
+        int dictSize = readCount(in, "identifier");
+        List<String> dict = new ArrayList<>(Math.min(dictSize, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < dictSize; i++) {
+            dict.add(in.getString());
+        }
+        double trainFrequency = in.getDouble();
+        String stationId = readId(in, dict);
+        double gameDuration = in.getDouble();
+        String player = readId(in, dict);
+        long timestamp = in.getLong();
+        int incomingTrainNumber = in.getInt();
+        int rightOutgoingTrainNumber = in.getInt();
+        int wrongOutgoingTrainNumber = in.getInt();
+        double totalTrainTime = in.getDouble();
+        double traveledDistance = in.getDouble();
+        int trainStopNumber = in.getInt();
+        double trainWaitingTime = in.getDouble();
+        double elapsedTime = in.getDouble();
+        ExtendedPerformance performance = new ExtendedPerformance(stationId, gameDuration, player, timestamp,
+                incomingTrainNumber, rightOutgoingTrainNumber, wrongOutgoingTrainNumber,
+                totalTrainTime, traveledDistance, trainStopNumber, trainWaitingTime, elapsedTime);
+
+        // Reads the route states
+        List<Route> newRoutes = new ArrayList<>(routes);
+        Map<String, Integer> indexById = new HashMap<>();
+        for (int i = 0; i < newRoutes.size(); i++) {
+            indexById.put(newRoutes.get(i).getId(), i);
+        }
+        StationMap stationMap = topology.getStationMap();
+        int noRoutes = readCount(in, "route");
+        for (int i = 0; i < noRoutes; i++) {
+            String id = readId(in, dict);
+            Integer index = indexById.get(id);
+            if (index == null) {
+                throw new IllegalArgumentException(format("Route %s does not exist", id));
+            }
+            Route route = newRoutes.get(index);
+            byte kind = in.getByte();
+            if (kind == SWITCH && route instanceof Switch) {
+                boolean through = in.getByte() != 0;
+                newRoutes.set(index, through ? ((Switch) route).through() : ((Switch) route).diverging());
+            } else if (kind == DOUBLE_SLIP_SWITCH && route instanceof DoubleSlipSwitch) {
+                boolean through = in.getByte() != 0;
+                newRoutes.set(index, through ? ((DoubleSlipSwitch) route).through() : ((DoubleSlipSwitch) route).diverging());
+            } else if (kind == SIGNAL && route instanceof Signal) {
+                int noLocks = in.getByte();
+                if (noLocks < 0 || noLocks > route.getNodes().get(0).getEdges().size()) {
+                    throw new IllegalArgumentException(format("Invalid lock count %d for %s", noLocks, id));
+                }
+                Direction[] locks = new Direction[noLocks];
+                for (int j = 0; j < noLocks; j++) {
+                    locks[j] = (stationMap.getEdge(readId(in, dict))).getDirection(route.getNodes().get(0));
+                }
+                newRoutes.set(index, ((Signal) route).setLocks(locks));
+            } else {
+                throw new IllegalArgumentException(format("Invalid route kind %d for %s", kind, id));
+            }
+        }
+        StationStatus status = StationStatus.create(topology, newRoutes, trainFrequency, performance);
+
+        // Reads the trains
+        int noTrains = readCount(in, "train");
+        List<Train> trains = new ArrayList<>(Math.min(noTrains, MAX_INITIAL_CAPACITY));
+        for (int i = 0; i < noTrains; i++) {
+            String id = readId(in, dict);
+            int numCoaches = in.getShort();
+            if (numCoaches <= 0) {
+                throw new IllegalArgumentException(format("Invalid number of coaches %d for train %s", numCoaches, id));
+            }
+            Entry arrival = readRoute(in, dict, status, Entry.class);
+            Exit destination = readRoute(in, dict, status, Exit.class);
+            int stateIndex = in.getByte();
+            if (stateIndex < 0 || stateIndex >= Train.STATES.size()) {
+                throw new IllegalArgumentException(format("Invalid state %d for train %s", stateIndex, id));
+            }
+            Train.State state = Train.STATES.get(stateIndex);
+            int flags = in.getByte();
+            double arrivalTime = in.getDouble();
+            double loadedTime = in.getDouble();
+            double speed = in.getDouble();
+            double exitDistance = in.getDouble();
+            EdgeLocation location = null;
+            if ((flags & LOCATION_FLAG) != 0) {
+                String edge = readId(in, dict);
+                String destinationNode = readId(in, dict);
+                double distance = in.getDouble();
+                location = EdgeLocation.create(stationMap.getEdge(edge), stationMap.getNode(destinationNode), distance);
+            }
+            Exit exitingNode = (flags & EXITING_FLAG) != 0
+                    ? readRoute(in, dict, status, Exit.class)
+                    : null;
+            trains.add(new Train(id, numCoaches, arrival, destination, state, arrivalTime, location, speed,
+                    (flags & LOADED_FLAG) != 0, loadedTime, exitingNode, exitDistance));
+        }
+        return status.setTrains(trains);
+    }
+
+    /**
+     * Returns a count read from the input
+     *
+     * @param in   the input
+     * @param name the name of counted items
+     * @throws IOException              in case of error
+     * @throws IllegalArgumentException in case of negative count
+     */
+    private static int readCount(ChannelInput in, String name) throws IOException {
+        int count = in.getInt();
+        if (count < 0) {
+            throw new IllegalArgumentException(format("Invalid %s count %d", name, count));
+        }
+        return count;
+    }
+
+    /**
+     * Returns the identifier read as dictionary index from the input
+     *
+     * @param in   the input
+     * @param dict the dictionary
+     * @throws IOException              in case of error
+     * @throws IllegalArgumentException in case of invalid index
+     */
+    private static String readId(ChannelInput in, List<String> dict) throws IOException {
+        int index = in.getInt();
+        if (index < 0 || index >= dict.size()) {
+            throw new IllegalArgumentException(format("Invalid identifier index %d", index));
+        }
+        return dict.get(index);
+    }
+
+    /**
+     * Returns the route identified by the dictionary index read from the input
+     *
+     * @param in     the input
+     * @param dict   the dictionary
+     * @param status the station status
+     * @param type   the route type
+     * @param <T>    the route type
+     * @throws IOException              in case of error
+     * @throws IllegalArgumentException in case of invalid index or route
+     */
+    private static <T extends Route> T readRoute(ChannelInput in, List<String> dict, StationStatus status, Class<T> type) throws IOException {
+        String id = readId(in, dict);
+        Route route = status.getRoute(id);
+        if (!type.isInstance(route)) {
+            throw new IllegalArgumentException(format("Route %s is not %s", id, type.getSimpleName()));
+        }
+        return type.cast(route);
+    }
+
+    /**
+     * Returns the station status decoded from a snapshot file
+     *
+     * @param file       the file
+     * @param stationDef the station definition
+     * @throws IOException in case of error
+     */
+    public static StationStatus read(Path file, StationDef stationDef) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel, stationDef);
+        }
+    }
+
+    /**
+     * Writes the snapshot of station status to the channel
+     *
+     * @param status  the station status
+     * @param channel the channel
+     * @throws IOException in case of error
+     */
+    public static void write(StationStatus status, WritableByteChannel channel) throws IOException {
+        ChannelOutput out = new ChannelOutput(channel);
+        write(status, out);
+        out.flush();
+    }
+
+    /**
+     * Writes the snapshot of station status to the output without flushing it
+     *
+     * @param status the station status
+     * @param out    the output
+     * @throws IOException in case of error
+     */
+    static void write(StationStatus status, ChannelOutput out) throws IOException {
+        requireNonNull(status);
+        // Collects the stateful routes and the dictionary
+        Map<String, Integer> dict = new LinkedHashMap<>();
+        List<Route> statefulRoutes = new ArrayList<>();
+        for (Route route : status.getRoutes()) {
+            if (route instanceof Switch || route instanceof DoubleSlipSwitch || route instanceof Signal) {
+                statefulRoutes.add(route);
+                idOf(dict, route.getId());
+                if (route instanceof Signal) {
+                    for (Direction lock : getLocks((Signal) route)) {
+                        idOf(dict, lock.getEdge().getId());
+                    }
+                }
+            }
+        }
+        ExtendedPerformance performance = status.getPerformance();
+        idOf(dict, performance.getStationId());
+        idOf(dict, performance.getPlayer());
+        Collection<Train> trains = status.getTrains();
+        for (Train train : trains) {
+            idOf(dict, train.getId());
+            idOf(dict, train.getArrival().getId());
+            idOf(dict, train.getDestination().getId());
+            train.getLocation().ifPresent(location -> {
+                idOf(dict, location.getDirection().getEdge().getId());
+                idOf(dict, location.getDirection().getDestination().getId());
+            });
+            Optional.ofNullable(train.getExitingNode()).ifPresent(exit -> idOf(dict, exit.getId()));
+        }
+
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+        out.putInt(dict.size());
+        for (String id : dict.keySet()) {
+            out.putString(id);
+        }
+        out.putDouble(status.getTrainFrequency());
+        out.putInt(dict.get(performance.getStationId()));
+        out.putDouble(performance.getGameDuration());
+        out.putInt(dict.get(performance.getPlayer()));
+        out.putLong(performance.getTimestamp());
+        out.putInt(performance.getIncomingTrainNumber());
+        out.putInt(performance.getRightOutgoingTrainNumber());
+        out.putInt(performance.getWrongOutgoingTrainNumber());
+        out.putDouble(performance.getTotalTrainTime());
+        out.putDouble(performance.getTraveledDistance());
+        out.putInt(performance.getTrainStopNumber());
+        out.putDouble(performance.getTrainWaitingTime());
+        out.putDouble(performance.getElapsedTime());
+
+        out.putInt(statefulRoutes.size());
+        for (Route route : statefulRoutes) {
+            out.putInt(dict.get(route.getId()));
+            if (route instanceof Switch) {
+                out.putByte(SWITCH);
+                out.putByte(((Switch) route).isThrough() ? 1 : 0);
+            } else if (route instanceof DoubleSlipSwitch) {
+                out.putByte(DOUBLE_SLIP_SWITCH);
+                out.putByte(((DoubleSlipSwitch) route).isThrough() ? 1 : 0);
+            } else {
+                List<Direction> locks = getLocks((Signal) route);
+                out.putByte(SIGNAL);
+                out.putByte(locks.size());
+                for (Direction lock : locks) {
+                    out.putInt(dict.get(lock.getEdge().getId()));
+                }
+            }
+        }
+
+        out.putInt(trains.size());
+        for (Train train : trains) {
+            Optional<EdgeLocation> location = train.getLocation();
+            Exit exitingNode = train.getExitingNode();
+            int flags = (train.isUnloaded() ? 0 : LOADED_FLAG)
+                    | (location.isPresent() ? LOCATION_FLAG : 0)
+                    | (exitingNode != null ? EXITING_FLAG : 0);
+            out.putInt(dict.get(train.getId()));
+            out.putShort((short) train.getNumCoaches());
+            out.putInt(dict.get(train.getArrival().getId()));
+            out.putInt(dict.get(train.getDestination().getId()));
+            out.putByte(Train.STATES.indexOf(train.getState()));
+            out.putByte(flags);
+            out.putDouble(train.getArrivalTime());
+            out.putDouble(train.getLoadedTime());
+            out.putDouble(train.getSpeed());
+            out.putDouble(train.getExitDistance());
+            if (location.isPresent()) {
+                Direction direction = location.get().getDirection();
+                out.putInt(dict.get(direction.getEdge().getId()));
+                out.putInt(dict.get(direction.getDestination().getId()));
+                out.putDouble(location.get().getDistance());
+            }
+            if (exitingNode != null) {
+                out.putInt(dict.get(exitingNode.getId()));
+            }
+        }
+    }
+
+    /**
+     * Writes the snapshot of station status to a file.
+     * <p>
+     * The snapshot is written to a temporary file moved to the target file when completed,
+     * so a crash while writing leaves the previous snapshot untouched.
+     * </p>
+     *
+     * @param status the station status
+     * @param file   the file
+     * @throws IOException in case of error
+     */
+    public static void write(StationStatus status, Path file) throws IOException {
+        requireNonNull(status);
+        CheckpointService.writeAtomically(file, channel -> write(status, channel));
+    }
+
+    /**
+     * Returns the locked entries of a signal
+     *
+     * @param signal the signal
+     */
+    static List<Direction> getLocks(Signal signal) {
+        List<Direction> result = new ArrayList<>();
+        for (Direction entry : signal.getValidEntries()) {
+            if (signal.isLocked(entry)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the dictionary index of an identifier adding it if not present
+     *
+     * @param dict the dictionary
+     * @param id   the identifier
+     */
+    private static int idOf(Map<String, Integer> dict, String id) {
+        return dict.computeIfAbsent(id, k -> dict.size());
+    }
+}
@@ -81,7 +81,7 @@ public class StationStatusLoader {
      * @param stationDef the station definition
      */
     public static StationStatus fromJson(JsonNode root, Locator locator, StationDef stationDef) {
-        VALIDATOR.apply(locator).accept(root);
+        VALIDATOR.validate(root, locator);
         BlockBuilder mapBuilder = new BlockBuilder(stationDef);
         StationMap stationMap = mapBuilder.buildStationMap();
         ExtendedPerformance performance = ExtendedPerformance.fromJson(root, locator.path("performance"));
@@ -107,7 +107,7 @@ public class StationStatusLoader {
                         Direction[] locks = routeLocator.path("locks").elements(root)
                                 .map(edgeLocator -> {
                                     Edge edge = stationMap.getEdge(edgeLocator.getNode(root).asText());
-                                    return new Direction(edge, route.getNodes().get(0));
+                                    return edge.getDirection(route.getNodes().get(0));
                                 })
                                 .toArray(Direction[]::new);
                         return ((Signal) route).setLocks(locks);
@@ -117,7 +117,7 @@ public class StationStatusLoader {
                 })
                 .collect(Collectors.toList());
 
-        StationStatus status = StationStatus.create(stationMap, routes, trainFrequency, performance);
+        StationStatus status = StationStatus.create(mapBuilder.buildTopology(), routes, trainFrequency, performance);
 
         List<Train> trains = locator.path("trains").elements(root)
                 .map(loc -> status.trainFromJson(root, loc))
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.model;
+
+import org.mmarini.railways2.model.geometry.*;
+import org.mmarini.railways2.model.routes.Entry;
+import org.mmarini.railways2.model.routes.Exit;
+import org.mmarini.railways2.model.routes.Route;
+import org.mmarini.railways2.model.routes.SectionTerminal;
+
+import java.awt.geom.Point2D;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The station data that never changes during a game.
+ * <p>
+ * It contains the station map, the route slot of each node, the entries, the exits and the section terminal directions.
+ * The topology is built once per game and shared by all the station statuses.
+ * The sections depend on the switch states so they are kept by the station index.
+ * </p>
+ * <p>
+ * The topology compiles the graph to dense identifiers: the edges are numbered by identifier order
+ * and the direction toward the node <i>k</i> of edge <i>e</i> has identifier <code>2 * e + k</code>.
+ * The graph walks run on the direction identifiers through the next direction table of the station index.
+ * </p>
+ * <p>
+ * The topology keeps the arc-length parametrisation of the tracks (the terminal points) and of the curves
+ * (the curve lookup tables) by edge identifier so the points along a path
+ * are computed without creating edge locations.
+ * </p>
+ */
+public class StationTopology {
+    private static final int EDGE_PARAMS_SIZE = 5;
+    private static final double OTHER_EDGE = 0;
+    private static final double TRACK_EDGE = 1;
+    private static final double CURVE_EDGE = 2;
+
+    /**
+     * Returns the station topology
+     *
+     * @param stationMap the station map
+     * @param routes     the routes
+     */
+    public static StationTopology create(StationMap stationMap, Collection<? extends Route> routes) {
+        Map<Node, Integer> slotByNode = new HashMap<>();
+        int slot = 0;
+        for (Route route : routes) {
+            for (Node node : route.getNodes()) {
+                if (slotByNode.put(node, slot) != null) {
+                    throw new IllegalArgumentException(format("Node %s has multiple routes", node.getId()));
+                }
+                // Resolves the lazy directions so the nodes can be read by concurrent simulations
+                node.getExits();
+                node.getEntries();
+            }
+            slot++;
+        }
+        List<Entry> entries = routes.stream()
+                .filter(route -> route instanceof Entry)
+                .map(entry -> (Entry) entry)
+                .collect(Collectors.toUnmodifiableList());
+        List<Exit> exits = routes.stream()
+                .filter(route -> route instanceof Exit)
+                .map(exit -> (Exit) exit)
+                .collect(Collectors.toUnmodifiableList());
+        // Extracts all the section terminal directions
+        Set<Direction> terminalExits = routes.stream()
+                .filter(route -> route instanceof SectionTerminal)
+                .flatMap(route -> route.getValidExits().stream())
+                .collect(Collectors.toUnmodifiableSet());
+        // Compiles the directions
+        Edge[] edges = stationMap.getEdges().values().stream()
+                .sorted(Comparator.comparing(Edge::getId))
+                .toArray(Edge[]::new);
+        Map<Edge, Integer> idByEdge = new HashMap<>();
+        Direction[] directions = new Direction[edges.length * 2];
+        double[] edgeLengths = new double[edges.length];
+        int[] destinationSlots = new int[edges.length * 2];
+        double[] edgeParams = new double[edges.length * EDGE_PARAMS_SIZE];
+        CurveTable[] curveTables = new CurveTable[edges.length];
+        for (int i = 0; i < edges.length; i++) {
+            Edge edge = edges[i];
+            idByEdge.put(edge, i);
+            edgeLengths[i] = edge.getLength();
+            directions[2 * i] = edge.getDirection(edge.getNode0());
+            directions[2 * i + 1] = edge.getDirection(edge.getNode1());
+            destinationSlots[2 * i] = slotByNode.getOrDefault(edge.getNode0(), -1);
+            destinationSlots[2 * i + 1] = slotByNode.getOrDefault(edge.getNode1(), -1);
+            int j = i * EDGE_PARAMS_SIZE;
+            if (edge instanceof Curve) {
+                edgeParams[j] = CURVE_EDGE;
+                curveTables[i] = ((Curve) edge).getTable();
+            } else if (edge instanceof Track) {
+                Point2D p0 = edge.getNode0().getLocation();
+                Point2D p1 = edge.getNode1().getLocation();
+                edgeParams[j] = TRACK_EDGE;
+                edgeParams[j + 1] = p0.getX();
+                edgeParams[j + 2] = p0.getY();
+                edgeParams[j + 3] = p1.getX();
+                edgeParams[j + 4] = p1.getY();
+            } else {
+                edgeParams[j] = OTHER_EDGE;
+            }
+        }
+        return new StationTopology(stationMap, slotByNode, slot, entries, exits, terminalExits,
+                idByEdge, directions, edgeLengths, destinationSlots, edgeParams, curveTables);
+    }
+
+    private final StationMap stationMap;
+    private final Map<Node, Integer> slotByNode;
+    private final int numSlots;
+    private final List<Entry> entries;
+    private final List<Exit> exits;
+    private final Set<Direction> terminalExits;
+    private final Map<Edge, Integer> idByEdge;
+    private final Direction[] directions;
+    private final double[] edgeLengths;
+    private final int[] destinationSlots;
+    private final double[] edgeParams;
+    private final CurveTable[] curveTables;
+
+    /**
+     * Creates the station topology
+     *
+     * @param stationMap       the station map
+     * @param slotByNode       the route slot by node
+     * @param numSlots         the number of route slots
+     * @param entries          the entries
+     * @param exits            the exits
+     * @param terminalExits    the section terminal directions
+     * @param idByEdge         the edge identifier by edge
+     * @param directions       the directions by identifier
+     * @param edgeLengths      the edge lengths by edge identifier
+     * @param destinationSlots the route slot of the destination node by direction identifier
+     * @param edgeParams       the track parametrisation by edge identifier
+     * @param curveTables      the curve lookup tables by edge identifier
+     */
+    protected StationTopology(StationMap stationMap, Map<Node, Integer> slotByNode, int numSlots,
+                              List<Entry> entries, List<Exit> exits, Set<Direction> terminalExits,
+                              Map<Edge, Integer> idByEdge, Direction[] directions, double[] edgeLengths,
+                              int[] destinationSlots, double[] edgeParams, CurveTable[] curveTables) {
+        this.stationMap = requireNonNull(stationMap);
+        this.slotByNode = requireNonNull(slotByNode);
+        this.numSlots = numSlots;
+        this.entries = requireNonNull(entries);
+        this.exits = requireNonNull(exits);
+        this.terminalExits = requireNonNull(terminalExits);
+        this.idByEdge = requireNonNull(idByEdge);
+        this.directions = requireNonNull(directions);
+        this.edgeLengths = requireNonNull(edgeLengths);
+        this.destinationSlots = requireNonNull(destinationSlots);
+        this.edgeParams = requireNonNull(edgeParams);
+        this.curveTables = requireNonNull(curveTables);
+    }
+
+    /**
+     * Writes the point at the given distance from the destination of the direction
+     *
+     * @param direction the direction identifier
+     * @param distance  the distance from the destination (m)
+     * @param result    the result buffer
+     * @param offset    the offset of x, y coordinates in the result buffer
+     */
+    void computeLocation(int direction, double distance, double[] result, int offset) {
+        int edge = direction >> 1;
+        double length = edgeLengths[edge];
+        // Distance from node0
+        double d0 = (direction & 1) == 0 ? distance : length - distance;
+        int j = edge * EDGE_PARAMS_SIZE;
+        double kind = edgeParams[j];
+        if (kind == TRACK_EDGE) {
+            double x0 = edgeParams[j + 1];
+            double y0 = edgeParams[j + 2];
+            result[offset] = x0 + d0 * (edgeParams[j + 3] - x0) / length;
+            result[offset + 1] = y0 + d0 * (edgeParams[j + 4] - y0) / length;
+        } else if (kind == CURVE_EDGE) {
+            curveTables[edge].computeLocation(d0, result, offset);
+        } else {
+            Point2D point = new EdgeLocation(directions[direction], distance).getLocation();
+            result[offset] = point.getX();
+            result[offset + 1] = point.getY();
+        }
+    }
+
+    /**
+     * Returns the route slot of the destination node of the direction
+     *
+     * @param direction the direction identifier
+     */
+    int getDestinationSlot(int direction) {
+        return destinationSlots[direction];
+    }
+
+    /**
+     * Returns the direction by identifier
+     *
+     * @param direction the direction identifier
+     */
+    Direction getDirection(int direction) {
+        return directions[direction];
+    }
+
+    /**
+     * Returns the direction identifier
+     *
+     * @param direction the direction
+     * @throws IllegalArgumentException if the edge of direction does not exist
+     */
+    int getDirectionId(Direction direction) {
+        Edge edge = direction.getEdge();
+        Integer id = idByEdge.get(edge);
+        if (id == null) {
+            throw new IllegalArgumentException(format("Edge %s does not exist", edge.getId()));
+        }
+        return direction.getDestination().equals(edge.getNode0()) ? 2 * id : 2 * id + 1;
+    }
+
+    /**
+     * Returns the edge length of the direction
+     *
+     * @param direction the direction identifier
+     */
+    double getLength(int direction) {
+        return edgeLengths[direction >> 1];
+    }
+
+    /**
+     * Returns the number of directions
+     */
+    int getNumDirections() {
+        return directions.length;
+    }
+
+    /**
+     * Returns the list of entries
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the list of exits
+     */
+    public List<Exit> getExits() {
+        return exits;
+    }
+
+    /**
+     * Returns the number of route slots
+     */
+    int getNumSlots() {
+        return numSlots;
+    }
+
+    /**
+     * Returns the route slot of the node
+     *
+     * @param node the node
+     * @throws IllegalArgumentException if the node has no route
+     */
+    int getSlot(Node node) {
+        Integer slot = slotByNode.get(node);
+        if (slot == null) {
+            throw new IllegalArgumentException(format("Route for node %s does not exist", node.getId()));
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the station map
+     */
+    public StationMap getStationMap() {
+        return stationMap;
+    }
+
+    /**
+     * Returns the section terminal directions
+     */
+    Set<Direction> getTerminalExits() {
+        return terminalExits;
+    }
+}
@@ -58,9 +58,9 @@ import static org.mmarini.yaml.Utils.objectMapper;
  */
 public class Train {
 
-    public static final State STATE_EXITING = new State("EXITING", Train::exiting);
-    public static final State STATE_WAITING_FOR_RUN = new State("WAITING_FOR_RUN", Train::waitingForRun);
-    public static final State STATE_LOADING = new State("LOADING", Train::loading);
+    public static final State STATE_EXITING = new State("EXITING", Train::exiting, MutableTrain::exiting);
+    public static final State STATE_WAITING_FOR_RUN = new State("WAITING_FOR_RUN", Train::waitingForRun, MutableTrain::waitingForRun);
+    public static final State STATE_LOADING = new State("LOADING", Train::loading, MutableTrain::loading);
     private static final int MAX_ITERATIONS = 5;
 
     /**
@@ -77,6 +77,30 @@ public class Train {
                 null, 0);
     }
 
+    /**
+     * Returns the distance to stop a train at the given speed (m)
+     *
+     * @param speed the speed (m/s)
+     */
+    static double stopDistance(double speed) {
+        /*
+         * a = v/t => t = v/a s = 1/2 a t^2 = 1/2 a v^2/a^2 = 1/2 v^2/a
+         */
+        return speed * speed / DEACCELERATION * -0.5;
+    }
+
+    /**
+     * Returns the real speed applying the physics constraints (m/s)
+     *
+     * @param speed       the current speed (m/s)
+     * @param targetSpeed target speed (m/s)
+     * @param dt          the time interval
+     */
+    static double speedPhysics(double speed, double targetSpeed, double dt) {
+        double acc = min(max((targetSpeed - speed) / dt, DEACCELERATION), ACCELERATION);
+        return min(speed + acc * dt, MAX_SPEED);
+    }
+
     /**
      * Returns the train state from the identifier
      *
@@ -332,7 +356,7 @@ public class Train {
         result.put("exitingNode", Optional.ofNullable(exitingNode).map(Exit::getId).orElse(null));
         result.put("exitDistance", this.exitDistance);
         return result;
-    }    public static final State STATE_RUNNING = new State("RUNNING", Train::running);
+    }    public static final State STATE_RUNNING = new State("RUNNING", Train::running, MutableTrain::running);
 
     /**
      * Returns the length of train (m)
@@ -405,10 +429,7 @@ public class Train {
      * Returns the distance to stop the train (m)
      */
     public double getStopDistance() {
-        /*
-         * a = v/t => t = v/a s = 1/2 a t^2 = 1/2 a v^2/a^2 = 1/2 v^2/a
-         */
-        return speed * speed / DEACCELERATION * -0.5;
+        return stopDistance(speed);
     }
 
     @Override
@@ -600,6 +621,13 @@ public class Train {
                 new Train(id, numCoaches, arrival, destination, state, arrivalTime, location, speed, true, loadedTime, exitingNode, exitDistance);
     }
 
+    /**
+     * Returns the loaded time instant (s)
+     */
+    double getLoadedTime() {
+        return loadedTime;
+    }
+
     /**
      * Returns the train with loaded time set
      *
@@ -617,8 +645,7 @@ public class Train {
      * @param dt          the time interval
      */
     public double speedPhysics(double targetSpeed, double dt) {
-        double acc = min(max((targetSpeed - speed) / dt, DEACCELERATION), ACCELERATION);
-        return min(speed + acc * dt, MAX_SPEED);
+        return speedPhysics(speed, targetSpeed, dt);
     }
 
     /**
@@ -665,6 +692,96 @@ public class Train {
         return Tuple2.of(Optional.ofNullable(train), Performance.sumIterable(performances));
     }
 
+    /**
+     * Adds the performance of the idle train in the time interval
+     * (the same performance of the state step without transitions)
+     *
+     * @param performance the performance accumulator
+     * @param dt          the time interval (s)
+     */
+    void addIdlePerformance(PerformanceAccumulator performance, double dt) {
+        if (state.equals(STATE_ENTERING)) {
+            performance.elapsed(dt);
+        } else {
+            performance.waiting(dt);
+        }
+    }
+
+    /**
+     * Returns the instant of the next state transition (s).
+     * <p>
+     * The trains entering the station or loading passengers change state at a known instant,
+     * the trains waiting for run change state only by player commands (positive infinity),
+     * the other trains have to be simulated at every step (negative infinity).
+     * </p>
+     */
+    double getWakeTime() {
+        if (state.equals(STATE_ENTERING)) {
+            return arrivalTime;
+        } else if (state.equals(STATE_LOADING)) {
+            return loadedTime;
+        } else if (state.equals(STATE_WAITING_FOR_RUN) && speed == 0) {
+            return Double.POSITIVE_INFINITY;
+        } else {
+            return Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Returns true if the train does not change in the time interval.
+     * <p>
+     * The idle trains can skip the simulation adding the idle performance.
+     * </p>
+     *
+     * @param t0 the current time instant (s)
+     * @param dt the time interval (s)
+     */
+    boolean isIdle(double t0, double dt) {
+        double wakeTime = getWakeTime();
+        if (wakeTime == Double.POSITIVE_INFINITY) {
+            return true;
+        } else if (wakeTime == Double.NEGATIVE_INFINITY) {
+            return false;
+        }
+        double timeToWake = wakeTime - t0;
+        if (timeToWake > 0 && timeToWake < MIN_TIME_INTERVAL) {
+            timeToWake = MIN_TIME_INTERVAL;
+        }
+        // Entering trains arrive if the arrival time is in the interval, loading trains complete after the interval
+        return state.equals(STATE_ENTERING) ? timeToWake > dt : dt <= timeToWake;
+    }
+
+    /**
+     * Returns the train after simulating a time interval, null if the train has left the station.
+     * <p>
+     * The simulation runs the state steps on the mutable train, accumulating the performance
+     * in its accumulator, and creates the new train once at the end.
+     * The result is the same of <code>tick(ctx, dt)</code>
+     * </p>
+     *
+     * @param ctx   the simulation context
+     * @param dt    the time interval (s)
+     * @param train the mutable train used as scratch status
+     */
+    Train tick(SimulationContext ctx, double dt, MutableTrain train) {
+        train.reset(this);
+        int n = 0;
+        double t0 = ctx.getTime();
+        do {
+            ++n;
+            // Computes the next transition
+            double elapsedTime = train.getState().step(train, ctx, t0, dt);
+            dt -= elapsedTime;
+            t0 += dt;
+            if (n > MAX_ITERATIONS) {
+                throw new IllegalStateException(
+                        format("Too iterations n=%d elapsedTime=%g",
+                                n, elapsedTime));
+            }
+        } while (!train.isExited() && dt > 0);
+        return train.toTrain();
+    }
+
     @Override
     public String toString() {
         return new StringBuilder(Train.class.getSimpleName())
@@ -709,16 +826,20 @@ public class Train {
     public static class State {
         private final String id;
         private final Function4<Train, SimulationContext, Double, Double, Tuple2<Optional<Train>, Performance>> function;
+        private final Step step;
 
         /**
          * Creates the trainState
          *
          * @param id       the trainState id
          * @param function the simulation function (train, context, t0, dt)
+         * @param step     the allocation free simulation step (mutable train, context, t0, dt)
          */
-        protected State(String id, Function4<Train, SimulationContext, Double, Double, Tuple2<Optional<Train>, Performance>> function) {
+        protected State(String id, Function4<Train, SimulationContext, Double, Double, Tuple2<Optional<Train>, Performance>> function,
+                        Step step) {
             this.id = requireNonNull(id);
             this.function = requireNonNull(function);
+            this.step = requireNonNull(step);
         }
 
         /**
@@ -740,21 +861,49 @@ public class Train {
             return id;
         }
 
+        /**
+         * Returns the elapsed time (s) after simulating the step of mutable train
+         *
+         * @param train   the mutable train
+         * @param context the simulation context
+         * @param t0      the t0 instant (s)
+         * @param dt      the time interval (s)
+         */
+        double step(MutableTrain train, SimulationContext context, double t0, double dt) {
+            return step.apply(train, context, t0, dt);
+        }
+
         @Override
         public String toString() {
             return id;
         }
+
+        /**
+         * Simulation step of mutable train
+         */
+        @FunctionalInterface
+        interface Step {
+            /**
+             * Returns the elapsed time (s) after simulating the step
+             *
+             * @param train   the mutable train
+             * @param context the simulation context
+             * @param t0      the t0 instant (s)
+             * @param dt      the time interval (s)
+             */
+            double apply(MutableTrain train, SimulationContext context, double t0, double dt);
+        }
     }
 
 
 
-    public static final State STATE_ENTERING = new State("ENTERING", Train::entering);
+    public static final State STATE_ENTERING = new State("ENTERING", Train::entering, MutableTrain::entering);
 
 
-    public static final State STATE_WAITING_FOR_SIGNAL = new State("WAITING_FOR_SIGNAL", Train::waitingForSignal);
+    public static final State STATE_WAITING_FOR_SIGNAL = new State("WAITING_FOR_SIGNAL", Train::waitingForSignal, MutableTrain::waitingForSignal);
 
 
-    public static final State STATE_BRAKING = new State("BRAKING", Train::braking);
+    public static final State STATE_BRAKING = new State("BRAKING", Train::braking, MutableTrain::braking);
 
     public static final List<State> STATES = List.of(
             STATE_ENTERING,
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Random;
+
+import static java.lang.String.format;
+
+/**
+ * Allocates the random train identifiers (T&lt;number&gt;) in a range of numbers.
+ * <p>
+ * The used numbers are marked in a bit set so checking a drawn number costs O(1).
+ * The station status keeps the bit set of its trains updating it when the trains arrive or leave.
+ * When the drawn numbers are repeatedly used (crowded range) the allocator selects
+ * a random number among the free ones so the allocation never loops.
+ * </p>
+ */
+public class TrainIdAllocator {
+    public static final String PREFIX = "T";
+    public static final TrainIdAllocator DEFAULT = new TrainIdAllocator(100, 999);
+    static final int MAX_DRAWS = 8;
+
+    /**
+     * Returns the allocator of the identifier range
+     *
+     * @param minId the minimum identifier number
+     * @param maxId the maximum identifier number
+     * @throws IllegalArgumentException if the range is empty or negative
+     */
+    public static TrainIdAllocator create(int minId, int maxId) {
+        if (minId < 0 || maxId < minId) {
+            throw new IllegalArgumentException(format("Invalid train identifier range %d - %d", minId, maxId));
+        }
+        return new TrainIdAllocator(minId, maxId);
+    }
+
+    private final int minId;
+    private final int maxId;
+
+    /**
+     * Creates the allocator
+     *
+     * @param minId the minimum identifier number
+     * @param maxId the maximum identifier number
+     */
+    protected TrainIdAllocator(int minId, int maxId) {
+        this.minId = minId;
+        this.maxId = maxId;
+    }
+
+    /**
+     * Returns a new random identifier marking it as used
+     *
+     * @param usedIds the used identifier numbers (offset by minimum identifier)
+     * @param random  the random number generator
+     * @throws IllegalStateException if all the identifiers are used
+     */
+    public String allocate(BitSet usedIds, Random random) {
+        int size = getSize();
+        for (int i = 0; i < MAX_DRAWS; i++) {
+            int index = random.nextInt(size);
+            if (!usedIds.get(index)) {
+                usedIds.set(index);
+                return PREFIX + (index + minId);
+            }
+        }
+        // Crowded range: selects one of the free identifiers
+        int free = size - usedIds.cardinality();
+        if (free <= 0) {
+            throw new IllegalStateException(format("No train identifier available in range %d - %d", minId, maxId));
+        }
+        int index = usedIds.nextClearBit(0);
+        for (int k = random.nextInt(free); k > 0; k--) {
+            index = usedIds.nextClearBit(index + 1);
+        }
+        usedIds.set(index);
+        return PREFIX + (index + minId);
+    }
+
+    /**
+     * Returns the maximum identifier number
+     */
+    public int getMaxId() {
+        return maxId;
+    }
+
+    /**
+     * Returns the minimum identifier number
+     */
+    public int getMinId() {
+        return minId;
+    }
+
+    /**
+     * Returns the number of identifiers
+     */
+    public int getSize() {
+        return maxId - minId + 1;
+    }
+
+    /**
+     * Returns the identifier number (offset by minimum identifier) of a train identifier
+     * or -1 if the identifier is out of the allocator scheme
+     *
+     * @param trainId the train identifier
+     */
+    public int indexOf(String trainId) {
+        if (trainId.startsWith(PREFIX)) {
+            try {
+                int number = Integer.parseInt(trainId.substring(PREFIX.length()));
+                if (number >= minId && number <= maxId) {
+                    return number - minId;
+                }
+            } catch (NumberFormatException ignored) {
+                // Identifier out of the allocator scheme
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the identifier numbers (offset by minimum identifier) used by the trains
+     *
+     * @param trains the trains
+     */
+    public BitSet usedIds(Collection<Train> trains) {
+        BitSet result = new BitSet(getSize());
+        for (Train train : trains) {
+            int index = indexOf(train.getId());
+            if (index >= 0) {
+                result.set(index);
+            }
+        }
+        return result;
+    }
+}
@@ -33,17 +33,19 @@ import org.mmarini.Tuple2;
 import org.mmarini.railways2.model.RoutesBuilder;
 import org.mmarini.railways2.model.SoundEvent;
 import org.mmarini.railways2.model.StationStatus;
-import org.mmarini.railways2.model.Train;
+import org.mmarini.railways2.model.StationTopology;
 import org.mmarini.railways2.model.geometry.*;
-import org.mmarini.railways2.model.routes.Entry;
 import org.mmarini.railways2.model.routes.Junction;
 import org.mmarini.railways2.model.routes.Route;
 import org.reactivestreams.Subscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.awt.geom.Point2D;
 import java.util.*;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -68,8 +70,24 @@ import static org.mmarini.railways2.model.MathUtils.snapToGrid;
  * <li>Finally the routes are created and mapped to the nodes.</li>
  *     </ul>
  * </p>
+ * <p>
+ * The connection points are joint by a spatial hash of the grid cells, so the junction detection costs O(n)
+ * in the number of connection points.
+ * The elapsed time of each build phase is logged and available by {@link #getPhaseTimes()}.
+ * </p>
  */
 public class BlockBuilder {
+    private static final Logger logger = LoggerFactory.getLogger(BlockBuilder.class);
+
+    /**
+     * Returns the grid cell key of a point
+     *
+     * @param ix the grid cell x index
+     * @param iy the grid cell y index
+     */
+    private static long cellKey(long ix, long iy) {
+        return (ix << 32) ^ (iy & 0xffffffffL);
+    }
 
     private final StationDef station;
     private final LazyValue<Map<String, OrientedGeometry>> worldBlockGeometries;
@@ -79,6 +97,8 @@ public class BlockBuilder {
     private final LazyValue<Map<String, Tuple2<Point2D, List<String>>>> junctionParamsByJunctionId;
     private final LazyValue<StationMap> stationMap;
     private final LazyValue<List<Route>> routes;
+    private final LazyValue<StationTopology> topology;
+    private final Map<String, Double> phaseTimes;
 
     /**
      * Creates the builder
@@ -87,13 +107,15 @@ public class BlockBuilder {
      */
     public BlockBuilder(StationDef station) {
         this.station = requireNonNull(station);
-        this.worldBlockGeometries = new LazyValue<>(this::createsBlockGeometries);
-        this.nodeIdByBlockPointId = new LazyValue<>(this::createNodeIdByBlockPointId);
-        this.junctionNodeParams = new LazyValue<>(this::createJunctionNodes);
-        this.worldGeometryByBlockPointId = new LazyValue<>(this::createWorldGeometryByBlockPointId);
-        this.junctionParamsByJunctionId = new LazyValue<>(this::createJunctionParamsByJunctionId);
-        this.stationMap = new LazyValue<>(this::createStationMap);
-        this.routes = new LazyValue<>(this::createsRoutes);
+        this.phaseTimes = new LinkedHashMap<>();
+        this.worldBlockGeometries = new LazyValue<>(timed("blockGeometries", this::createsBlockGeometries));
+        this.nodeIdByBlockPointId = new LazyValue<>(timed("nodeIds", this::createNodeIdByBlockPointId));
+        this.junctionNodeParams = new LazyValue<>(timed("junctionNodes", this::createJunctionNodes));
+        this.worldGeometryByBlockPointId = new LazyValue<>(timed("blockPointGeometries", this::createWorldGeometryByBlockPointId));
+        this.junctionParamsByJunctionId = new LazyValue<>(timed("junctions", this::createJunctionParamsByJunctionId));
+        this.stationMap = new LazyValue<>(timed("stationMap", this::createStationMap));
+        this.routes = new LazyValue<>(timed("routes", this::createsRoutes));
+        this.topology = new LazyValue<>(timed("topology", () -> StationTopology.create(buildStationMap(), buildRoutes())));
     }
 
     /**
@@ -110,6 +132,13 @@ public class BlockBuilder {
         return stationMap.get();
     }
 
+    /**
+     * Returns the station topology
+     */
+    public StationTopology buildTopology() {
+        return topology.get();
+    }
+
     /**
      * Returns the station Status
      *
@@ -119,16 +148,7 @@ public class BlockBuilder {
      * @param events       the event generator
      */
     public StationStatus buildStatus(double gameDuration, double frequency, Random random, Subscriber<SoundEvent> events) {
-        StationStatus stationStatus = StationStatus.create(buildStationMap(), buildRoutes(),
-                gameDuration, List.of(), 0, frequency, events);
-        if (random != null) {
-            List<Train> trains = new ArrayList<>();
-            for (Entry entry : stationStatus.getEntries()) {
-                trains.add(stationStatus.createNewTrain(trains, random, entry));
-            }
-            stationStatus = stationStatus.setTrains(trains).addIncomingTrains(trains.size());
-        }
-        return stationStatus;
+        return StationStatus.create(buildTopology(), buildRoutes(), gameDuration, frequency, random, events);
     }
 
     /**
@@ -180,41 +200,52 @@ public class BlockBuilder {
 
     /**
      * Returns the junction parameters by junction id
+     * <p>
+     * The block points are grouped by distance to a reference point (the first point of group).
+     * The reference points are hashed by grid cell so a block point is compared only with
+     * the reference points of the nearby cells.
+     * </p>
      */
     private Map<String, Tuple2<Point2D, List<String>>> createJunctionParamsByJunctionId() {
         // Groups block points by distance
         Map<Point2D, List<String>> blockPointMap = new HashMap<>();
+        Map<Long, List<Point2D>> refPointsByCell = new HashMap<>();
         for (Map.Entry<String, OrientedGeometry> entry : getWorldGeometryByBlockPointId().entrySet()) {
             String blockPointId = entry.getKey();
-            OrientedGeometry geometry = entry.getValue();
-            // Find reference point
-            Optional<Point2D> refPointOpt = blockPointMap.keySet().stream().filter(
-                    point -> geometry.getPoint().distance(point) < GRID_SIZE / 2
-            ).findAny();
+            Point2D point = entry.getValue().getPoint();
+            long ix = Math.round(point.getX() / GRID_SIZE);
+            long iy = Math.round(point.getY() / GRID_SIZE);
+            // Find reference point in the nearby cells
+            Point2D refPoint = null;
+            for (long i = ix - 1; i <= ix + 1 && refPoint == null; i++) {
+                for (long j = iy - 1; j <= iy + 1 && refPoint == null; j++) {
+                    for (Point2D ref : refPointsByCell.getOrDefault(cellKey(i, j), List.of())) {
+                        if (point.distance(ref) < GRID_SIZE / 2) {
+                            refPoint = ref;
+                            break;
+                        }
+                    }
+                }
+            }
             // Add reference point and block point
-            refPointOpt.ifPresentOrElse(refPoint -> blockPointMap
-                            .computeIfPresent(refPoint, (point, list) -> {
-                                list.add(blockPointId);
-                                return list;
-                            }),
-                    () ->
-                            blockPointMap.computeIfAbsent(geometry.getPoint(), p -> new ArrayList<>(List.of(blockPointId)))
-
-            );
+            if (refPoint != null) {
+                blockPointMap.get(refPoint).add(blockPointId);
+            } else {
+                refPointsByCell.computeIfAbsent(cellKey(ix, iy), k -> new ArrayList<>()).add(point);
+                blockPointMap.put(point, new ArrayList<>(List.of(blockPointId)));
+            }
         }
 
-        return Tuple2.stream(blockPointMap).
-                map(t -> {
-                    // sort block point id
-                    Point2D point = t._1;
-                    List<String> blockPointIds = t._2.stream()
-                            .sorted()
-                            .collect(Collectors.toList());
-                    // Get the node id (first block id)
-                    String nodeId = blockPointIds.get(0);
-                    return Tuple2.of(nodeId, Tuple2.of(snapToGrid(point), blockPointIds));
-                })
-                .collect(Tuple2.toMap());
+        Map<String, Tuple2<Point2D, List<String>>> result = new HashMap<>();
+        for (Map.Entry<Point2D, List<String>> entry : blockPointMap.entrySet()) {
+            // sort block point id
+            List<String> blockPointIds = entry.getValue();
+            Collections.sort(blockPointIds);
+            // Get the node id (first block id)
+            String nodeId = blockPointIds.get(0);
+            result.put(nodeId, Tuple2.of(snapToGrid(entry.getKey()), blockPointIds));
+        }
+        return result;
     }
 
     /**
@@ -241,11 +272,13 @@ public class BlockBuilder {
      * Returns node identifier by block point identifier
      */
     private Map<String, String> createNodeIdByBlockPointId() {
-        return Tuple2.stream(getJunctionParamsByJunctionId())
-                .flatMap(t ->
-                        t._2._2.stream()
-                                .map(blockPointId -> Tuple2.of(blockPointId, t._1)))
-                .collect(Tuple2.toMap());
+        Map<String, String> result = new HashMap<>();
+        for (Map.Entry<String, Tuple2<Point2D, List<String>>> entry : getJunctionParamsByJunctionId().entrySet()) {
+            for (String blockPointId : entry.getValue()._2) {
+                result.put(blockPointId, entry.getKey());
+            }
+        }
+        return result;
     }
 
     /**
@@ -379,6 +412,16 @@ public class BlockBuilder {
         return nodeIdByBlockPointId.get();
     }
 
+    /**
+     * Returns the elapsed time (s) of the executed build phases by phase name
+     * <p>
+     * The time of a phase includes the time of the phases it requires.
+     * </p>
+     */
+    public Map<String, Double> getPhaseTimes() {
+        return Collections.unmodifiableMap(phaseTimes);
+    }
+
     /**
      * Returns the world block geometry by block (lazy value)
      */
@@ -415,33 +458,61 @@ public class BlockBuilder {
         return worldGeometryByBlockPointId.get();
     }
 
+    /**
+     * Returns the supplier that records the elapsed time of a build phase
+     *
+     * @param phase    the phase name
+     * @param supplier the phase supplier
+     * @param <T>      the type of phase result
+     */
+    private <T> Supplier<T> timed(String phase, Supplier<T> supplier) {
+        return () -> {
+            long start = System.nanoTime();
+            T result = supplier.get();
+            double elapsed = (System.nanoTime() - start) * 1e-9;
+            phaseTimes.put(phase, elapsed);
+            logger.atDebug().log("Built {} of station {} in {} s", phase, station.getId(), elapsed);
+            return result;
+        };
+    }
+
     /**
      * Traverses the tree of connections and builds the block geometries
+     * <p>
+     * The traversal is depth first with an explicit stack so large stations do not overflow the call stack.
+     * </p>
      *
      * @param worldBlockGeometries the worlds block geometry by block
      * @param ref                  the block reference
      * @param worldRefGeometry     the world block reference geometry
      */
     private Map<String, OrientedGeometry> traverseForWorldBlockGeometry(Map<String, OrientedGeometry> worldBlockGeometries, Block ref, OrientedGeometry worldRefGeometry) {
+        Deque<Tuple2<Block, Iterator<BlockJunction>>> stack = new ArrayDeque<>();
         worldBlockGeometries.put(ref.getId(), worldRefGeometry);
         // retrieves the declared junctions for the ref block
-        List<BlockJunction> links = station.getJunctions(ref);
-        // Get the geometry transformation for the given block
-        UnaryOperator<OrientedGeometry> block2World = worldRefGeometry.getBlock2World();
-        // for each connection adds geometry to block without geometry
-        for (BlockJunction link : links) {
-            BlockPoint selfPoint = link.getByBlock(ref);
+        stack.push(Tuple2.of(ref, station.getJunctions(ref).iterator()));
+        while (!stack.isEmpty()) {
+            Block block = stack.peek()._1;
+            Iterator<BlockJunction> links = stack.peek()._2;
+            if (!links.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            // for each connection adds geometry to block without geometry
+            BlockJunction link = links.next();
+            BlockPoint selfPoint = link.getByBlock(block);
             BlockPoint otherPoint = link.getOther(selfPoint);
             Block otherBlock = otherPoint.getBlock();
             if (!worldBlockGeometries.containsKey(otherBlock.getId())) {
+                // Get the geometry transformation for the given block
+                UnaryOperator<OrientedGeometry> block2World = worldBlockGeometries.get(block.getId()).getBlock2World();
                 // gets the world connection geometry
                 OrientedGeometry worldConnGeo = block2World.apply(selfPoint.getEntryGeometry());
                 // gets the block connection geometry
                 OrientedGeometry blockConnGeo = otherPoint.getEntryGeometry().opposite();
                 // gets the world block geometry
-                OrientedGeometry worldBlockGeo = blockConnGeo.getWorldBlockGeo(worldConnGeo);
-                // run recursively
-                traverseForWorldBlockGeometry(worldBlockGeometries, otherBlock, worldBlockGeo);
+                worldBlockGeometries.put(otherBlock.getId(), blockConnGeo.getWorldBlockGeo(worldConnGeo));
+                stack.push(Tuple2.of(otherBlock, station.getJunctions(otherBlock).iterator()));
             }
         }
         return worldBlockGeometries;
@@ -468,38 +539,31 @@ public class BlockBuilder {
      * Validates the junctions
      */
     void validateJunctions() {
-        Map<String, String> result = getNodeIdByBlockPointId();
-        // Validates
-        Map<String, List<Tuple2<String, String>>> blockPointsByNode = Tuple2.stream(result)
-                .collect(Collectors.groupingBy(Tuple2::getV2));
-        // Duplicated
-        List<String> duplicated = Tuple2.stream(blockPointsByNode)
-                .filter(t -> t._2.size() > 2)
-                .map(t -> {
-                    String junctionId = t._1;
-                    Tuple2<Point2D, List<String>> params = getJunctionParams(junctionId);
-                    Point2D p = params._1;
-                    List<Tuple2<String, String>> blockPointIds = t._2;
-                    return format("%s(%.3f, %.3f)-[%s]",
-                            junctionId,
-                            p.getX(), p.getY(),
-                            mkString(blockPointIds.stream()
-                                            .map(Tuple2::getV1)
-                                            .filter(id -> !t._1.equals(id))
-                                    , ", "));
-                })
-                .collect(Collectors.toList());
+        List<String> duplicated = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (Map.Entry<String, Tuple2<Point2D, List<String>>> entry : getJunctionParamsByJunctionId().entrySet()) {
+            String junctionId = entry.getKey();
+            List<String> blockPointIds = entry.getValue()._2;
+            if (blockPointIds.size() > 2) {
+                // Duplicated
+                Point2D p = entry.getValue()._1;
+                duplicated.add(format("%s(%.3f, %.3f)-[%s]",
+                        junctionId,
+                        p.getX(), p.getY(),
+                        mkString(blockPointIds.stream()
+                                        .filter(id -> !junctionId.equals(id))
+                                , ", ")));
+            } else if (blockPointIds.size() < 2) {
+                // Missing
+                missing.add(blockPointIds.get(0));
+            }
+        }
         if (!duplicated.isEmpty()) {
             throw new IllegalArgumentException(format("More then one junction: %s",
                     mkString(duplicated, ", ")));
         }
-        // Missing
-        List<String> missing = Tuple2.stream(blockPointsByNode)
-                .filter(t -> t._2.size() < 2)
-                .map(t -> t._2.get(0)._1)
-                .sorted()
-                .collect(Collectors.toList());
         if (!missing.isEmpty()) {
+            Collections.sort(missing);
             throw new IllegalArgumentException(format("No junctions for nodes [%s]",
                     mkString(missing, ", ")));
         }
@@ -67,7 +67,7 @@ public class Curves extends AbstractBlock {
      * @param id      the id of platform
      */
     public static Curves create(JsonNode root, Locator locator, String id) {
-        VALIDATOR.apply(locator).accept(root);
+        VALIDATOR.validate(root, locator);
         int numTracks = locator.path("numTracks").getNode(root).asInt();
         int angle = locator.path("angle").getNode(root).asInt();
         return Curves.create(id, numTracks, angle);
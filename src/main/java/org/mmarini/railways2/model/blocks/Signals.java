@@ -68,7 +68,7 @@ public class Signals extends AbstractBlock {
      * @param id      the id of platform
      */
     public static Signals create(JsonNode root, Locator locator, String id) {
-        VALIDATOR.apply(locator).accept(root);
+        VALIDATOR.validate(root, locator);
         int numSignals = locator.path("numSignals").getNode(root).asInt();
         return create(id, numSignals);
     }
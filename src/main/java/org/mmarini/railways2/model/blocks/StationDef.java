@@ -67,7 +67,7 @@ public class StationDef {
      * @param locator the locator of station definition
      */
     public static StationDef create(JsonNode root, Locator locator) {
-        VALIDATOR.apply(locator).accept(root);
+        VALIDATOR.validate(root, locator);
         String id = locator.path("name").getNode(root).asText();
         int orientation = locator.path("orientation").getNode(root).asInt();
         List<Block> blocks1 = locator.path("blocks").propertyNames(root)
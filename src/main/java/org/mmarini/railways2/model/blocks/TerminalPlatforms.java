@@ -78,7 +78,7 @@ public class TerminalPlatforms extends Platforms {
      * @param id      the id of platform
      */
     public static TerminalPlatforms create(JsonNode root, Locator locator, String id) {
-        VALIDATOR.apply(locator).accept(root);
+        VALIDATOR.validate(root, locator);
         int numPlatforms = locator.path("numPlatforms").getNode(root).asInt();
         int length = locator.path("length").getNode(root).asInt();
         return create(id, numPlatforms, length);
@@ -65,7 +65,7 @@ public class Tracks extends AbstractBlock {
      * @param id      the id of platform
      */
     public static Tracks create(JsonNode root, Locator locator, String id) {
-        VALIDATOR.apply(locator).accept(root);
+        VALIDATOR.validate(root, locator);
         int numTracks = locator.path("numTracks").getNode(root).asInt();
         int length = locator.path("length").getNode(root).asInt();
         return create(id, numTracks, length);
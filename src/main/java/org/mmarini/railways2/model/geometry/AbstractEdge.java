@@ -31,6 +31,7 @@ package org.mmarini.railways2.model.geometry;
 import java.awt.geom.Rectangle2D;
 import java.util.Objects;
 
+import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -42,6 +43,7 @@ public abstract class AbstractEdge implements Edge {
     protected final Node node1;
     protected final double length;
     protected final Rectangle2D bounds;
+    private final Direction[] directions;
 
     /**
      * Create the edge
@@ -58,6 +60,7 @@ public abstract class AbstractEdge implements Edge {
         this.node1 = requireNonNull(node1);
         this.length = length;
         this.bounds = bounds;
+        this.directions = Direction.createDirections(this);
     }
 
     @Override
@@ -73,6 +76,17 @@ public abstract class AbstractEdge implements Edge {
         return bounds;
     }
 
+    @Override
+    public Direction getDirection(Node destination) {
+        if (destination == node0 || destination.equals(node0)) {
+            return directions[0];
+        } else if (destination == node1 || destination.equals(node1)) {
+            return directions[1];
+        }
+        throw new IllegalArgumentException(format("destination %s is not a terminal node of edge %s",
+                destination.getId(), id));
+    }
+
     @Override
     public String getId() {
         return id;
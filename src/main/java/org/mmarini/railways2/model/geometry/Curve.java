@@ -28,6 +28,8 @@
 
 package org.mmarini.railways2.model.geometry;
 
+import org.mmarini.LazyValue;
+
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.Objects;
@@ -78,12 +80,11 @@ public class Curve extends AbstractEdge {
         double y0 = (ya + yb) / 2 + (xb - xa) * ratio;
         Point2D center = new Point2D.Double(x0, y0);
         double angle0 = atan2(ya - y0, xa - x0);
-        double[] xbounds = limitCos(angle0, angle);
-        double[] ybounds = limitSin(angle0, angle);
-        double xmin = x0 + xbounds[0] * radius;
-        double xmax = x0 + xbounds[1] * radius;
-        double ymin = y0 + ybounds[0] * radius;
-        double ymax = y0 + ybounds[1] * radius;
+        double sinAngle0 = normalizeRad(angle0 - RAD90);
+        double xmin = x0 + minCos(angle0, angle) * radius;
+        double xmax = x0 + maxCos(angle0, angle) * radius;
+        double ymin = y0 + minCos(sinAngle0, angle) * radius;
+        double ymax = y0 + maxCos(sinAngle0, angle) * radius;
 
         Rectangle2D bounds = new Rectangle2D.Double(xmin, ymin, xmax - xmin, ymax - ymin);
         // Ensures terminal points are in the bounds due to computational approximation
@@ -99,42 +100,62 @@ public class Curve extends AbstractEdge {
      * @param da delta angle (RAD) +/- 2 PI
      */
     static double[] limitCos(double a0, double da) {
+        return new double[]{minCos(a0, da), maxCos(a0, da)};
+    }
+
+    /**
+     * Returns the limits of sin [min, max]
+     *
+     * @param a0 start angle (RAD) +/- PI
+     * @param da delta angle (RAD) +/- 2 PI
+     */
+    static double[] limitSin(double a0, double da) {
+        return limitCos(normalizeRad(a0 - RAD90), da);
+    }
+
+    /**
+     * Returns the max of cos
+     *
+     * @param a0 start angle (RAD) +/- PI
+     * @param da delta angle (RAD) +/- 2 PI
+     */
+    static double maxCos(double a0, double da) {
         double a1 = a0 + da;
-        double y0 = cos(a0);
-        double y1 = cos(a1);
-        double max = (a0 >= 0) &&
+        return (a0 >= 0) &&
                 (da <= 0 && a1 <= 0 ||
                         (da > 0 && a1 >= RAD360)) ||
                 (a0 < 0 &&
                         (da >= 0 && a0 + da >= 0 ||
                                 da < 0 && a0 + da <= RAD_360)) ?
                 1 :
-                max(y0, y1);
-        double min = (a0 >= 0 &&
-                (da >= 0 && a1 >= RAD180 ||
-                        da < 0 && a1 <= RAD_180)) ||
-                (a0 < 0 &&
-                        (da <= 0 && a1 <= RAD_180 ||
-                                da > 0 && a1 >= RAD180)) ?
-                -1 :
-                min(y0, y1);
-        return new double[]{min, max};
+                max(cos(a0), cos(a1));
     }
 
     /**
-     * Returns the limits of sin [min, max]
+     * Returns the min of cos
      *
      * @param a0 start angle (RAD) +/- PI
      * @param da delta angle (RAD) +/- 2 PI
      */
-    static double[] limitSin(double a0, double da) {
-        return limitCos(normalizeRad(a0 - RAD90), da);
+    static double minCos(double a0, double da) {
+        double a1 = a0 + da;
+        return (a0 >= 0 &&
+                (da >= 0 && a1 >= RAD180 ||
+                        da < 0 && a1 <= RAD_180)) ||
+                (a0 < 0 &&
+                        (da <= 0 && a1 <= RAD_180 ||
+                                da > 0 && a1 >= RAD180)) ?
+                -1 :
+                min(cos(a0), cos(a1));
     }
 
     private final double radius;
     private final Point2D center;
     private final double angle0;
     private final double angle;
+    private final double cos0;
+    private final double sin0;
+    private final LazyValue<CurveTable> table;
 
     /**
      * Create the edge
@@ -156,6 +177,9 @@ public class Curve extends AbstractEdge {
         this.radius = radius;
         this.center = requireNonNull(center);
         this.angle0 = angle0;
+        this.cos0 = cos(angle0);
+        this.sin0 = sin(angle0);
+        this.table = new LazyValue<>(() -> CurveTable.create(this));
     }
 
     @Override
@@ -222,8 +246,8 @@ public class Curve extends AbstractEdge {
         }
         double dx = point.getX() - center.getX();
         double dy = point.getY() - center.getY();
-        double gamma = atan2(dy, dx);
-        double beta = normalizeRad(gamma - angle0);
+        // The angle from node0 by the cross and dot products with the radius of node0
+        double beta = atan2(cos0 * dy - sin0 * dx, cos0 * dx + sin0 * dy);
         if (angle >= 0 && beta < 0) {
             beta += RAD360;
         }
@@ -260,6 +284,13 @@ public class Curve extends AbstractEdge {
         return normalizeRad(angle0 + da);
     }
 
+    /**
+     * Returns the arc-length lookup table of curve
+     */
+    public CurveTable getTable() {
+        return table.get();
+    }
+
     /**
      * Returns the radius of curve
      */
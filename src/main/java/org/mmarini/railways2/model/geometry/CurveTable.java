@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model.geometry;
+
+import static java.lang.Math.*;
+
+/**
+ * The arc-length lookup table of a curve.
+ * <p>
+ * The table samples the points and the unit tangents of the curve at fixed arc-length steps
+ * from node0 toward node1.
+ * The point at a distance is computed by rotating the nearest sample around the center
+ * with the polynomial expansion of sin and cos, so the evaluation does not call trigonometric functions.
+ * The rotation angle never exceeds half step over radius, so the error is negligible for the station curves.
+ * </p>
+ */
+public class CurveTable {
+    public static final double SAMPLE_STEP = 1;
+
+    /**
+     * Returns the table of the curve
+     *
+     * @param curve the curve
+     */
+    public static CurveTable create(Curve curve) {
+        double length = curve.getLength();
+        double radius = curve.getRadius();
+        double sign = curve.getAngle() >= 0 ? 1 : -1;
+        int numSamples = (int) ceil(length / SAMPLE_STEP) + 1;
+        double step = length / (numSamples - 1);
+        double cx = curve.getCenter().getX();
+        double cy = curve.getCenter().getY();
+        double[] xs = new double[numSamples];
+        double[] ys = new double[numSamples];
+        double[] txs = new double[numSamples];
+        double[] tys = new double[numSamples];
+        for (int i = 0; i < numSamples; i++) {
+            double a = curve.getAngle0() + sign * i * step / radius;
+            double cos = cos(a);
+            double sin = sin(a);
+            xs[i] = cx + radius * cos;
+            ys[i] = cy + radius * sin;
+            // The tangent is the radius rotated by +/- 90 DEG
+            txs[i] = -sign * sin;
+            tys[i] = sign * cos;
+        }
+        return new CurveTable(cx, cy, radius, step, xs, ys, txs, tys);
+    }
+
+    private final double cx;
+    private final double cy;
+    private final double radius;
+    private final double step;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] txs;
+    private final double[] tys;
+
+    /**
+     * Creates the table
+     *
+     * @param cx     the x coordinate of the curve center (m)
+     * @param cy     the y coordinate of the curve center (m)
+     * @param radius the curve radius (m)
+     * @param step   the sample step (m)
+     * @param xs     the x coordinates of samples
+     * @param ys     the y coordinates of samples
+     * @param txs    the x components of the sample tangents
+     * @param tys    the y components of the sample tangents
+     */
+    protected CurveTable(double cx, double cy, double radius, double step, double[] xs, double[] ys, double[] txs, double[] tys) {
+        this.cx = cx;
+        this.cy = cy;
+        this.radius = radius;
+        this.step = step;
+        this.xs = xs;
+        this.ys = ys;
+        this.txs = txs;
+        this.tys = tys;
+    }
+
+    /**
+     * Writes the point at the distance from node0
+     *
+     * @param distance the distance from node0 (m)
+     * @param result   the result buffer
+     * @param offset   the offset of x, y coordinates in the result buffer
+     */
+    public void computeLocation(double distance, double[] result, int offset) {
+        int i = sampleIndex(distance);
+        double da = (distance - i * step) / radius;
+        double da2 = da * da;
+        // radius * sin(da) along the tangent and radius * (1 - cos(da)) toward the center
+        double along = radius * da * (1 - da2 / 6 * (1 - da2 / 20));
+        double across = radius * da2 / 2 * (1 - da2 / 12 * (1 - da2 / 30));
+        double x = xs[i];
+        double y = ys[i];
+        result[offset] = x + txs[i] * along + (cx - x) / radius * across;
+        result[offset + 1] = y + tys[i] * along + (cy - y) / radius * across;
+    }
+
+    /**
+     * Writes the points at the distances from node0
+     *
+     * @param distances the distances from node0 (m)
+     * @param from      the index of first distance
+     * @param n         the number of distances
+     * @param result    the result buffer
+     * @param offset    the offset of the x, y coordinates of the first point in the result buffer
+     */
+    public void computeLocations(double[] distances, int from, int n, double[] result, int offset) {
+        for (int j = 0; j < n; j++) {
+            computeLocation(distances[from + j], result, offset + 2 * j);
+        }
+    }
+
+    /**
+     * Writes the unit tangent at the distance from node0 (toward node1)
+     *
+     * @param distance the distance from node0 (m)
+     * @param result   the result buffer
+     * @param offset   the offset of x, y components in the result buffer
+     */
+    public void computeTangent(double distance, double[] result, int offset) {
+        int i = sampleIndex(distance);
+        double da = (distance - i * step) / radius;
+        double da2 = da * da;
+        double sin = da * (1 - da2 / 6 * (1 - da2 / 20));
+        double cos = 1 - da2 / 2 * (1 - da2 / 12 * (1 - da2 / 30));
+        double nx = (cx - xs[i]) / radius;
+        double ny = (cy - ys[i]) / radius;
+        result[offset] = txs[i] * cos + nx * sin;
+        result[offset + 1] = tys[i] * cos + ny * sin;
+    }
+
+    /**
+     * Writes the unit tangents at the distances from node0 (toward node1)
+     *
+     * @param distances the distances from node0 (m)
+     * @param from      the index of first distance
+     * @param n         the number of distances
+     * @param result    the result buffer
+     * @param offset    the offset of the x, y components of the first tangent in the result buffer
+     */
+    public void computeTangents(double[] distances, int from, int n, double[] result, int offset) {
+        for (int j = 0; j < n; j++) {
+            computeTangent(distances[from + j], result, offset + 2 * j);
+        }
+    }
+
+    /**
+     * Returns the number of samples
+     */
+    public int getNumSamples() {
+        return xs.length;
+    }
+
+    /**
+     * Returns the sample step (m)
+     */
+    public double getStep() {
+        return step;
+    }
+
+    /**
+     * Returns the index of the sample nearest the distance
+     *
+     * @param distance the distance from node0 (m)
+     */
+    private int sampleIndex(double distance) {
+        int i = (int) round(distance / step);
+        return i < 0 ? 0 : min(i, xs.length - 1);
+    }
+}
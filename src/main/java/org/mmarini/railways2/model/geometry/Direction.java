@@ -28,42 +28,48 @@
 
 package org.mmarini.railways2.model.geometry;
 
-import java.util.Objects;
 import java.util.StringJoiner;
 
-import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 
 /**
  * Defines the travel direction of an edge
+ * <p>
+ * The directions are canonical: each edge owns exactly its two directions ({@link Edge#getDirection(Node)})
+ * linked each other as opposite, so the directions are compared by identity.
+ * </p>
  */
 public class Direction {
 
+    /**
+     * Returns the two linked directions of an edge, toward the first and the second node
+     *
+     * @param edge the edge
+     */
+    static Direction[] createDirections(Edge edge) {
+        Direction direction0 = new Direction(edge, edge.getNode0(), edge.getNode1());
+        Direction direction1 = new Direction(edge, edge.getNode1(), edge.getNode0());
+        direction0.opposite = direction1;
+        direction1.opposite = direction0;
+        return new Direction[]{direction0, direction1};
+    }
+
     private final Edge edge;
     private final Node destination;
+    private final Node origin;
+    private Direction opposite;
 
     /**
      * Creates the direction
      *
      * @param edge        the edge
      * @param destination the destination node
+     * @param origin      the origin node
      */
-    public Direction(Edge edge, Node destination) {
+    private Direction(Edge edge, Node destination, Node origin) {
         this.edge = requireNonNull(edge);
         this.destination = requireNonNull(destination);
-        if (!(edge.getNode0().equals(destination) || edge.getNode1().equals(destination))) {
-            throw new IllegalArgumentException(format("destination %s is not a terminal node of edge %s",
-                    destination.getId(),
-                    edge.getId()));
-        }
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        Direction direction = (Direction) o;
-        return edge.equals(direction.edge) && destination.equals(direction.destination);
+        this.origin = requireNonNull(origin);
     }
 
     /**
@@ -84,23 +90,14 @@ public class Direction {
      * Returns the origin node
      */
     public Node getOrigin() {
-        Node node0 = edge.getNode0();
-        return destination.equals(node0) ? edge.getNode1() : node0;
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(edge, destination);
+        return origin;
     }
 
     /**
      * Returns the opposite direction
      */
     public Direction opposite() {
-        Node node0 = edge.getNode0();
-        return (node0.equals(destination)) ?
-                new Direction(edge, edge.getNode1()) :
-                new Direction(edge, node0);
+        return opposite;
     }
 
     @Override
@@ -50,6 +50,14 @@ public interface Edge {
         return getNearestLocation(point).getLocation().distance(point);
     }
 
+    /**
+     * Returns the canonical direction of the edge toward the destination
+     *
+     * @param destination the destination node
+     * @throws IllegalArgumentException if the destination is not a terminal node of the edge
+     */
+    Direction getDirection(Node destination);
+
     /**
      * Returns the edge identifier
      */
@@ -50,7 +50,7 @@ public class EdgeLocation {
      * @param distance    the distance
      */
     public static EdgeLocation create(Edge edge, Node destination, double distance) {
-        return new EdgeLocation(new Direction(edge, destination), distance);
+        return new EdgeLocation(edge.getDirection(destination), distance);
     }
 
     private final Direction direction;
@@ -28,8 +28,11 @@
 
 package org.mmarini.railways2.model.geometry;
 
+import java.awt.geom.Point2D;
 import java.util.Objects;
 
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -79,6 +82,24 @@ public class EdgeSegment {
         return Double.compare(that.distance0, distance0) == 0 && Double.compare(that.distance1, distance1) == 0 && edge.equals(that.edge);
     }
 
+    /**
+     * Returns the distance of the point from the segment
+     * <p>
+     * The distance is measured from the nearest location of the edge limited to the segment terminals.
+     * </p>
+     *
+     * @param point the point
+     */
+    public double getDistance(Point2D point) {
+        EdgeLocation nearest = edge.getNearestLocation(point);
+        double length = edge.getLength();
+        double d0 = nearest.getDirection().getDestination().equals(edge.getNode0())
+                ? nearest.getDistance()
+                : length - nearest.getDistance();
+        double segmentD0 = min(max(d0, distance0), length - distance1);
+        return EdgeLocation.create(edge, edge.getNode0(), segmentD0).getLocation().distance(point);
+    }
+
     /**
      * Returns the distance from node0
      */
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model.geometry;
+
+import org.mmarini.Tuple2;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
+
+import static java.lang.Math.*;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The uniform grid index of items by bounding box.
+ * <p>
+ * Each item is registered in all the grid cells overlapped by its bounding box,
+ * so the queries test only the items of the cells near the query point instead of all the items.
+ * The index is immutable.
+ * </p>
+ *
+ * @param <T> the item type
+ */
+public class GridIndex<T> {
+    public static final double MIN_CELL_SIZE = 10;
+
+    /**
+     * Returns the grid index with a cell size fitting about one item per cell
+     *
+     * @param items    the items
+     * @param boundsOf the function returning the bounding box of an item
+     * @param <T>      the item type
+     */
+    public static <T> GridIndex<T> create(Collection<? extends T> items, Function<? super T, Rectangle2D> boundsOf) {
+        Rectangle2D bounds = union(items, boundsOf);
+        double cellSize = bounds != null
+                ? max(MIN_CELL_SIZE, sqrt(bounds.getWidth() * bounds.getHeight() / items.size()))
+                : MIN_CELL_SIZE;
+        return create(items, boundsOf, cellSize);
+    }
+
+    /**
+     * Returns the grid index
+     *
+     * @param items    the items
+     * @param boundsOf the function returning the bounding box of an item
+     * @param cellSize the size of grid cells (m)
+     * @param <T>      the item type
+     */
+    public static <T> GridIndex<T> create(Collection<? extends T> items, Function<? super T, Rectangle2D> boundsOf, double cellSize) {
+        requireNonNull(items);
+        requireNonNull(boundsOf);
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException(format("Cell size must be positive: %f", cellSize));
+        }
+        Rectangle2D bounds = union(items, boundsOf);
+        if (bounds == null) {
+            return new GridIndex<>(boundsOf, 0, 0, cellSize, 0, 0, List.of());
+        }
+        double x0 = bounds.getMinX();
+        double y0 = bounds.getMinY();
+        int cols = (int) floor(bounds.getWidth() / cellSize) + 1;
+        int rows = (int) floor(bounds.getHeight() / cellSize) + 1;
+        List<List<T>> cells = new ArrayList<>(Collections.nCopies(cols * rows, null));
+        for (T item : items) {
+            Rectangle2D itemBounds = boundsOf.apply(item);
+            int col0 = clamp((int) floor((itemBounds.getMinX() - x0) / cellSize), cols);
+            int col1 = clamp((int) floor((itemBounds.getMaxX() - x0) / cellSize), cols);
+            int row0 = clamp((int) floor((itemBounds.getMinY() - y0) / cellSize), rows);
+            int row1 = clamp((int) floor((itemBounds.getMaxY() - y0) / cellSize), rows);
+            for (int row = row0; row <= row1; row++) {
+                for (int col = col0; col <= col1; col++) {
+                    int idx = row * cols + col;
+                    List<T> cell = cells.get(idx);
+                    if (cell == null) {
+                        cell = new ArrayList<>();
+                        cells.set(idx, cell);
+                    }
+                    cell.add(item);
+                }
+            }
+        }
+        return new GridIndex<>(boundsOf, x0, y0, cellSize, cols, rows, cells);
+    }
+
+    /**
+     * Returns the value limited to the range 0 ... n-1
+     *
+     * @param value the value
+     * @param n     the range size
+     */
+    private static int clamp(int value, int n) {
+        return min(max(value, 0), n - 1);
+    }
+
+    /**
+     * Returns true if the bounding boxes overlap (the borders included)
+     *
+     * @param a the first bounding box
+     * @param b the second bounding box
+     */
+    private static boolean overlaps(Rectangle2D a, Rectangle2D b) {
+        return a.getMinX() <= b.getMaxX() && a.getMaxX() >= b.getMinX()
+                && a.getMinY() <= b.getMaxY() && a.getMaxY() >= b.getMinY();
+    }
+
+    /**
+     * Returns the union of item bounds or null if no items
+     *
+     * @param items    the items
+     * @param boundsOf the function returning the bounding box of an item
+     * @param <T>      the item type
+     */
+    private static <T> Rectangle2D union(Collection<? extends T> items, Function<? super T, Rectangle2D> boundsOf) {
+        Rectangle2D result = null;
+        for (T item : items) {
+            Rectangle2D bounds = boundsOf.apply(item);
+            if (result == null) {
+                result = new Rectangle2D.Double();
+                result.setRect(bounds);
+            } else {
+                Rectangle2D.union(result, bounds, result);
+            }
+        }
+        return result;
+    }
+
+    private final Function<? super T, Rectangle2D> boundsOf;
+    private final double x0;
+    private final double y0;
+    private final double cellSize;
+    private final int cols;
+    private final int rows;
+    private final List<List<T>> cells;
+
+    /**
+     * Creates the grid index
+     *
+     * @param boundsOf the function returning the bounding box of an item
+     * @param x0       the grid origin abscissa (m)
+     * @param y0       the grid origin ordinate (m)
+     * @param cellSize the cell size (m)
+     * @param cols     the number of columns
+     * @param rows     the number of rows
+     * @param cells    the items by cell (null if empty cell)
+     */
+    protected GridIndex(Function<? super T, Rectangle2D> boundsOf, double x0, double y0, double cellSize, int cols, int rows, List<List<T>> cells) {
+        this.boundsOf = requireNonNull(boundsOf);
+        this.x0 = x0;
+        this.y0 = y0;
+        this.cellSize = cellSize;
+        this.cols = cols;
+        this.rows = rows;
+        this.cells = requireNonNull(cells);
+    }
+
+    /**
+     * Adds the items of a cell not yet visited
+     *
+     * @param col     the column
+     * @param row     the row
+     * @param visited the visited items
+     * @param result  the result
+     */
+    private void addCell(int col, int row, Set<T> visited, List<T> result) {
+        List<T> cell = cells.get(row * cols + col);
+        if (cell != null) {
+            for (T item : cell) {
+                if (visited.add(item)) {
+                    result.add(item);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the cell size (m)
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Returns the items with bounding box overlapping the area
+     *
+     * @param area the area
+     */
+    public Stream<T> getItems(Rectangle2D area) {
+        if (cells.isEmpty()) {
+            return Stream.empty();
+        }
+        int col0 = clamp((int) floor((area.getMinX() - x0) / cellSize), cols);
+        int col1 = clamp((int) floor((area.getMaxX() - x0) / cellSize), cols);
+        int row0 = clamp((int) floor((area.getMinY() - y0) / cellSize), rows);
+        int row1 = clamp((int) floor((area.getMaxY() - y0) / cellSize), rows);
+        Set<T> visited = new HashSet<>();
+        List<T> result = new ArrayList<>();
+        for (int row = row0; row <= row1; row++) {
+            for (int col = col0; col <= col1; col++) {
+                addCell(col, row, visited, result);
+            }
+        }
+        return result.stream()
+                .filter(item -> overlaps(boundsOf.apply(item), area));
+    }
+
+    /**
+     * Returns the k nearest items with their distances sorted by distance
+     * <p>
+     * The cells are visited in rings of increasing distance around the point,
+     * up to the ring beyond the distance of the k-th nearest item.
+     * </p>
+     *
+     * @param point    the point
+     * @param distance the function returning the distance of an item from the point
+     * @param k        the number of items
+     */
+    public List<Tuple2<T, Double>> getNearest(Point2D point, ToDoubleFunction<? super T> distance, int k) {
+        if (cells.isEmpty() || k <= 0) {
+            return List.of();
+        }
+        int cx = (int) floor((point.getX() - x0) / cellSize);
+        int cy = (int) floor((point.getY() - y0) / cellSize);
+        // The first ring touching the grid
+        int ring0 = max(max(-cx, cx - cols + 1), max(-cy, cy - rows + 1));
+        ring0 = max(ring0, 0);
+        // The last ring covering the grid
+        int ring1 = max(max(cx, cols - 1 - cx), max(cy, rows - 1 - cy));
+        Set<T> visited = new HashSet<>();
+        List<Tuple2<T, Double>> found = new ArrayList<>();
+        List<T> ringItems = new ArrayList<>();
+        Comparator<Tuple2<T, Double>> byDistance = Comparator.comparingDouble(Tuple2::getV2);
+        for (int ring = ring0; ring <= ring1; ring++) {
+            ringItems.clear();
+            int colMin = max(cx - ring, 0);
+            int colMax = min(cx + ring, cols - 1);
+            for (int row : new int[]{cy - ring, cy + ring}) {
+                if (row >= 0 && row < rows) {
+                    for (int col = colMin; col <= colMax; col++) {
+                        addCell(col, row, visited, ringItems);
+                    }
+                }
+            }
+            int rowMin = max(cy - ring + 1, 0);
+            int rowMax = min(cy + ring - 1, rows - 1);
+            for (int col : new int[]{cx - ring, cx + ring}) {
+                if (col >= 0 && col < cols) {
+                    for (int row = rowMin; row <= rowMax; row++) {
+                        addCell(col, row, visited, ringItems);
+                    }
+                }
+            }
+            for (T item : ringItems) {
+                found.add(Tuple2.of(item, distance.applyAsDouble(item)));
+            }
+            found.sort(byDistance);
+            // The items of the next rings are farther than ring * cellSize
+            if (found.size() >= k && found.get(k - 1)._2 <= ring * cellSize) {
+                break;
+            }
+        }
+        return found.size() > k ? List.copyOf(found.subList(0, k)) : found;
+    }
+
+    /**
+     * Returns the items within the distance from the point with their distances sorted by distance
+     *
+     * @param point       the point
+     * @param maxDistance the maximum distance
+     * @param distance    the function returning the distance of an item from the point
+     */
+    public Stream<Tuple2<T, Double>> getWithin(Point2D point, double maxDistance, ToDoubleFunction<? super T> distance) {
+        Rectangle2D area = new Rectangle2D.Double(point.getX() - maxDistance, point.getY() - maxDistance,
+                maxDistance * 2, maxDistance * 2);
+        return getItems(area)
+                .map(item -> Tuple2.of(item, distance.applyAsDouble(item)))
+                .filter(t -> t._2 <= maxDistance)
+                .sorted(Comparator.comparingDouble(Tuple2::getV2));
+    }
+}
@@ -69,9 +69,9 @@ public class Node {
             Node node0 = edge.getNode0();
             Node node1 = edge.getNode1();
             return node0 == this ?
-                    Stream.of(new Direction(edge, node1)) :
+                    Stream.of(edge.getDirection(node1)) :
                     node1 == this ?
-                            Stream.of(new Direction(edge, node0)) :
+                            Stream.of(edge.getDirection(node0)) :
                             Stream.of();
         }).collect(Collectors.toList());
     }
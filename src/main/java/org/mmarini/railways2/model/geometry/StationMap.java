@@ -29,16 +29,17 @@
 package org.mmarini.railways2.model.geometry;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import org.mmarini.Tuple2;
 import org.mmarini.yaml.schema.Locator;
 import org.mmarini.yaml.schema.Validator;
 
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
@@ -47,6 +48,10 @@ import static org.mmarini.yaml.schema.Validator.string;
 
 /**
  * Tracks the nodes of the station map
+ * <p>
+ * The edges and the nodes are indexed by a uniform grid to find the elements near a point
+ * without scanning the whole map.
+ * </p>
  */
 public class StationMap {
 
@@ -64,6 +69,8 @@ public class StationMap {
     private final Map<String, Node> nodeMap;
     private final Map<String, ? extends Edge> edges;
     private final Rectangle2D bounds;
+    private final GridIndex<Edge> edgeIndex;
+    private final GridIndex<Node> nodeIndex;
 
     /**
      * Creates the station map
@@ -80,6 +87,9 @@ public class StationMap {
                 .distinct()
                 .collect(Collectors.toMap(Edge::getId, Function.identity()));
         this.bounds = bounds;
+        this.edgeIndex = GridIndex.create(edges.values(), Edge::getBounds);
+        this.nodeIndex = GridIndex.create(nodeMap.values(), node -> new Rectangle2D.Double(
+                node.getLocation().getX(), node.getLocation().getY(), 0, 0));
     }
 
     /**
@@ -89,10 +99,10 @@ public class StationMap {
      * @param locator the locator
      */
     public Direction directionFromJson(JsonNode root, Locator locator) {
-        DIRECTION_VALIDATOR.apply(locator).accept(root);
+        DIRECTION_VALIDATOR.validate(root, locator);
         Edge edge = getEdge(locator.path("edge").getNode(root).asText());
         Node dest = getNode(locator.path("destination").getNode(root).asText());
-        return new Direction(edge, dest);
+        return edge.getDirection(dest);
     }
 
     /**
@@ -124,6 +134,17 @@ public class StationMap {
         return edges;
     }
 
+    /**
+     * Returns the edges within the distance from the point sorted by distance
+     *
+     * @param point       the point
+     * @param maxDistance the maximum distance (m)
+     */
+    public Stream<Edge> getEdges(Point2D point, double maxDistance) {
+        return edgeIndex.getWithin(point, maxDistance, edge -> edge.getDistance(point))
+                .map(Tuple2::getV1);
+    }
+
     /**
      * Returns the identifier
      */
@@ -137,12 +158,23 @@ public class StationMap {
      * @param point the point
      */
     public EdgeLocation getNearestLocation(Point2D point) {
-        return edges.values().stream()
-                .map(edge -> edge.getNearestLocation(point))
-                .min(Comparator.comparingDouble(a -> a.getLocation().distance(point)))
+        return getNearestLocations(point, 1).stream()
+                .findFirst()
                 .orElseThrow();
     }
 
+    /**
+     * Returns the nearest locations of the k nearest edges to the point sorted by distance
+     *
+     * @param point the point
+     * @param k     the number of edges
+     */
+    public List<EdgeLocation> getNearestLocations(Point2D point, int k) {
+        return edgeIndex.getNearest(point, edge -> edge.getDistance(point), k).stream()
+                .map(t -> t._1.getNearestLocation(point))
+                .collect(Collectors.toList());
+    }
+
     /**
      * Returns the node by identifier
      *
@@ -158,6 +190,17 @@ public class StationMap {
         }
     }
 
+    /**
+     * Returns the nodes within the distance from the point sorted by distance
+     *
+     * @param point       the point
+     * @param maxDistance the maximum distance (m)
+     */
+    public Stream<Node> getNodes(Point2D point, double maxDistance) {
+        return nodeIndex.getWithin(point, maxDistance, node -> node.getLocation().distance(point))
+                .map(Tuple2::getV1);
+    }
+
     /**
      * Returns the node map
      */
@@ -172,7 +215,7 @@ public class StationMap {
      * @param locator the locator
      */
     public EdgeLocation locationFromJson(JsonNode root, Locator locator) {
-        LOCATION_VALIDATOR.apply(locator).accept(root);
+        LOCATION_VALIDATOR.validate(root, locator);
         Edge edge = getEdge(locator.path("edge").getNode(root).asText());
         Node dest = getNode(locator.path("destination").getNode(root).asText());
         double distance = locator.path("distance").getNode(root).asDouble();
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model.geometry;
+
+import org.mmarini.ChannelInput;
+import org.mmarini.ChannelOutput;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.util.*;
+
+import static java.lang.String.format;
+
+/**
+ * Encodes and decodes the built station map as binary data.
+ * <p>
+ * The data contains the station identifier, the bounds, the node locations,
+ * the edges with their computed geometry (length, bounds and the curve center, radius and start angle)
+ * and the edge list of each node.
+ * The nodes and the edges are referred by their index so decoding the map does not need any geometric computation.
+ * The values are written in big endian order so the data can be read from a (memory mapped) byte buffer.
+ * </p>
+ */
+public class StationMapCodec {
+    private static final byte TRACK = 1;
+    private static final byte PLATFORM = 2;
+    private static final byte CURVE = 3;
+
+    /**
+     * Returns the station map decoded from the input
+     *
+     * @param in the input
+     * @throws IOException              in case of error
+     * @throws IllegalArgumentException in case of invalid data
+     */
+    public static StationMap read(ChannelInput in) throws IOException {
+        try {
+            String id = in.getString();
+            Rectangle2D bounds = readRect(in);
+            // Reads the nodes
+            int noNodes = in.getInt();
+            Node[] nodes = new Node[noNodes];
+            Map<String, Node> nodeById = new HashMap<>();
+            for (int i = 0; i < noNodes; i++) {
+                String nodeId = in.getString();
+                double x = in.getDouble();
+                double y = in.getDouble();
+                nodes[i] = new Node(nodeId, new Point2D.Double(x, y));
+                nodeById.put(nodeId, nodes[i]);
+            }
+            // Reads the edges
+            int noEdges = in.getInt();
+            Edge[] edges = new Edge[noEdges];
+            for (int i = 0; i < noEdges; i++) {
+                byte kind = in.getByte();
+                String edgeId = in.getString();
+                Node node0 = nodes[in.getInt()];
+                Node node1 = nodes[in.getInt()];
+                double length = in.getDouble();
+                Rectangle2D edgeBounds = readRect(in);
+                switch (kind) {
+                    case TRACK:
+                        edges[i] = new Track(edgeId, node0, node1, length, edgeBounds);
+                        break;
+                    case PLATFORM:
+                        edges[i] = new Platform(edgeId, node0, node1, length, edgeBounds);
+                        break;
+                    case CURVE:
+                        double angle = in.getDouble();
+                        double radius = in.getDouble();
+                        double cx = in.getDouble();
+                        double cy = in.getDouble();
+                        double angle0 = in.getDouble();
+                        edges[i] = new Curve(edgeId, node0, node1, angle, length, edgeBounds,
+                                radius, new Point2D.Double(cx, cy), angle0);
+                        break;
+                    default:
+                        throw new IllegalArgumentException(format("Invalid edge kind %d for %s", kind, edgeId));
+                }
+            }
+            // Reads the node edges
+            for (Node node : nodes) {
+                int n = in.getShort();
+                List<Edge> nodeEdges = new ArrayList<>(n);
+                for (int j = 0; j < n; j++) {
+                    nodeEdges.add(edges[in.getInt()]);
+                }
+                node.setEdges(nodeEdges);
+            }
+            return new StationMap(id, nodeById, bounds);
+        } catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Invalid station map data", e);
+        }
+    }
+
+    /**
+     * Returns the station bounds read from the start of station map data
+     *
+     * @param in the input
+     * @throws IOException              in case of error
+     * @throws IllegalArgumentException in case of invalid data
+     */
+    public static Rectangle2D readBounds(ChannelInput in) throws IOException {
+        in.getString();
+        return readRect(in);
+    }
+
+    /**
+     * Returns the rectangle read from the input
+     *
+     * @param in the input
+     * @throws IOException in case of error
+     */
+    private static Rectangle2D readRect(ChannelInput in) throws IOException {
+        double x = in.getDouble();
+        double y = in.getDouble();
+        double w = in.getDouble();
+        double h = in.getDouble();
+        return new Rectangle2D.Double(x, y, w, h);
+    }
+
+    /**
+     * Writes the station map
+     *
+     * @param stationMap the station map
+     * @param out        the output
+     * @throws IOException in case of error
+     */
+    public static void write(StationMap stationMap, ChannelOutput out) throws IOException {
+        out.putString(stationMap.getId());
+        writeRect(out, stationMap.getBounds());
+        // Writes the nodes
+        List<Node> nodes = new ArrayList<>(stationMap.getNodeMap().values());
+        nodes.sort(Comparator.comparing(Node::getId));
+        Map<Node, Integer> nodeIndex = new HashMap<>();
+        out.putInt(nodes.size());
+        for (Node node : nodes) {
+            nodeIndex.put(node, nodeIndex.size());
+            out.putString(node.getId());
+            out.putDouble(node.getLocation().getX());
+            out.putDouble(node.getLocation().getY());
+        }
+        // Writes the edges
+        List<Edge> edges = new ArrayList<>(stationMap.getEdges().values());
+        edges.sort(Comparator.comparing(Edge::getId));
+        Map<Edge, Integer> edgeIndex = new HashMap<>();
+        out.putInt(edges.size());
+        for (Edge edge : edges) {
+            edgeIndex.put(edge, edgeIndex.size());
+            out.putByte(edge instanceof Curve ? CURVE
+                    : edge instanceof Platform ? PLATFORM
+                    : TRACK);
+            out.putString(edge.getId());
+            out.putInt(nodeIndex.get(edge.getNode0()));
+            out.putInt(nodeIndex.get(edge.getNode1()));
+            out.putDouble(edge.getLength());
+            writeRect(out, edge.getBounds());
+            if (edge instanceof Curve) {
+                Curve curve = (Curve) edge;
+                out.putDouble(curve.getAngle());
+                out.putDouble(curve.getRadius());
+                out.putDouble(curve.getCenter().getX());
+                out.putDouble(curve.getCenter().getY());
+                out.putDouble(curve.getAngle0());
+            } else if (!(edge instanceof Track)) {
+                throw new IllegalArgumentException(format("Unsupported edge %s", edge.getId()));
+            }
+        }
+        // Writes the node edges
+        for (Node node : nodes) {
+            List<Edge> nodeEdges = node.getEdges();
+            out.putShort((short) nodeEdges.size());
+            for (Edge edge : nodeEdges) {
+                out.putInt(edgeIndex.get(edge));
+            }
+        }
+    }
+
+    /**
+     * Writes the rectangle
+     *
+     * @param out  the output
+     * @param rect the rectangle
+     * @throws IOException in case of error
+     */
+    private static void writeRect(ChannelOutput out, Rectangle2D rect) throws IOException {
+        out.putDouble(rect.getX());
+        out.putDouble(rect.getY());
+        out.putDouble(rect.getWidth());
+        out.putDouble(rect.getHeight());
+    }
+}
@@ -99,12 +99,12 @@ public class DoubleSlipSwitch implements Route {
         Edge d0 = d.getEdges().get(0);
         Edge ad = a.getEdges().get(2);
         Edge cb = c.getEdges().get(2);
-        Direction _0a = new Direction(a0, a);
-        Direction _0b = new Direction(b0, b);
-        Direction _0c = new Direction(c0, c);
-        Direction _0d = new Direction(d0, d);
-        Direction _ad = new Direction(ad, d);
-        Direction _cb = new Direction(cb, b);
+        Direction _0a = a0.getDirection(a);
+        Direction _0b = b0.getDirection(b);
+        Direction _0c = c0.getDirection(c);
+        Direction _0d = d0.getDirection(d);
+        Direction _ad = ad.getDirection(d);
+        Direction _cb = cb.getDirection(b);
         Direction _a0 = _0a.opposite();
         Direction _b0 = _0b.opposite();
         Direction _c0 = _0c.opposite();
@@ -156,12 +156,12 @@ public class DoubleSlipSwitch implements Route {
         Edge d0 = d.getEdges().get(0);
         Edge ab = a.getEdges().get(1);
         Edge cd = c.getEdges().get(1);
-        Direction _0a = new Direction(a0, a);
-        Direction _0b = new Direction(b0, b);
-        Direction _0c = new Direction(c0, c);
-        Direction _0d = new Direction(d0, d);
-        Direction _ab = new Direction(ab, b);
-        Direction _cd = new Direction(cd, d);
+        Direction _0a = a0.getDirection(a);
+        Direction _0b = b0.getDirection(b);
+        Direction _0c = c0.getDirection(c);
+        Direction _0d = d0.getDirection(d);
+        Direction _ab = ab.getDirection(b);
+        Direction _cd = cd.getDirection(d);
         Direction _a0 = _0a.opposite();
         Direction _b0 = _0b.opposite();
         Direction _c0 = _0c.opposite();
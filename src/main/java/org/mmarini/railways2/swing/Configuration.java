@@ -28,9 +28,11 @@
 
 package org.mmarini.railways2.swing;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.mmarini.railways2.model.CheckpointService;
 import org.mmarini.railways2.model.ExtendedPerformance;
 import org.mmarini.yaml.schema.Locator;
 import org.mmarini.yaml.schema.Validator;
@@ -39,7 +41,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import java.io.File;
-import java.io.IOException;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -67,12 +69,15 @@ public class Configuration {
 
     /**
      * Returns the default configuration
+     *
+     * @param storage the storage service
      */
-    private static Configuration defaultConfig() {
+    private static Configuration defaultConfig(CheckpointService storage) {
         return new Configuration(
                 new UserPreferences(1, false, 0,
                         UIManager.getCrossPlatformLookAndFeelClassName()),
-                List.of()
+                List.of(),
+                storage
         );
     }
 
@@ -83,12 +88,12 @@ public class Configuration {
      * @param locator the configuration node locator
      */
     static Configuration fromJson(JsonNode root, Locator locator) {
-        VALIDATOR.apply(locator).accept(root);
+        VALIDATOR.validate(root, locator);
         List<ExtendedPerformance> hallOfFame1 = locator.path("hallOfFame").elements(root)
                 .map(perfLoc -> ExtendedPerformance.fromJson(root, perfLoc))
                 .collect(Collectors.toList());
         UserPreferences userOptions = UserPreferences.fromJson(root, locator.path("userPreferences"));
-        return new Configuration(userOptions, hallOfFame1);
+        return new Configuration(userOptions, hallOfFame1, null);
     }
 
     /**
@@ -100,27 +105,35 @@ public class Configuration {
     }
 
     /**
-     * Creates the configuration
+     * Returns the configuration loaded from the file system
+     *
+     * @param storage the storage service used to save the configuration
      */
-    public static Configuration load() {
+    public static Configuration load(CheckpointService storage) {
         try {
             JsonNode root = fromFile(getConfigFile());
-            return fromJson(root, Locator.root());
+            return fromJson(root, Locator.root()).setStorage(storage);
         } catch (Exception e) {
             logger.atError().setCause(e).log("Error loading configuration");
-            return defaultConfig();
+            return defaultConfig(storage);
         }
     }
 
     private final List<ExtendedPerformance> hallOfFame;
     private final UserPreferences userPreferences;
+    private final CheckpointService storage;
 
     /**
      * Creates the configuration
+     *
+     * @param userPreferences the user preferences
+     * @param hallOfFame      the hall of fame
+     * @param storage         the storage service or null if the configuration is not saved
      */
-    protected Configuration(UserPreferences userPreferences, List<ExtendedPerformance> hallOfFame) {
+    protected Configuration(UserPreferences userPreferences, List<ExtendedPerformance> hallOfFame, CheckpointService storage) {
         this.userPreferences = userPreferences;
         this.hallOfFame = hallOfFame;
+        this.storage = storage;
     }
 
     /**
@@ -136,7 +149,7 @@ public class Configuration {
             while (newHallOfFame.size() > MAX_ENTRIES) {
                 newHallOfFame.remove(hallOfFame.size() - 1);
             }
-            return new Configuration(userPreferences, newHallOfFame).save();
+            return new Configuration(userPreferences, newHallOfFame, storage).save();
         } else {
             return this;
         }
@@ -175,7 +188,7 @@ public class Configuration {
      */
     Configuration setUserPreferences(UserPreferences userPreferences) {
         return !userPreferences.equals(this.userPreferences)
-                ? new Configuration(userPreferences, hallOfFame).save()
+                ? new Configuration(userPreferences, hallOfFame, storage).save()
                 : this;
     }
 
@@ -190,17 +203,29 @@ public class Configuration {
     }
 
     /**
-     * Returns the configuration after storing in the file system
+     * Returns the configuration after requesting the storing in the file system.
+     * The file is written in background by the storage service.
      */
     private Configuration save() {
-        try {
-            objectMapper.writerWithDefaultPrettyPrinter().writeValue(getConfigFile(), toJson());
-        } catch (IOException e) {
-            logger.atError().setCause(e).log("Error saving configuration");
+        if (storage != null) {
+            JsonNode json = toJson();
+            storage.write(getConfigFile().toPath(), channel ->
+                    objectMapper.writerWithDefaultPrettyPrinter()
+                            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                            .writeValue(Channels.newOutputStream(channel), json));
         }
         return this;
     }
 
+    /**
+     * Returns the configuration with the storage service
+     *
+     * @param storage the storage service
+     */
+    Configuration setStorage(CheckpointService storage) {
+        return new Configuration(userPreferences, hallOfFame, storage);
+    }
+
     /**
      * Returns the configuration with gain
      *
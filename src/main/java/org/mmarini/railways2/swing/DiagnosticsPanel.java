@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.swing;
+
+import org.mmarini.railways2.model.EngineMetrics;
+import org.mmarini.railways2.model.LatencyHistogram;
+import org.mmarini.railways2.model.StationStatus;
+import org.mmarini.railways2.model.Train;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.mmarini.railways2.swing.SwingUtils.formatMessage;
+
+/**
+ * Shows the simulation diagnostics.
+ * <p>
+ * The panel shows the simulator engine metrics and the number of trains by state,
+ * to find whether the time is spent by the simulation steps, by the request queue or by the event emission
+ * (painting included).
+ * </p>
+ */
+public class DiagnosticsPanel extends JPanel {
+    private static final Font DIAGNOSTICS_FONT = Font.decode("Dialog Bold 10");
+    /**
+     * Nanoseconds per millisecond
+     */
+    private static final double NANOSPMS = 1e6;
+    /**
+     * Bytes per megabyte
+     */
+    private static final double BPMB = 1024 * 1024;
+
+    /**
+     * Returns the ratio value numerator/denominator or 0 if denominator is 0
+     *
+     * @param numerator   the numerator
+     * @param denominator the denominator
+     */
+    private static double getRatio(double numerator, double denominator) {
+        return denominator == 0 ? 0 : numerator / denominator;
+    }
+
+    private final JLabel stepRate;
+    private final JLabel stepLatency;
+    private final JLabel speed;
+    private final JLabel queue;
+    private final JLabel timeShares;
+    private final JLabel allocation;
+    private final Map<Train.State, JLabel> trainCounts;
+
+    /**
+     * Creates the diagnostics panel
+     */
+    public DiagnosticsPanel() {
+        stepRate = new JLabel();
+        stepLatency = new JLabel();
+        speed = new JLabel();
+        queue = new JLabel();
+        timeShares = new JLabel();
+        allocation = new JLabel();
+        trainCounts = Train.STATES.stream()
+                .collect(Collectors.toMap(Function.identity(), state -> new JLabel()));
+        init();
+    }
+
+    /**
+     * Initializes the content
+     */
+    private void init() {
+        GridBagLayout gbl = new GridBagLayout();
+        setLayout(gbl);
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.anchor = GridBagConstraints.WEST;
+        gbc.weightx = 1;
+        gbc.gridx = 0;
+        for (JLabel comp : new JLabel[]{stepRate, stepLatency, speed, queue, timeShares, allocation}) {
+            gbl.setConstraints(comp, gbc);
+            add(comp);
+        }
+        for (Train.State state : Train.STATES) {
+            JLabel comp = trainCounts.get(state);
+            gbl.setConstraints(comp, gbc);
+            add(comp);
+        }
+        for (int i = 0; i < getComponentCount(); i++) {
+            getComponent(i).setFont(DIAGNOSTICS_FONT);
+        }
+        setMetrics(new EngineMetrics(0, new LatencyHistogram(), 0, 0, 0, 0, EngineMetrics.UNAVAILABLE, 0));
+        setTrainCounts(Map.of());
+    }
+
+    /**
+     * Sets the engine metrics to show
+     *
+     * @param metrics the metrics
+     */
+    public void setMetrics(EngineMetrics metrics) {
+        LatencyHistogram latency = metrics.getStepLatency();
+        double interval = metrics.getInterval();
+        stepRate.setText(formatMessage("DiagnosticsPanel.stepRate.message",
+                metrics.getStepRate()));
+        stepLatency.setText(formatMessage("DiagnosticsPanel.stepLatency.message",
+                latency.getValueAtPercentile(50) / NANOSPMS,
+                latency.getValueAtPercentile(99) / NANOSPMS,
+                latency.getMax() / NANOSPMS));
+        speed.setText(formatMessage("DiagnosticsPanel.speed.message",
+                metrics.getSpeed()));
+        queue.setText(formatMessage("DiagnosticsPanel.queue.message",
+                metrics.getRequests(),
+                metrics.getMaxQueueDepth()));
+        timeShares.setText(formatMessage("DiagnosticsPanel.timeShares.message",
+                getRatio(metrics.getStepTime(), interval),
+                getRatio(metrics.getDequeTime(), interval),
+                getRatio(metrics.getEmitTime(), interval)));
+        allocation.setText(metrics.getAllocatedBytes() >= 0
+                ? formatMessage("DiagnosticsPanel.allocation.message", metrics.getAllocationRate() / BPMB)
+                : Messages.getString("DiagnosticsPanel.allocation.unavailable"));
+    }
+
+    /**
+     * Sets the number of trains by state from the station status
+     *
+     * @param status the station status
+     */
+    public void setStatus(StationStatus status) {
+        setTrainCounts(status.getTrains().stream()
+                .collect(Collectors.groupingBy(Train::getState, Collectors.counting())));
+    }
+
+    /**
+     * Sets the number of trains by state
+     *
+     * @param counts the number of trains by state
+     */
+    private void setTrainCounts(Map<Train.State, Long> counts) {
+        for (Train.State state : Train.STATES) {
+            trainCounts.get(state).setText(formatMessage("DiagnosticsPanel.trainCount.message",
+                    Messages.getString("TrainTableModel.value.status." + state.getId()),
+                    counts.getOrDefault(state, 0L)));
+        }
+    }
+}
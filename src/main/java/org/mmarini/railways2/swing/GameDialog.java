@@ -28,17 +28,13 @@
 
 package org.mmarini.railways2.swing;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import hu.akarnokd.rxjava3.swing.SwingObservable;
 import io.reactivex.rxjava3.core.BackpressureStrategy;
-import org.mmarini.Tuple2;
 import org.mmarini.railways2.model.SoundEvent;
+import org.mmarini.railways2.model.StationCatalog;
+import org.mmarini.railways2.model.StationInfo;
 import org.mmarini.railways2.model.StationStatus;
-import org.mmarini.railways2.model.blocks.BlockBuilder;
-import org.mmarini.railways2.model.blocks.StationDef;
-import org.mmarini.railways2.model.geometry.StationMap;
 import org.mmarini.swing.GridLayoutHelper;
-import org.mmarini.yaml.schema.Locator;
 import org.reactivestreams.Subscriber;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,12 +46,10 @@ import java.text.ParseException;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
-import java.util.stream.Collectors;
 
 import static java.lang.Math.max;
 import static org.mmarini.railways2.swing.SwingUtils.createButton;
 import static org.mmarini.railways2.swing.SwingUtils.formatMessage;
-import static org.mmarini.yaml.Utils.fromResource;
 
 /**
  * Shows the game options
@@ -72,10 +66,6 @@ public class GameDialog extends JDialog {
     public static final String MEDIUM_GAME_DURATION = "GameDialog.gameDuration.medium";
     public static final String SHORT_GAME_DURATION = "GameDialog.gameDuration.short";
 
-    private static final List<String> STATION_RESOURCES = List.of(
-            "/stations/downville.station.yml",
-            "/stations/jackville.station.yml"
-    );
     private static final List<String> GAME_DURATION_KEYS = List.of(
             SHORT_GAME_DURATION,
             MEDIUM_GAME_DURATION,
@@ -89,43 +79,13 @@ public class GameDialog extends JDialog {
             CUSTOM_GAME_LEVEL
     );
 
+    private static final StationCatalog STATION_CATALOG = StationCatalog.create();
     private static final Logger logger = LoggerFactory.getLogger(GameDialog.class);
 
     /**
-     * Returns the list of valid station identifier and resource
-     */
-    private static List<Tuple2<String, String>> getStationsDef() {
-        return STATION_RESOURCES.stream()
-                .flatMap(resource ->
-                        loadStation(resource)
-                                .map(StationMap::getId)
-                                .map(id -> Tuple2.of(id, resource))
-                                .stream()
-                )
-                .collect(Collectors.toList());
-    }
-
-    /**
-     * Returns the station map from resource
-     *
-     * @param resource the resource name
-     */
-    static Optional<StationMap> loadStation(String resource) {
-        try {
-            JsonNode json = fromResource(resource);
-            StationDef def = StationDef.create(json, Locator.root());
-            StationMap result = new BlockBuilder(def).buildStationMap();
-            return Optional.of(result);
-        } catch (Exception e) {
-            logger.atError().setCause(e).log("Read resource {}", resource);
-            return Optional.empty();
-        }
-    }
-
-    /**
-     * Returns the station status from resource
+     * Returns the station status from station source
      *
-     * @param resource  the resource name
+     * @param resource  the station source (resource name or file path)
      * @param duration  the game duration (s)
      * @param frequency the train frequency (#/s)
      * @param random    the random number generator
@@ -133,17 +93,14 @@ public class GameDialog extends JDialog {
      */
     public static Optional<StationStatus> loadStatus(String resource, double duration, double frequency, Random random, Subscriber<SoundEvent> events) {
         try {
-            JsonNode json = fromResource(resource);
-            StationDef def = StationDef.create(json, Locator.root());
-            StationStatus result = new BlockBuilder(def).buildStatus(duration, frequency, random, events);
-            return Optional.of(result);
+            return Optional.of(STATION_CATALOG.load(resource).buildStatus(duration, frequency, random, events));
         } catch (Exception e) {
             logger.atError().setCause(e).log("Read resource {}", resource);
             return Optional.empty();
         }
     }
 
-    private final List<Tuple2<String, String>> stations;
+    private final List<StationInfo> stations;
     private final DefaultListModel<String> stationModel;
     private final JList<String> stationList;
     private final DefaultListModel<String> gameDurationModel;
@@ -169,7 +126,7 @@ public class GameDialog extends JDialog {
         gameLevelModel = new DefaultListModel<>();
         gameLevelList = new JList<>(gameLevelModel);
         frequencyField = new JFormattedTextField();
-        this.stations = getStationsDef();
+        this.stations = STATION_CATALOG.getStations();
         info = new JTextField();
         this.okButton = createButton("GameDialog.okButton");
         this.cancelButton = createButton("GameDialog.cancelButton");
@@ -353,7 +310,7 @@ public class GameDialog extends JDialog {
      */
     private String getStationResource() {
         int idx = max(0, stationList.getSelectedIndex());
-        return stations.get(idx)._2;
+        return stations.get(idx).getSource();
     }
 
     /**
@@ -410,8 +367,8 @@ public class GameDialog extends JDialog {
         // StationList init
         stationList.setModel(stationModel);
         stations.stream()
-                .map(Tuple2::getV1)
-                .map(id -> Messages.getString("station." + id))
+                .map(StationInfo::getId)
+                .map(id -> Messages.getStringOpt("station." + id).orElse(id))
                 .forEach(stationModel::addElement);
         stationList.setSelectedIndex(0);
 
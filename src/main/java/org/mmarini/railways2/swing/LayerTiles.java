@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.swing;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static java.lang.Math.floorDiv;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The rasterized tiles of a static layer.
+ * <p>
+ * The layer is split in square tiles of device pixels rasterized on demand when they intersect the painting clip.
+ * The least recently used tiles exceeding {@link #MAX_TILES} are discarded,
+ * and all the tiles are discarded when the transformation changes.
+ * </p>
+ */
+class LayerTiles {
+    public static final int TILE_SIZE = 256;
+    public static final int MAX_TILES = 128;
+
+    private final Consumer<Graphics2D> painter;
+    private final Color background;
+    private final Map<Point, BufferedImage> tiles;
+    private AffineTransform transform;
+
+    /**
+     * Creates the layer tiles
+     *
+     * @param painter    the layer painter
+     * @param background the background color or null if transparent
+     */
+    LayerTiles(Consumer<Graphics2D> painter, Color background) {
+        this.painter = requireNonNull(painter);
+        this.background = background;
+        this.tiles = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Point, BufferedImage> eldest) {
+                return size() > MAX_TILES;
+            }
+        };
+    }
+
+    /**
+     * Returns the tile image
+     *
+     * @param col      the tile column
+     * @param row      the tile row
+     * @param deviceTr the transformation from view coordinates to device coordinates
+     * @param tr       the transformation from map coordinates to view coordinates
+     * @param conf     the graphics configuration or null if not available
+     */
+    private BufferedImage createTile(int col, int row, AffineTransform deviceTr, AffineTransform tr, GraphicsConfiguration conf) {
+        BufferedImage image = conf != null
+                ? conf.createCompatibleImage(TILE_SIZE, TILE_SIZE,
+                background != null ? Transparency.OPAQUE : Transparency.TRANSLUCENT)
+                : new BufferedImage(TILE_SIZE, TILE_SIZE,
+                background != null ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D gr = image.createGraphics();
+        if (background != null) {
+            gr.setColor(background);
+            gr.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+        }
+        gr.translate(-col * TILE_SIZE, -row * TILE_SIZE);
+        gr.transform(deviceTr);
+        gr.transform(tr);
+        painter.accept(gr);
+        gr.dispose();
+        return image;
+    }
+
+    /**
+     * Returns the number of cached tiles
+     */
+    int getNumTiles() {
+        return tiles.size();
+    }
+
+    /**
+     * Paints the tiles intersecting the clip
+     *
+     * @param gr       the graphics in view coordinates
+     * @param clip     the clip in view coordinates
+     * @param deviceTr the transformation from view coordinates to device coordinates (scale only)
+     * @param tr       the transformation from map coordinates to view coordinates
+     * @param conf     the graphics configuration or null if not available
+     */
+    void paint(Graphics2D gr, Rectangle clip, AffineTransform deviceTr, AffineTransform tr, GraphicsConfiguration conf) {
+        AffineTransform key = new AffineTransform(deviceTr);
+        key.concatenate(tr);
+        if (!key.equals(transform)) {
+            tiles.clear();
+            transform = key;
+        }
+        Rectangle deviceClip = deviceTr.createTransformedShape(clip).getBounds();
+        int col0 = floorDiv(deviceClip.x, TILE_SIZE);
+        int row0 = floorDiv(deviceClip.y, TILE_SIZE);
+        int col1 = floorDiv(deviceClip.x + deviceClip.width - 1, TILE_SIZE);
+        int row1 = floorDiv(deviceClip.y + deviceClip.height - 1, TILE_SIZE);
+        double sx = deviceTr.getScaleX();
+        double sy = deviceTr.getScaleY();
+        for (int row = row0; row <= row1; row++) {
+            for (int col = col0; col <= col1; col++) {
+                Point id = new Point(col, row);
+                BufferedImage tile = tiles.get(id);
+                if (tile == null) {
+                    tile = createTile(col, row, deviceTr, tr, conf);
+                    tiles.put(id, tile);
+                }
+                gr.drawImage(tile, new AffineTransform(1 / sx, 0, 0, 1 / sy,
+                        col * TILE_SIZE / sx, row * TILE_SIZE / sy), null);
+            }
+        }
+    }
+}
@@ -30,14 +30,12 @@ package org.mmarini.railways2.swing;
 
 import org.mmarini.railways2.model.StationStatus;
 import org.mmarini.railways2.model.Train;
-import org.mmarini.railways2.model.geometry.Edge;
 import org.mmarini.railways2.model.geometry.EdgeLocation;
 import org.mmarini.railways2.model.geometry.Node;
 import org.mmarini.railways2.model.routes.*;
 
 import java.awt.event.MouseEvent;
 import java.awt.geom.Point2D;
-import java.util.Comparator;
 import java.util.Optional;
 import java.util.StringJoiner;
 
@@ -80,13 +78,6 @@ public class MapEvent {
         return mouseEvent;
     }
 
-    /**
-     * Returns the nearest edge
-     */
-    private Edge getNearestEdge() {
-        return getNearestEdgeLocation().getDirection().getEdge();
-    }
-
     /**
      * Returns the nearest edge location
      */
@@ -112,14 +103,14 @@ public class MapEvent {
      * @param maxDistance the maximum distance
      */
     public Optional<Node> getNearestRouteNode(double maxDistance) {
-        double maxDistanceSq = maxDistance * maxDistance;
-        return stationStatus.getRoutes().stream()
-                .filter(route -> route instanceof Signal
-                        || route instanceof Switch
-                        || route instanceof DoubleSlipSwitch)
-                .flatMap(route -> route.getNodes().stream())
-                .filter(node -> node.getLocation().distanceSq(location) <= maxDistanceSq)
-                .min(Comparator.comparingDouble(node -> node.getLocation().distanceSq(location)));
+        return stationStatus.getStationMap().getNodes(location, maxDistance)
+                .filter(node -> {
+                    Route route = stationStatus.getRoute(node);
+                    return route instanceof Signal
+                            || route instanceof Switch
+                            || route instanceof DoubleSlipSwitch;
+                })
+                .findFirst();
     }
 
     /**
@@ -135,13 +126,10 @@ public class MapEvent {
     }
 
     /**
-     * Returns the selected train
+     * Returns the selected train (the nearest train with coaches under the location)
      */
     public Optional<Train> getSelectedTrain() {
-        return getNearestEdgeLocation().getLocation().distanceSq(location) <= TRACK_GAUGE / 2
-                ? stationStatus.getTrain(getNearestEdge())
-                : Optional.empty();
-
+        return stationStatus.getTrains(location, TRACK_GAUGE / 2).findFirst();
     }
 
     /**
@@ -29,6 +29,7 @@
 package org.mmarini.railways2.swing;
 
 import org.mmarini.Tuple2;
+import org.mmarini.railways2.model.CoachLayout;
 import org.mmarini.railways2.model.StationStatus;
 import org.mmarini.railways2.model.geometry.*;
 import org.mmarini.railways2.model.routes.*;
@@ -489,6 +490,34 @@ public interface Painters {
         return Stream.concat(head, Stream.concat(coachPainters, tail));
     }
 
+    /**
+     * Returns the painter of the train coaches
+     * <p>
+     * The painter reads the coaches from a copy of the layout buffer.
+     * </p>
+     *
+     * @param layout the coach layout
+     */
+    static Consumer<Graphics2D> createTrainsPainter(CoachLayout layout) {
+        if (layout.getSize() == 0) {
+            return NONE_PAINTER;
+        }
+        double[] coaches = layout.toArray();
+        return gr -> {
+            AffineTransform back = gr.getTransform();
+            for (int i = 0; i < coaches.length; i += CoachLayout.STRIDE) {
+                int kind = (int) coaches[i];
+                Consumer<Graphics2D> painter = kind == CoachLayout.HEAD ? HEAD_IMAGE_PAINTER
+                        : kind == CoachLayout.TAIL ? TAIL_IMAGE_PAINTER
+                        : COACH_IMAGE_PAINTER;
+                gr.translate(coaches[i + 1], coaches[i + 2]);
+                gr.rotate(coaches[i + 3]);
+                painter.accept(gr);
+                gr.setTransform(back);
+            }
+        };
+    }
+
     /**
      * Returns the painter that transforms and paints
      * The painter restores the original graphics transformation
@@ -524,6 +553,7 @@ public interface Painters {
      */
     class Builder {
         private final StationStatus status;
+        private final CoachLayout coachLayout;
 
         /**
          * Creates the painters builder
@@ -531,23 +561,52 @@ public interface Painters {
          * @param status the station status
          */
         public Builder(StationStatus status) {
+            this(status, new CoachLayout());
+        }
+
+        /**
+         * Creates the painters builder
+         *
+         * @param status      the station status
+         * @param coachLayout the reused coach layout
+         */
+        public Builder(StationStatus status, CoachLayout coachLayout) {
             this.status = status;
+            this.coachLayout = coachLayout;
         }
 
         /**
          * Returns the painter of station
+         * <p>
+         * The painter paints the background, the dynamic and the foreground layers in order.
+         * </p>
          */
         Consumer<Graphics2D> build() {
-            // Generates the stream of train painters
-            Consumer<Graphics2D> trainsPainter = status.getTrainsCoaches()
-                    .flatMap(Painters::createTrainPainter)
-                    .reduce(Consumer::andThen)
-                    .orElse(NONE_PAINTER);
+            return buildBackground()
+                    .andThen(buildDynamic())
+                    .andThen(buildForeground());
+        }
+
+        /**
+         * Returns the painter of the static background layer (the edges).
+         * <p>
+         * The layer does not change during a game.
+         * </p>
+         */
+        Consumer<Graphics2D> buildBackground() {
             // Generates the stream of tracks painters
-            Consumer<Graphics2D> edgesPainter = status.getStationMap().getEdges().values().stream()
+            return status.getStationMap().getEdges().values().stream()
                     .map(Painters::createPainter)
                     .reduce(Consumer::andThen)
                     .orElseThrow();
+        }
+
+        /**
+         * Returns the painter of the dynamic layer (the section lights, the routes and the trains)
+         */
+        Consumer<Graphics2D> buildDynamic() {
+            // Generates the stream of train painters
+            Consumer<Graphics2D> trainsPainter = createTrainsPainter(status.layoutCoaches(coachLayout));
             // Generates the stream of red lights painters (not clear)
             Consumer<Graphics2D> redEdgesPainter = status.getStationMap().getEdges().values().stream()
                     .filter(edge -> status.getSection(edge).isEmpty())
@@ -567,16 +626,21 @@ public interface Painters {
                     .reduce(Consumer::andThen)
                     .orElseThrow();
 
-            // Generate the stream of labels painters
-            Consumer<Graphics2D> labelsPainter = createLabelsPainter(status);
-
             // Concatenates the streams
-            return edgesPainter
-                    .andThen(redEdgesPainter)
+            return redEdgesPainter
                     .andThen(greenEdgesPainter)
                     .andThen(routesPainter)
-                    .andThen(trainsPainter)
-                    .andThen(labelsPainter);
+                    .andThen(trainsPainter);
+        }
+
+        /**
+         * Returns the painter of the static foreground layer (the labels).
+         * <p>
+         * The layer does not change during a game.
+         * </p>
+         */
+        Consumer<Graphics2D> buildForeground() {
+            return createLabelsPainter(status);
         }
 
         /**
@@ -31,7 +31,9 @@ package org.mmarini.railways2.swing;
 import hu.akarnokd.rxjava3.swing.SwingObservable;
 import io.reactivex.rxjava3.core.BackpressureStrategy;
 import io.reactivex.rxjava3.core.Flowable;
+import org.mmarini.railways2.model.CoachLayout;
 import org.mmarini.railways2.model.StationStatus;
+import org.mmarini.railways2.model.geometry.StationMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +44,7 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.Optional;
 import java.util.function.Consumer;
 
 import static java.lang.Math.round;
@@ -50,6 +53,12 @@ import static org.mmarini.railways2.swing.Painters.Builder;
 
 /**
  * Displays the station
+ * <p>
+ * The station is painted in three layers: the static background (edges), the dynamic layer
+ * (section lights, routes and trains) and the static foreground (labels).
+ * The static layers are rasterized in tiles once per station map and view transformation,
+ * so each repaint draws the visible tiles and replays only the dynamic painters.
+ * </p>
  */
 public class StationPanel extends JComponent {
     public static final Color BACKGROUND_COLOR = Color.getHSBColor(95f / 360f,
@@ -61,8 +70,12 @@ public class StationPanel extends JComponent {
     private static final double SCALE = 10;
     private static final Logger logger = LoggerFactory.getLogger(StationPanel.class);
     private final Flowable<MapEvent> mouseClick;
+    private final CoachLayout coachLayout;
     private Point2D center;
     private Consumer<Graphics2D> painter;
+    private LayerTiles backgroundLayer;
+    private LayerTiles foregroundLayer;
+    private StationMap stationMap;
     private StationStatus status;
 
     /**
@@ -72,6 +85,7 @@ public class StationPanel extends JComponent {
         setBackground(BACKGROUND_COLOR);
         this.center = new Point2D.Double();
         this.painter = NONE_PAINTER;
+        this.coachLayout = new CoachLayout();
         this.mouseClick = SwingObservable.mouse(this, SwingObservable.MOUSE_CLICK)
                 .toFlowable(BackpressureStrategy.LATEST)
                 .filter(ev -> ev.getID() == MouseEvent.MOUSE_PRESSED)
@@ -157,10 +171,27 @@ public class StationPanel extends JComponent {
     protected void paintComponent(Graphics g) {
         Dimension size = getSize();
         Graphics2D gr = (Graphics2D) g.create();
-        gr.setColor(getBackground());
-        gr.fillRect(0, 0, size.width, size.height);
-        gr.transform(createTransform());
+        LayerTiles backgroundLayer = this.backgroundLayer;
+        LayerTiles foregroundLayer = this.foregroundLayer;
+        if (backgroundLayer == null) {
+            gr.setColor(getBackground());
+            gr.fillRect(0, 0, size.width, size.height);
+            gr.dispose();
+            return;
+        }
+        Rectangle clip = Optional.ofNullable(gr.getClipBounds())
+                .orElseGet(() -> new Rectangle(size));
+        AffineTransform tr = createTransform();
+        // Rasterizes the static layers at the device resolution
+        AffineTransform base = gr.getTransform();
+        AffineTransform deviceTr = AffineTransform.getScaleInstance(base.getScaleX(), base.getScaleY());
+        GraphicsConfiguration conf = getGraphicsConfiguration();
+        backgroundLayer.paint(gr, clip, deviceTr, tr, conf);
+        gr.transform(tr);
         painter.accept(gr);
+        gr.setTransform(base);
+        foregroundLayer.paint(gr, clip, deviceTr, tr, conf);
+        gr.dispose();
     }
 
     /**
@@ -172,8 +203,9 @@ public class StationPanel extends JComponent {
      *     <li>the edges line</li>
      *     <li>the nodes</li>
      *     <li>the trains evidence</li>
+     *     <li>the labels</li>
      * </ul>
-     *
+     * The static layers are rebuilt only when the station map changes.
      * </p>
      *
      * @param status the station
@@ -185,7 +217,14 @@ public class StationPanel extends JComponent {
         int h = (int) round(bounds.getHeight() * SCALE);
         center = new Point2D.Double(bounds.getCenterX(), bounds.getCenterY());
         setPreferredSize(new Dimension(w + BORDER * 2, h + BORDER * 2));
-        painter = new Builder(status).build();
+        Builder builder = new Builder(status, coachLayout);
+        if (status.getStationMap() != stationMap) {
+            stationMap = status.getStationMap();
+            // The foreground is set first because the painting checks for the background only
+            foregroundLayer = new LayerTiles(builder.buildForeground(), null);
+            backgroundLayer = new LayerTiles(builder.buildBackground(), getBackground());
+        }
+        painter = builder.buildDynamic();
         repaint();
     }
 
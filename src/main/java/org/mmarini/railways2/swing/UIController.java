@@ -47,7 +47,9 @@ import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.geom.Point2D;
+import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Path;
 import java.text.MessageFormat;
 import java.time.Duration;
 import java.util.Comparator;
@@ -72,8 +74,10 @@ import static org.mmarini.railways2.swing.SwingUtils.*;
 public class UIController {
     public static final int DEFAULT_TAB_WITDH = 600;
     public static final String DUMP_FILENAME = "dump.yml";
+    public static final Path JOURNAL_FILE = Path.of(System.getProperty("user.home"), ".railways", "last-game.journal");
     private static final String IMAGE_RESOURCE_NAME = "org/mmarini/railways2/swing/railways.png";
     private static final int FPS = 60;
+    private static final int MAX_CATCH_UP_STEPS = 30;
     private static final Logger logger = LoggerFactory.getLogger(UIController.class);
     private static final double ROUTE_DISTANCE_THRESHOLD = TRACK_GAP * sqrt(2) / 2;
 
@@ -101,6 +105,7 @@ public class UIController {
     private final JSplitPane horizontalSplit;
     private final SimulatorEngine<StationStatus, StationStatus> simulator;
     private final PerformancePanel performancePanel;
+    private final DiagnosticsPanel diagnosticsPanel;
     private final Random random;
     private final HallOfFamePanel hallOfFamePanel;
     private final JMenuItem newGameMenu;
@@ -126,11 +131,13 @@ public class UIController {
     private final PublishProcessor<SoundEvent> events;
     private final SoundPlayer soundPlayer;
     private final Map<SoundEvent, Clip> clipByEvent;
+    private final CheckpointService checkpoints;
     private Configuration configuration;
     private boolean autolock;
     private boolean layoutRequired;
     private boolean pause;
     private StationStatus status;
+    private volatile CommandJournal journal;
 
     /**
      * Creates the user interface controller
@@ -144,11 +151,13 @@ public class UIController {
         this.verticalSplit = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
         this.horizontalSplit = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT);
         this.performancePanel = new PerformancePanel();
+        this.diagnosticsPanel = new DiagnosticsPanel();
         this.summaryPanel = new SummaryPanel();
         this.hallOfFamePanel = new HallOfFamePanel();
         this.gameDialog = new GameDialog();
         userPrefPanel = new UserPrefPanel();
-        this.configuration = Configuration.load();
+        this.checkpoints = CheckpointService.create();
+        this.configuration = Configuration.load(checkpoints);
         this.events = PublishProcessor.create();
         this.soundPlayer = new SoundPlayer();
         this.autolock = true;
@@ -185,8 +194,10 @@ public class UIController {
 
         this.simulator = SimulatorEngineImpl.create(this::stepUp, Function.identity())
                 .setEventInterval(Duration.ofMillis(1000 / FPS))
+                .setFixedStep(Duration.ofMillis(1000 / FPS), MAX_CATCH_UP_STEPS)
                 .setOnEvent(this::handleSimulationEvent)
-                .setOnSpeed(this::handleSpeed);
+                .setOnSpeed(this::handleSpeed)
+                .setOnMetrics(this::handleMetrics);
         this.random = new Random();
 
         simulator.setSpeed(1);
@@ -274,6 +285,8 @@ public class UIController {
             @Override
             public void windowClosed(WindowEvent e) {
                 simulator.shutdown();
+                closeJournal();
+                checkpoints.close();
                 logger.info("Ended");
             }
 
@@ -492,6 +505,21 @@ public class UIController {
                 );
     }
 
+    /**
+     * Closes the journal of the current game
+     */
+    private void closeJournal() {
+        CommandJournal journal = this.journal;
+        this.journal = null;
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.atError().setCause(e).log("Error closing journal");
+            }
+        }
+    }
+
     /**
      * Handles about action
      *
@@ -519,7 +547,7 @@ public class UIController {
         autoLockMenu.setSelected(autolock);
         autoLockMenu.setIcon(autoLockButton.getSelectedIcon());
         if (simulator.isActive()) {
-            simulator.request(status -> status.setAutoLock(autolock));
+            request(StationCommand.autoLock(autolock));
         }
     }
 
@@ -547,7 +575,7 @@ public class UIController {
      */
     private void handleDumpAction(ActionEvent actionEvent) {
         simulator.request(UnaryOperator.identity())
-                .doOnSuccess(status -> status.dump(DUMP_FILENAME))
+                .doOnSuccess(status -> checkpoints.write(Path.of(DUMP_FILENAME), status::dump))
                 .subscribe();
     }
 
@@ -576,6 +604,7 @@ public class UIController {
         boolean fame = configuration.isFame(perf);
         summaryPanel.setNameEditable(fame);
         showMessageKey("UIController.summaryDialog.title", summaryPanel);
+        closeJournal();
         if (fame) {
             perf = perf.setPlayer(summaryPanel.getName());
             configuration = configuration.add(perf);
@@ -609,7 +638,22 @@ public class UIController {
      * @param actionEvent the action event
      */
     private void handleLockAction(ActionEvent actionEvent) {
-        simulator.request(status -> status.lockSignals());
+        request(StationCommand.lockSignals());
+    }
+
+    /**
+     * Handles the simulation metrics
+     *
+     * @param metrics the metrics
+     */
+    private void handleMetrics(EngineMetrics metrics) {
+        StationStatus stationStatus = this.status;
+        SwingUtilities.invokeLater(() -> {
+            diagnosticsPanel.setMetrics(metrics);
+            if (stationStatus != null) {
+                diagnosticsPanel.setStatus(stationStatus);
+            }
+        });
     }
 
     /**
@@ -637,10 +681,10 @@ public class UIController {
                 .ifPresent(status1 -> {
                     this.layoutRequired = true;
                     if (simulator.isActive()) {
-                        simulator.stop().doOnSuccess(seed -> simulator.start(status1))
+                        simulator.stop().doOnSuccess(seed -> startGame(status1))
                                 .subscribe();
                     } else {
-                        simulator.start(status1);
+                        startGame(status1);
                     }
                     setPause(false);
                     pauseMenu.setEnabled(true);
@@ -742,6 +786,7 @@ public class UIController {
     private void handleSimulationEvent(StationStatus stationStatus) {
         if (simulator.isActive()) {
             this.status = stationStatus;
+            checkpoints.offer(stationStatus);
             if (stationStatus.isGameFinished()) {
                 simulator.stop().doOnSuccess(this::handleGameFinished)
                         .subscribe();
@@ -772,7 +817,7 @@ public class UIController {
      * @param actionEvent the action event
      */
     private void handleStopTrainAction(ActionEvent actionEvent) {
-        simulator.request(status -> status.stopTrains());
+        request(StationCommand.stopTrains());
     }
 
     /**
@@ -872,6 +917,7 @@ public class UIController {
         addTabKey(tabPanel, "InfoPanel.trainPanel", trainPanel);
         addTabKey(tabPanel, "InfoPanel.performancePanel", performancePanel);
         addTabKey(tabPanel, "InfoPanel.hallOfFamePane", hallOfFamePanel);
+        addTabKey(tabPanel, "InfoPanel.diagnosticsPanel", diagnosticsPanel);
     }
 
     /**
@@ -891,7 +937,7 @@ public class UIController {
      */
 
     private void lockSection(String id) {
-        simulator.request(status -> status.lockSection(id));
+        request(StationCommand.lockSection(id));
     }
 
     /**
@@ -901,7 +947,21 @@ public class UIController {
      * @param edgeId the signal edge identifier
      */
     private void lockSignal(String id, String edgeId) {
-        simulator.request(status -> status.lockSignal(id, edgeId));
+        request(StationCommand.lockSignal(id, edgeId));
+    }
+
+    /**
+     * Requests the command to the simulator recording it in the journal of the game
+     *
+     * @param command the command
+     */
+    private void request(StationCommand command) {
+        simulator.request(status -> {
+            CommandJournal journal = this.journal;
+            return journal != null
+                    ? journal.apply(status, command)
+                    : command.apply(status);
+        });
     }
 
     /**
@@ -910,7 +970,7 @@ public class UIController {
      * @param trainId the train identifier
      */
     private void revertTrain(String trainId) {
-        simulator.request(status -> status.revertTrain(trainId));
+        request(StationCommand.revertTrain(trainId));
     }
 
     /**
@@ -932,13 +992,28 @@ public class UIController {
         pauseButton.setSelected(pause);
     }
 
+    /**
+     * Starts the simulation of a new game recording the journal
+     *
+     * @param status the initial status
+     */
+    private void startGame(StationStatus status) {
+        closeJournal();
+        try {
+            journal = CommandJournal.create(JOURNAL_FILE, random.nextLong(), status, checkpoints);
+        } catch (IOException e) {
+            logger.atError().setCause(e).log("Error creating journal");
+        }
+        simulator.start(status);
+    }
+
     /**
      * Starts the train
      *
      * @param trainId the train identifier
      */
     private void startTrain(String trainId) {
-        simulator.request(status -> status.startTrain(trainId));
+        request(StationCommand.startTrain(trainId));
     }
 
     /**
@@ -949,7 +1024,10 @@ public class UIController {
      * @param dt     the time interval
      */
     private Tuple2<StationStatus, Double> stepUp(StationStatus status, double dt) {
-        StationStatus next = status.tick(dt, random);
+        CommandJournal journal = this.journal;
+        StationStatus next = journal != null
+                ? journal.tick(status, dt)
+                : status.tick(dt, random);
         return Tuple2.of(next, dt);
     }
 
@@ -959,7 +1037,7 @@ public class UIController {
      * @param trainId the train identifier
      */
     private void stopTrain(String trainId) {
-        simulator.request(status -> status.stopTrain(trainId));
+        request(StationCommand.stopTrain(trainId));
     }
 
     /**
@@ -977,7 +1055,7 @@ public class UIController {
      * @param id the switch identifier
      */
     private void toggleDoubleSlipSwitch(String id) {
-        simulator.request(status -> status.toggleDoubleSlipSwitch(id));
+        request(StationCommand.toggleDoubleSlipSwitch(id));
     }
 
     /**
@@ -986,7 +1064,7 @@ public class UIController {
      * @param id the switch identifier
      */
     private void toggleSwitch(String id) {
-        simulator.request(status -> status.toggleSwitch(id));
+        request(StationCommand.toggleSwitch(id));
     }
 
     /**
@@ -995,7 +1073,7 @@ public class UIController {
      * @param id the section identifier
      */
     private void unlockSection(String id) {
-        simulator.request(status -> status.unlockSection(id));
+        request(StationCommand.unlockSection(id));
     }
 
     /**
@@ -1005,6 +1083,6 @@ public class UIController {
      * @param edgeId the signal edge identifier
      */
     private void unlockSignal(String id, String edgeId) {
-        simulator.request(status -> status.unlockSignal(id, edgeId));
+        request(StationCommand.unlockSignal(id, edgeId));
     }
 }
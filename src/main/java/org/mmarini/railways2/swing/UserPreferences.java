@@ -62,7 +62,7 @@ public class UserPreferences {
      * @param locator the user options locator
      */
     public static UserPreferences fromJson(JsonNode root, Locator locator) {
-        VALIDATOR.apply(locator).accept(root);
+        VALIDATOR.validate(root, locator);
         double simulationSpeed1 = locator.path("simulationSpeed").getNode(root).asDouble();
         boolean mute1 = locator.path("mute").getNode(root).asBoolean();
         double gain1 = locator.path("gain").getNode(root).asDouble();
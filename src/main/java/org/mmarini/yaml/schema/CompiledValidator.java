@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.yaml.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The validator that walks the document nodes with a cursor.
+ * <p>
+ * The node is resolved once from the locator and the children are reached directly from their parent nodes.
+ * </p>
+ */
+class CompiledValidator implements Validator {
+    private final NodeValidator validator;
+
+    /**
+     * Creates the compiled validator
+     *
+     * @param validator the node validator
+     */
+    CompiledValidator(NodeValidator validator) {
+        this.validator = requireNonNull(validator);
+    }
+
+    @Override
+    public Consumer<JsonNode> apply(Locator locator) {
+        requireNonNull(locator);
+        return root -> validate(root, locator);
+    }
+
+    @Override
+    public void validate(JsonNode node, Cursor cursor) {
+        validator.validate(node, cursor);
+    }
+}
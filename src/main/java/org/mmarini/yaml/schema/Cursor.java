@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.yaml.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The position of a node while a compiled validator walks the document.
+ * <p>
+ * The cursor is a chain of parent links with the property name or element index of each step.
+ * The locator of the position is built only when requested, i.e. when an error is reported,
+ * so walking the document does not create any json pointer.
+ * </p>
+ */
+public class Cursor {
+    /**
+     * Returns the cursor of a document position
+     *
+     * @param root    the root document
+     * @param locator the locator of the position
+     */
+    public static Cursor create(JsonNode root, Locator locator) {
+        return new Cursor(requireNonNull(root), null, requireNonNull(locator), null, -1);
+    }
+
+    /**
+     * Returns the child node of a property
+     *
+     * @param node the node
+     * @param name the property name
+     */
+    static JsonNode path(JsonNode node, String name) {
+        return node.isArray()
+                ? node.at("/" + name)
+                : node.path(name);
+    }
+
+    /**
+     * Returns the child node of an element
+     *
+     * @param node  the node
+     * @param index the element index
+     */
+    static JsonNode path(JsonNode node, int index) {
+        return node.isArray()
+                ? node.path(index)
+                : node.path(String.valueOf(index));
+    }
+
+    private final JsonNode root;
+    private final Cursor parent;
+    private final Locator locator;
+    private final String name;
+    private final int index;
+
+    /**
+     * Creates the cursor
+     *
+     * @param root    the root document
+     * @param parent  the parent cursor or null for the starting position
+     * @param locator the locator of the starting position or null
+     * @param name    the property name or null for element
+     * @param index   the element index
+     */
+    private Cursor(JsonNode root, Cursor parent, Locator locator, String name, int index) {
+        this.root = root;
+        this.parent = parent;
+        this.locator = locator;
+        this.name = name;
+        this.index = index;
+    }
+
+    /**
+     * Returns the cursor of an element
+     *
+     * @param index the element index
+     */
+    public Cursor child(int index) {
+        return new Cursor(root, this, null, null, index);
+    }
+
+    /**
+     * Returns the cursor of a property
+     *
+     * @param name the property name
+     */
+    public Cursor child(String name) {
+        return new Cursor(root, this, null, requireNonNull(name), -1);
+    }
+
+    /**
+     * Returns the locator of the position
+     */
+    public Locator getLocator() {
+        return parent == null
+                ? locator
+                : parent.getLocator().path(name != null ? name : String.valueOf(index));
+    }
+
+    /**
+     * Returns the root document
+     */
+    public JsonNode getRoot() {
+        return root;
+    }
+
+    @Override
+    public String toString() {
+        return getLocator().toString();
+    }
+}
@@ -40,37 +40,28 @@ import java.util.function.Function;
 import static java.lang.Math.min;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
-import static org.mmarini.Utils.getValue;
 import static org.mmarini.Utils.iterable;
 
 /**
- *
+ * The validator of a json document.
+ * <p>
+ * The validators created by the factory methods are compiled: they walk the document once
+ * with a {@link Cursor} and build the location only when an error is reported.
+ * </p>
  */
 public interface Validator extends Function<Locator, Consumer<JsonNode>> {
-    Validator OBJECT = locator -> root -> {
-        JsonNode node = locator.getNode(root);
-        assertFor(node.isObject(), locator, "must be an object (%s)", node.getNodeType());
-    };
-    Validator STRING = locator -> root -> {
-        JsonNode node = locator.getNode(root);
-        assertFor(node.isTextual(), locator, "must be a string (%s)", node.getNodeType());
-    };
-    Validator ARRAY = locator -> root -> {
-        JsonNode node = locator.getNode(root);
-        assertFor(node.isArray(), locator, "must be an array (%s)", node.getNodeType());
-    };
-    Validator INT = locator -> root -> {
-        JsonNode node = locator.getNode(root);
-        assertFor(node.isInt() || node.isLong(), locator, "must be an integer (%s)", node.getNodeType());
-    };
-    Validator NUMBER = locator -> root -> {
-        JsonNode node = locator.getNode(root);
-        assertFor(node.isNumber(), locator, "must be a number (%s)", node.getNodeType());
-    };
-    Validator BOOLEAN = locator -> root -> {
-        JsonNode node = locator.getNode(root);
-        assertFor(node.isBoolean(), locator, "must be boolean (%s)", node.getNodeType());
-    };
+    Validator OBJECT = of((node, cursor) ->
+            assertFor(node.isObject(), cursor, "must be an object (%s)", node.getNodeType()));
+    Validator STRING = of((node, cursor) ->
+            assertFor(node.isTextual(), cursor, "must be a string (%s)", node.getNodeType()));
+    Validator ARRAY = of((node, cursor) ->
+            assertFor(node.isArray(), cursor, "must be an array (%s)", node.getNodeType()));
+    Validator INT = of((node, cursor) ->
+            assertFor(node.isInt() || node.isLong(), cursor, "must be an integer (%s)", node.getNodeType()));
+    Validator NUMBER = of((node, cursor) ->
+            assertFor(node.isNumber(), cursor, "must be a number (%s)", node.getNodeType()));
+    Validator BOOLEAN = of((node, cursor) ->
+            assertFor(node.isBoolean(), cursor, "must be boolean (%s)", node.getNodeType()));
 
     Validator POSITIVE_NUMBER = number(exclusiveMinimum(0d));
     Validator NEGATIVE_NUMBER = number(exclusiveMaximum(0d));
@@ -88,9 +79,12 @@ public interface Validator extends Function<Locator, Consumer<JsonNode>> {
      */
     static Validator additionalProperties(Validator validator) {
         requireNonNull(validator);
-        return locator -> root -> locator.properties(root)
-                .map(validator)
-                .forEach(c -> c.accept(root));
+        return of((node, cursor) -> {
+            for (Iterator<Map.Entry<String, JsonNode>> i = node.fields(); i.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = i.next();
+                validator.validate(field.getValue(), cursor.child(field.getKey()));
+            }
+        });
     }
 
     /**
@@ -100,11 +94,12 @@ public interface Validator extends Function<Locator, Consumer<JsonNode>> {
      */
     static Validator allOf(Collection<Validator> validators) {
         requireNonNull(validators);
-        return locator -> root -> {
-            for (Validator validator : validators) {
-                validator.apply(locator).accept(root);
+        Validator[] compiled = validators.toArray(Validator[]::new);
+        return of((node, cursor) -> {
+            for (Validator validator : compiled) {
+                validator.validate(node, cursor);
             }
-        };
+        });
     }
 
     /**
@@ -114,11 +109,11 @@ public interface Validator extends Function<Locator, Consumer<JsonNode>> {
      */
     static Validator allOf(Validator... validators) {
         requireNonNull(validators);
-        return locator -> root -> {
+        return of((node, cursor) -> {
             for (Validator validator : validators) {
-                validator.apply(locator).accept(root);
+                validator.validate(node, cursor);
             }
-        };
+        });
     }
 
     /**
@@ -190,55 +185,76 @@ public interface Validator extends Function<Locator, Consumer<JsonNode>> {
         assertFor(valid, locator.pointer, pattern, args);
     }
 
+    /**
+     * Asserts the validity building the location only on failure
+     *
+     * @param valid   true for assertion
+     * @param cursor  location in the document
+     * @param pattern message pattern
+     * @param args    message arguments
+     */
+    static void assertFor(boolean valid, Cursor cursor, String pattern, Object... args) {
+        if (!valid) {
+            assertFor(false, cursor.getLocator(), pattern, args);
+        }
+    }
+
     static Validator booleanValue() {
         return BOOLEAN;
     }
 
     /**
-     * @param validator the validator provider
+     * Returns the validator created at validation time by the provider.
+     * <p>
+     * The provider receives the cursor so the locator is built only if it is needed.
+     * </p>
+     *
+     * @param validator the validator provider from the root document and the node position
      */
-    static Validator deferred(BiFunction<JsonNode, Locator, Validator> validator) {
-        return locator -> root -> validator.apply(root, locator).apply(locator).accept(root);
+    static Validator deferred(BiFunction<JsonNode, Cursor, Validator> validator) {
+        requireNonNull(validator);
+        return of((node, cursor) ->
+                validator.apply(cursor.getRoot(), cursor).validate(node, cursor));
     }
 
     /**
      * @param maximum the exclusive maximum value
      */
     static Validator exclusiveMaximum(long maximum) {
-        return locator -> root -> {
-            long value = locator.getNode(root).asLong(0);
-            assertFor(value < maximum, locator, "must be < %s (%s)", maximum, value);
-        };
+        return of((node, cursor) -> {
+            long value = node.asLong(0);
+            assertFor(value < maximum, cursor, "must be < %s (%s)", maximum, value);
+        });
     }
 
     /**
      * @param maximum the exclusive maximum value
      */
     static Validator exclusiveMaximum(double maximum) {
-        return locator -> root -> {
-            double value = locator.getNode(root).asDouble(0);
-            assertFor(value < maximum, locator, "must be < %s (%s)", maximum, value);
-        };
+        return of((node, cursor) -> {
+            double value = node.asDouble(0);
+            assertFor(value < maximum, cursor, "must be < %s (%s)", maximum, value);
+        });
     }
 
     /**
      * @param minimum the exclusive minimum value
      */
     static Validator exclusiveMinimum(double minimum) {
-        return locator -> root -> {
-            double value = locator.getNode(root).asDouble(0);
-            assertFor(value > minimum, locator, "must be > %s (%s)", minimum, value);
-        };
+        return of((node, cursor) -> {
+            double value = node.asDouble(0);
+            assertFor(value > minimum, cursor, "must be > %s (%s)", minimum, value);
+        });
     }
 
     /**
      * @param minimum the exclusive minimum value
      */
     static Validator exclusiveMinimum(long minimum) {
-        return locator -> root -> {
-            long value = locator.getNode(root).asLong(0);
-            assertFor(value > minimum, locator, "must be > %s (%s)", minimum, value);
-        };
+        return of((node, cursor) -> {
+            long value = node.asLong(0);
+            assertFor(value > minimum, cursor, "must be > %s (%s)", minimum, value);
+        });
     }
 
     /**
@@ -262,9 +278,12 @@ public interface Validator extends Function<Locator, Consumer<JsonNode>> {
      */
     static Validator items(Validator items) {
         requireNonNull(items);
-        return locator -> root -> locator.elements(root)
-                .map(items)
-                .forEach(c -> c.accept(root));
+        return of((node, cursor) -> {
+            int n = node.size();
+            for (int i = 0; i < n; i++) {
+                items.validate(Cursor.path(node, i), cursor.child(i));
+            }
+        });
     }
 
     /**
@@ -283,21 +302,18 @@ public interface Validator extends Function<Locator, Consumer<JsonNode>> {
         requireNonNull(items);
         requireNonNull(prefixItems);
         int noPrefix = prefixItems.size();
-        return locator -> root -> {
-            JsonNode node = locator.getNode(root);
+        return of((node, cursor) -> {
             int noNodes = node.size();
             int noPrefixNodes = min(noNodes, noPrefix);
 
             for (int i = 0; i < noPrefixNodes; i++) {
                 prefixItems.get(i)
-                        .apply(locator.path(String.valueOf(i)))
-                        .accept(root);
+                        .validate(Cursor.path(node, i), cursor.child(i));
             }
             for (int i = noPrefixNodes; i < noNodes; i++) {
-                items.apply(locator.path(String.valueOf(i)))
-                        .accept(root);
+                items.validate(Cursor.path(node, i), cursor.child(i));
             }
-        };
+        });
     }
 
     /**
@@ -306,50 +322,50 @@ public interface Validator extends Function<Locator, Consumer<JsonNode>> {
      * @param size the minimum size
      */
     static Validator maxItems(int size) {
-        return locator -> root -> {
-            int currentSize = locator.getNode(root).size();
-            assertFor(currentSize <= size, locator, "must have at most %s items (%s)", size, currentSize);
-        };
+        return of((node, cursor) -> {
+            int currentSize = node.size();
+            assertFor(currentSize <= size, cursor, "must have at most %s items (%s)", size, currentSize);
+        });
     }
 
     /**
      * @param length the maximum string length
      */
     static Validator maxLength(int length) {
-        return locator -> root -> {
-            int currentSize = locator.getNode(root).asText("").length();
-            assertFor(currentSize <= length, locator, "must have length <= %s (%s)", length, currentSize);
-        };
+        return of((node, cursor) -> {
+            int currentSize = node.asText("").length();
+            assertFor(currentSize <= length, cursor, "must have length <= %s (%s)", length, currentSize);
+        });
     }
 
     /**
      * @param size the maximum number of items
      */
     static Validator maxProperties(int size) {
-        return locator -> root -> {
-            int n = locator.getNode(root).size();
-            assertFor(n <= size, locator, "must have at most %s properties (%s)", size, n);
-        };
+        return of((node, cursor) -> {
+            int n = node.size();
+            assertFor(n <= size, cursor, "must have at most %s properties (%s)", size, n);
+        });
     }
 
     /**
      * @param maximum the maximum value
      */
     static Validator maximum(long maximum) {
-        return locator -> root -> {
-            long value = locator.getNode(root).asLong(0);
-            assertFor(value <= maximum, locator, "must be <= %s (%s)", maximum, value);
-        };
+        return of((node, cursor) -> {
+            long value = node.asLong(0);
+            assertFor(value <= maximum, cursor, "must be <= %s (%s)", maximum, value);
+        });
     }
 
     /**
      * @param maximum the maximum value
      */
     static Validator maximum(double maximum) {
-        return locator -> root -> {
-            double value = locator.getNode(root).asDouble(0);
-            assertFor(value <= maximum, locator, "must be <= %s (%s)", maximum, value);
-        };
+        return of((node, cursor) -> {
+            double value = node.asDouble(0);
+            assertFor(value <= maximum, cursor, "must be <= %s (%s)", maximum, value);
+        });
     }
 
     /**
@@ -358,50 +374,50 @@ public interface Validator extends Function<Locator, Consumer<JsonNode>> {
      * @param size the minimum size
      */
     static Validator minItems(int size) {
-        return locator -> root -> {
-            int currentSize = locator.getNode(root).size();
-            assertFor(currentSize >= size, locator, "must have at least %s items (%s)", size, currentSize);
-        };
+        return of((node, cursor) -> {
+            int currentSize = node.size();
+            assertFor(currentSize >= size, cursor, "must have at least %s items (%s)", size, currentSize);
+        });
     }
 
     /**
      * @param length the minimum string length
      */
     static Validator minLength(int length) {
-        return locator -> root -> {
-            int currentSize = locator.getNode(root).asText("").length();
-            assertFor(currentSize >= length, locator, "must have length >= %s (%s)", length, currentSize);
-        };
+        return of((node, cursor) -> {
+            int currentSize = node.asText("").length();
+            assertFor(currentSize >= length, cursor, "must have length >= %s (%s)", length, currentSize);
+        });
     }
 
     /**
      * @param size the minimum number of items
      */
     static Validator minProperties(int size) {
-        return locator -> root -> {
-            int n = locator.getNode(root).size();
-            assertFor(n >= size, locator, "must have at least %s properties (%s)", size, n);
-        };
+        return of((node, cursor) -> {
+            int n = node.size();
+            assertFor(n >= size, cursor, "must have at least %s properties (%s)", size, n);
+        });
     }
 
     /**
      * @param minimum the minimum value
      */
     static Validator minimum(long minimum) {
-        return locator -> root -> {
-            long value = locator.getNode(root).asLong(0);
-            assertFor(value >= minimum, locator, "must be >= %s (%s)", minimum, value);
-        };
+        return of((node, cursor) -> {
+            long value = node.asLong(0);
+            assertFor(value >= minimum, cursor, "must be >= %s (%s)", minimum, value);
+        });
     }
 
     /**
      * @param minimum the minimum value
      */
     static Validator minimum(double minimum) {
-        return locator -> root -> {
-            double value = locator.getNode(root).asDouble(0);
-            assertFor(value >= minimum, locator, "must be >= %s (%s)", minimum, value);
-        };
+        return of((node, cursor) -> {
+            double value = node.asDouble(0);
+            assertFor(value >= minimum, cursor, "must be >= %s (%s)", minimum, value);
+        });
     }
 
     /**
@@ -453,12 +469,11 @@ public interface Validator extends Function<Locator, Consumer<JsonNode>> {
      */
     static Validator nullable(Validator item) {
         requireNonNull(item);
-        return locator -> root -> {
-            JsonNode node = locator.getNode(root);
+        return of((node, cursor) -> {
             if (!node.isNull()) {
-                item.apply(locator).accept(root);
+                item.validate(node, cursor);
             }
-        };
+        });
     }
 
     /**
@@ -536,14 +551,23 @@ public interface Validator extends Function<Locator, Consumer<JsonNode>> {
         return object(properties(properties, required, additionalProperties));
     }
 
+    /**
+     * Returns the compiled validator of a node validator
+     *
+     * @param validator the node validator
+     */
+    static Validator of(NodeValidator validator) {
+        return new CompiledValidator(validator);
+    }
+
     /**
      * @param pattern the regex pattern
      */
     static Validator pattern(String pattern) {
-        return locator -> root -> {
-            String value = locator.getNode(root).asText("");
-            assertFor(value.matches(pattern), locator, "must match pattern \"%s\" (%s)", pattern, value);
-        };
+        return of((node, cursor) -> {
+            String value = node.asText("");
+            assertFor(value.matches(pattern), cursor, "must match pattern \"%s\" (%s)", pattern, value);
+        });
     }
 
     /**
@@ -564,30 +588,26 @@ public interface Validator extends Function<Locator, Consumer<JsonNode>> {
      * @param prefixItems the prefix items
      */
     static Validator prefixItems(Validator... prefixItems) {
-        return locator -> root -> {
-            JsonNode node = locator.getNode(root);
+        return of((node, cursor) -> {
             int n = min(node.size(), prefixItems.length);
             for (int i = 0; i < n; i++) {
                 prefixItems[i]
-                        .apply(locator.path(String.valueOf(i)))
-                        .accept(root);
+                        .validate(Cursor.path(node, i), cursor.child(i));
             }
-        };
+        });
     }
 
     /**
      * @param prefixItems the prefix items
      */
     static Validator prefixItems(List<Validator> prefixItems) {
-        return locator -> root -> {
-            JsonNode node = locator.getNode(root);
+        return of((node, cursor) -> {
             int n = min(node.size(), prefixItems.size());
             for (int i = 0; i < n; i++) {
                 prefixItems.get(i)
-                        .apply(locator.path(String.valueOf(i)))
-                        .accept(root);
+                        .validate(Cursor.path(node, i), cursor.child(i));
             }
-        };
+        });
     }
 
     /**
@@ -611,27 +631,23 @@ public interface Validator extends Function<Locator, Consumer<JsonNode>> {
         requireNonNull(properties);
         requireNonNull(required);
         requireNonNull(additionalProperties);
-        return locator -> root -> {
-            JsonNode node = locator.getNode(root);
+        Set<String> requiredSet = Set.copyOf(required);
+        return of((node, cursor) -> {
             // Validate required properties
             for (String name : required) {
-                Locator child = locator.path(name);
+                Cursor child = cursor.child(name);
                 assertFor(node.has(name), child, "is missing");
-                getValue(properties, name)
-                        .orElse(additionalProperties)
-                        .apply(child)
-                        .accept(root);
+                properties.getOrDefault(name, additionalProperties)
+                        .validate(Cursor.path(node, name), child);
             }
             // Validate optional properties
             for (String name : iterable(node.fieldNames())) {
-                if (!required.contains(name)) {
-                    getValue(properties, name)
-                            .orElse(additionalProperties)
-                            .apply(locator.path(name))
-                            .accept(root);
+                if (!requiredSet.contains(name)) {
+                    properties.getOrDefault(name, additionalProperties)
+                            .validate(Cursor.path(node, name), cursor.child(name));
                 }
             }
-        };
+        });
     }
 
     /**
@@ -651,28 +667,27 @@ public interface Validator extends Function<Locator, Consumer<JsonNode>> {
     static Validator properties(Map<String, Validator> properties, List<String> required) {
         requireNonNull(properties);
         requireNonNull(required);
-        return locator -> root -> {
-            JsonNode node = locator.getNode(root);
+        Set<String> requiredSet = Set.copyOf(required);
+        return of((node, cursor) -> {
             // Validate required properties
             for (String name : required) {
-                Locator child = locator.path(name);
+                Cursor child = cursor.child(name);
                 assertFor(node.has(name), child, "is missing");
                 Validator schema = properties.get(name);
                 if (schema != null) {
-                    schema.apply(child).accept(root);
+                    schema.validate(Cursor.path(node, name), child);
                 }
             }
             // Validate optional properties
             for (String name : iterable(node.fieldNames())) {
-                if (!required.contains(name)) {
-                    Locator child = locator.path(name);
+                if (!requiredSet.contains(name)) {
                     Validator schema = properties.get(name);
                     if (schema != null) {
-                        schema.apply(child).accept(root);
+                        schema.validate(Cursor.path(node, name), cursor.child(name));
                     }
                 }
             }
-        };
+        });
     }
 
     /**
@@ -682,7 +697,9 @@ public interface Validator extends Function<Locator, Consumer<JsonNode>> {
      * @param validator the property validator
      */
     static Validator property(String name, Validator validator) {
-        return locator -> validator.apply(locator.path(name));
+        requireNonNull(name);
+        requireNonNull(validator);
+        return of((node, cursor) -> validator.validate(Cursor.path(node, name), cursor.child(name)));
     }
 
     /**
@@ -708,10 +725,10 @@ public interface Validator extends Function<Locator, Consumer<JsonNode>> {
      * @param values the accepted values
      */
     static Validator values(Collection<String> values) {
-        return locator -> root -> {
-            String value = locator.getNode(root).asText("");
-            assertFor(values.contains(value), locator, "must match a value in %s (%s)", values, value);
-        };
+        return of((node, cursor) -> {
+            String value = node.asText("");
+            assertFor(values.contains(value), cursor, "must match a value in %s (%s)", values, value);
+        });
     }
 
     /**
@@ -723,4 +740,43 @@ public interface Validator extends Function<Locator, Consumer<JsonNode>> {
         return values(Arrays.asList(values));
     }
 
+    /**
+     * Validates the node at the cursor position
+     * <p>
+     * The default implementation locates the node again from the document root,
+     * the compiled validators walk the node directly.
+     * </p>
+     *
+     * @param node   the node
+     * @param cursor the position of node
+     */
+    default void validate(JsonNode node, Cursor cursor) {
+        apply(cursor.getLocator()).accept(cursor.getRoot());
+    }
+
+    /**
+     * Validates the document at the locator
+     *
+     * @param root    the root document
+     * @param locator the locator
+     */
+    default void validate(JsonNode root, Locator locator) {
+        validate(locator.getNode(root), Cursor.create(root, locator));
+    }
+
+    /**
+     * Validates a node at a position in the document
+     */
+    @FunctionalInterface
+    interface NodeValidator {
+        /**
+         * Validates the node
+         *
+         * @param node   the node
+         * @param cursor the position of node
+         * @throws IllegalArgumentException if the node is not valid
+         */
+        void validate(JsonNode node, Cursor cursor);
+    }
+
 }
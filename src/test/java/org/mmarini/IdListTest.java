@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdListTest {
+
+    static String idOf(Tuple2<String, Integer> item) {
+        return item._1;
+    }
+
+    @Test
+    void duplicated() {
+        // Given ...
+        List<Tuple2<String, Integer>> items = List.of(Tuple2.of("a", 1), Tuple2.of("a", 2));
+
+        // When ... Then ...
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                IdList.of(items, IdListTest::idOf));
+        assertThat(ex.getMessage(), equalTo("Duplicated identifier a"));
+    }
+
+    @Test
+    void get() {
+        // Given ...
+        IdList<Tuple2<String, Integer>> list = IdList.of(
+                List.of(Tuple2.of("a", 1), Tuple2.of("b", 2), Tuple2.of("c", 3)),
+                IdListTest::idOf);
+
+        // When ...
+        Optional<Tuple2<String, Integer>> b = list.get("b");
+        Optional<Tuple2<String, Integer>> d = list.get("d");
+
+        // Then ...
+        assertThat(b.orElseThrow(), equalTo(Tuple2.of("b", 2)));
+        assertThat(d.isEmpty(), equalTo(true));
+        assertThat(list.get(2), equalTo(Tuple2.of("c", 3)));
+    }
+
+    @Test
+    void replace() {
+        // Given ...
+        IdList<Tuple2<String, Integer>> list = IdList.of(
+                List.of(Tuple2.of("a", 1), Tuple2.of("b", 2), Tuple2.of("c", 3)),
+                IdListTest::idOf);
+
+        // When ...
+        IdList<Tuple2<String, Integer>> list1 = list.replace(Tuple2.of("b", 20));
+
+        // Then ...
+        assertThat(list1, contains(Tuple2.of("a", 1), Tuple2.of("b", 20), Tuple2.of("c", 3)));
+        assertThat(list1.get("b").orElseThrow(), equalTo(Tuple2.of("b", 20)));
+        // and the original list is untouched
+        assertThat(list, contains(Tuple2.of("a", 1), Tuple2.of("b", 2), Tuple2.of("c", 3)));
+    }
+
+    @Test
+    void replaceMissing() {
+        // Given ...
+        IdList<Tuple2<String, Integer>> list = IdList.of(List.of(Tuple2.of("a", 1)), IdListTest::idOf);
+
+        // When ... Then ...
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                list.replace(Tuple2.of("b", 1)));
+        assertThat(ex.getMessage(), equalTo("Identifier b not found"));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class PersistentMapTest {
+
+    /**
+     * A key with a reduced hash to force the collisions
+     */
+    static class Key {
+        private final int id;
+
+        Key(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id % 7);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 31, 32, 33, 1024, 40000})
+    void of(int size) {
+        // Given ...
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            expected.put(i * 31, -i);
+        }
+
+        // When ...
+        PersistentMap<Integer, Integer> map = PersistentMap.of(expected);
+
+        // Then ...
+        assertThat(map.size(), equalTo(size));
+        assertThat(map, equalTo(expected));
+        assertThat(map.get(-1), nullValue());
+        assertThat(PersistentMap.of(map), sameInstance(map));
+    }
+
+    @Test
+    void plusMinus() {
+        // Given ...
+        Random random = new Random(1234);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentMap<Integer, Integer> map = PersistentMap.empty();
+
+        for (int i = 0; i < 20000; i++) {
+            // When ...
+            int key = random.nextInt(2000) - 1000;
+            if (random.nextBoolean()) {
+                expected.put(key, i);
+                map = map.plus(key, i);
+            } else {
+                expected.remove(key);
+                map = map.minus(key);
+            }
+
+            // Then ...
+            assertThat(map.size(), equalTo(expected.size()));
+            assertThat(map.get(key), equalTo(expected.get(key)));
+        }
+        assertThat(map, equalTo(expected));
+    }
+
+    @Test
+    void collisions() {
+        // Given ...
+        Map<Key, Integer> expected = new HashMap<>();
+        PersistentMap<Key, Integer> map = PersistentMap.empty();
+        for (int i = 0; i < 100; i++) {
+            expected.put(new Key(i), i);
+            map = map.plus(new Key(i), i);
+        }
+
+        // When ...
+        PersistentMap<Key, Integer> map1 = map;
+        for (int i = 0; i < 100; i += 3) {
+            expected.remove(new Key(i));
+            map1 = map1.minus(new Key(i));
+        }
+
+        // Then ...
+        assertThat(map1, equalTo(expected));
+        assertThat(map.size(), equalTo(100));
+        assertThat(map.get(new Key(3)), equalTo(3));
+        assertThat(map1.get(new Key(3)), nullValue());
+        assertThat(map1.minus(new Key(3)), sameInstance(map1));
+    }
+
+    @Test
+    void sharing() {
+        // Given ...
+        PersistentMap<String, Integer> map = PersistentMap.<String, Integer>empty()
+                .plus("a", 1)
+                .plus("b", 2);
+
+        // When ...
+        PersistentMap<String, Integer> map1 = map.plus("a", 3);
+
+        // Then ...
+        assertThat(map, equalTo(Map.of("a", 1, "b", 2)));
+        assertThat(map1, equalTo(Map.of("a", 3, "b", 2)));
+        assertThat(map1.plus("a", 3), sameInstance(map1));
+        assertThat(map.minus("c"), sameInstance(map));
+    }
+}
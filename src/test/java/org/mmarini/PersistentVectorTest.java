@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PersistentVectorTest {
+
+    static List<Integer> range(int size) {
+        return IntStream.range(0, size).boxed().collect(Collectors.toList());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 31, 32, 33, 1024, 1025, 40000})
+    void of(int size) {
+        // Given ...
+        List<Integer> expected = range(size);
+
+        // When ...
+        PersistentVector<Integer> vector = PersistentVector.of(expected);
+
+        // Then ...
+        assertThat(vector, hasSize(size));
+        assertThat(vector, equalTo(expected));
+        assertThrows(IndexOutOfBoundsException.class, () -> vector.get(size));
+        assertThrows(IndexOutOfBoundsException.class, () -> vector.get(-1));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 31, 32, 33, 1024, 1025, 40000})
+    void replace(int size) {
+        // Given ...
+        List<Integer> expected = range(size);
+        PersistentVector<Integer> vector = PersistentVector.of(expected);
+
+        for (int i : new int[]{0, size / 2, size - 1}) {
+            // When ...
+            PersistentVector<Integer> vector1 = vector.replace(i, -i - 1);
+
+            // Then ...
+            assertThat(vector1.get(i), equalTo(-i - 1));
+            assertThat(vector1, hasSize(size));
+            for (int j = 0; j < size; j++) {
+                if (j != i) {
+                    assertThat(vector1.get(j), equalTo(j));
+                }
+            }
+            // and the original vector is untouched
+            assertThat(vector, equalTo(expected));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 33})
+    void replaceSame(int size) {
+        // Given ...
+        PersistentVector<Integer> vector = PersistentVector.of(range(size));
+
+        // When ...
+        PersistentVector<Integer> vector1 = vector.replace(0, vector.get(0));
+
+        // Then ...
+        assertThat(vector1, sameInstance(vector));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.batch;
+
+import org.junit.jupiter.api.Test;
+import org.mmarini.railways2.model.ExtendedPerformance;
+import org.mmarini.railways2.model.StationStatus;
+import org.mmarini.railways2.model.blocks.BlockBuilder;
+import org.mmarini.railways2.model.blocks.StationDef;
+import org.mmarini.yaml.Utils;
+import org.mmarini.yaml.schema.Locator;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchSimulationTest {
+
+    public static final double GAME_DURATION = 1800;
+    public static final double FREQUENCY = 30d / 3600;
+
+    static StationStatus createStatus(Random random) throws IOException {
+        StationDef stationDef = StationDef.create(Utils.fromResource("/stations/downville.station.yml"), Locator.root());
+        return new BlockBuilder(stationDef).buildStatus(GAME_DURATION, FREQUENCY, random, null);
+    }
+
+    @Test
+    void run() throws IOException {
+        // Given ...
+        Random random = new Random(1234);
+        StationStatus status = createStatus(random);
+        BatchSimulation simulation = new BatchSimulation(DispatchPolicy.automatic(), BatchSimulation.DEFAULT_DT, random, null);
+
+        // When ...
+        StationStatus result = simulation.run(status);
+
+        // Then ...
+        assertTrue(result.isGameFinished());
+        ExtendedPerformance performance = result.getPerformance();
+        assertThat(performance.getIncomingTrainNumber(), greaterThan(0));
+        assertThat(performance.getRightOutgoingTrainNumber() + performance.getWrongOutgoingTrainNumber(), greaterThan(0));
+    }
+
+    @Test
+    void runEventDriven() throws IOException {
+        // Given ...
+        Random random = new Random(1234);
+        StationStatus status = createStatus(random);
+        BatchSimulation simulation = new BatchSimulation(DispatchPolicy.automatic(), BatchSimulation.DEFAULT_DT, random, null, true);
+
+        // When ...
+        StationStatus result = simulation.run(status);
+
+        // Then ...
+        assertTrue(result.isGameFinished());
+        assertThat(result.getTime(), closeTo(GAME_DURATION, BatchSimulation.DEFAULT_DT));
+        ExtendedPerformance performance = result.getPerformance();
+        assertThat(performance.getIncomingTrainNumber(), greaterThan(0));
+        assertThat(performance.getRightOutgoingTrainNumber() + performance.getWrongOutgoingTrainNumber(), greaterThan(0));
+    }
+
+    @Test
+    void runParallel() throws IOException {
+        // Given ...
+        Random random0 = new Random(1234);
+        Random random1 = new Random(1234);
+        StationStatus status0 = createStatus(random0);
+        StationStatus status1 = createStatus(random1);
+        ForkJoinPool pool = new ForkJoinPool(2);
+
+        // When ...
+        StationStatus result0 = new BatchSimulation(DispatchPolicy.automatic(), BatchSimulation.DEFAULT_DT, random0, null).run(status0);
+        StationStatus result1 = new BatchSimulation(DispatchPolicy.automatic(), BatchSimulation.DEFAULT_DT, random1, pool).run(status1);
+        pool.shutdown();
+
+        // Then ...
+        ExtendedPerformance performance0 = result0.getPerformance();
+        ExtendedPerformance performance1 = result1.getPerformance();
+        assertEquals(performance0.getIncomingTrainNumber(), performance1.getIncomingTrainNumber());
+        assertEquals(performance0.getRightOutgoingTrainNumber(), performance1.getRightOutgoingTrainNumber());
+        assertEquals(performance0.getWrongOutgoingTrainNumber(), performance1.getWrongOutgoingTrainNumber());
+        assertEquals(performance0.getTraveledDistance(), performance1.getTraveledDistance());
+    }
+}
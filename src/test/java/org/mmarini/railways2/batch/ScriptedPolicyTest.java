@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mmarini.railways2.model.StationCommand;
+import org.mmarini.railways2.model.StationStatus;
+import org.mmarini.railways2.model.blocks.BlockBuilder;
+import org.mmarini.railways2.model.blocks.StationDef;
+import org.mmarini.railways2.model.routes.Switch;
+import org.mmarini.yaml.Utils;
+import org.mmarini.yaml.schema.Locator;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mmarini.railways2.TestFunctions.text;
+
+class ScriptedPolicyTest {
+
+    public static final double GAME_DURATION = 300;
+    public static final double FREQUENCY = 0.1;
+    public static final double DT = 0.1;
+
+    private StationStatus status;
+    private String switchId;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        StationDef stationDef = StationDef.create(Utils.fromResource("/stations/downville.station.yml"), Locator.root());
+        status = new BlockBuilder(stationDef).buildStatus(GAME_DURATION, FREQUENCY, null, null);
+        switchId = status.getRoutes().stream()
+                .filter(route -> route instanceof Switch)
+                .findFirst()
+                .orElseThrow()
+                .getId();
+    }
+
+    @Test
+    void apply() throws IOException {
+        // Given ...
+        JsonNode root = Utils.fromText(text("---",
+                "actions:",
+                "  - time: 1",
+                "    action: toggleSwitch",
+                "    id: " + switchId,
+                "  - time: 0",
+                "    action: stopTrains"));
+        ScriptedPolicy policy = ScriptedPolicy.fromJson(root, Locator.root());
+        boolean through = status.<Switch>getRoute(switchId).isThrough();
+        StationStatus before = status.setTime(0.8);
+
+        // When ...
+        StationStatus status0 = policy.apply(status.setTime(0.95), DT);
+        StationStatus status1 = policy.apply(status.setTime(1), DT);
+        StationStatus status2 = policy.apply(before, DT);
+
+        // Then ...
+        assertThat(policy.getNumActions(), equalTo(2));
+        assertThat(status0.<Switch>getRoute(switchId).isThrough(), equalTo(!through));
+        assertThat(status1.<Switch>getRoute(switchId).isThrough(), equalTo(!through));
+        assertThat(status2, sameInstance(before));
+    }
+
+    @Test
+    void fromJson() throws IOException {
+        // Given ...
+        JsonNode root = Utils.fromText(text("---",
+                "actions:",
+                "  - time: 2",
+                "    action: unlockSignal",
+                "    id: signal",
+                "    edge: edge",
+                "  - time: 1",
+                "    action: toggleSwitch",
+                "    id: " + switchId,
+                "  - time: 2",
+                "    action: startTrain",
+                "    id: train"));
+
+        // When ...
+        ScriptedPolicy policy = ScriptedPolicy.fromJson(root, Locator.root());
+
+        // Then ...
+        assertThat(policy.getActions(), equalTo(Map.of(
+                1d, List.of(StationCommand.toggleSwitch(switchId)),
+                2d, List.of(StationCommand.unlockSignal("signal", "edge"), StationCommand.startTrain("train")))));
+    }
+
+    @Test
+    void getNextActionTime() throws IOException {
+        // Given ...
+        JsonNode root = Utils.fromText(text("---",
+                "actions:",
+                "  - time: 5",
+                "    action: stopTrains",
+                "  - time: 1",
+                "    action: toggleSwitch",
+                "    id: " + switchId,
+                "  - time: 5",
+                "    action: lockSignals"));
+
+        // When ...
+        ScriptedPolicy policy = ScriptedPolicy.fromJson(root, Locator.root());
+
+        // Then ...
+        assertThat(policy.getNumActions(), equalTo(3));
+        assertThat(policy.getNextActionTime(0), equalTo(1d));
+        assertThat(policy.getNextActionTime(1), equalTo(5d));
+        assertThat(policy.getNextActionTime(5), equalTo(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    void missingEdge() throws IOException {
+        // Given ...
+        JsonNode root = Utils.fromText(text("---",
+                "actions:",
+                "  - time: 1",
+                "    action: unlockSignal",
+                "    id: signal"));
+
+        // When ...
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                ScriptedPolicy.fromJson(root, Locator.root()));
+
+        // Then ...
+        assertThat(ex.getMessage(), matchesPattern("/actions/0 must have property edge"));
+    }
+
+    @Test
+    void wrongAction() throws IOException {
+        // Given ...
+        JsonNode root = Utils.fromText(text("---",
+                "actions:",
+                "  - time: 1",
+                "    action: jump"));
+
+        // When ...
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                ScriptedPolicy.fromJson(root, Locator.root()));
+
+        // Then ...
+        assertThat(ex.getMessage(), containsString("/actions/0/action"));
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mmarini.railways2.model.blocks.BlockBuilder;
+import org.mmarini.railways2.model.blocks.StationDef;
+import org.mmarini.yaml.Utils;
+import org.mmarini.yaml.schema.Locator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CheckpointServiceTest {
+
+    public static final double GAME_DURATION = 300d;
+    public static final double FREQUENCY = 0.1;
+
+    private CheckpointService service;
+
+    /**
+     * Returns the writer of a text counting the invocations
+     *
+     * @param text    the text
+     * @param counter the invocation counter
+     */
+    static CheckpointService.ContentWriter textWriter(String text, AtomicInteger counter) {
+        return channel -> {
+            counter.incrementAndGet();
+            channel.write(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    @Test
+    void appender() throws Exception {
+        // Given a service with the writer thread busy
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        service = new CheckpointService(Path.of("."), 0, 1, executor);
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel channel = service.appender(Channels.newChannel(out));
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+
+        // When writing reusing the buffer
+        buffer.put("first ".getBytes(StandardCharsets.UTF_8)).flip();
+        int n = channel.write(buffer);
+        buffer.clear().put("second".getBytes(StandardCharsets.UTF_8)).flip();
+        channel.write(buffer);
+        channel.close();
+
+        // Then the content is written in background in order
+        assertThat(n, equalTo(6));
+        assertThat(out.size(), equalTo(0));
+        latch.countDown();
+        service.flush();
+        assertThat(out.toString(StandardCharsets.UTF_8), equalTo("first second"));
+        assertThat(channel.isOpen(), equalTo(false));
+    }
+
+    @Test
+    void checkpointInterval(@TempDir Path dir) throws IOException {
+        // Given ...
+        StationDef stationDef = StationDef.create(Utils.fromResource("/stations/downville.station.yml"), Locator.root());
+        StationStatus status = new BlockBuilder(stationDef).buildStatus(GAME_DURATION, FREQUENCY, new Random(1234), null);
+        service = CheckpointService.create(dir, Duration.ofHours(1), 3);
+
+        // When ...
+        service.offer(status);
+        service.offer(status);
+        service.offer(status);
+        service.flush();
+
+        // Then ...
+        assertThat(service.getCheckpoints(), hasSize(1));
+    }
+
+    @Test
+    void checkpoints(@TempDir Path dir) throws IOException {
+        // Given ...
+        StationDef stationDef = StationDef.create(Utils.fromResource("/stations/downville.station.yml"), Locator.root());
+        StationStatus status = new BlockBuilder(stationDef).buildStatus(GAME_DURATION, FREQUENCY, new Random(1234), null);
+        service = CheckpointService.create(dir, Duration.ZERO, 2);
+
+        // When ...
+        for (int i = 0; i < 4; i++) {
+            service.offer(status);
+            service.flush();
+        }
+
+        // Then ...
+        assertThat(service.getCheckpoints(), contains(
+                dir.resolve("checkpoint-000002.snapshot"),
+                dir.resolve("checkpoint-000003.snapshot")));
+        assertThat(dir.toFile().list(), arrayWithSize(2));
+        Path latest = service.getLatestCheckpoint().orElseThrow();
+        StationStatus decoded = StationStatusCodec.read(latest, stationDef);
+        StationStatusCodecTest.assertSameDump(decoded, status);
+    }
+
+    @Test
+    void coalesceWrites(@TempDir Path dir) throws Exception {
+        // Given a service with the writer thread busy
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        service = new CheckpointService(dir, 0, 1, executor);
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Path file = dir.resolve("sub").resolve("config.yml");
+        AtomicInteger counter = new AtomicInteger();
+
+        // When writing a burst
+        service.write(file, textWriter("first", counter));
+        service.write(file, textWriter("second", counter));
+        service.write(file, textWriter("third", counter));
+        latch.countDown();
+        service.flush();
+
+        // Then only the last content is written
+        assertThat(counter.get(), equalTo(1));
+        assertThat(Files.readString(file), equalTo("third"));
+        assertThat(file.getParent().toFile().list(), arrayContaining("config.yml"));
+    }
+
+    @Test
+    void concurrentWrites(@TempDir Path dir) throws Exception {
+        // Given two writers of the same file suspended while writing
+        Path file = dir.resolve("config.yml");
+        CountDownLatch writing = new CountDownLatch(2);
+        CheckpointService.ContentWriter writer = channel -> {
+            writing.countDown();
+            try {
+                writing.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            channel.write(ByteBuffer.wrap("content".getBytes(StandardCharsets.UTF_8)));
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // When writing concurrently
+        Future<?> first = executor.submit(() -> {
+            CheckpointService.writeAtomically(file, writer);
+            return null;
+        });
+        Future<?> second = executor.submit(() -> {
+            CheckpointService.writeAtomically(file, writer);
+            return null;
+        });
+        first.get();
+        second.get();
+        executor.shutdown();
+
+        // Then both writes complete without temporary files left
+        assertThat(Files.readString(file), equalTo("content"));
+        assertThat(dir.toFile().list(), arrayContaining("config.yml"));
+    }
+
+    @Test
+    void failedWrite(@TempDir Path dir) throws IOException {
+        // Given an existing file
+        Path file = dir.resolve("config.yml");
+        Files.writeString(file, "previous");
+
+        // When the writer fails
+        assertThrows(IOException.class, () -> CheckpointService.writeAtomically(file, channel -> {
+            channel.write(ByteBuffer.wrap("partial".getBytes(StandardCharsets.UTF_8)));
+            throw new IOException("failure");
+        }));
+
+        // Then the file is untouched and the temporary file removed
+        assertThat(Files.readString(file), equalTo("previous"));
+        assertThat(dir.toFile().list(), arrayContaining("config.yml"));
+    }
+
+    @Test
+    void emptyDirectory(@TempDir Path dir) {
+        // Given ...
+        service = CheckpointService.create(dir.resolve("missing"), Duration.ZERO, 1);
+
+        // When ... Then ...
+        assertThat(service.getCheckpoints(), empty());
+        assertThat(service.getLatestCheckpoint().isPresent(), equalTo(false));
+    }
+}
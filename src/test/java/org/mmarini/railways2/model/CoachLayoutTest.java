@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.junit.jupiter.api.Test;
+import org.mmarini.Tuple2;
+import org.mmarini.railways2.model.blocks.BlockBuilder;
+import org.mmarini.railways2.model.blocks.StationDef;
+import org.mmarini.railways2.model.geometry.EdgeLocation;
+import org.mmarini.railways2.model.geometry.TrainComposition;
+import org.mmarini.yaml.Utils;
+import org.mmarini.yaml.schema.Locator;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mmarini.railways2.model.RailwayConstants.COACH_LENGTH;
+
+class CoachLayoutTest {
+
+    public static final double GAME_DURATION = 3000d;
+    public static final double FREQUENCY = 0.5;
+    public static final double DT = 0.1;
+    public static final int NUM_STEPS = 3000;
+    public static final double EPSILON = 1e-6;
+
+    /**
+     * Returns the number of coaches of the train in the station
+     *
+     * @param train the train
+     */
+    static int numSlots(Train train) {
+        return train.isExiting()
+                ? train.getNumCoaches() - (int) Math.ceil(train.getExitDistance() / COACH_LENGTH)
+                : train.getNumCoaches();
+    }
+
+    /**
+     * Returns the coaches of the train computed by walking the edge locations
+     *
+     * @param status the status
+     * @param train  the train
+     */
+    static List<Tuple2<Point2D, Double>> expectedCoaches(StationStatus status, Train train) {
+        List<Tuple2<Point2D, Double>> result = new ArrayList<>();
+        EdgeLocation start;
+        int n = numSlots(train);
+        if (train.isExiting()) {
+            int numExitedCoaches = train.getNumCoaches() - n;
+            EdgeLocation exit = new EdgeLocation(train.getExitingNode().getValidExits().iterator().next(), 0);
+            start = exit.setDistance(exit.getDirection().getEdge().getLength()
+                    - numExitedCoaches * COACH_LENGTH + train.getExitDistance());
+        } else {
+            start = train.getLocation().map(EdgeLocation::opposite).orElse(null);
+        }
+        for (int i = 0; i < n && start != null; i++) {
+            status.computeCoachLocation(start).ifPresent(result::add);
+            start = status.getLocationAt(start, COACH_LENGTH).orElse(null);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the station status with running trains
+     */
+    static StationStatus runningStatus() throws IOException {
+        StationDef stationDef = StationDef.create(Utils.fromResource("/stations/downville.station.yml"), Locator.root());
+        Random random = new Random(1234);
+        StationStatus status = new BlockBuilder(stationDef).buildStatus(GAME_DURATION, FREQUENCY, random, null)
+                .setAutoLock(true);
+        for (int i = 0; i < NUM_STEPS; i++) {
+            status = status.tick(DT, random);
+        }
+        return status;
+    }
+
+    @Test
+    void layoutCoaches() throws IOException {
+        // Given ...
+        StationStatus status = runningStatus();
+        assertThat(status.getTrains(), not(empty()));
+
+        // When ...
+        CoachLayout layout = status.layoutCoaches(new CoachLayout());
+
+        // Then ...
+        int i = 0;
+        for (Train train : status.getTrains()) {
+            List<Tuple2<Point2D, Double>> expected = expectedCoaches(status, train);
+            int n = numSlots(train);
+            for (int j = 0; j < expected.size(); j++) {
+                Tuple2<Point2D, Double> coach = expected.get(j);
+                assertThat(layout.getX(i), closeTo(coach._1.getX(), EPSILON));
+                assertThat(layout.getY(i), closeTo(coach._1.getY(), EPSILON));
+                assertThat(layout.getOrientation(i), closeTo(coach._2, EPSILON));
+                int kind = j == 0 && !train.isExiting() ? CoachLayout.HEAD
+                        : j == n - 1 ? CoachLayout.TAIL
+                        : CoachLayout.COACH;
+                assertThat(layout.getKind(i), equalTo(kind));
+                i++;
+            }
+        }
+        assertThat(layout.getSize(), equalTo(i));
+        assertThat(layout.toArray().length, equalTo(i * CoachLayout.STRIDE));
+    }
+
+    @Test
+    void layoutCoachesReuse() throws IOException {
+        // Given ...
+        StationStatus status = runningStatus();
+        CoachLayout layout = status.layoutCoaches(new CoachLayout());
+        double[] expected = layout.toArray();
+
+        // When ...
+        CoachLayout layout1 = status.layoutCoaches(layout);
+
+        // Then ...
+        assertThat(layout1, sameInstance(layout));
+        assertThat(layout1.toArray(), equalTo(expected));
+    }
+
+    @Test
+    void trainComposition() throws IOException {
+        // Given ...
+        StationStatus status = runningStatus();
+
+        for (Train train : status.getTrains()) {
+            // When ...
+            TrainComposition composition = status.getTrainCoaches(train);
+
+            // Then ...
+            int numCoaches = composition.getCoaches().size()
+                    + composition.getHead().map(x -> 1).orElse(0)
+                    + composition.getTail().map(x -> 1).orElse(0);
+            assertThat(numCoaches, equalTo(expectedCoaches(status, train).size()));
+            assertThat(composition.getHead().isPresent(), equalTo(!train.isExiting() && train.getLocation().isPresent()));
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mmarini.railways2.model.blocks.BlockBuilder;
+import org.mmarini.railways2.model.blocks.StationDef;
+import org.mmarini.yaml.Utils;
+import org.mmarini.yaml.schema.Locator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mmarini.railways2.model.StationStatusCodecTest.assertSameDump;
+import static org.mmarini.railways2.model.StationStatusLoaderTest.DOUBLE_SLIP_SWITCH_ID;
+
+class CommandJournalTest {
+
+    public static final long SEED = 1234;
+    public static final double GAME_DURATION = 600;
+    public static final double FREQUENCY = 1;
+    public static final double DT = 0.1;
+    public static final int NUM_STEPS = 1000;
+
+    private StationDef stationDef;
+    private StationStatus initial;
+
+    /**
+     * Returns the final status of a game recorded by the journal
+     *
+     * @param journal the journal
+     */
+    StationStatus play(CommandJournal journal) {
+        StationStatus status = initial;
+        for (int i = 0; i < NUM_STEPS; i++) {
+            // Varies the time interval to split the tick records
+            status = journal.tick(status, i % 300 < 200 ? DT : DT / 2);
+            if (i == 100) {
+                status = journal.apply(status, StationCommand.autoLock(false));
+            } else if (i == 200) {
+                status = journal.apply(status, StationCommand.toggleDoubleSlipSwitch(DOUBLE_SLIP_SWITCH_ID));
+            } else if (i == 300) {
+                status = journal.apply(status, StationCommand.stopTrains());
+                status = journal.apply(status, StationCommand.lockSignals());
+            } else if (i == 600 && !status.getTrains().isEmpty()) {
+                status = journal.apply(status, StationCommand.startTrain(status.getTrains().iterator().next().getId()));
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Returns the content of the journal of a game
+     */
+    byte[] record() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CommandJournal journal = CommandJournal.create(Channels.newChannel(out), SEED, initial)) {
+            play(journal);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void badMagic() throws IOException {
+        // Given a journal with a wrong magic number
+        byte[] data = record();
+        ByteBuffer.wrap(data).putInt(0, 0);
+
+        // When ... Then ...
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                JournalReplay.replay(Channels.newChannel(new ByteArrayInputStream(data)), stationDef, s -> {
+                }));
+        assertThat(ex.getMessage(), containsString("magic"));
+    }
+
+    @Test
+    void crash(@TempDir Path dir) throws IOException {
+        // Given a game recorded on file and flushed without closing the journal
+        Path file = dir.resolve("game.journal");
+        CheckpointService writer = CheckpointService.create(dir, Duration.ofHours(1), 1);
+        CommandJournal journal = CommandJournal.create(file, SEED, initial, writer);
+        StationStatus expected = play(journal);
+        journal.flush();
+        writer.close();
+
+        // When ...
+        StationStatus actual = JournalReplay.replay(file, stationDef);
+
+        // Then ...
+        assertThat(actual.getTime(), equalTo(expected.getTime()));
+        assertSameDump(actual, expected);
+    }
+
+    @Test
+    void file(@TempDir Path dir) throws IOException {
+        // Given a game recorded on file
+        Path file = dir.resolve("game.journal");
+        CheckpointService writer = CheckpointService.create(dir, Duration.ofHours(1), 1);
+        StationStatus expected;
+        try (CommandJournal journal = CommandJournal.create(file, SEED, initial, writer)) {
+            expected = play(journal);
+            assertThat(journal.getTickCount(), equalTo((long) NUM_STEPS));
+        }
+        writer.close();
+
+        // When ...
+        StationStatus actual = JournalReplay.replay(file, stationDef);
+
+        // Then ...
+        assertThat(actual.getTime(), equalTo(expected.getTime()));
+        assertSameDump(actual, expected);
+    }
+
+    @Test
+    void replay() throws IOException {
+        // Given a recorded game
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StationStatus expected;
+        try (CommandJournal journal = CommandJournal.create(Channels.newChannel(out), SEED, initial)) {
+            expected = play(journal);
+        }
+        assertThat(expected.getTrains(), not(empty()));
+        assertThat(expected.isAutoLock(), equalTo(false));
+
+        // When ...
+        List<StationStatus> steps = new ArrayList<>();
+        StationStatus actual = JournalReplay.replay(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())),
+                stationDef, steps::add);
+
+        // Then ...
+        assertThat(steps, hasSize(NUM_STEPS));
+        assertThat(actual.getTime(), equalTo(expected.getTime()));
+        assertThat(actual.isAutoLock(), equalTo(false));
+        assertSameDump(actual, expected);
+    }
+
+    @Test
+    void reproducible() throws IOException {
+        // Given ...
+        byte[] first = record();
+
+        // When ...
+        byte[] second = record();
+
+        // Then ...
+        assertThat(second, equalTo(first));
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stationDef = StationDef.create(Utils.fromResource("/stations/downville.station.yml"), Locator.root());
+        initial = new BlockBuilder(stationDef).buildStatus(GAME_DURATION, FREQUENCY, new Random(SEED), null);
+    }
+
+    @Test
+    void truncated() throws IOException {
+        // Given a journal truncated inside the last record
+        byte[] data = record();
+        byte[] truncated = new byte[data.length - 2];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+
+        // When ... Then ...
+        assertThrows(IOException.class, () ->
+                JournalReplay.replay(Channels.newChannel(new ByteArrayInputStream(truncated)), stationDef, s -> {
+                }));
+    }
+
+    @Test
+    void withoutEndRecord() throws IOException {
+        // Given a journal without the end record
+        byte[] data = record();
+        byte[] truncated = new byte[data.length - 1];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        List<StationStatus> steps = new ArrayList<>();
+
+        // When ...
+        JournalReplay.replay(Channels.newChannel(new ByteArrayInputStream(truncated)), stationDef, steps::add);
+
+        // Then ...
+        assertThat(steps, hasSize(NUM_STEPS));
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.junit.jupiter.api.Test;
+import org.mmarini.railways2.model.geometry.StationBuilder;
+import org.mmarini.railways2.model.geometry.StationMap;
+import org.mmarini.railways2.model.routes.Entry;
+import org.mmarini.railways2.model.routes.Exit;
+import org.mmarini.railways2.model.routes.Signal;
+import org.mmarini.railways2.swing.WithTrain;
+
+import java.awt.geom.Point2D;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mmarini.railways2.model.RailwayConstants.ENTRY_TIMEOUT;
+import static org.mmarini.railways2.model.RailwayConstants.LOADING_TIME;
+import static org.mmarini.railways2.model.RailwayConstants.MIN_TIME_INTERVAL;
+
+class EventSchedulerTest extends WithStationStatusTest {
+    public static final double GAME_DURATION = 300d;
+    static final double DT = 0.1;
+
+    /**
+     * <pre>
+     *     Entry(a) --ab(500m)-- Signals(b) --bc(500m)-- Exit(c)
+     * </pre>
+     *
+     * @param trainFrequency the train frequency (#/s)
+     */
+    void createStatus(double trainFrequency) {
+        StationMap stationMap = new StationBuilder("station")
+                .addNode("a", new Point2D.Double(), "ab")
+                .addNode("b", new Point2D.Double(500, 0), "ab", "bc")
+                .addNode("c", new Point2D.Double(1000, 0), "bc")
+                .addTrack("ab", "a", "b")
+                .addPlatform("bc", "b", "c")
+                .build();
+        status = new StationStatus.Builder(stationMap, trainFrequency, GAME_DURATION, null, null)
+                .addRoute(Entry::create, "a")
+                .addRoute(Signal::create, "b")
+                .addRoute(Exit::create, "c")
+                .build();
+    }
+
+    @Test
+    void arrivals() {
+        // Given a station without trains
+        createStatus(0.1);
+        EventScheduler scheduler = EventScheduler.create(status, DT, new Random(1234));
+        double arrivalTime = scheduler.getNextArrivalTime();
+        assertThat(arrivalTime, greaterThan(0d));
+
+        // When ...
+        StationStatus status1 = scheduler.step(status, GAME_DURATION);
+
+        // Then the station advances to the arrival instant with a new train
+        assertThat(status1.getTime(), closeTo(arrivalTime, 1e-9));
+        assertThat(status1.getTrains(), hasSize(1));
+        assertThat(status1.getPerformance().getIncomingTrainNumber(), equalTo(1));
+        assertThat(scheduler.getNextArrivalTime(), greaterThan(arrivalTime));
+    }
+
+    /**
+     * Returns the arrival times of the trains simulating the station with the given maximum step
+     *
+     * @param maxStep  the maximum step (s)
+     * @param interval the simulation interval (s)
+     */
+    List<Double> arrivalTimes(double maxStep, double interval) {
+        Entry entry = status.getEntries().get(0);
+        ArrivalGenerator generator = new PoissonArrivalGenerator(new double[]{10.05, 10.05, 20.37}, new Entry[]{entry, entry, entry});
+        EventScheduler scheduler = EventScheduler.create(status, maxStep, new Random(1234), generator);
+        StationStatus status1 = scheduler.advance(status, interval);
+        return status1.getTrains().stream()
+                .map(Train::getArrivalTime)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void arrivalTimeIndependentOfStep() {
+        // Given a station without trains
+        createStatus(0);
+
+        // When ...
+        List<Double> times1 = arrivalTimes(DT, 30);
+        List<Double> times2 = arrivalTimes(1, 30);
+        List<Double> times3 = arrivalTimes(7, 30);
+
+        // Then the trains arrive at the scheduled instants whatever the step
+        assertThat(times1, contains(
+                closeTo(10.05 + ENTRY_TIMEOUT, 1e-9),
+                closeTo(10.05 + ENTRY_TIMEOUT, 1e-9),
+                closeTo(20.37 + ENTRY_TIMEOUT, 1e-9)));
+        assertThat(times2, equalTo(times1));
+        assertThat(times3, equalTo(times1));
+    }
+
+    /**
+     * Returns the next step scanning all the trains
+     *
+     * @param status    the status
+     * @param horizon   the instant limit of the step (s)
+     * @param scheduler the scheduler
+     */
+    static double scanNextStep(StationStatus status, double horizon, EventScheduler scheduler) {
+        double t0 = status.getTime();
+        double next = min(horizon, scheduler.getNextArrivalTime());
+        for (Train train : status.getTrains()) {
+            double wakeTime = train.getWakeTime();
+            next = min(next, wakeTime <= t0 ? t0 + DT : wakeTime);
+        }
+        return max(next - t0, MIN_TIME_INTERVAL);
+    }
+
+    @Test
+    void nextStepByWakeQueue() {
+        // Given a station with frequent arrivals
+        createStatus(0.05);
+        EventScheduler scheduler = EventScheduler.create(status, DT, new Random(1234));
+        int arrivals = 0;
+        int steps = 0;
+
+        // When simulating the game starting the waiting trains periodically
+        while (status.getTime() < GAME_DURATION) {
+            // Then the next step is the same of the scan of all trains
+            assertThat(scheduler.getNextStep(status, GAME_DURATION),
+                    closeTo(scanNextStep(status, GAME_DURATION, scheduler), 1e-12));
+            status = scheduler.step(status, GAME_DURATION);
+            if (++steps % 100 == 0) {
+                for (Train train : status.getTrains()) {
+                    if (train.getState().equals(Train.STATE_WAITING_FOR_RUN)) {
+                        status = status.startTrain(train.getId());
+                    }
+                }
+            }
+            arrivals = status.getPerformance().getIncomingTrainNumber();
+        }
+        assertThat(arrivals, greaterThan(5));
+    }
+
+    @Test
+    void idleLoading() {
+        // Given a loading train
+        createStatus(0);
+        status = withTrain()
+                .addTrain(new WithTrain.TrainBuilder("train2", 3, "a", "c")
+                        .loading(0)
+                        .at("ab", "b", 0))
+                .build();
+        Train train = status.getTrains().iterator().next();
+        EventScheduler scheduler = EventScheduler.create(status, DT, new Random(1234));
+
+        // When ...
+        StationStatus status1 = scheduler.step(status, GAME_DURATION);
+
+        // Then the station advances to the end of loading skipping the idle train
+        assertThat(status1.getTime(), closeTo(LOADING_TIME, 1e-9));
+        assertThat(status1.getTrains().iterator().next(), sameInstance(train));
+        assertThat(status1.getPerformance().getTrainWaitingTime(), closeTo(LOADING_TIME, 1e-9));
+
+        // When ...
+        StationStatus status2 = scheduler.step(status1, GAME_DURATION);
+
+        // Then the train completes the loading in a moving step
+        assertThat(status2.getTime(), closeTo(LOADING_TIME + DT, 1e-9));
+        Train train2 = status2.getTrains().iterator().next();
+        assertThat(train2.getState(), equalTo(Train.STATE_WAITING_FOR_RUN));
+        assertThat(train2.isUnloaded(), equalTo(false));
+
+        // When ...
+        StationStatus status3 = scheduler.advance(status2, 100);
+
+        // Then the waiting train is idle up to the horizon
+        assertThat(status3.getTime(), closeTo(LOADING_TIME + DT + 100, 1e-9));
+        assertThat(status3.getTrains().iterator().next(), sameInstance(train2));
+    }
+
+    @Test
+    void movingTrain() {
+        // Given a running train
+        createStatus(0);
+        status = withTrain()
+                .addTrain(3, "a", "c", "ab", "b", 400)
+                .build();
+        EventScheduler scheduler = EventScheduler.create(status, DT, new Random(1234));
+
+        // When ...
+        StationStatus status1 = scheduler.step(status, GAME_DURATION);
+
+        // Then the step is limited to the maximum step
+        assertThat(status1.getTime(), closeTo(DT, 1e-9));
+    }
+
+    @Test
+    void tickIdle() {
+        // Given a loading train
+        createStatus(0);
+        status = withTrain()
+                .addTrain(new WithTrain.TrainBuilder("train2", 3, "a", "c")
+                        .loading(0)
+                        .at("ab", "b", 0))
+                .build();
+        Train train = status.getTrains().iterator().next();
+
+        // When ...
+        StationStatus status1 = status.tick(DT, new Random(1234));
+
+        // Then the idle train is kept and the waiting time accounted
+        assertThat(status1.getTrains().iterator().next(), sameInstance(train));
+        assertThat(status1.getPerformance().getTrainWaitingTime(), closeTo(DT, 1e-9));
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class LatencyHistogramTest {
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, 1, 31, 32, 33, 63, 64, 65, 1000, 123456789, Long.MAX_VALUE})
+    void buckets(long value) {
+        // Given ...
+        int index = LatencyHistogram.indexOf(value);
+
+        // When ...
+        long lowest = LatencyHistogram.lowestValueOf(index);
+        long highest = LatencyHistogram.highestValueOf(index);
+
+        // Then ...
+        assertThat(value, allOf(greaterThanOrEqualTo(lowest), lessThanOrEqualTo(highest)));
+        assertThat((double) (highest - lowest), lessThanOrEqualTo((double) lowest / LatencyHistogram.SUB_BUCKETS));
+    }
+
+    @Test
+    void empty() {
+        // Given ...
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // When ...
+
+        // Then ...
+        assertThat(histogram.getCount(), equalTo(0L));
+        assertThat(histogram.getMin(), equalTo(0L));
+        assertThat(histogram.getMax(), equalTo(0L));
+        assertThat(histogram.getMean(), equalTo(0d));
+        assertThat(histogram.getValueAtPercentile(99), equalTo(0L));
+    }
+
+    @Test
+    void percentiles() {
+        // Given ...
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // When ...
+        for (long i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        // Then ...
+        assertThat(histogram.getCount(), equalTo(10000L));
+        assertThat(histogram.getMin(), equalTo(1000L));
+        assertThat(histogram.getMax(), equalTo(10000000L));
+        assertThat(histogram.getMean(), closeTo(5000500, 1e-3));
+        assertThat((double) histogram.getValueAtPercentile(50), closeTo(5000000, 5000000d / LatencyHistogram.SUB_BUCKETS));
+        assertThat((double) histogram.getValueAtPercentile(99), closeTo(9900000, 9900000d / LatencyHistogram.SUB_BUCKETS));
+        assertThat(histogram.getValueAtPercentile(100), equalTo(10000000L));
+    }
+
+    @Test
+    void copyAndReset() {
+        // Given ...
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10);
+        histogram.record(-5);
+        histogram.record(100);
+
+        // When ...
+        LatencyHistogram copy = histogram.copy();
+        histogram.reset();
+
+        // Then ...
+        assertThat(copy.getCount(), equalTo(3L));
+        assertThat(copy.getMin(), equalTo(0L));
+        assertThat(copy.getMax(), equalTo(100L));
+        assertThat(copy.getTotal(), equalTo(110L));
+        assertThat(histogram.getCount(), equalTo(0L));
+        assertThat(histogram.getValueAtPercentile(50), equalTo(0L));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.model;
+
+import org.junit.jupiter.api.Test;
+import org.mmarini.Tuple2;
+import org.mmarini.railways2.model.blocks.BlockBuilder;
+import org.mmarini.railways2.model.blocks.StationDef;
+import org.mmarini.railways2.model.routes.Route;
+import org.mmarini.railways2.model.routes.Signal;
+import org.mmarini.yaml.Utils;
+import org.mmarini.yaml.schema.Locator;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MutableTrainTest {
+
+    public static final double GAME_DURATION = 300d;
+    public static final double FREQUENCY = 0.1;
+    public static final double DT = 0.1;
+    public static final int NUM_STEPS = 3000;
+
+    /**
+     * Returns the status with all signals unlocked
+     *
+     * @param status the status
+     */
+    static StationStatus unlockSignals(StationStatus status) {
+        Route[] signals = status.getRoutes().stream()
+                .filter(route -> route instanceof Signal)
+                .map(route -> ((Signal) route).setLocks())
+                .toArray(Route[]::new);
+        return status.replaceRoutes(signals);
+    }
+
+    @Test
+    void tick() throws IOException {
+        // Given ...
+        StationDef stationDef = StationDef.create(Utils.fromResource("/stations/downville.station.yml"), Locator.root());
+        Random random = new Random(1234);
+        StationStatus status = new BlockBuilder(stationDef).buildStatus(GAME_DURATION, FREQUENCY, random, null);
+        MutableTrain mutableTrain = new MutableTrain();
+        int numExited = 0;
+        Set<String> states = new HashSet<>();
+        for (int i = 0; i < NUM_STEPS; i++) {
+            if (i % 100 == 50) {
+                // Release the trains waiting for signals
+                status = unlockSignals(status);
+            }
+            if (i % 100 == 75) {
+                // Start the trains waiting for run
+                for (Train train : status.getTrains()) {
+                    status = status.startTrain(train.getId());
+                }
+            }
+            if (i % 200 == 160) {
+                // Brake the trains
+                status = status.stopTrains();
+            }
+            for (Train train : status.getTrains()) {
+                states.add(train.getState().getId());
+                // When ...
+                SimulationContext ctx0 = new SimulationContext(status);
+                Tuple2<Optional<Train>, Performance> expected = train.tick(ctx0, DT);
+                SimulationContext ctx1 = new SimulationContext(status);
+                Train actual = train.tick(ctx1, DT, mutableTrain);
+
+                // Then ...
+                assertEquals(expected._1.map(Train::getJson), Optional.ofNullable(actual).map(Train::getJson));
+                assertEquals(expected._2.toString(), mutableTrain.getPerformance().toPerformance().toString());
+                assertEquals(
+                        ctx0.getStatus().getRoutes().stream().map(Route::getJson).collect(Collectors.toList()),
+                        ctx1.getStatus().getRoutes().stream().map(Route::getJson).collect(Collectors.toList()));
+                if (actual == null) {
+                    numExited++;
+                }
+            }
+            status = status.tick(DT, random);
+        }
+        assertThat(numExited, greaterThan(0));
+        assertThat(states, containsInAnyOrder(Train.STATES.stream().map(Train.State::getId).toArray()));
+    }
+}
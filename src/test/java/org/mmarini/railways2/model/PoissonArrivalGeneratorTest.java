@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.junit.jupiter.api.Test;
+import org.mmarini.Tuple2;
+import org.mmarini.railways2.model.routes.Entry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.mock;
+
+class PoissonArrivalGeneratorTest {
+
+    static final double DURATION = 10000;
+
+    /**
+     * Returns all the arrivals polling the generator at each arrival instant
+     *
+     * @param generator the generator
+     */
+    static List<Double> arrivalTimes(ArrivalGenerator generator) {
+        List<Double> result = new ArrayList<>();
+        for (double t = generator.getNextArrivalTime(); Double.isFinite(t); t = generator.getNextArrivalTime()) {
+            for (int i = generator.poll(t).size(); i > 0; i--) {
+                result.add(t);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void create() {
+        // Given ...
+        Entry a = mock(Entry.class);
+        Entry b = mock(Entry.class);
+
+        // When ...
+        PoissonArrivalGenerator generator = PoissonArrivalGenerator.create(List.of(a, b), 1, 100, 100 + DURATION, 1234);
+        List<Tuple2<Entry, Double>> arrivals = generator.poll(100 + DURATION);
+
+        // Then the arrivals have the mean frequency equally shared by the entries
+        int n = generator.getArrivalNumber();
+        assertThat(arrivals, hasSize(n));
+        assertThat((double) n, closeTo(DURATION, 4 * Math.sqrt(DURATION)));
+        long na = arrivals.stream().filter(t -> a.equals(t._1)).count();
+        assertThat((double) na, closeTo(n / 2d, 4 * Math.sqrt(n / 4d)));
+        assertThat(generator.getNextArrivalTime(), equalTo(Double.POSITIVE_INFINITY));
+        assertThat(generator.poll(200 + DURATION), empty());
+    }
+
+    @Test
+    void noFrequency() {
+        // Given ...
+        Entry a = mock(Entry.class);
+
+        // When ...
+        PoissonArrivalGenerator generator = PoissonArrivalGenerator.create(List.of(a), 0, 0, DURATION, 1234);
+
+        // Then ...
+        assertThat(generator.getArrivalNumber(), equalTo(0));
+        assertThat(generator.getNextArrivalTime(), equalTo(Double.POSITIVE_INFINITY));
+        assertThat(generator.poll(DURATION), empty());
+    }
+
+    @Test
+    void poll() {
+        // Given ...
+        Entry a = mock(Entry.class);
+        Entry b = mock(Entry.class);
+        PoissonArrivalGenerator generator = PoissonArrivalGenerator.create(List.of(a, b), 0.1, 0, 1000, 1234);
+        double t0 = generator.getNextArrivalTime();
+
+        // When ...
+        List<Tuple2<Entry, Double>> arrivals = generator.poll(t0);
+
+        // Then ...
+        assertThat(arrivals, hasSize(1));
+        assertThat(arrivals.get(0)._1, anyOf(sameInstance(a), sameInstance(b)));
+        assertThat(arrivals.get(0)._2, equalTo(t0));
+        assertThat(generator.getNextArrivalTime(), greaterThan(t0));
+
+        // When polling before the next arrival
+        List<Tuple2<Entry, Double>> arrivals1 = generator.poll((t0 + generator.getNextArrivalTime()) / 2);
+
+        // Then ...
+        assertThat(arrivals1, empty());
+    }
+
+    @Test
+    void seed() {
+        // Given ...
+        Entry a = mock(Entry.class);
+        Entry b = mock(Entry.class);
+
+        // When ...
+        List<Double> times1 = arrivalTimes(PoissonArrivalGenerator.create(List.of(a, b), 0.1, 0, DURATION, 1234));
+        List<Double> times2 = arrivalTimes(PoissonArrivalGenerator.create(List.of(a, b), 0.1, 0, DURATION, 1234));
+        List<Double> times3 = arrivalTimes(PoissonArrivalGenerator.create(List.of(a, b), 0.1, 0, DURATION, 4321));
+
+        // Then the same seed produces the same ordered schedule
+        assertThat(times1, equalTo(times2));
+        assertThat(times1, not(equalTo(times3)));
+        for (int i = 1; i < times1.size(); i++) {
+            assertThat(times1.get(i), greaterThanOrEqualTo(times1.get(i - 1)));
+        }
+        assertThat(times1.get(0), greaterThan(0d));
+        assertThat(times1.get(times1.size() - 1), lessThanOrEqualTo(DURATION));
+    }
+}
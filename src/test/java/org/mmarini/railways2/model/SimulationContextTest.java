@@ -37,8 +37,7 @@ import org.mmarini.railways2.model.routes.Signal;
 
 import java.awt.geom.Point2D;
 
-import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 class SimulationContextTest {
     public static final double GAME_DURATION = 300d;
@@ -81,15 +80,40 @@ class SimulationContextTest {
         SimulationContext context = new SimulationContext(status);
 
         // When ...
-        context.lockSignals(new Direction(bc, c));
+        context.lockSignals(bc.getDirection(c));
 
         // Then
         StationStatus status1 = context.getStatus();
         Signal bSignal = status1.getRoute("b");
-        assertTrue(bSignal.isLocked(new Direction(ab, b)));
-        assertFalse(bSignal.isLocked(new Direction(bc, b)));
+        assertTrue(bSignal.isLocked(ab.getDirection(b)));
+        assertFalse(bSignal.isLocked(bc.getDirection(b)));
         Signal cSignal = status1.getRoute("c");
-        assertTrue(cSignal.isLocked(new Direction(cd, c)));
-        assertFalse(cSignal.isLocked(new Direction(bc, c)));
+        assertTrue(cSignal.isLocked(cd.getDirection(c)));
+        assertFalse(cSignal.isLocked(bc.getDirection(c)));
     }
-}
\ No newline at end of file
+
+    @Test
+    void replay() {
+        // Given a deferred context reading the signal b and locking the section bc
+        Node b = stationMap.getNode("b");
+        Node c = stationMap.getNode("c");
+        Edge ab = stationMap.getEdge("ab");
+        Edge bc = stationMap.getEdge("bc");
+        SimulationContext context = new SimulationContext(status, true);
+        assertTrue(context.isNextRouteClear(ab.getDirection(b)));
+        context.lockSignals(bc.getDirection(c));
+
+        // When replaying on the same status
+        StationStatus status1 = context.replay(status);
+
+        // Then the section is locked
+        assertNotNull(status1);
+        assertTrue(status1.<Signal>getRoute("b").isLocked(ab.getDirection(b)));
+
+        // When replaying on a status with the signal b locked
+        StationStatus status2 = context.replay(status.lock(status.getSection(bc).orElseThrow()));
+
+        // Then the signal read differs
+        assertNull(status2);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.model;
+
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.observers.TestObserver;
+import org.junit.jupiter.api.Test;
+import org.mmarini.Tuple2;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimulatorEngineImplTest {
+
+    @Test
+    void batch() {
+        // Given an active engine with a worker that does not run the simulation
+        Scheduler.Worker worker = Mockito.mock();
+        SimulatorEngineImpl<Integer, Integer> engine = new SimulatorEngineImpl<>(worker, (seed, dt) -> Tuple2.of(seed, dt), seed -> seed);
+        engine.start(0);
+        engine.request(seed -> seed + 1).blockingGet();
+        assertTrue(engine.isActive());
+        TestObserver<Integer> result1 = engine.request(seed -> seed * 10).test();
+        TestObserver<Integer> result2 = engine.requestAll(List.of(seed -> seed + 2, seed -> seed * 3)).test();
+        TestObserver<Integer> result3 = engine.setSpeed(2).test();
+        TestObserver<Integer> result4 = engine.request(seed -> seed + 1).test();
+        TestObserver<Integer> result5 = engine.setSpeed(3).test();
+        result1.assertNoValues();
+
+        // When ...
+        engine.deque();
+
+        // Then each request gets the seed of its own transition
+        result1.assertValue(10);
+        result2.assertValue(36);
+        result4.assertValue(37);
+        // and the replaced speed request gets the seed of the replacing one
+        result3.assertValue(37);
+        result5.assertValue(37);
+    }
+
+    @Test
+    void fixedStep() throws InterruptedException {
+        // Given ...
+        List<Double> intervals = new CopyOnWriteArrayList<>();
+        List<SimulatorEngineImpl.StepReport> reports = new CopyOnWriteArrayList<>();
+        SimulatorEngineImpl<Double, Double> engine = SimulatorEngineImpl.<Double, Double>create((seed, dt) -> {
+                    intervals.add(dt);
+                    return Tuple2.of(seed + dt, dt);
+                }, seed -> seed)
+                .setEventInterval(Duration.ofMillis(50))
+                .setFixedStep(Duration.ofMillis(10), 10)
+                .setOnStepReport(reports::add);
+
+        // When ...
+        engine.start(0d).blockingGet();
+        Thread.sleep(500);
+        double time = engine.stop().blockingGet();
+
+        // Then ...
+        assertThat(intervals, everyItem(equalTo(0.01)));
+        assertThat(intervals.size(), allOf(greaterThan(20), lessThanOrEqualTo(60)));
+        assertThat(time, closeTo(intervals.size() * 0.01, 1e-9));
+        assertThat(reports, not(empty()));
+        assertThat(reports.stream().mapToLong(SimulatorEngineImpl.StepReport::getDroppedSteps).sum(), equalTo(0L));
+    }
+
+    @Test
+    void fixedStepDropped() throws InterruptedException {
+        // Given a simulation slower than the real time
+        List<SimulatorEngineImpl.StepReport> reports = new CopyOnWriteArrayList<>();
+        SimulatorEngineImpl<Double, Double> engine = SimulatorEngineImpl.<Double, Double>create((seed, dt) -> {
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException ignored) {
+                    }
+                    return Tuple2.of(seed + dt, dt);
+                }, seed -> seed)
+                .setEventInterval(Duration.ofMillis(50))
+                .setFixedStep(Duration.ofMillis(10), 2)
+                .setOnStepReport(reports::add);
+
+        // When ...
+        engine.start(0d).blockingGet();
+        Thread.sleep(500);
+        engine.stop().blockingGet();
+
+        // Then ...
+        assertThat(reports, not(empty()));
+        assertThat(reports.stream().mapToLong(SimulatorEngineImpl.StepReport::getMergedSteps).sum(), greaterThan(0L));
+        assertThat(reports.stream().mapToLong(SimulatorEngineImpl.StepReport::getDroppedSteps).sum(), greaterThan(0L));
+    }
+
+    @Test
+    void metrics() throws InterruptedException {
+        // Given ...
+        List<EngineMetrics> metrics = new CopyOnWriteArrayList<>();
+        SimulatorEngineImpl<Double, Double> engine = SimulatorEngineImpl.<Double, Double>create((seed, dt) -> {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException ignored) {
+                    }
+                    return Tuple2.of(seed + dt, dt);
+                }, seed -> seed)
+                .setEventInterval(Duration.ofMillis(20))
+                .setFixedStep(Duration.ofMillis(10), 10)
+                .setMetricsInterval(Duration.ofMillis(100))
+                .setOnMetrics(metrics::add);
+
+        // When ...
+        engine.start(0d).blockingGet();
+        for (int i = 0; i < 10; i++) {
+            engine.request(seed -> seed);
+            Thread.sleep(50);
+        }
+        engine.stop().blockingGet();
+
+        // Then ...
+        assertThat(metrics, hasSize(allOf(greaterThanOrEqualTo(2), lessThanOrEqualTo(6))));
+        assertThat(metrics, everyItem(hasProperty("interval", greaterThanOrEqualTo(100000000L))));
+        assertThat(metrics.stream().mapToLong(m -> m.getStepLatency().getCount()).sum(), greaterThan(20L));
+        assertThat(metrics.stream().mapToLong(EngineMetrics::getRequests).sum(), greaterThan(0L));
+        EngineMetrics last = metrics.get(metrics.size() - 1);
+        assertThat(last.getStepLatency().getMin(), greaterThanOrEqualTo(1000000L));
+        assertThat(last.getStepRate(), closeTo(100, 30));
+        assertThat(last.getSpeed(), closeTo(1, 0.3));
+    }
+}
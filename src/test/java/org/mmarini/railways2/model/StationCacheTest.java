@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mmarini.railways2.model.geometry.Curve;
+import org.mmarini.railways2.model.geometry.Edge;
+import org.mmarini.railways2.model.geometry.Node;
+import org.mmarini.railways2.model.geometry.StationMap;
+import org.mmarini.railways2.model.routes.Route;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StationCacheTest {
+
+    static final double GAME_DURATION = 300;
+    static final double FREQUENCY = 0.1;
+
+    static byte[] readResource(String station) throws IOException {
+        try (InputStream in = StationCacheTest.class.getResourceAsStream("/stations/" + station + ".station.yml")) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Asserts the compiled stations are equivalent
+     *
+     * @param actual   the actual station
+     * @param expected the expected station
+     */
+    static void assertSameStation(CompiledStation actual, CompiledStation expected) {
+        StationMap map = actual.getStationMap();
+        StationMap expMap = expected.getStationMap();
+        assertThat(map.getId(), equalTo(expMap.getId()));
+        assertThat(map.getBounds(), equalTo(expMap.getBounds()));
+        assertThat(map.getNodeMap().keySet(), equalTo(expMap.getNodeMap().keySet()));
+        for (Node node : expMap.getNodeMap().values()) {
+            Node actualNode = map.getNode(node.getId());
+            assertThat(actualNode.getLocation(), equalTo(node.getLocation()));
+            assertThat(actualNode.getEdges().stream().map(Edge::getId).collect(Collectors.toList()),
+                    equalTo(node.getEdges().stream().map(Edge::getId).collect(Collectors.toList())));
+        }
+        assertThat(map.getEdges().keySet(), equalTo(expMap.getEdges().keySet()));
+        for (Edge edge : expMap.getEdges().values()) {
+            Edge actualEdge = map.getEdge(edge.getId());
+            assertThat(actualEdge.getClass(), equalTo(edge.getClass()));
+            assertThat(actualEdge, equalTo(edge));
+            assertThat(actualEdge.getLength(), equalTo(edge.getLength()));
+            assertThat(actualEdge.getBounds(), equalTo(edge.getBounds()));
+            if (edge instanceof Curve) {
+                assertThat(((Curve) actualEdge).getCenter(), equalTo(((Curve) edge).getCenter()));
+                assertThat(((Curve) actualEdge).getAngle0(), equalTo(((Curve) edge).getAngle0()));
+            }
+        }
+        assertThat(actual.getRoutes().stream().map(Route::getId).collect(Collectors.toList()),
+                equalTo(expected.getRoutes().stream().map(Route::getId).collect(Collectors.toList())));
+        for (int i = 0; i < expected.getRoutes().size(); i++) {
+            assertThat(actual.getRoutes().get(i).getClass(), equalTo(expected.getRoutes().get(i).getClass()));
+        }
+    }
+
+    /**
+     * Returns the description of trains with identifier, state, location and speed
+     *
+     * @param status the status
+     */
+    static List<String> describeTrains(StationStatus status) {
+        return status.getTrains().stream()
+                .map(train -> train.getId() + " " + train.getState() + " " + train.getLocation() + " " + train.getSpeed())
+                .collect(Collectors.toList());
+    }
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void hash() {
+        // When ...
+        String hash1 = StationCache.hash("a: 1".getBytes(StandardCharsets.UTF_8));
+        String hash2 = StationCache.hash("a: 1".getBytes(StandardCharsets.UTF_8));
+        String hash3 = StationCache.hash("a: 2".getBytes(StandardCharsets.UTF_8));
+
+        // Then ...
+        assertThat(hash1, matchesPattern("[0-9a-f]{64}"));
+        assertThat(hash1, equalTo(hash2));
+        assertThat(hash1, not(equalTo(hash3)));
+    }
+
+    @Test
+    void invalidFile() throws IOException {
+        // Given an invalid cache file
+        byte[] yaml = readResource("downville");
+        StationCache cache = StationCache.create(dir);
+        Path file = cache.getFile(yaml);
+        Files.write(file, new byte[]{1, 2, 3});
+
+        // When ...
+        CompiledStation station = cache.load(yaml);
+
+        // Then the station is built and the cache file is replaced
+        assertThat(station.getId(), equalTo("downville"));
+        assertThat(Files.size(file), greaterThan(3L));
+        assertSameStation(StationCache.read(file), station);
+    }
+
+    @Test
+    void truncatedFile() throws IOException {
+        // Given a truncated cache file
+        byte[] yaml = readResource("downville");
+        StationCache cache = StationCache.create(dir);
+        Path file = cache.getFile(yaml);
+        CompiledStation expected = cache.load(yaml);
+        byte[] data = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(data, data.length / 2));
+
+        // When ...
+        CompiledStation station = cache.load(yaml);
+
+        // Then the station is built and the cache file is replaced
+        assertSameStation(station, expected);
+        assertThat(Files.size(file), equalTo((long) data.length));
+        assertThat(dir.toFile().list(), arrayContaining(file.getFileName().toString()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"downville", "jackville"})
+    void load(String stationId) throws IOException {
+        // Given ...
+        byte[] yaml = readResource(stationId);
+        StationCache cache = StationCache.create(dir);
+
+        // When ...
+        CompiledStation built = cache.load(yaml);
+
+        // Then ...
+        Path file = cache.getFile(yaml);
+        assertTrue(Files.isRegularFile(file));
+
+        // When ...
+        CompiledStation cached = cache.load(yaml);
+
+        // Then the cached station is equivalent to the built one
+        assertThat(cached, not(sameInstance(built)));
+        assertSameStation(cached, built);
+        StationStatus status = cached.buildStatus(GAME_DURATION, FREQUENCY, new Random(1234), null);
+        StationStatus expStatus = built.buildStatus(GAME_DURATION, FREQUENCY, new Random(1234), null);
+        for (int i = 0; i < 100; i++) {
+            status = status.tick(0.1, new Random(i));
+            expStatus = expStatus.tick(0.1, new Random(i));
+        }
+        assertThat(describeTrains(status), equalTo(describeTrains(expStatus)));
+    }
+}
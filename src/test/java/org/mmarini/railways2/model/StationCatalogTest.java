@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StationCatalogTest {
+
+    @TempDir
+    Path cacheDir;
+    @TempDir
+    Path userDir;
+
+    @Test
+    void getStations() throws IOException {
+        // Given a user station copied from resource and an invalid user station
+        Files.write(userDir.resolve("user.station.yml"), StationCacheTest.readResource("jackville"));
+        Files.writeString(userDir.resolve("wrong.station.yml"), "orientation: 0", StandardCharsets.UTF_8);
+        Files.writeString(userDir.resolve("other.yml"), "name: other", StandardCharsets.UTF_8);
+        StationCatalog catalog = StationCatalog.create(StationCatalog.STATION_RESOURCES, userDir, StationCache.create(cacheDir));
+
+        // When ...
+        List<StationInfo> stations = catalog.getStations();
+
+        // Then ...
+        assertThat(stations.stream().map(StationInfo::getId).collect(Collectors.toList()),
+                contains("downville", "jackville", "jackville"));
+        StationInfo downville = stations.get(0);
+        assertThat(downville.getSource(), equalTo("/stations/downville.station.yml"));
+        assertThat(downville.getOrientation(), equalTo(0));
+        assertThat(downville.getNumBlocks(), equalTo(41));
+        assertThat(downville.getNumEntries(), equalTo(4));
+        assertThat(downville.getNumExits(), equalTo(4));
+        assertFalse(downville.getBounds().isPresent());
+        assertThat(stations.get(2).getSource(), equalTo(userDir.resolve("user.station.yml").toString()));
+        assertThat(stations.get(2).getHash(), equalTo(stations.get(1).getHash()));
+        // and no station is compiled
+        try (var files = Files.list(cacheDir)) {
+            assertThat(files.count(), equalTo(0L));
+        }
+    }
+
+    @Test
+    void load() throws IOException {
+        // Given ...
+        StationCatalog catalog = StationCatalog.create(StationCatalog.STATION_RESOURCES, userDir, StationCache.create(cacheDir));
+        StationInfo info = catalog.getStations().get(0);
+
+        // When ...
+        CompiledStation station = catalog.load(info.getSource());
+
+        // Then ...
+        assertThat(station.getId(), equalTo(info.getId()));
+        assertThat(catalog.getStation(info.getSource()).orElseThrow().getBounds().orElseThrow(),
+                equalTo(station.getStationMap().getBounds()));
+
+        // When scanning by a new catalog sharing the cache
+        StationCatalog catalog1 = StationCatalog.create(StationCatalog.STATION_RESOURCES, userDir, StationCache.create(cacheDir));
+        StationInfo info1 = catalog1.getStations().get(0);
+
+        // Then the bounds are read from the cache
+        assertThat(info1.getBounds().orElseThrow(), equalTo(station.getStationMap().getBounds()));
+    }
+
+    @Test
+    void rescan() throws IOException {
+        // Given ...
+        Path file = userDir.resolve("user.station.yml");
+        Files.write(file, StationCacheTest.readResource("jackville"));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000));
+        StationCatalog catalog = StationCatalog.create(List.of(), userDir, StationCache.create(cacheDir));
+        StationInfo info = catalog.getStations().get(0);
+
+        // When the file does not change
+        StationInfo info1 = catalog.getStations().get(0);
+
+        // Then ...
+        assertThat(info1, sameInstance(info));
+
+        // When the file changes
+        Files.write(file, StationCacheTest.readResource("downville"));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2000));
+        StationInfo info2 = catalog.getStations().get(0);
+
+        // Then ...
+        assertThat(info2.getId(), equalTo("downville"));
+        assertTrue(catalog.getStation(file.toString()).isPresent());
+    }
+
+    @Test
+    void scanMissingName() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                StationCatalog.scan("test", "orientation: 0".getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(ex.getMessage(), equalTo("Missing station name in test"));
+    }
+}
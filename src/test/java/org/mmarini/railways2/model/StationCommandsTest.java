@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mmarini.railways2.model.blocks.BlockBuilder;
+import org.mmarini.railways2.model.blocks.StationDef;
+import org.mmarini.railways2.model.geometry.Direction;
+import org.mmarini.railways2.model.routes.Route;
+import org.mmarini.railways2.model.routes.Section;
+import org.mmarini.railways2.model.routes.Signal;
+import org.mmarini.railways2.model.routes.Switch;
+import org.mmarini.yaml.Utils;
+import org.mmarini.yaml.schema.Locator;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mmarini.railways2.model.MutableTrainTest.unlockSignals;
+
+class StationCommandsTest {
+
+    public static final double GAME_DURATION = 300d;
+    public static final double FREQUENCY = 0.1;
+    public static final double DT = 0.1;
+
+    /**
+     * Returns the description of routes with the sorted signal locks
+     *
+     * @param status the status
+     */
+    static List<String> routesJson(StationStatus status) {
+        return status.getRoutes().stream()
+                .map(route -> route instanceof Signal
+                        ? route.getId() + " " + ((Signal) route).getValidEntries().stream()
+                        .filter(((Signal) route)::isLocked)
+                        .map(dir -> dir.getEdge().getId())
+                        .sorted()
+                        .collect(Collectors.toList())
+                        : route.getJson().toString())
+                .collect(Collectors.toList());
+    }
+
+    static List<String> trainsJson(StationStatus status) {
+        return status.getTrains().stream().map(Train::getJson).map(Object::toString).collect(Collectors.toList());
+    }
+
+    private StationStatus status;
+    private List<String> switchIds;
+    private Signal signal;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        StationDef stationDef = StationDef.create(Utils.fromResource("/stations/downville.station.yml"), Locator.root());
+        Random random = new Random(1234);
+        status = new BlockBuilder(stationDef).buildStatus(GAME_DURATION, FREQUENCY, random, null);
+        switchIds = status.getRoutes().stream()
+                .filter(route -> route instanceof Switch)
+                .map(Route::getId)
+                .collect(Collectors.toList());
+        signal = status.getRoutes().stream()
+                .filter(route -> route instanceof Signal)
+                .map(route -> (Signal) route)
+                .filter(signal -> signal.getValidEntries().stream()
+                        .allMatch(entry -> status.getSection(entry.getEdge()).isPresent()))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    void locks() {
+        // Given ...
+        Direction entry = signal.getValidEntries().iterator().next();
+        String edgeId = entry.getEdge().getId();
+        String sectionId = status.getSection(entry.getEdge()).orElseThrow().getId();
+        StationCommands commands = StationCommands.create()
+                .lockSignal(signal.getId(), edgeId)
+                .lockSection(sectionId)
+                .unlockSignal(signal.getId(), edgeId);
+
+        // When ...
+        StationStatus result = commands.apply(status);
+
+        // Then ...
+        StationStatus expected = status.lockSignal(signal.getId(), edgeId)
+                .lockSection(sectionId)
+                .unlockSignal(signal.getId(), edgeId);
+        assertEquals(routesJson(expected), routesJson(result));
+    }
+
+    @Test
+    void lockSignals() {
+        // Given ...
+        StationCommands commands = StationCommands.create()
+                .unlockSignal(signal.getId(), signal.getValidEntries().iterator().next().getEdge().getId())
+                .lockSignals();
+
+        // When ...
+        StationStatus result = commands.apply(status);
+
+        // Then ...
+        assertEquals(routesJson(status.lockSignals()), routesJson(result));
+    }
+
+    @Test
+    void toggleSwitches() {
+        // Given ...
+        StationCommands commands = StationCommands.create();
+        switchIds.forEach(commands::toggleSwitch);
+
+        // When ...
+        StationStatus result = commands.apply(status);
+
+        // Then ...
+        StationStatus expected = status;
+        for (String id : switchIds) {
+            expected = expected.toggleSwitch(id);
+        }
+        assertThat(switchIds, hasSize(greaterThan(1)));
+        assertEquals(routesJson(expected), routesJson(result));
+        assertEquals(StationIndexTest.describeSections(StationIndex.create(expected.getTopology(), expected.getRoutes())),
+                StationIndexTest.describeSections(StationIndex.create(result.getTopology(), result.getRoutes())));
+    }
+
+    @Test
+    void toggleTwice() {
+        // Given ...
+        StationCommands commands = StationCommands.create()
+                .toggleSwitch(switchIds.get(0))
+                .toggleSwitch(switchIds.get(1))
+                .toggleSwitch(switchIds.get(0));
+
+        // When ...
+        StationStatus result = commands.apply(status);
+
+        // Then ...
+        assertEquals(routesJson(status.toggleSwitch(switchIds.get(1))), routesJson(result));
+        assertEquals(routesJson(status), routesJson(StationCommands.create()
+                .toggleSwitch(switchIds.get(0))
+                .toggleSwitch(switchIds.get(0))
+                .apply(status)));
+    }
+
+    /**
+     * Returns the status with running trains and the given section locked
+     *
+     * @param sectionId the locked section
+     */
+    StationStatus runningStatus(String sectionId) {
+        Random random = new Random(1234);
+        StationStatus result = status;
+        for (int i = 0; i < 600; i++) {
+            if (i % 100 == 50) {
+                result = unlockSignals(result);
+            }
+            result = result.tick(DT, random);
+        }
+        return result.lockSection(sectionId);
+    }
+
+    @Test
+    void mixedSequence() {
+        // Given a status with trains and a locked section
+        Direction entry = signal.getValidEntries().iterator().next();
+        String edgeId = entry.getEdge().getId();
+        String sectionId = status.getSection(entry.getEdge()).orElseThrow().getId();
+        StationStatus running = runningStatus(sectionId);
+        assertThat(running.getTrains(), not(empty()));
+        StationCommands commands = StationCommands.create();
+        StationStatus expected = running;
+        for (String id : switchIds) {
+            commands.toggleSwitch(id).unlockSection(sectionId);
+            expected = expected.toggleSwitch(id).unlockSection(sectionId);
+            for (Train train : running.getTrains()) {
+                commands.startTrain(train.getId());
+                expected = expected.startTrain(train.getId());
+            }
+            commands.lockSection(sectionId).lockSignal(signal.getId(), edgeId);
+            expected = expected.lockSection(sectionId).lockSignal(signal.getId(), edgeId);
+            for (Train train : running.getTrains()) {
+                commands.revertTrain(train.getId());
+                expected = expected.revertTrain(train.getId());
+            }
+        }
+
+        // When ...
+        StationStatus result = commands.apply(running);
+
+        // Then ...
+        assertEquals(routesJson(expected), routesJson(result));
+        assertEquals(trainsJson(expected), trainsJson(result));
+    }
+
+    @Test
+    void toggleAfterLock() {
+        // Given a lock issued before a toggle changing the sections
+        StationStatus running = runningStatus(status.getSections().iterator().next().getId());
+        List<String> ids = running.getSections().stream()
+                .map(Section::getId)
+                .collect(Collectors.toList());
+        StationCommands commands = StationCommands.create();
+        StationStatus expected = running;
+        for (String switchId : switchIds) {
+            for (String id : ids) {
+                commands.lockSection(id);
+                expected = expected.lockSection(id);
+            }
+            commands.toggleSwitch(switchId);
+            expected = expected.toggleSwitch(switchId);
+        }
+
+        // When ...
+        StationStatus result = commands.apply(running);
+
+        // Then ...
+        assertEquals(routesJson(expected), routesJson(result));
+        assertEquals(trainsJson(expected), trainsJson(result));
+    }
+
+    @Test
+    void trains() {
+        // Given a status with trains in different states
+        Random random = new Random(1234);
+        for (int i = 0; i < 600; i++) {
+            if (i % 100 == 50) {
+                status = unlockSignals(status);
+            }
+            status = status.tick(DT, random);
+        }
+        assertThat(status.getTrains(), not(empty()));
+        StationCommands commands = StationCommands.create();
+        StationStatus expected = status;
+        for (Train train : status.getTrains()) {
+            commands.stopTrain(train.getId())
+                    .startTrain(train.getId())
+                    .startTrain(train.getId())
+                    .revertTrain(train.getId());
+            expected = expected.stopTrain(train.getId())
+                    .startTrain(train.getId())
+                    .revertTrain(train.getId());
+        }
+
+        // When ...
+        StationStatus result = commands.apply(status);
+
+        // Then ...
+        assertEquals(trainsJson(expected), trainsJson(result));
+        assertEquals(trainsJson(status.stopTrains()), trainsJson(StationCommands.create().stopTrains().apply(status)));
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.model;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mmarini.railways2.model.blocks.BlockBuilder;
+import org.mmarini.railways2.model.blocks.StationDef;
+import org.mmarini.railways2.model.geometry.Direction;
+import org.mmarini.railways2.model.geometry.Edge;
+import org.mmarini.railways2.model.routes.*;
+import org.mmarini.yaml.Utils;
+import org.mmarini.yaml.schema.Locator;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StationIndexTest {
+
+    public static final double GAME_DURATION = 300d;
+    public static final double FREQUENCY = 0.1;
+
+    /**
+     * Returns the description of sections with edges, exits and crossing sections
+     *
+     * @param index the index
+     */
+    static Set<String> describeSections(StationIndex index) {
+        return index.getSections().stream()
+                .map(section -> section.getId() + " "
+                        + section.getEdges().stream().map(Edge::getId).sorted().collect(Collectors.toList()) + " "
+                        + Stream.of(section.getExit0(), section.getExit1()).map(Direction::toString).sorted().collect(Collectors.toList()) + " "
+                        + section.getCrossingSections().stream().map(Section::getId).sorted().collect(Collectors.toList()))
+                .collect(Collectors.toSet());
+    }
+
+    static StationStatus loadStatus(String station) throws IOException {
+        StationDef stationDef = StationDef.create(Utils.fromResource("/stations/" + station + ".station.yml"), Locator.root());
+        return new BlockBuilder(stationDef).buildStatus(GAME_DURATION, FREQUENCY, null, null);
+    }
+
+    /**
+     * Asserts the next direction table of the index matches the route exits
+     *
+     * @param index the index
+     */
+    static void assertNextDirections(StationIndex index) {
+        StationTopology topology = index.getTopology();
+        for (int i = 0; i < topology.getNumDirections(); i++) {
+            Direction direction = topology.getDirection(i);
+            Optional<Direction> expected = topology.getDestinationSlot(i) >= 0
+                    ? index.getRoute(direction.getDestination()).getExit(direction)
+                    : Optional.empty();
+            int next = index.getNextDirection(i);
+            assertThat(next >= 0 ? Optional.of(topology.getDirection(next)) : Optional.empty(),
+                    equalTo(expected));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"downville", "jackville"})
+    void directions(String station) throws IOException {
+        // Given ...
+        StationStatus status = loadStatus(station);
+
+        // When ...
+        StationTopology topology = status.getTopology();
+
+        // Then ...
+        assertThat(topology.getNumDirections(), equalTo(status.getStationMap().getEdges().size() * 2));
+        for (int i = 0; i < topology.getNumDirections(); i++) {
+            Direction direction = topology.getDirection(i);
+            assertThat(topology.getDirectionId(direction), equalTo(i));
+            assertThat(topology.getDirectionId(direction.opposite()), equalTo(i ^ 1));
+            assertThat(topology.getLength(i), equalTo(direction.getEdge().getLength()));
+        }
+        assertNextDirections(StationIndex.create(topology, status.getRoutes()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"downville", "jackville"})
+    void replaceSignals(String station) throws IOException {
+        // Given ...
+        StationStatus status = loadStatus(station);
+        StationIndex index = StationIndex.create(status.getTopology(), status.getRoutes());
+        List<Route> signals = index.getRoutes().stream()
+                .filter(route -> route instanceof Signal)
+                .map(route -> {
+                    Signal signal = (Signal) route;
+                    return signal.setLocks(signal.getValidEntries().toArray(Direction[]::new));
+                })
+                .collect(Collectors.toList());
+
+        // When ...
+        StationIndex index1 = index.replaceRoutes(signals);
+
+        // Then ...
+        assertTrue(index1.hasSameSections(index));
+        assertThat(index1.getRoutes(), hasSize(index.getRoutes().size()));
+        for (Route signal : signals) {
+            assertThat(index1.getRoute(signal.getNodes().get(0)), sameInstance(signal));
+        }
+        assertThat(describeSections(index1), equalTo(describeSections(StationIndex.create(index1.getTopology(), index1.getRoutes()))));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"downville", "jackville"})
+    void replaceSwitches(String station) throws IOException {
+        // Given ...
+        StationStatus status = loadStatus(station);
+        StationIndex index = StationIndex.create(status.getTopology(), status.getRoutes());
+        List<Route> switches = index.getRoutes().stream()
+                .filter(route -> route instanceof Switch || route instanceof DoubleSlipSwitch)
+                .collect(Collectors.toList());
+        assertThat(switches, not(empty()));
+
+        for (Route route : switches) {
+            // When ...
+            Route toggled = route instanceof Switch
+                    ? ((Switch) route).isThrough() ? ((Switch) route).diverging() : ((Switch) route).through()
+                    : ((DoubleSlipSwitch) route).isThrough() ? ((DoubleSlipSwitch) route).diverging() : ((DoubleSlipSwitch) route).through();
+            StationIndex index1 = index.replaceRoutes(List.of(toggled));
+
+            // Then ...
+            assertThat(index1.hasSameSections(index), equalTo(describeSections(index1).equals(describeSections(index))));
+            assertThat(index1.getRoute(route.getNodes().get(0)), sameInstance(toggled));
+            assertThat(describeSections(index1), equalTo(describeSections(StationIndex.create(index1.getTopology(), index1.getRoutes()))));
+            assertNextDirections(index1);
+            // and the sections of the previous index are untouched
+            assertThat(describeSections(index), equalTo(describeSections(StationIndex.create(index.getTopology(), index.getRoutes()))));
+            index = index1;
+        }
+    }
+}
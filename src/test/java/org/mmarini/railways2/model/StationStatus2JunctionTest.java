@@ -93,6 +93,24 @@ class StationStatus2JunctionTest extends WithStationStatusTest {
                 equalTo(edge("ab"))));
     }
 
+    @Test
+    void getTrainsAtPoint() {
+        // Given a train from 100 - 2.5 coaches to 100 + 0.5 coaches
+        status = withTrain()
+                .addTrain(3, "a", "d", "bc", "c", LENGTH - COACH_LENGTH / 2)
+                .build();
+
+        // When ...
+        List<Train> onTrain = status.getTrains(new Point2D.Double(LENGTH, 0.5), 1).collect(Collectors.toList());
+        List<Train> aheadTrain = status.getTrains(new Point2D.Double(LENGTH + COACH_LENGTH, 0), 1).collect(Collectors.toList());
+        List<Train> behindTrain = status.getTrains(new Point2D.Double(LENGTH - COACH_LENGTH * 3, 0), 1).collect(Collectors.toList());
+
+        // Then ...
+        assertThat(onTrain, contains(train("TT0")));
+        assertThat(aheadTrain, empty());
+        assertThat(behindTrain, empty());
+    }
+
     @Test
     void getTrainSegmentsAmongeEdges() {
         // Given ...
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mmarini.railways2.model.blocks.StationDef;
+import org.mmarini.railways2.model.routes.Route;
+import org.mmarini.yaml.Utils;
+import org.mmarini.yaml.schema.Locator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static java.lang.String.format;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mmarini.Utils.stream;
+import static org.mmarini.yaml.Utils.objectMapper;
+
+class StationStatusCodecTest {
+
+    public static final String RESOURCE = "/issue-89.yml";
+
+    /**
+     * Asserts the two statuses have the same dump content
+     *
+     * @param actual   the actual status
+     * @param expected the expected status
+     */
+    static void assertSameDump(StationStatus actual, StationStatus expected) {
+        assertThat(actual.getPerformance().getJson(), equalTo(expected.getPerformance().getJson()));
+        assertThat(actual.getTrainFrequency(), equalTo(expected.getTrainFrequency()));
+        Map<String, JsonNode> routes = actual.getRoutes().stream()
+                .collect(Collectors.toMap(Route::getId, StationStatusCodecTest::routeJson));
+        Map<String, JsonNode> expectedRoutes = expected.getRoutes().stream()
+                .collect(Collectors.toMap(Route::getId, StationStatusCodecTest::routeJson));
+        assertThat(routes, equalTo(expectedRoutes));
+        Map<String, JsonNode> trains = actual.getTrains().stream()
+                .collect(Collectors.toMap(Train::getId, Train::getJson));
+        Map<String, JsonNode> expectedTrains = expected.getTrains().stream()
+                .collect(Collectors.toMap(Train::getId, Train::getJson));
+        assertThat(trains, equalTo(expectedTrains));
+    }
+
+    /**
+     * Returns the route json with the sorted signal locks
+     *
+     * @param route the route
+     */
+    static JsonNode routeJson(Route route) {
+        ObjectNode json = route.getJson();
+        if (json.has("locks")) {
+            ArrayNode locks = objectMapper.createArrayNode();
+            stream(json.get("locks").elements())
+                    .map(JsonNode::asText)
+                    .sorted()
+                    .forEach(locks::add);
+            json.set("locks", locks);
+        }
+        return json;
+    }
+
+    private StationDef stationDef;
+    private StationStatus status;
+
+    @Test
+    void badMagic() {
+        // Given ...
+        byte[] data = new byte[]{0, 1, 2, 3, 0, 1};
+
+        // When ... Then ...
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                StationStatusCodec.read(Channels.newChannel(new ByteArrayInputStream(data)), stationDef));
+        assertThat(ex.getMessage(), containsString("magic"));
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stationDef = StationDef.create(Utils.fromResource("/stations/downville.station.yml"), Locator.root());
+        status = StationStatusLoader.fromJson(Utils.fromResource(RESOURCE), Locator.root(), stationDef);
+    }
+
+    @Test
+    void corrupted() throws IOException {
+        // Given a snapshot
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StationStatusCodec.write(status, Channels.newChannel(bytes));
+        byte[] data = bytes.toByteArray();
+
+        for (int i = 0; i < data.length; i++) {
+            for (byte value : new byte[]{(byte) 0xff, (byte) 0x7f, 1}) {
+                // When a byte is corrupted
+                byte[] corrupted = data.clone();
+                corrupted[i] = value;
+
+                // Then the snapshot is decoded or rejected with the expected exceptions
+                try {
+                    StationStatusCodec.read(Channels.newChannel(new ByteArrayInputStream(corrupted)), status);
+                } catch (IOException | IllegalArgumentException ignored) {
+                } catch (RuntimeException ex) {
+                    throw new AssertionError(format("Unexpected exception corrupting byte %d to %d", i, value), ex);
+                }
+            }
+        }
+    }
+
+    @Test
+    void corruptedCount() throws IOException {
+        // Given a snapshot with a negative dictionary size
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StationStatusCodec.write(status, Channels.newChannel(bytes));
+        byte[] data = bytes.toByteArray();
+        ByteBuffer.wrap(data).putInt(Integer.BYTES + Short.BYTES, -1);
+
+        // When ... Then ...
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                StationStatusCodec.read(Channels.newChannel(new ByteArrayInputStream(data)), status));
+        assertThat(ex.getMessage(), equalTo("Invalid identifier count -1"));
+    }
+
+    @Test
+    void corruptedIndex() {
+        // Given a snapshot with an empty dictionary
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + Short.BYTES + Integer.BYTES + Double.BYTES + Integer.BYTES)
+                .putInt(StationStatusCodec.MAGIC)
+                .putShort(StationStatusCodec.VERSION)
+                .putInt(0)
+                .putDouble(0.1)
+                .putInt(0);
+
+        // When ... Then ...
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                StationStatusCodec.read(Channels.newChannel(new ByteArrayInputStream(header.array())), status));
+        assertThat(ex.getMessage(), equalTo("Invalid identifier index 0"));
+    }
+
+    @Test
+    void file(@TempDir Path dir) throws IOException {
+        // Given ...
+        Path file = dir.resolve("status.snapshot");
+
+        // When ...
+        StationStatusCodec.write(status, file);
+        StationStatusCodec.write(status, file);
+        StationStatus decoded = StationStatusCodec.read(file, stationDef);
+
+        // Then ...
+        assertSameDump(decoded, status);
+        assertThat(dir.toFile().list(), arrayContaining("status.snapshot"));
+    }
+
+    @Test
+    void readWithReference() throws IOException {
+        // Given ...
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StationStatus toggled = status.toggleDoubleSlipSwitch(StationStatusLoaderTest.DOUBLE_SLIP_SWITCH_ID);
+        StationStatusCodec.write(toggled, Channels.newChannel(bytes));
+
+        // When ...
+        StationStatus decoded = StationStatusCodec.read(
+                Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), status);
+
+        // Then ...
+        assertThat(decoded.getTopology(), sameInstance(status.getTopology()));
+        assertSameDump(decoded, toggled);
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        // Given ...
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        // When ...
+        StationStatusCodec.write(status, Channels.newChannel(bytes));
+        StationStatus decoded = StationStatusCodec.read(
+                Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), stationDef);
+
+        // Then ...
+        assertThat(decoded.getTrains(), not(empty()));
+        assertSameDump(decoded, status);
+        // and the snapshot is smaller than the yaml dump
+        byte[] yaml = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(Utils.fromResource(RESOURCE));
+        assertThat(bytes.size(), lessThan(yaml.length / 3));
+    }
+
+    @Test
+    void truncated() throws IOException {
+        // Given ...
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StationStatusCodec.write(status, Channels.newChannel(bytes));
+        byte[] data = Arrays.copyOf(bytes.toByteArray(), bytes.size() / 2);
+
+        // When ... Then ...
+        assertThrows(IOException.class, () ->
+                StationStatusCodec.read(Channels.newChannel(new ByteArrayInputStream(data)), stationDef));
+    }
+}
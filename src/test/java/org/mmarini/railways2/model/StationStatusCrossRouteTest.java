@@ -183,10 +183,10 @@ class StationStatusCrossRouteTest extends WithStationStatusTest {
         // Given ...
 
         // When ...
-        Optional<Direction> exitAE = status.getExit(new Direction(ae, e));
-        Optional<Direction> exitBE = status.getExit(new Direction(be, e));
-        Optional<Direction> exitCE = status.getExit(new Direction(ce, e));
-        Optional<Direction> exitDE = status.getExit(new Direction(de, e));
+        Optional<Direction> exitAE = status.getExit(ae.getDirection(e));
+        Optional<Direction> exitBE = status.getExit(be.getDirection(e));
+        Optional<Direction> exitCE = status.getExit(ce.getDirection(e));
+        Optional<Direction> exitDE = status.getExit(de.getDirection(e));
         Optional<Direction> exitEA = status.getExit(direction("ae", "a"));
         Optional<Direction> exitEB = status.getExit(direction("be", "b"));
         Optional<Direction> exitEC = status.getExit(direction("ce", "c"));
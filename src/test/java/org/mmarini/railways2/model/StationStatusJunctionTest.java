@@ -210,8 +210,8 @@ class StationStatusJunctionTest {
         // Given ...
 
         // When ...
-        Optional<Tuple2<Section, Set<Edge>>> sectionAB = status.findSection(new Direction(ab, b));
-        Optional<Tuple2<Section, Set<Edge>>> sectionCB = status.findSection(new Direction(bc, b));
+        Optional<Tuple2<Section, Set<Edge>>> sectionAB = status.findSection(ab.getDirection(b));
+        Optional<Tuple2<Section, Set<Edge>>> sectionCB = status.findSection(bc.getDirection(b));
 
         // Then ...
         assertThat(sectionAB, optionalOf(tupleOf(
@@ -408,9 +408,9 @@ class StationStatusJunctionTest {
     @Test
     void isNextRouteClear() {
         // Given ... When ... Than...
-        assertFalse(status.isNextRouteClear(new Direction(ab, a)));
-        assertTrue(status.isNextRouteClear(new Direction(bc, c)));
-        assertTrue(status.isNextRouteClear(new Direction(ab, b)));
+        assertFalse(status.isNextRouteClear(ab.getDirection(a)));
+        assertTrue(status.isNextRouteClear(bc.getDirection(c)));
+        assertTrue(status.isNextRouteClear(ab.getDirection(b)));
     }
 
     @Test
@@ -422,6 +422,6 @@ class StationStatusJunctionTest {
         status = status.setTrains(t1);
 
         // When ... Than...
-        assertFalse(status.isNextRouteClear(new Direction(bc, c)));
+        assertFalse(status.isNextRouteClear(bc.getDirection(c)));
     }
 }
\ No newline at end of file
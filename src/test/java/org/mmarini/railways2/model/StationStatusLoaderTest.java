@@ -68,7 +68,7 @@ class StationStatusLoaderTest {
 
         Signal signal = status.getRoute(SIGNAL_ID);
         Edge edge = status.getStationMap().getEdge(SIGNAL_LOCK_EDGE);
-        assertTrue(signal.isLocked(new Direction(edge, signal.getNodes().get(0))));
+        assertTrue(signal.isLocked(edge.getDirection(signal.getNodes().get(0))));
 
         Optional<Train> trainOpt = status.getTrain(TRAIN_ID);
         assertTrue(trainOpt.isPresent());
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mmarini.railways2.model.blocks.BlockBuilder;
+import org.mmarini.railways2.model.blocks.StationDef;
+import org.mmarini.railways2.model.geometry.StationBuilder;
+import org.mmarini.railways2.model.geometry.StationMap;
+import org.mmarini.railways2.model.routes.Entry;
+import org.mmarini.railways2.model.routes.Exit;
+import org.mmarini.railways2.model.routes.Route;
+import org.mmarini.railways2.model.routes.Signal;
+import org.mmarini.railways2.swing.WithTrain;
+import org.mmarini.yaml.Utils;
+import org.mmarini.yaml.schema.Locator;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.reactivestreams.Subscriber;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.verify;
+import static org.mmarini.railways2.model.MutableTrainTest.unlockSignals;
+import static org.mmarini.railways2.model.RailwayConstants.MAX_SPEED;
+
+class StationStatusParallelTickTest {
+
+    public static final double GAME_DURATION = 300d;
+    public static final double FREQUENCY = 0.1;
+    public static final double DT = 0.1;
+    public static final int NUM_STEPS = 3000;
+
+    private ForkJoinPool pool;
+
+    /**
+     * Returns the status after the player actions of the step
+     *
+     * @param status the status
+     * @param step   the step
+     */
+    static StationStatus play(StationStatus status, int step) {
+        if (step % 100 == 50) {
+            status = unlockSignals(status);
+        }
+        if (step % 100 == 75) {
+            for (Train train : status.getTrains()) {
+                status = status.startTrain(train.getId());
+            }
+        }
+        if (step % 200 == 160) {
+            status = status.stopTrains();
+        }
+        return status;
+    }
+
+    /**
+     * Returns the description of performance without the creation timestamp
+     *
+     * @param performance the performance
+     */
+    static String describe(ExtendedPerformance performance) {
+        return performance.toString().replaceAll("timestamp=\\d+, ", "");
+    }
+
+    static List<SoundEvent> captureEvents(Subscriber<SoundEvent> events) {
+        ArgumentCaptor<SoundEvent> captor = ArgumentCaptor.forClass(SoundEvent.class);
+        verify(events, atLeast(1)).onNext(captor.capture());
+        return captor.getAllValues();
+    }
+
+    @BeforeEach
+    void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void tick() throws IOException {
+        // Given ...
+        StationDef stationDef = StationDef.create(Utils.fromResource("/stations/downville.station.yml"), Locator.root());
+        Subscriber<SoundEvent> events0 = Mockito.mock();
+        Subscriber<SoundEvent> events1 = Mockito.mock();
+        Random random0 = new Random(1234);
+        Random random1 = new Random(1234);
+        StationStatus status0 = new BlockBuilder(stationDef).buildStatus(GAME_DURATION, FREQUENCY, random0, events0);
+        StationStatus status1 = new BlockBuilder(stationDef).buildStatus(GAME_DURATION, FREQUENCY, random1, events1);
+        int maxTrains = 0;
+
+        for (int i = 0; i < NUM_STEPS; i++) {
+            status0 = play(status0, i);
+            status1 = play(status1, i);
+
+            // When ...
+            status0 = status0.tick(DT, random0);
+            status1 = status1.tick(DT, random1, pool);
+
+            // Then ...
+            assertEquals(
+                    status0.getTrains().stream().map(Train::getJson).collect(Collectors.toList()),
+                    status1.getTrains().stream().map(Train::getJson).collect(Collectors.toList()));
+            assertEquals(describe(status0.getPerformance()), describe(status1.getPerformance()));
+            assertEquals(
+                    status0.getRoutes().stream().map(Route::getJson).collect(Collectors.toList()),
+                    status1.getRoutes().stream().map(Route::getJson).collect(Collectors.toList()));
+            // and the used train identifiers are updated by the arrivals and the exits
+            TrainIdAllocator allocator = status0.getTrainIdAllocator();
+            assertEquals(allocator.usedIds(status0.getTrains()), status0.getUsedTrainIds());
+            assertEquals(allocator.usedIds(status1.getTrains()), status1.getUsedTrainIds());
+            maxTrains = Math.max(maxTrains, status1.getTrains().size());
+        }
+        assertThat(maxTrains, greaterThan(1));
+        assertThat(status1.getPerformance().getRightOutgoingTrainNumber()
+                + status1.getPerformance().getWrongOutgoingTrainNumber(), greaterThan(0));
+        List<SoundEvent> expectedEvents = captureEvents(events0);
+        assertThat(expectedEvents, not(empty()));
+        assertEquals(expectedEvents, captureEvents(events1));
+    }
+
+    @Test
+    void tickLockedSignal() {
+        // Given a train entering the section bc and locking the signals b and c,
+        // a train in the opposite direction approaching the signal c and an entering train
+        // <pre>
+        //     Entry(a) --ab(1000m)-- Signals(b) --bc(1000m)-- Signals(c) --cd(1000m)-- Exit(d)
+        // </pre>
+        StationMap stationMap = new StationBuilder("station")
+                .addNode("a", new Point2D.Double(), "ab")
+                .addNode("b", new Point2D.Double(1000, 0), "ab", "bc")
+                .addNode("c", new Point2D.Double(2000, 0), "bc", "cd")
+                .addNode("d", new Point2D.Double(3000, 0), "cd")
+                .addTrack("ab", "a", "b")
+                .addTrack("bc", "b", "c")
+                .addTrack("cd", "c", "d")
+                .build();
+        StationStatus status = new StationStatus.Builder(stationMap, 0, GAME_DURATION, null, null)
+                .addRoute(Entry::create, "a")
+                .addRoute(Signal::create, "b")
+                .addRoute(Signal::create, "c")
+                .addRoute(Exit::create, "d")
+                .build()
+                .setAutoLock(true);
+        status = new WithTrain(status)
+                .addTrain(3, "a", "d", "ab", "b", 1)
+                .addTrain(3, "a", "d", "cd", "c", 200)
+                .addTrain(new WithTrain.TrainBuilder("TT2", 3, "a", "d")
+                        .setArrivalTime(100))
+                .build();
+        Train entering = status.getTrain("TT2").orElseThrow();
+
+        // When ...
+        StationStatus status0 = status.tick(DT, new Random(1234));
+        StationStatus status1 = status.tick(DT, new Random(1234), pool);
+
+        // Then the opposite train brakes at the signal locked in the same tick
+        assertEquals(
+                status0.getTrains().stream().map(Train::getJson).collect(Collectors.toList()),
+                status1.getTrains().stream().map(Train::getJson).collect(Collectors.toList()));
+        assertEquals(describe(status0.getPerformance()), describe(status1.getPerformance()));
+        assertThat(status1.getTrain("TT0").orElseThrow().getLocation().orElseThrow().getDirection().getEdge().getId(),
+                equalTo("bc"));
+        assertThat(status1.<Signal>getRoute("c").isLocked(stationMap.getEdge("cd").getDirection(stationMap.getNode("c"))),
+                equalTo(true));
+        assertThat(status1.getTrain("TT1").orElseThrow().getSpeed(), lessThan(MAX_SPEED));
+        // and the idle train is not simulated
+        assertThat(status1.getTrain("TT2").orElseThrow(), sameInstance(entering));
+    }
+}
@@ -132,7 +132,7 @@ class StationStatusPlatformTest {
     @Test
     void isNextTracksClearAtNotClearSignal() {
         // Given ...
-        createStatus(new Direction(ab, b));
+        createStatus(ab.getDirection(b));
 
         Train t1 = Train.create("t1", 1, aRoute, dRoute)
                 .setLocation(EdgeLocation.create(ab, b, 0));
@@ -148,7 +148,7 @@ class StationStatusPlatformTest {
     void isNextTracksClearAtPlatformLoaded() {
         // Given ...
 
-        createStatus(new Direction(ab, b));
+        createStatus(ab.getDirection(b));
 
         Train t1 = Train.create("t1", 1, aRoute, dRoute)
                 .setLocation(EdgeLocation.create(bc, c, 1))
@@ -166,7 +166,7 @@ class StationStatusPlatformTest {
     void isNextTracksClearForLoad() {
         // Given ...
 
-        createStatus(new Direction(ab, b));
+        createStatus(ab.getDirection(b));
 
         Train t1 = Train.create("t1", 1, aRoute, dRoute)
                 .setLocation(EdgeLocation.create(bc, c, 1));
@@ -181,7 +181,7 @@ class StationStatusPlatformTest {
     @Test
     void isNextTracksClearInTrack() {
         // Given ...
-        createStatus(new Direction(ab, b));
+        createStatus(ab.getDirection(b));
 
         Train t1 = Train.create("t1", 1, aRoute, dRoute)
                 .setLocation(EdgeLocation.create(ab, b, 100))
@@ -97,9 +97,7 @@ class StationStatusSignalTest extends WithStationStatusTest {
                 .addTrack("bc", "b", "c")
                 .build();
         Direction[] locks = IntStream.range(0, parms.length / 2)
-                .mapToObj(i -> new Direction(
-                        stationMap.getEdge(parms[i * 2]),
-                        stationMap.getNode(parms[i * 2 + 1])))
+                .mapToObj(i -> stationMap.getEdge(parms[i * 2]).getDirection(stationMap.getNode(parms[i * 2 + 1])))
                 .toArray(Direction[]::new);
         status = new StationStatus.Builder(stationMap, 1, GAME_DURATION, null, null)
                 .addRoute(Entry::create, "a")
@@ -140,13 +140,13 @@ class StationStatusSwitchTest extends WithStationStatusTest {
                 empty()
         )));
 
-        section = status.findSection(new Direction(bd, b));
+        section = status.findSection(bd.getDirection(b));
         assertThat(section, optionalOf(tupleOf(
                 isSectionWith("bd", "b", "ab", "b", "ab", "bd"),
                 empty()
         )));
 
-        section = status.findSection(new Direction(bc, b));
+        section = status.findSection(bc.getDirection(b));
         assertThat(section, emptyOptional());
     }
 
@@ -167,13 +167,13 @@ class StationStatusSwitchTest extends WithStationStatusTest {
                 empty()
         )));
 
-        section = status.findSection(new Direction(bc, b));
+        section = status.findSection(bc.getDirection(b));
         assertThat(section, optionalOf(tupleOf(
                 isSectionWith("bc", "b", "ab", "b", "ab", "bc"),
                 empty()
         )));
 
-        assertThat(status.findSection(new Direction(bd, b)), emptyOptional());
+        assertThat(status.findSection(bd.getDirection(b)), emptyOptional());
     }
 
     @Test
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+package org.mmarini.railways2.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mmarini.railways2.model.blocks.BlockBuilder;
+import org.mmarini.railways2.model.blocks.StationDef;
+import org.mmarini.railways2.model.geometry.Direction;
+import org.mmarini.railways2.model.geometry.EdgeLocation;
+import org.mmarini.railways2.model.geometry.Node;
+import org.mmarini.railways2.model.routes.Route;
+import org.mmarini.yaml.Utils;
+import org.mmarini.yaml.schema.Locator;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StationTopologyTest {
+
+    public static final double GAME_DURATION = 300d;
+    public static final double FREQUENCY = 0.1;
+    private BlockBuilder builder;
+
+    @Test
+    void create() {
+        // When ...
+        StationTopology topology = builder.buildTopology();
+
+        // Then ...
+        assertThat(topology.getStationMap(), sameInstance(builder.buildStationMap()));
+        assertThat(topology.getEntries(), hasSize(4));
+        assertThat(topology.getExits(), hasSize(4));
+        assertEquals(builder.buildRoutes().size(), topology.getNumSlots());
+        List<Route> routes = builder.buildRoutes();
+        for (int i = 0; i < routes.size(); i++) {
+            for (Node node : routes.get(i).getNodes()) {
+                assertEquals(i, topology.getSlot(node));
+            }
+        }
+    }
+
+    @Test
+    void computeLocation() {
+        // Given ...
+        StationTopology topology = builder.buildTopology();
+        double[] result = new double[3];
+
+        for (int i = 0; i < topology.getNumDirections(); i++) {
+            Direction direction = topology.getDirection(i);
+            double length = topology.getLength(i);
+            for (double distance : new double[]{0, length / 3, length}) {
+                // When ...
+                topology.computeLocation(i, distance, result, 1);
+
+                // Then ...
+                Point2D expected = new EdgeLocation(direction, distance).getLocation();
+                assertThat(result[1], closeTo(expected.getX(), 1e-6));
+                assertThat(result[2], closeTo(expected.getY(), 1e-6));
+            }
+        }
+    }
+
+    @Test
+    void getSlotError() {
+        // Given ...
+        StationTopology topology = builder.buildTopology();
+        Node node = new Node("unknown", new Point2D.Double(-1e6, -1e6));
+
+        // When ...
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> topology.getSlot(node));
+
+        // Then ...
+        assertThat(ex.getMessage(), matchesPattern("Route for node unknown does not exist"));
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        StationDef station = StationDef.create(Utils.fromResource("/stations/downville.station.yml"), Locator.root());
+        this.builder = new BlockBuilder(station);
+    }
+
+    @Test
+    void sharedBySnapshots() {
+        // Given ...
+        StationStatus status = builder.buildStatus(GAME_DURATION, FREQUENCY, new Random(1234), null);
+        StationTopology topology = builder.buildTopology();
+
+        // When ...
+        StationStatus status1 = status.tick(0.1, new Random(1234))
+                .setTime(10)
+                .toggleSwitch("westLeftSwitch.switch")
+                .lockSignals();
+
+        // Then ...
+        assertThat(status.getTopology(), sameInstance(topology));
+        assertThat(status1.getTopology(), sameInstance(topology));
+    }
+}
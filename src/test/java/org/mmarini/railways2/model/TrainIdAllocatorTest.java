@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model;
+
+import org.junit.jupiter.api.Test;
+import org.mmarini.railways2.model.routes.Entry;
+import org.mmarini.railways2.model.routes.Exit;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class TrainIdAllocatorTest {
+
+    @Test
+    void allocate() {
+        // Given ...
+        TrainIdAllocator allocator = TrainIdAllocator.create(100, 999);
+        BitSet usedIds = new BitSet();
+
+        // When ...
+        String id = allocator.allocate(usedIds, new Random(1234));
+
+        // Then the identifier is drawn as the sequence of previous retry loop
+        assertThat(id, equalTo("T" + (new Random(1234).nextInt(900) + 100)));
+        assertThat(usedIds.cardinality(), equalTo(1));
+        assertThat(usedIds.get(Integer.parseInt(id.substring(1)) - 100), equalTo(true));
+    }
+
+    @Test
+    void crowded() {
+        // Given a range with a single free identifier
+        TrainIdAllocator allocator = TrainIdAllocator.create(10, 19);
+        BitSet usedIds = new BitSet();
+        usedIds.set(0, 10);
+        usedIds.clear(7);
+
+        // When ...
+        String id = allocator.allocate(usedIds, new Random(1234));
+
+        // Then ...
+        assertThat(id, equalTo("T17"));
+        assertThat(usedIds.cardinality(), equalTo(10));
+    }
+
+    @Test
+    void full() {
+        // Given a full range
+        TrainIdAllocator allocator = TrainIdAllocator.create(10, 19);
+        BitSet usedIds = new BitSet();
+        Random random = new Random(1234);
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < allocator.getSize(); i++) {
+            ids.add(allocator.allocate(usedIds, random));
+        }
+        assertThat(ids, hasSize(10));
+
+        // When ...
+        IllegalStateException ex = assertThrows(IllegalStateException.class, () ->
+                allocator.allocate(usedIds, random));
+
+        // Then ...
+        assertThat(ex.getMessage(), matchesPattern(".*10 - 19.*"));
+    }
+
+    @Test
+    void indexOf() {
+        // Given ...
+        TrainIdAllocator allocator = TrainIdAllocator.create(100, 999);
+
+        // When ... Then ...
+        assertThat(allocator.indexOf("T123"), equalTo(23));
+        assertThat(allocator.indexOf("T100"), equalTo(0));
+        assertThat(allocator.indexOf("T999"), equalTo(899));
+        assertThat(allocator.indexOf("T1000"), equalTo(-1));
+        assertThat(allocator.indexOf("T99"), equalTo(-1));
+        assertThat(allocator.indexOf("Tx"), equalTo(-1));
+        assertThat(allocator.indexOf("train"), equalTo(-1));
+    }
+
+    @Test
+    void invalidRange() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                TrainIdAllocator.create(10, 9));
+
+        assertThat(ex.getMessage(), matchesPattern(".*10 - 9.*"));
+    }
+
+    @Test
+    void usedIds() {
+        // Given ...
+        TrainIdAllocator allocator = TrainIdAllocator.create(100, 999);
+        Entry arrival = mock(Entry.class);
+        Exit destination = mock(Exit.class);
+        Train t1 = Train.create("T123", 1, arrival, destination);
+        Train t2 = Train.create("train", 1, arrival, destination);
+        Train t3 = Train.create("T1000", 1, arrival, destination);
+
+        // When ...
+        BitSet usedIds = allocator.usedIds(List.of(t1, t2, t3));
+
+        // Then ...
+        assertThat(usedIds.cardinality(), equalTo(1));
+        assertThat(usedIds.get(23), equalTo(true));
+    }
+}
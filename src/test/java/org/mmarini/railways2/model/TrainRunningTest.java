@@ -132,8 +132,8 @@ class TrainRunningTest extends WithStationStatusTest {
         assertThat(next.getLocation(), optionalOf(locatedAt("bc", "c", LENGTH)));
 
         Signal b1 = context.getStatus().getRoute("b");
-        assertTrue(b1.isLocked(new Direction(ab, b)));
-        assertFalse(b1.isLocked(new Direction(bc, b)));
+        assertTrue(b1.isLocked(ab.getDirection(b)));
+        assertFalse(b1.isLocked(bc.getDirection(b)));
 
         Performance perf = nextOpt._2;
         double expectedTime = distance / MAX_SPEED;
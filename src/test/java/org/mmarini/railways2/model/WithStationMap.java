@@ -32,7 +32,7 @@ import org.mmarini.railways2.model.geometry.*;
 
 public interface WithStationMap {
     default Direction direction(String edge, String destination) {
-        return new Direction(edge(edge), node(destination));
+        return edge(edge).getDirection(node(destination));
     }
 
     default <T extends Edge> T edge(String id) {
@@ -100,6 +100,25 @@ public class DownvilleTest extends WithStationStatusTest {
         assertFalse(sw.isThrough());
     }
 
+    @Test
+    void phaseTimes() {
+        // Given ...
+        StationDef station = StationDef.create(root, Locator.root());
+        BlockBuilder builder = new BlockBuilder(station);
+
+        // When ...
+        builder.buildTopology();
+
+        // Then ...
+        assertThat(builder.getPhaseTimes(), allOf(
+                hasKey("blockGeometries"),
+                hasKey("junctions"),
+                hasKey("stationMap"),
+                hasKey("routes"),
+                hasKey("topology")));
+        assertThat(builder.getPhaseTimes().get("topology"), greaterThanOrEqualTo(builder.getPhaseTimes().get("routes")));
+    }
+
     @Test
     void parseYaml() {
         StationDef station = StationDef.create(root, Locator.root());
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model.geometry;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.awt.geom.Point2D;
+
+import static java.lang.Math.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+
+class CurveTableTest {
+
+    public static final double EPSILON = 1e-6;
+    public static final int NUM_POINTS = 37;
+
+    /**
+     * Returns the curve between two points
+     *
+     * @param x0    the x coordinate of node0
+     * @param y0    the y coordinate of node0
+     * @param x1    the x coordinate of node1
+     * @param y1    the y coordinate of node1
+     * @param angle the curve angle (DEG)
+     */
+    static Curve createCurve(double x0, double y0, double x1, double y1, double angle) {
+        Node a = new Node("a", new Point2D.Double(x0, y0));
+        Node b = new Node("b", new Point2D.Double(x1, y1));
+        return Curve.create("curve", a, b, toRadians(angle));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "0,0, 400,400, 90",
+            "0,0, 400,400, -90",
+            "0,0, 0,800, 180",
+            "10,20, -30,15, -30",
+            "0,0, 40,0, 5",
+    })
+    void computeLocations(double x0, double y0, double x1, double y1, double angle) {
+        // Given ...
+        Curve curve = createCurve(x0, y0, x1, y1, angle);
+        CurveTable table = curve.getTable();
+        double[] distances = new double[NUM_POINTS];
+        for (int i = 0; i < NUM_POINTS; i++) {
+            distances[i] = curve.getLength() * i / (NUM_POINTS - 1);
+        }
+        double[] locations = new double[NUM_POINTS * 2 + 1];
+        double[] tangents = new double[NUM_POINTS * 2];
+
+        // When ...
+        table.computeLocations(distances, 0, NUM_POINTS, locations, 1);
+        table.computeTangents(distances, 0, NUM_POINTS, tangents, 0);
+
+        // Then ...
+        assertThat(table.getNumSamples(), equalTo((int) ceil(curve.getLength() / CurveTable.SAMPLE_STEP) + 1));
+        for (int i = 0; i < NUM_POINTS; i++) {
+            EdgeLocation location = EdgeLocation.create(curve, curve.getNode1(), curve.getLength() - distances[i]);
+            Point2D expected = location.getLocation();
+            assertThat(locations[2 * i + 1], closeTo(expected.getX(), EPSILON));
+            assertThat(locations[2 * i + 2], closeTo(expected.getY(), EPSILON));
+            double orientation = curve.getOrientation(location);
+            assertThat(tangents[2 * i], closeTo(cos(orientation), EPSILON));
+            assertThat(tangents[2 * i + 1], closeTo(sin(orientation), EPSILON));
+        }
+    }
+}
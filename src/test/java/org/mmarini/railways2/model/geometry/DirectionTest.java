@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model.geometry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.Point2D;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DirectionTest {
+    private StationMap stationMap;
+    private Track track;
+
+    @BeforeEach
+    void beforeEach() {
+        this.stationMap = new StationBuilder("station")
+                .addNode("a", new Point2D.Double(0, 0), "ab")
+                .addNode("b", new Point2D.Double(100, 0), "ab", "bc")
+                .addNode("c", new Point2D.Double(200, 0), "bc")
+                .addTrack("ab", "a", "b")
+                .addTrack("bc", "b", "c")
+                .build();
+        this.track = stationMap.getEdge("ab");
+    }
+
+    @Test
+    void getDirection() {
+        // Given ...
+        Node a = stationMap.getNode("a");
+        Node b = stationMap.getNode("b");
+
+        // When ...
+        Direction ab = track.getDirection(b);
+        Direction ba = track.getDirection(a);
+
+        // Then ...
+        assertThat(ab.getEdge(), sameInstance(track));
+        assertThat(ab.getDestination(), equalTo(b));
+        assertThat(ab.getOrigin(), equalTo(a));
+        assertThat(ba.getDestination(), equalTo(a));
+        assertThat(ba.getOrigin(), equalTo(b));
+        assertThat(track.getDirection(b), sameInstance(ab));
+        assertThat(ab, not(equalTo(ba)));
+    }
+
+    @Test
+    void getDirectionError() {
+        // Given ...
+        Node c = stationMap.getNode("c");
+
+        // When ... Then ...
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> track.getDirection(c));
+        assertThat(ex.getMessage(), equalTo("destination c is not a terminal node of edge ab"));
+    }
+
+    @Test
+    void opposite() {
+        // Given ...
+        Direction ab = track.getDirection(stationMap.getNode("b"));
+
+        // When ...
+        Direction ba = ab.opposite();
+
+        // Then ...
+        assertThat(ba, sameInstance(track.getDirection(stationMap.getNode("a"))));
+        assertThat(ba.opposite(), sameInstance(ab));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.model.geometry;
+
+import org.junit.jupiter.api.Test;
+import org.mmarini.Tuple2;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class GridIndexTest {
+
+    public static final int NUM_ITEMS = 200;
+    public static final int NUM_QUERIES = 200;
+
+    /**
+     * Returns the distance of a point from a rectangle
+     *
+     * @param rect  the rectangle
+     * @param point the point
+     */
+    static double distance(Rectangle2D rect, Point2D point) {
+        double dx = Math.max(Math.max(rect.getMinX() - point.getX(), 0), point.getX() - rect.getMaxX());
+        double dy = Math.max(Math.max(rect.getMinY() - point.getY(), 0), point.getY() - rect.getMaxY());
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    static List<Rectangle2D> randomRects(Random random) {
+        return IntStream.range(0, NUM_ITEMS)
+                .mapToObj(i -> (Rectangle2D) new Rectangle2D.Double(
+                        random.nextDouble() * 1000 - 500,
+                        random.nextDouble() * 200 - 100,
+                        random.nextDouble() * 50,
+                        random.nextDouble() < 0.2 ? 0 : random.nextDouble() * 10))
+                .collect(Collectors.toList());
+    }
+
+    static Point2D randomPoint(Random random) {
+        return new Point2D.Double(random.nextDouble() * 1400 - 700, random.nextDouble() * 600 - 300);
+    }
+
+    @Test
+    void emptyIndex() {
+        // Given ...
+        GridIndex<Rectangle2D> index = GridIndex.create(List.of(), r -> r);
+        Point2D point = new Point2D.Double();
+
+        // When ...
+        List<Tuple2<Rectangle2D, Double>> nearest = index.getNearest(point, r -> distance(r, point), 1);
+
+        // Then ...
+        assertThat(nearest, empty());
+        assertThat(index.getWithin(point, 100, r -> distance(r, point)).count(), equalTo(0L));
+    }
+
+    @Test
+    void getNearest() {
+        // Given ...
+        Random random = new Random(1234);
+        List<Rectangle2D> rects = randomRects(random);
+        GridIndex<Rectangle2D> index = GridIndex.create(rects, r -> r);
+
+        for (int i = 0; i < NUM_QUERIES; i++) {
+            Point2D point = randomPoint(random);
+            ToDoubleFunction<Rectangle2D> dist = r -> distance(r, point);
+            int k = 1 + random.nextInt(5);
+            List<Double> expected = rects.stream()
+                    .mapToDouble(dist)
+                    .sorted()
+                    .limit(k)
+                    .boxed()
+                    .collect(Collectors.toList());
+
+            // When ...
+            List<Tuple2<Rectangle2D, Double>> nearest = index.getNearest(point, dist, k);
+
+            // Then ...
+            assertThat(nearest.stream().map(Tuple2::getV2).collect(Collectors.toList()), equalTo(expected));
+        }
+    }
+
+    @Test
+    void getWithin() {
+        // Given ...
+        Random random = new Random(1234);
+        List<Rectangle2D> rects = randomRects(random);
+        GridIndex<Rectangle2D> index = GridIndex.create(rects, r -> r, 15);
+
+        for (int i = 0; i < NUM_QUERIES; i++) {
+            Point2D point = randomPoint(random);
+            ToDoubleFunction<Rectangle2D> dist = r -> distance(r, point);
+            double maxDistance = random.nextDouble() * 100;
+            Set<Rectangle2D> expected = rects.stream()
+                    .filter(r -> dist.applyAsDouble(r) <= maxDistance)
+                    .collect(Collectors.toSet());
+
+            // When ...
+            List<Tuple2<Rectangle2D, Double>> within = index.getWithin(point, maxDistance, dist).collect(Collectors.toList());
+
+            // Then ...
+            assertThat(Set.copyOf(within.stream().map(Tuple2::getV1).collect(Collectors.toList())), equalTo(expected));
+            assertThat(within, hasSize(expected.size()));
+            for (int j = 1; j < within.size(); j++) {
+                assertThat(within.get(j)._2, greaterThanOrEqualTo(within.get(j - 1)._2));
+            }
+        }
+    }
+}
@@ -36,6 +36,8 @@ import org.mmarini.railways2.model.WithStationMap;
 
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static java.lang.Math.PI;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -135,15 +137,15 @@ public class StationMapTest implements WithStationMap {
         Edge cd = stationMap.getEdge("cd");
 
         assertThat(a.getExits(), containsInAnyOrder(
-                new Direction(ab, b)));
+                ab.getDirection(b)));
         assertThat(b.getExits(), containsInAnyOrder(
-                new Direction(ab, a),
-                new Direction(bc, c)));
+                ab.getDirection(a),
+                bc.getDirection(c)));
         assertThat(c.getExits(), containsInAnyOrder(
-                new Direction(bc, b),
-                new Direction(cd, d)));
+                bc.getDirection(b),
+                cd.getDirection(d)));
         assertThat(d.getExits(), containsInAnyOrder(
-                new Direction(cd, c)));
+                cd.getDirection(c)));
     }
 
     @Test
@@ -177,6 +179,44 @@ public class StationMapTest implements WithStationMap {
         assertThat(location, locatedAt(expEdge, expNode, expDistance));
     }
 
+    @Test
+    void getNearestLocations() {
+        // Given ...
+        Point2D point = new Point2D.Double(140, 10);
+
+        // When ...
+        List<EdgeLocation> locations = stationMap.getNearestLocations(point, 2);
+
+        // Then ...
+        assertThat(locations, contains(
+                locatedAt("bc", "bNode", 40),
+                locatedAt("ab", "aNode", 100)));
+    }
+
+    @Test
+    void getNodes() {
+        // Given ...
+        Point2D point = new Point2D.Double(140, 0);
+
+        // When ...
+        List<Node> nodes = stationMap.getNodes(point, 60).collect(Collectors.toList());
+
+        // Then ...
+        assertThat(nodes, contains(node("bNode"), node("cNode")));
+    }
+
+    @Test
+    void getEdges() {
+        // Given ...
+        Point2D point = new Point2D.Double(50, 5);
+
+        // When ...
+        List<Edge> edges = stationMap.getEdges(point, 60).collect(Collectors.toList());
+
+        // Then ...
+        assertThat(edges, contains(this.<Edge>edge("ab"), this.<Edge>edge("bc")));
+    }
+
     @Override
     public StationMap stationMap() {
         return stationMap;
@@ -77,10 +77,10 @@ class CrossRouteTest {
         Edge ce = station.getEdge("ce");
         Edge de = station.getEdge("de");
 
-        assertThat(route.getCrossingEdges(new Direction(ae, e)), containsInAnyOrder(ce, de));
-        assertThat(route.getCrossingEdges(new Direction(be, e)), containsInAnyOrder(ce, de));
-        assertThat(route.getCrossingEdges(new Direction(ce, e)), containsInAnyOrder(ae, be));
-        assertThat(route.getCrossingEdges(new Direction(de, e)), containsInAnyOrder(ae, be));
+        assertThat(route.getCrossingEdges(ae.getDirection(e)), containsInAnyOrder(ce, de));
+        assertThat(route.getCrossingEdges(be.getDirection(e)), containsInAnyOrder(ce, de));
+        assertThat(route.getCrossingEdges(ce.getDirection(e)), containsInAnyOrder(ae, be));
+        assertThat(route.getCrossingEdges(de.getDirection(e)), containsInAnyOrder(ae, be));
     }
 
     @Test
@@ -91,10 +91,10 @@ class CrossRouteTest {
         Edge ce = station.getEdge("ce");
         Edge de = station.getEdge("de");
 
-        Direction a_e = new Direction(ae, e);
-        Direction b_e = new Direction(be, e);
-        Direction c_e = new Direction(ce, e);
-        Direction d_e = new Direction(de, e);
+        Direction a_e = ae.getDirection(e);
+        Direction b_e = be.getDirection(e);
+        Direction c_e = ce.getDirection(e);
+        Direction d_e = de.getDirection(e);
         Direction e_a = a_e.opposite();
         Direction e_b = b_e.opposite();
         Direction e_c = c_e.opposite();
@@ -125,10 +125,10 @@ class CrossRouteTest {
         Edge ce = station.getEdge("ce");
         Edge de = station.getEdge("de");
 
-        Direction a_e = new Direction(ae, e);
-        Direction b_e = new Direction(be, e);
-        Direction c_e = new Direction(ce, e);
-        Direction d_e = new Direction(de, e);
+        Direction a_e = ae.getDirection(e);
+        Direction b_e = be.getDirection(e);
+        Direction c_e = ce.getDirection(e);
+        Direction d_e = de.getDirection(e);
         Direction e_a = a_e.opposite();
         Direction e_b = b_e.opposite();
         Direction e_c = c_e.opposite();
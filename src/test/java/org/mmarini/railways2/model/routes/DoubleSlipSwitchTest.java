@@ -128,22 +128,22 @@ class DoubleSlipSwitchTest {
         Edge fc = station.getEdge("fc");
 
         // When ... Then ...
-        assertThat(route.getCrossingEdges(new Direction(ab, b)), containsInAnyOrder(ef, cd));
-        assertThat(route.getCrossingEdges(new Direction(ab, a)), empty());
-        assertThat(route.getCrossingEdges(new Direction(bc, c)), empty());
-        assertThat(route.getCrossingEdges(new Direction(bc, b)), empty());
-        assertThat(route.getCrossingEdges(new Direction(cd, d)), empty());
-        assertThat(route.getCrossingEdges(new Direction(cd, c)), containsInAnyOrder(ab, gh));
-        assertThat(route.getCrossingEdges(new Direction(ef, e)), empty());
-        assertThat(route.getCrossingEdges(new Direction(ef, f)), containsInAnyOrder(ab, gh));
-        assertThat(route.getCrossingEdges(new Direction(fg, g)), empty());
-        assertThat(route.getCrossingEdges(new Direction(fg, f)), empty());
-        assertThat(route.getCrossingEdges(new Direction(gh, h)), empty());
-        assertThat(route.getCrossingEdges(new Direction(gh, g)), containsInAnyOrder(ef, cd));
-        assertThat(route.getCrossingEdges(new Direction(bg, g)), empty());
-        assertThat(route.getCrossingEdges(new Direction(bg, b)), empty());
-        assertThat(route.getCrossingEdges(new Direction(fc, c)), empty());
-        assertThat(route.getCrossingEdges(new Direction(fc, f)), empty());
+        assertThat(route.getCrossingEdges(ab.getDirection(b)), containsInAnyOrder(ef, cd));
+        assertThat(route.getCrossingEdges(ab.getDirection(a)), empty());
+        assertThat(route.getCrossingEdges(bc.getDirection(c)), empty());
+        assertThat(route.getCrossingEdges(bc.getDirection(b)), empty());
+        assertThat(route.getCrossingEdges(cd.getDirection(d)), empty());
+        assertThat(route.getCrossingEdges(cd.getDirection(c)), containsInAnyOrder(ab, gh));
+        assertThat(route.getCrossingEdges(ef.getDirection(e)), empty());
+        assertThat(route.getCrossingEdges(ef.getDirection(f)), containsInAnyOrder(ab, gh));
+        assertThat(route.getCrossingEdges(fg.getDirection(g)), empty());
+        assertThat(route.getCrossingEdges(fg.getDirection(f)), empty());
+        assertThat(route.getCrossingEdges(gh.getDirection(h)), empty());
+        assertThat(route.getCrossingEdges(gh.getDirection(g)), containsInAnyOrder(ef, cd));
+        assertThat(route.getCrossingEdges(bg.getDirection(g)), empty());
+        assertThat(route.getCrossingEdges(bg.getDirection(b)), empty());
+        assertThat(route.getCrossingEdges(fc.getDirection(c)), empty());
+        assertThat(route.getCrossingEdges(fc.getDirection(f)), empty());
     }
 
     @Test
@@ -168,22 +168,22 @@ class DoubleSlipSwitchTest {
         Edge fc = station.getEdge("fc");
 
         // When ... Then ...
-        assertThat(route.getCrossingEdges(new Direction(ab, b)), containsInAnyOrder(ef, gh));
-        assertThat(route.getCrossingEdges(new Direction(ab, a)), empty());
-        assertThat(route.getCrossingEdges(new Direction(bc, c)), empty());
-        assertThat(route.getCrossingEdges(new Direction(bc, b)), empty());
-        assertThat(route.getCrossingEdges(new Direction(cd, d)), empty());
-        assertThat(route.getCrossingEdges(new Direction(cd, c)), containsInAnyOrder(ef, gh));
-        assertThat(route.getCrossingEdges(new Direction(ef, e)), empty());
-        assertThat(route.getCrossingEdges(new Direction(ef, f)), containsInAnyOrder(ab, cd));
-        assertThat(route.getCrossingEdges(new Direction(fg, g)), empty());
-        assertThat(route.getCrossingEdges(new Direction(fg, f)), empty());
-        assertThat(route.getCrossingEdges(new Direction(gh, h)), empty());
-        assertThat(route.getCrossingEdges(new Direction(gh, g)), containsInAnyOrder(ab, cd));
-        assertThat(route.getCrossingEdges(new Direction(bg, g)), empty());
-        assertThat(route.getCrossingEdges(new Direction(bg, b)), empty());
-        assertThat(route.getCrossingEdges(new Direction(fc, c)), empty());
-        assertThat(route.getCrossingEdges(new Direction(fc, f)), empty());
+        assertThat(route.getCrossingEdges(ab.getDirection(b)), containsInAnyOrder(ef, gh));
+        assertThat(route.getCrossingEdges(ab.getDirection(a)), empty());
+        assertThat(route.getCrossingEdges(bc.getDirection(c)), empty());
+        assertThat(route.getCrossingEdges(bc.getDirection(b)), empty());
+        assertThat(route.getCrossingEdges(cd.getDirection(d)), empty());
+        assertThat(route.getCrossingEdges(cd.getDirection(c)), containsInAnyOrder(ef, gh));
+        assertThat(route.getCrossingEdges(ef.getDirection(e)), empty());
+        assertThat(route.getCrossingEdges(ef.getDirection(f)), containsInAnyOrder(ab, cd));
+        assertThat(route.getCrossingEdges(fg.getDirection(g)), empty());
+        assertThat(route.getCrossingEdges(fg.getDirection(f)), empty());
+        assertThat(route.getCrossingEdges(gh.getDirection(h)), empty());
+        assertThat(route.getCrossingEdges(gh.getDirection(g)), containsInAnyOrder(ab, cd));
+        assertThat(route.getCrossingEdges(bg.getDirection(g)), empty());
+        assertThat(route.getCrossingEdges(bg.getDirection(b)), empty());
+        assertThat(route.getCrossingEdges(fc.getDirection(c)), empty());
+        assertThat(route.getCrossingEdges(fc.getDirection(f)), empty());
     }
 
     @Test
@@ -207,35 +207,35 @@ class DoubleSlipSwitchTest {
         Edge fc = station.getEdge("fc");
 
         // When ...
-        Optional<Direction> dirAB = route.getExit(new Direction(ab, b));
-        Optional<Direction> dirCB = route.getExit(new Direction(bc, b));
-        Optional<Direction> dirGB = route.getExit(new Direction(bg, b));
-        Optional<Direction> dirBC = route.getExit(new Direction(bc, c));
-        Optional<Direction> dirDC = route.getExit(new Direction(cd, c));
-        Optional<Direction> dirFC = route.getExit(new Direction(fc, c));
-        Optional<Direction> dirEF = route.getExit(new Direction(ef, f));
-        Optional<Direction> dirCF = route.getExit(new Direction(fc, f));
-        Optional<Direction> dirGF = route.getExit(new Direction(fg, f));
-        Optional<Direction> dirFG = route.getExit(new Direction(fg, g));
-        Optional<Direction> dirBG = route.getExit(new Direction(bg, g));
-        Optional<Direction> dirHG = route.getExit(new Direction(gh, g));
+        Optional<Direction> dirAB = route.getExit(ab.getDirection(b));
+        Optional<Direction> dirCB = route.getExit(bc.getDirection(b));
+        Optional<Direction> dirGB = route.getExit(bg.getDirection(b));
+        Optional<Direction> dirBC = route.getExit(bc.getDirection(c));
+        Optional<Direction> dirDC = route.getExit(cd.getDirection(c));
+        Optional<Direction> dirFC = route.getExit(fc.getDirection(c));
+        Optional<Direction> dirEF = route.getExit(ef.getDirection(f));
+        Optional<Direction> dirCF = route.getExit(fc.getDirection(f));
+        Optional<Direction> dirGF = route.getExit(fg.getDirection(f));
+        Optional<Direction> dirFG = route.getExit(fg.getDirection(g));
+        Optional<Direction> dirBG = route.getExit(bg.getDirection(g));
+        Optional<Direction> dirHG = route.getExit(gh.getDirection(g));
 
         // Then ...
         // a-b-g-h
         // e-f-c-d
         assertFalse(route.isThrough());
-        assertThat(dirAB, Matchers.optionalOf(new Direction(bg, g)));
+        assertThat(dirAB, Matchers.optionalOf(bg.getDirection(g)));
         assertThat(dirCB, emptyOptional());
-        assertThat(dirGB, Matchers.optionalOf(new Direction(ab, a)));
+        assertThat(dirGB, Matchers.optionalOf(ab.getDirection(a)));
         assertThat(dirBC, emptyOptional());
-        assertThat(dirDC, Matchers.optionalOf(new Direction(fc, f)));
-        assertThat(dirFC, Matchers.optionalOf(new Direction(cd, d)));
-        assertThat(dirEF, Matchers.optionalOf(new Direction(fc, c)));
-        assertThat(dirCF, Matchers.optionalOf(new Direction(ef, e)));
+        assertThat(dirDC, Matchers.optionalOf(fc.getDirection(f)));
+        assertThat(dirFC, Matchers.optionalOf(cd.getDirection(d)));
+        assertThat(dirEF, Matchers.optionalOf(fc.getDirection(c)));
+        assertThat(dirCF, Matchers.optionalOf(ef.getDirection(e)));
         assertThat(dirGF, emptyOptional());
-        assertThat(dirBG, Matchers.optionalOf(new Direction(gh, h)));
+        assertThat(dirBG, Matchers.optionalOf(gh.getDirection(h)));
         assertThat(dirFG, emptyOptional());
-        assertThat(dirHG, Matchers.optionalOf(new Direction(bg, b)));
+        assertThat(dirHG, Matchers.optionalOf(bg.getDirection(b)));
     }
 
     @Test
@@ -259,35 +259,35 @@ class DoubleSlipSwitchTest {
         Edge fc = station.getEdge("fc");
 
         // When ...
-        Optional<Direction> dirAB = route.getExit(new Direction(ab, b));
-        Optional<Direction> dirCB = route.getExit(new Direction(bc, b));
-        Optional<Direction> dirGB = route.getExit(new Direction(bg, b));
-        Optional<Direction> dirBC = route.getExit(new Direction(bc, c));
-        Optional<Direction> dirDC = route.getExit(new Direction(cd, c));
-        Optional<Direction> dirFC = route.getExit(new Direction(fc, c));
-        Optional<Direction> dirEF = route.getExit(new Direction(ef, f));
-        Optional<Direction> dirCF = route.getExit(new Direction(fc, f));
-        Optional<Direction> dirGF = route.getExit(new Direction(fg, f));
-        Optional<Direction> dirFG = route.getExit(new Direction(fg, g));
-        Optional<Direction> dirBG = route.getExit(new Direction(bg, g));
-        Optional<Direction> dirHG = route.getExit(new Direction(gh, g));
+        Optional<Direction> dirAB = route.getExit(ab.getDirection(b));
+        Optional<Direction> dirCB = route.getExit(bc.getDirection(b));
+        Optional<Direction> dirGB = route.getExit(bg.getDirection(b));
+        Optional<Direction> dirBC = route.getExit(bc.getDirection(c));
+        Optional<Direction> dirDC = route.getExit(cd.getDirection(c));
+        Optional<Direction> dirFC = route.getExit(fc.getDirection(c));
+        Optional<Direction> dirEF = route.getExit(ef.getDirection(f));
+        Optional<Direction> dirCF = route.getExit(fc.getDirection(f));
+        Optional<Direction> dirGF = route.getExit(fg.getDirection(f));
+        Optional<Direction> dirFG = route.getExit(fg.getDirection(g));
+        Optional<Direction> dirBG = route.getExit(bg.getDirection(g));
+        Optional<Direction> dirHG = route.getExit(gh.getDirection(g));
 
         // Then ...
         // a-b-c-d
         // e-f-g-h
         assertTrue(route.isThrough());
-        assertThat(dirAB, Matchers.optionalOf(new Direction(bc, c)));
-        assertThat(dirCB, Matchers.optionalOf(new Direction(ab, a)));
+        assertThat(dirAB, Matchers.optionalOf(bc.getDirection(c)));
+        assertThat(dirCB, Matchers.optionalOf(ab.getDirection(a)));
         assertThat(dirGB, emptyOptional());
-        assertThat(dirBC, Matchers.optionalOf(new Direction(cd, d)));
-        assertThat(dirDC, Matchers.optionalOf(new Direction(bc, b)));
+        assertThat(dirBC, Matchers.optionalOf(cd.getDirection(d)));
+        assertThat(dirDC, Matchers.optionalOf(bc.getDirection(b)));
         assertThat(dirFC, emptyOptional());
-        assertThat(dirEF, Matchers.optionalOf(new Direction(fg, g)));
+        assertThat(dirEF, Matchers.optionalOf(fg.getDirection(g)));
         assertThat(dirCF, emptyOptional());
-        assertThat(dirGF, Matchers.optionalOf(new Direction(ef, e)));
+        assertThat(dirGF, Matchers.optionalOf(ef.getDirection(e)));
         assertThat(dirBG, emptyOptional());
-        assertThat(dirFG, Matchers.optionalOf(new Direction(gh, h)));
-        assertThat(dirHG, Matchers.optionalOf(new Direction(fg, f)));
+        assertThat(dirFG, Matchers.optionalOf(gh.getDirection(h)));
+        assertThat(dirHG, Matchers.optionalOf(fg.getDirection(f)));
     }
 
     @Test
@@ -316,14 +316,14 @@ class DoubleSlipSwitchTest {
         // a-b-g-h
         // e-f-c-d
         assertThat(exits, containsInAnyOrder(
-                new Direction(ab, a),
-                new Direction(bg, b),
-                new Direction(bg, g),
-                new Direction(gh, h),
-                new Direction(ef, e),
-                new Direction(fc, f),
-                new Direction(fc, c),
-                new Direction(cd, d)
+                ab.getDirection(a),
+                bg.getDirection(b),
+                bg.getDirection(g),
+                gh.getDirection(h),
+                ef.getDirection(e),
+                fc.getDirection(f),
+                fc.getDirection(c),
+                cd.getDirection(d)
         ));
     }
 
@@ -353,14 +353,14 @@ class DoubleSlipSwitchTest {
         // a-b-c-d
         // e-f-g-h
         assertThat(exits, containsInAnyOrder(
-                new Direction(ab, a),
-                new Direction(bc, b),
-                new Direction(bc, c),
-                new Direction(cd, d),
-                new Direction(ef, e),
-                new Direction(fg, g),
-                new Direction(fg, f),
-                new Direction(gh, h)
+                ab.getDirection(a),
+                bc.getDirection(b),
+                bc.getDirection(c),
+                cd.getDirection(d),
+                ef.getDirection(e),
+                fg.getDirection(g),
+                fg.getDirection(f),
+                gh.getDirection(h)
         ));
     }
 
@@ -60,14 +60,14 @@ class ExitTest {
     void getConnected() {
         Node a = station.getNode("a");
         Edge ab = station.getEdge("ab");
-        assertFalse(route.getExit(new Direction(ab, a)).isPresent());
+        assertFalse(route.getExit(ab.getDirection(a)).isPresent());
     }
 
     @Test
     void getCrossingEdges() {
         Node a = station.getNode("a");
         Edge ab = station.getEdge("ab");
-        assertThat(route.getCrossingEdges(new Direction(ab, a)), empty());
+        assertThat(route.getCrossingEdges(ab.getDirection(a)), empty());
     }
 
     @Test
@@ -75,7 +75,7 @@ class ExitTest {
         Node b = station.getNode("b");
         Edge bc = station.getEdge("bc");
         assertThat(route.getValidExits(), contains(
-                new Direction(bc, b)
+                bc.getDirection(b)
         ));
     }
 }
\ No newline at end of file
@@ -68,8 +68,8 @@ class JunctionTest {
         Edge ab = station.getEdge("ab");
         Edge bc = station.getEdge("bc");
 
-        assertThat(route.getCrossingEdges(new Direction(ab, b)), empty());
-        assertThat(route.getCrossingEdges(new Direction(bc, b)), empty());
+        assertThat(route.getCrossingEdges(ab.getDirection(b)), empty());
+        assertThat(route.getCrossingEdges(bc.getDirection(b)), empty());
     }
 
     @Test
@@ -82,14 +82,14 @@ class JunctionTest {
         Edge bc = station.getEdge("bc");
 
         // When ...
-        Optional<Direction> dirAB = route.getExit(new Direction(ab, b));
-        Optional<Direction> dirBC = route.getExit(new Direction(bc, c));
-        Optional<Direction> dirCB = route.getExit(new Direction(bc, b));
+        Optional<Direction> dirAB = route.getExit(ab.getDirection(b));
+        Optional<Direction> dirBC = route.getExit(bc.getDirection(c));
+        Optional<Direction> dirCB = route.getExit(bc.getDirection(b));
 
         // Then ...
-        assertThat(dirAB, Matchers.optionalOf(new Direction(bc, c)));
+        assertThat(dirAB, Matchers.optionalOf(bc.getDirection(c)));
         assertThat(dirBC, emptyOptional());
-        assertThat(dirCB, Matchers.optionalOf(new Direction(ab, a)));
+        assertThat(dirCB, Matchers.optionalOf(ab.getDirection(a)));
     }
 
     @Test
@@ -101,8 +101,8 @@ class JunctionTest {
 
         Collection<Direction> exits = route.getValidExits();
         assertThat(exits, containsInAnyOrder(
-                new Direction(ab, a),
-                new Direction(bc, c)
+                ab.getDirection(a),
+                bc.getDirection(c)
         ));
     }
 
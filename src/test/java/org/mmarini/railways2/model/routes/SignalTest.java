@@ -72,21 +72,21 @@ class SignalTest {
 
     @Test
     void getCrossingEdges() {
-        assertThat(route.getCrossingEdges(new Direction(ab, b)), empty());
-        assertThat(route.getCrossingEdges(new Direction(bc, b)), empty());
+        assertThat(route.getCrossingEdges(ab.getDirection(b)), empty());
+        assertThat(route.getCrossingEdges(bc.getDirection(b)), empty());
     }
 
     @Test
     void getExit() {
-        Optional<Direction> dirOpt = route.getExit(new Direction(ab, b));
+        Optional<Direction> dirOpt = route.getExit(ab.getDirection(b));
         assertTrue(dirOpt.isPresent());
-        assertEquals(new Direction(bc, c), dirOpt.orElseThrow());
+        assertEquals(bc.getDirection(c), dirOpt.orElseThrow());
 
-        dirOpt = route.getExit(new Direction(bc, b));
+        dirOpt = route.getExit(bc.getDirection(b));
         assertTrue(dirOpt.isPresent());
-        assertEquals(new Direction(ab, a), dirOpt.orElseThrow());
+        assertEquals(ab.getDirection(a), dirOpt.orElseThrow());
 
-        dirOpt = route.getExit(new Direction(bc, c));
+        dirOpt = route.getExit(bc.getDirection(c));
         assertFalse(dirOpt.isPresent());
     }
 
@@ -94,8 +94,8 @@ class SignalTest {
     void getExits() {
         Collection<Direction> exits = route.getValidExits();
         assertThat(exits, containsInAnyOrder(
-                new Direction(ab, a),
-                new Direction(bc, c)
+                ab.getDirection(a),
+                bc.getDirection(c)
         ));
     }
 
@@ -104,25 +104,25 @@ class SignalTest {
         // Given ...
 
         //When ... Then ...
-        assertFalse(route.isExitLocked(new Direction(ab, a)));
-        assertFalse(route.isExitLocked(new Direction(bc, c)));
+        assertFalse(route.isExitLocked(ab.getDirection(a)));
+        assertFalse(route.isExitLocked(bc.getDirection(c)));
     }
 
     @Test
     void isExitLockedTrue() {
         // Given ...
-        route = Signal.createLocks(new Direction(ab, b)).apply(new Node[]{b});
+        route = Signal.createLocks(ab.getDirection(b)).apply(new Node[]{b});
 
         //When ... Then ...
-        assertFalse(route.isExitLocked(new Direction(ab, a)));
-        assertTrue(route.isExitLocked(new Direction(bc, c)));
+        assertFalse(route.isExitLocked(ab.getDirection(a)));
+        assertTrue(route.isExitLocked(bc.getDirection(c)));
     }
 
     @Test
     void lock() {
-        Direction a_b = new Direction(ab, b);
-        Direction c_b = new Direction(bc, b);
-        Direction b_c = new Direction(bc, c);
+        Direction a_b = ab.getDirection(b);
+        Direction c_b = bc.getDirection(b);
+        Direction b_c = bc.getDirection(c);
 
         assertFalse(route.isLocked(a_b));
         assertFalse(route.isLocked(c_b));
@@ -148,8 +148,8 @@ class SignalTest {
 
     @Test
     void unlock() {
-        Direction a_b = new Direction(ab, b);
-        Direction c_b = new Direction(bc, b);
+        Direction a_b = ab.getDirection(b);
+        Direction c_b = bc.getDirection(b);
 
         Signal routeLocked = route.lock(a_b).lock(c_b);
         assertTrue(routeLocked.isLocked(a_b));
@@ -97,29 +97,29 @@ class SwitchTest {
     void getCrossingEdgesDiverging() {
         createSwitch(false);
 
-        assertThat(bRoute.getCrossingEdges(new Direction(ab, b)), empty());
-        assertThat(bRoute.getCrossingEdges(new Direction(bc, b)), empty());
-        assertThat(bRoute.getCrossingEdges(new Direction(bd, b)), empty());
+        assertThat(bRoute.getCrossingEdges(ab.getDirection(b)), empty());
+        assertThat(bRoute.getCrossingEdges(bc.getDirection(b)), empty());
+        assertThat(bRoute.getCrossingEdges(bd.getDirection(b)), empty());
     }
 
     @Test
     void getCrossingEdgesThrough() {
         createSwitch(true);
 
-        assertThat(bRoute.getCrossingEdges(new Direction(ab, b)), empty());
-        assertThat(bRoute.getCrossingEdges(new Direction(bc, b)), empty());
-        assertThat(bRoute.getCrossingEdges(new Direction(bd, b)), empty());
+        assertThat(bRoute.getCrossingEdges(ab.getDirection(b)), empty());
+        assertThat(bRoute.getCrossingEdges(bc.getDirection(b)), empty());
+        assertThat(bRoute.getCrossingEdges(bd.getDirection(b)), empty());
     }
 
     @Test
     void getExitDiverging() {
         createSwitch(false);
 
-        Direction a_b = new Direction(ab, b);
-        Direction b_a = new Direction(ab, a);
-        Direction c_b = new Direction(bc, b);
-        Direction b_d = new Direction(bd, d);
-        Direction d_b = new Direction(bd, b);
+        Direction a_b = ab.getDirection(b);
+        Direction b_a = ab.getDirection(a);
+        Direction c_b = bc.getDirection(b);
+        Direction b_d = bd.getDirection(d);
+        Direction d_b = bd.getDirection(b);
 
         assertFalse(bRoute.isThrough());
 
@@ -139,11 +139,11 @@ class SwitchTest {
     void getExitThrow() {
         createSwitch(true);
 
-        Direction a_b = new Direction(ab, b);
-        Direction b_a = new Direction(ab, a);
-        Direction c_b = new Direction(bc, b);
-        Direction b_c = new Direction(bc, c);
-        Direction d_b = new Direction(bd, b);
+        Direction a_b = ab.getDirection(b);
+        Direction b_a = ab.getDirection(a);
+        Direction c_b = bc.getDirection(b);
+        Direction b_c = bc.getDirection(c);
+        Direction d_b = bd.getDirection(b);
 
         assertTrue(bRoute.isThrough());
 
@@ -165,8 +165,8 @@ class SwitchTest {
 
         Collection<Direction> exits = bRoute.getValidExits();
         assertThat(exits, containsInAnyOrder(
-                new Direction(ab, a),
-                new Direction(bd, d)
+                ab.getDirection(a),
+                bd.getDirection(d)
         ));
     }
 
@@ -176,8 +176,8 @@ class SwitchTest {
 
         Collection<Direction> exits = bRoute.getValidExits();
         assertThat(exits, containsInAnyOrder(
-                new Direction(ab, a),
-                new Direction(bc, c)
+                ab.getDirection(a),
+                bc.getDirection(c)
         ));
     }
 
@@ -218,8 +218,8 @@ public interface StationExamples {
         Edge bc = stationMap.getEdge("bc");
         return new StationStatus.Builder(stationMap, 1, GAME_DURATION, null, null)
                 .addRoute(Entry::create, "a")
-                .addRoute(Signal.createLocks(new Direction(bc, b)), "b")
-                .addRoute(Signal.createLocks(new Direction(bc, c)), "c")
+                .addRoute(Signal.createLocks(bc.getDirection(b)), "b")
+                .addRoute(Signal.createLocks(bc.getDirection(c)), "c")
                 .addRoute(Switch.create(true), "d")
                 .addRoute(Exit::create, "e")
                 .addRoute(Exit::create, "f")
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.railways2.swing;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.mmarini.Tuple2;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mmarini.railways2.model.StationStatus;
+import org.mmarini.railways2.model.blocks.BlockBuilder;
+import org.mmarini.railways2.model.blocks.StationDef;
+import org.mmarini.yaml.Utils;
+import org.mmarini.yaml.schema.Locator;
+
+import java.awt.*;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Random;
+
+import static java.lang.Math.abs;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class StationPanelLayersTest {
+
+    public static final double GAME_DURATION = 300d;
+    public static final double FREQUENCY = 0.1;
+    public static final int TOLERANCE = 2;
+    /**
+     * The maximum number of different pixels due to the sub-pixel rounding of tile positions
+     */
+    public static final int MAX_DIFFERENCES = 1200 * 800 / 1000;
+    public static final double DT = 0.1;
+    public static final Dimension VIEW_SIZE = new Dimension(1200, 800);
+
+    /**
+     * Returns the number of pixels with different colors
+     *
+     * @param image0 the first image
+     * @param image1 the second image
+     */
+    static int countDifferences(BufferedImage image0, BufferedImage image1) {
+        int count = 0;
+        for (int y = 0; y < image0.getHeight(); y++) {
+            for (int x = 0; x < image0.getWidth(); x++) {
+                int rgb0 = image0.getRGB(x, y);
+                int rgb1 = image1.getRGB(x, y);
+                for (int shift = 0; shift < 32; shift += 8) {
+                    if (abs(((rgb0 >> shift) & 0xff) - ((rgb1 >> shift) & 0xff)) > TOLERANCE) {
+                        count++;
+                        break;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the status after running the simulation up to a train in the station
+     *
+     * @param station the station name
+     * @param random  the random generator
+     */
+    static StationStatus createStatus(String station, Random random) throws IOException {
+        StationDef stationDef = StationDef.create(Utils.fromResource("/stations/" + station + ".station.yml"), Locator.root());
+        StationStatus status = new BlockBuilder(stationDef).buildStatus(GAME_DURATION, FREQUENCY, random, null);
+        while (getHead(status).isEmpty()) {
+            status = status.tick(DT, random);
+        }
+        return status;
+    }
+
+    /**
+     * Returns the head location of the first train in the station
+     *
+     * @param status the status
+     */
+    static Optional<Point2D> getHead(StationStatus status) {
+        return status.getTrainsCoaches()
+                .flatMap(coaches -> coaches.getHead().stream())
+                .map(Tuple2::getV1)
+                .findFirst();
+    }
+
+    /**
+     * Returns the image painted by the panel in the view rectangle
+     *
+     * @param panel the panel
+     * @param view  the view rectangle
+     */
+    static BufferedImage paintPanel(StationPanel panel, Rectangle view) {
+        BufferedImage image = new BufferedImage(view.width, view.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D gr = image.createGraphics();
+        gr.translate(-view.x, -view.y);
+        gr.clipRect(view.x, view.y, view.width, view.height);
+        panel.paintComponent(gr);
+        gr.dispose();
+        return image;
+    }
+
+    /**
+     * Returns the image painted in a single pass without layers in the view rectangle
+     *
+     * @param panel  the panel
+     * @param status the status
+     * @param view   the view rectangle
+     */
+    static BufferedImage paintSinglePass(StationPanel panel, StationStatus status, Rectangle view) {
+        BufferedImage image = new BufferedImage(view.width, view.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D gr = image.createGraphics();
+        gr.setColor(panel.getBackground());
+        gr.fillRect(0, 0, view.width, view.height);
+        gr.translate(-view.x, -view.y);
+        gr.transform(panel.createTransform());
+        new Painters.Builder(status).build().accept(gr);
+        gr.dispose();
+        return image;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"downville", "jackville"})
+    void paintLayers(String station) throws IOException {
+        // Given a view centered on the head of a train
+        Random random = new Random(1234);
+        StationStatus status0 = createStatus(station, random);
+        StationStatus status1 = status0;
+        for (int i = 0; i < 10; i++) {
+            status1 = status1.tick(DT, random);
+        }
+        StationPanel panel = new StationPanel();
+        panel.paintStation(status0);
+        panel.setSize(panel.getPreferredSize());
+        Point center = panel.getViewPoint(getHead(status0).orElseThrow());
+        Rectangle view = new Rectangle(center.x - VIEW_SIZE.width / 2, center.y - VIEW_SIZE.height / 2,
+                VIEW_SIZE.width, VIEW_SIZE.height);
+        BufferedImage image0 = paintPanel(panel, view);
+
+        // When ...
+        panel.paintStation(status1);
+        BufferedImage image1 = paintPanel(panel, view);
+
+        // Then ...
+        assertThat(countDifferences(image0, image1), not(equalTo(0)));
+        assertThat(countDifferences(image0, paintSinglePass(panel, status0, view)), lessThan(MAX_DIFFERENCES));
+        assertThat(countDifferences(image1, paintSinglePass(panel, status1, view)), lessThan(MAX_DIFFERENCES));
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2023  Marco Marini, marco.marini@mmarini.org
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ *    END OF TERMS AND CONDITIONS
+ *
+ */
+
+
+package org.mmarini.yaml.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.mmarini.yaml.Utils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mmarini.yaml.schema.Validator.*;
+
+class ValidatorTest {
+
+    static final Validator TRAIN = objectPropertiesRequired(Map.of(
+            "id", string(),
+            "numCoaches", positiveInteger(),
+            "location", objectPropertiesRequired(Map.of(
+                    "edge", string(),
+                    "distance", nonNegativeNumber()
+            ), List.of("edge", "distance"))
+    ), List.of("id", "numCoaches"));
+    static final Validator DUMP = objectPropertiesRequired(Map.of(
+            "version", string(values("2.0")),
+            "trains", arrayItems(TRAIN)
+    ), List.of("version", "trains"));
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "version: '1.0'|/version must match a value in [2.0] (1.0)",
+            "trains: {}|/trains must be an array (OBJECT)",
+            "trains: [{id: a, numCoaches: 0}]|/trains/0/numCoaches must be > 0 (0)",
+            "trains: [{id: a, numCoaches: 1}, {numCoaches: 1}]|/trains/1/id is missing",
+            "trains: [{id: a, numCoaches: 1, location: {edge: e}}]|/trains/0/location/distance is missing",
+            "trains: [{id: a, numCoaches: 1, location: {edge: e, distance: -1}}]|/trains/0/location/distance must be >= 0.0 (-1.0)"
+    })
+    void errors(String patch, String message) throws IOException {
+        // Given a dump with an invalid property
+        JsonNode root = Utils.fromText("{version: '2.0', trains: []}");
+        JsonNode patchNode = Utils.fromText("{" + patch + "}");
+        ((ObjectNode) root).setAll((ObjectNode) patchNode);
+
+        // When validating
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> DUMP.validate(root, Locator.root()));
+
+        // Then the message locates the error as the locator based validation
+        assertThat(ex.getMessage(), equalTo(message));
+    }
+
+    @Test
+    void deferredValidator() throws IOException {
+        // Given a validator created at validation time from the document
+        Validator validator = objectProperties(Map.of(
+                "max", integer(),
+                "items", arrayItems(deferred((root, cursor) ->
+                        maximum(root.path("max").asInt())))));
+        JsonNode root = Utils.fromText("{max: 2, items: [1, 2, 3]}");
+
+        // When validating
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> validator.validate(root, Locator.root()));
+
+        // Then the created validator reports the location of the item
+        assertThat(ex.getMessage(), equalTo("/items/2 must be <= 2 (3)"));
+    }
+
+    @Test
+    void legacyValidator() throws IOException {
+        // Given a validator implemented on the locator and nested into a compiled one
+        Validator legacy = locator -> root -> assertFor(locator.getNode(root).asInt() == 1, locator, "must be one");
+        Validator validator = objectProperties(Map.of(
+                "items", arrayItems(legacy)));
+        JsonNode root = Utils.fromText("{items: [1, 1, 2]}");
+
+        // When validating
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> validator.apply(Locator.root()).accept(root));
+
+        // Then the legacy validator receives the locator of the item
+        assertThat(ex.getMessage(), equalTo("/items/2 must be one"));
+    }
+
+    @Test
+    void nestedLocator() throws IOException {
+        // Given a document with a nested dump
+        JsonNode root = Utils.fromText("{game: {dump: {version: '2.0', trains: [{id: a, numCoaches: -1}]}}}");
+
+        // When validating from the nested locator
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> DUMP.apply(Locator.locate("game/dump")).accept(root));
+
+        // Then the message contains the full pointer
+        assertThat(ex.getMessage(), equalTo("/game/dump/trains/0/numCoaches must be > 0 (-1)"));
+    }
+
+    @Test
+    void valid() throws IOException {
+        // Given a valid dump
+        JsonNode root = Utils.fromText("{version: '2.0', trains: [{id: a, numCoaches: 3, location: {edge: e, distance: 0}}]}");
+
+        // When ... Then ...
+        assertDoesNotThrow(() -> DUMP.validate(root, Locator.root()));
+    }
+}